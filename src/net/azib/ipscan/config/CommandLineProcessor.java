@@ -6,7 +6,10 @@
 
 package net.azib.ipscan.config;
 
+import net.azib.ipscan.core.ScanCheckpoint;
+import net.azib.ipscan.core.ScannerDispatcherThreadFactory;
 import net.azib.ipscan.core.ScanningResultList;
+import net.azib.ipscan.core.distributed.ScanCoordinator;
 import net.azib.ipscan.core.state.ScanningState;
 import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.core.state.StateMachine.Transition;
@@ -29,11 +32,18 @@ public class CommandLineProcessor implements CommandProcessor, StateTransitionLi
 	private final ExporterRegistry exporters;
 	private StateMachine stateMachine;
 	private ScanningResultList scanningResults;
+	private ScanCheckpoint checkpoint;
+	private ScannerDispatcherThreadFactory scannerThreadFactory;
 	
 	FeederCreator feederCreator;
 	String[] feederArgs;
 	Exporter exporter;
 	String outputFilename;
+	File checkpointFile;
+	File resumeFile;
+	/** Port for workers of a distributed scan, -1 if there are no workers on other computers */
+	int coordinatorPort = -1;
+	int localWorkers;
 	
 	boolean autoStart;
 	boolean autoQuit;
@@ -44,10 +54,12 @@ public class CommandLineProcessor implements CommandProcessor, StateTransitionLi
 		this.exporters = exporters;		
 	}
 
-	public CommandLineProcessor(FeederRegistry feederCreators, ExporterRegistry exporters, StateMachine stateMachine, ScanningResultList scanningResults) {
+	public CommandLineProcessor(FeederRegistry feederCreators, ExporterRegistry exporters, StateMachine stateMachine, ScanningResultList scanningResults, ScanCheckpoint checkpoint, ScannerDispatcherThreadFactory scannerThreadFactory) {
 		this(feederCreators, exporters);
 		this.stateMachine = stateMachine;
 		this.scanningResults = scanningResults;
+		this.checkpoint = checkpoint;
+		this.scannerThreadFactory = scannerThreadFactory;
 		if (stateMachine != null)
 			stateMachine.addTransitionListener(this);
 	}
@@ -87,6 +99,24 @@ public class CommandLineProcessor implements CommandProcessor, StateTransitionLi
 				autoStart = true;
 			}
 			else
+			if (arg.equals("-c")) {
+				checkpointFile = fileArgument(args, ++i, "Checkpoint filename missing");
+			}
+			else
+			if (arg.equals("-r")) {
+				resumeFile = fileArgument(args, ++i, "Checkpoint filename missing");
+				// resuming is meaningful only if the scan is started
+				autoStart = true;
+			}
+			else
+			if (arg.equals("-d")) {
+				coordinatorPort = intArgument(args, ++i, "Port for workers missing");
+			}
+			else
+			if (arg.equals("-w")) {
+				localWorkers = intArgument(args, ++i, "Number of workers missing");
+			}
+			else
 			if (arg.startsWith("-")) {
 				for (char option : arg.substring(1).toCharArray()) {
 					switch (option) {
@@ -101,17 +131,40 @@ public class CommandLineProcessor implements CommandProcessor, StateTransitionLi
 			else
 				throw new IllegalArgumentException("Unknown argument: " + arg);
 		}
+		if (resumeFile != null) {
+			// the feeder is restored from the checkpoint
+			if (feederCreator != null)
+				throw new IllegalArgumentException("Feeder cannot be specified when resuming");
+			return;
+		}
 		if (feederCreator == null)
 			throw new IllegalArgumentException("Feeder missing");
 		feederCreator.unserialize(feederArgs);
 	}
 
+	private File fileArgument(String[] args, int i, String missingMessage) {
+		if (i >= args.length || args[i].startsWith("-"))
+			throw new IllegalArgumentException(missingMessage);
+		return new File(args[i]);
+	}
+
+	private int intArgument(String[] args, int i, String missingMessage) {
+		try {
+			int value = Integer.parseInt(args[i]);
+			if (value >= 0) return value;
+		}
+		catch (ArrayIndexOutOfBoundsException | NumberFormatException ignore) {
+		}
+		throw new IllegalArgumentException(missingMessage);
+	}
+
 	@Override
 	public String toString() {
 		// TODO: use labels!
 		StringBuilder usage = new StringBuilder();
 		usage.append("Pass the following arguments:\n");
-		usage.append("[options] <feeder> <exporter>\n\n");
+		usage.append("[options] <feeder> <exporter>\n");
+		usage.append("[options] -r <checkpoint> <exporter>\n\n");
 		usage.append("Where <feeder> is one of:\n");
 		for (FeederCreator creator : feederRegistry) {
 			usage.append("-f:").append(shortId(creator.getFeederId()));
@@ -128,6 +181,14 @@ public class CommandLineProcessor implements CommandProcessor, StateTransitionLi
 		usage.append("-s\tstart scanning automatically\n");
 		usage.append("-q\tquit after exporting the results\n");
 		usage.append("-a\tappend to the file, do not overwrite\n");
+		usage.append("\nCheckpoints of long scans:\n");
+		usage.append("-c <checkpoint>\tsave checkpoints to the file\n");
+		usage.append("-r <checkpoint>\tresume the scan from the file, skipping already scanned addresses\n");
+		usage.append("\nDistributed scanning:\n");
+		usage.append("-d <port>\tlet workers connect to the port and scan the addresses instead of this computer\n");
+		usage.append("-w <count>\tstart the number of workers on this computer\n");
+		usage.append("Workers on other computers are started with: java -cp ipscan.jar net.azib.ipscan.core.distributed.ScanWorker <host>:<port>\n");
+		usage.append("The same secret must be set in the " + ScanCoordinator.SECRET_ENV + " environment variable for this program and the workers\n");
 		return usage.toString();
 	}
 
@@ -153,6 +214,14 @@ public class CommandLineProcessor implements CommandProcessor, StateTransitionLi
 			// select the correct feeder
 			if (feederCreator != null)
 				feederRegistry.select(feederCreator.getFeederId());
+
+			if (checkpointFile != null)
+				checkpoint.setFile(checkpointFile);
+			// restores the feeder, fetchers and settings of the interrupted scan
+			if (resumeFile != null)
+				checkpoint.resume(resumeFile);
+			if (coordinatorPort >= 0 || localWorkers > 0)
+				scannerThreadFactory.distribute(coordinatorPort, localWorkers);
 			
 			// start scanning automatically
 			if (autoStart) {
@@ -6,9 +6,11 @@
 package net.azib.ipscan.config;
 
 import net.azib.ipscan.core.PluginLoader;
+import net.azib.ipscan.core.net.NeighborTable;
 import net.azib.ipscan.di.Injector;
 import net.azib.ipscan.exporters.*;
 import net.azib.ipscan.fetchers.*;
+import net.azib.ipscan.util.DNSCache;
 
 /**
  * This class is the dependency injection configuration
@@ -17,9 +19,10 @@ import net.azib.ipscan.fetchers.*;
  */
 public class ComponentRegistry {
 	public void register(Injector i) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+		i.register(DNSCache.class);
 		i.register(IPFetcher.class, PingFetcher.class, PingTTLFetcher.class, HostnameFetcher.class, PortsFetcher.class);
-		i.register(MACFetcher.class, (MACFetcher) Class.forName(MACFetcher.class.getPackage().getName() +
-				(Platform.WINDOWS ? ".WinMACFetcher" : Platform.LINUX ? ".LinuxMACFetcher" : ".UnixMACFetcher")).newInstance());
+		i.register(MACFetcher.class, Platform.LINUX ? new LinuxMACFetcher(i.require(NeighborTable.class)) :
+				(MACFetcher) Class.forName(MACFetcher.class.getPackage().getName() + (Platform.WINDOWS ? ".WinMACFetcher" : ".UnixMACFetcher")).newInstance());
 		i.register(CommentFetcher.class, FilteredPortsFetcher.class, WebDetectFetcher.class, HTTPSenderFetcher.class,
 			NetBIOSInfoFetcher.class, PacketLossFetcher.class, HTTPProxyFetcher.class, MACVendorFetcher.class);
 		i.register(TXTExporter.class, CSVExporter.class, XMLExporter.class, IPListExporter.class, SQLExporter.class);
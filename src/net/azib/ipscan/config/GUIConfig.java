@@ -5,6 +5,7 @@
  */
 package net.azib.ipscan.config;
 
+import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.fetchers.Fetcher;
 import net.azib.ipscan.fetchers.HostnameFetcher;
 import net.azib.ipscan.fetchers.IPFetcher;
@@ -31,7 +32,20 @@ public class GUIConfig {
 	
 	public int[] detailsWindowSize;
 	
-	public enum DisplayMethod {ALL, ALIVE, PORTS}
+	public enum DisplayMethod {
+		ALL, ALIVE, PORTS;
+
+		/**
+		 * @return whether results of this type are shown in the list
+		 */
+		public boolean shows(ResultType type) {
+			switch (this) {
+				case ALIVE: return type.ordinal() >= ResultType.ALIVE.ordinal();
+				case PORTS: return type == ResultType.WITH_PORTS;
+				default: return true;
+			}
+		}
+	}
 
 	GUIConfig(Preferences preferences) {
 		this.preferences = preferences;
@@ -27,6 +27,7 @@ public class GUIRegistry {
 		i.register(SWTAwareStateMachine.class, stateMachine);
 		i.register(StateMachine.class, stateMachine);
 		i.register(RangeFeederGUI.class, RandomFeederGUI.class, FileFeederGUI.class);
+		if (Platform.LINUX) i.register(NeighborFeederGUI.class);
 
 		i.register(FeederRegistry.class, i.require(FeederGUIRegistry.class));
 	}
@@ -5,6 +5,11 @@
  */
 package net.azib.ipscan.config;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.prefs.Preferences;
 
 /**
@@ -17,16 +22,34 @@ public class ScannerConfig {
 
 	public int maxThreads;
 	public int threadDelay;
+	public boolean useVirtualThreads;
+	public int maxVirtualThreads;
+	public boolean adaptiveConcurrency;
+	public boolean concurrentFetchers;
+	public boolean pipelinedScanning;
+	public int maxServiceThreads;
+	public int maxServiceHostsPerSecond;
+	public int maxHostsPerSecond;
+	public int maxProbesPerSecond;
+	public int maxThreadsPerHost;
+	public int maxThreadsPerSubnet;
 	public boolean scanDeadHosts;
 	public String selectedPinger;
 	public int pingTimeout;
+	public int minPingTimeout;
 	public int pingCount;
+	public boolean concurrentPings;
 	public boolean skipBroadcastAddresses;
+	public int checkpointInterval;
+	public int dnsCacheMaxTTL;
 	public int portTimeout;
 	public boolean adaptPortTimeout;
 	public int minPortTimeout;
 	public String portString;
 	public boolean useRequestedPorts;
+	public boolean useNonBlockingPorts;
+	public int maxPendingConnects;
+	public int maxConnectsPerHost;
 	public String notAvailableText;
 	public String notScannedText;
 
@@ -40,16 +63,34 @@ public class ScannerConfig {
 		
 		maxThreads = preferences.getInt("maxThreads", Platform.CRIPPLED_WINDOWS ? 10 : 100);
 		threadDelay = preferences.getInt("threadDelay", 20);
+		useVirtualThreads = preferences.getBoolean("useVirtualThreads", false);
+		maxVirtualThreads = preferences.getInt("maxVirtualThreads", 10000);
+		adaptiveConcurrency = preferences.getBoolean("adaptiveConcurrency", false);
+		concurrentFetchers = preferences.getBoolean("concurrentFetchers", false);
+		pipelinedScanning = preferences.getBoolean("pipelinedScanning", false);
+		maxServiceThreads = preferences.getInt("maxServiceThreads", Platform.CRIPPLED_WINDOWS ? 5 : 20);
+		maxServiceHostsPerSecond = preferences.getInt("maxServiceHostsPerSecond", 0);
+		maxHostsPerSecond = preferences.getInt("maxHostsPerSecond", 0);
+		maxProbesPerSecond = preferences.getInt("maxProbesPerSecond", 0);
+		maxThreadsPerHost = preferences.getInt("maxThreadsPerHost", 0);
+		maxThreadsPerSubnet = preferences.getInt("maxThreadsPerSubnet", 0);
 		scanDeadHosts = preferences.getBoolean("scanDeadHosts", false);
 		selectedPinger = preferences.get("selectedPinger", Platform.WINDOWS ? "pinger.windows" : "pinger.java");
 		pingTimeout = preferences.getInt("pingTimeout", 2000);
+		minPingTimeout = preferences.getInt("minPingTimeout", 500);
 		pingCount = preferences.getInt("pingCount", 3);
+		concurrentPings = preferences.getBoolean("concurrentPings", false);
 		skipBroadcastAddresses = preferences.getBoolean("skipBroadcastAddresses", true);
+		checkpointInterval = preferences.getInt("checkpointInterval", 0);
+		dnsCacheMaxTTL = preferences.getInt("dnsCacheMaxTTL", 3600);
 		portTimeout = preferences.getInt("portTimeout", 2000);
 		adaptPortTimeout = preferences.getBoolean("adaptPortTimeout", !Platform.CRIPPLED_WINDOWS);
 		minPortTimeout = preferences.getInt("minPortTimeout", 100);
 		portString = preferences.get("portString", "80,443,8080");
 		useRequestedPorts = preferences.getBoolean("useRequestedPorts", true);
+		useNonBlockingPorts = preferences.getBoolean("useNonBlockingPorts", false);
+		maxPendingConnects = preferences.getInt("maxPendingConnects", Platform.CRIPPLED_WINDOWS ? 100 : 1000);
+		maxConnectsPerHost = preferences.getInt("maxConnectsPerHost", 1);
 		notAvailableText = preferences.get("notAvailableText", Labels.getLabel("fetcher.value.notAvailable"));
 		notScannedText = preferences.get("notScannedText", Labels.getLabel("fetcher.value.notScanned"));
 	}
@@ -60,17 +101,75 @@ public class ScannerConfig {
 	public void store() {
 		preferences.putInt("maxThreads", maxThreads);
 		preferences.putInt("threadDelay", threadDelay);
+		preferences.putBoolean("useVirtualThreads", useVirtualThreads);
+		preferences.putInt("maxVirtualThreads", maxVirtualThreads);
+		preferences.putBoolean("adaptiveConcurrency", adaptiveConcurrency);
+		preferences.putBoolean("concurrentFetchers", concurrentFetchers);
+		preferences.putBoolean("pipelinedScanning", pipelinedScanning);
+		preferences.putInt("maxServiceThreads", maxServiceThreads);
+		preferences.putInt("maxServiceHostsPerSecond", maxServiceHostsPerSecond);
+		preferences.putInt("maxHostsPerSecond", maxHostsPerSecond);
+		preferences.putInt("maxProbesPerSecond", maxProbesPerSecond);
+		preferences.putInt("maxThreadsPerHost", maxThreadsPerHost);
+		preferences.putInt("maxThreadsPerSubnet", maxThreadsPerSubnet);
 		preferences.putBoolean("scanDeadHosts", scanDeadHosts);
 		preferences.put("selectedPinger", selectedPinger);
 		preferences.putInt("pingTimeout", pingTimeout);
+		preferences.putInt("minPingTimeout", minPingTimeout);
 		preferences.putInt("pingCount", pingCount);
+		preferences.putBoolean("concurrentPings", concurrentPings);
 		preferences.putBoolean("skipBroadcastAddresses", skipBroadcastAddresses);
+		preferences.putInt("checkpointInterval", checkpointInterval);
+		preferences.putInt("dnsCacheMaxTTL", dnsCacheMaxTTL);
 		preferences.putInt("portTimeout", portTimeout);
 		preferences.putBoolean("adaptPortTimeout", adaptPortTimeout);
 		preferences.putInt("minPortTimeout", minPortTimeout);
 		preferences.put("portString", portString);
 		preferences.putBoolean("useRequestedPorts", useRequestedPorts);
+		preferences.putBoolean("useNonBlockingPorts", useNonBlockingPorts);
+		preferences.putInt("maxPendingConnects", maxPendingConnects);
+		preferences.putInt("maxConnectsPerHost", maxConnectsPerHost);
 		preferences.put("notAvailableText", notAvailableText);
 		preferences.put("notScannedText", notScannedText);
 	}
+
+	/**
+	 * @return all the settings as name-value pairs, e.g. for passing them to another process
+	 */
+	public final Map<String, String> toMap() {
+		Map<String, String> values = new LinkedHashMap<>();
+		try {
+			for (Field field : settingFields()) {
+				Object value = field.get(this);
+				if (value != null) values.put(field.getName(), value.toString());
+			}
+		}
+		catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		return values;
+	}
+
+	/**
+	 * Applies the settings, previously returned by {@link #toMap()}, without storing them.
+	 * Unknown names are ignored.
+	 */
+	public final void apply(Map<String, String> values) {
+		for (Field field : settingFields()) {
+			String value = values.get(field.getName());
+			if (value == null) continue;
+			try {
+				if (field.getType() == int.class) field.setInt(this, Integer.parseInt(value));
+				else if (field.getType() == boolean.class) field.setBoolean(this, Boolean.parseBoolean(value));
+				else field.set(this, value);
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static Field[] settingFields() {
+		return Arrays.stream(ScannerConfig.class.getFields()).filter(f -> !Modifier.isStatic(f.getModifiers())).toArray(Field[]::new);
+	}
 }
@@ -0,0 +1,104 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.util.ResizableSemaphore;
+
+import java.util.logging.Logger;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Adapts the number of addresses scanned at once to the network conditions (AIMD - additive increase, multiplicative decrease).
+ * Pingers and port scanning report outcomes of their probes; if the ratio of timeouts and errors in a window of probes
+ * grows noticeably above the lowest ratio seen during the scan, the network is considered congested and concurrency is halved,
+ * otherwise it is slowly increased up to the configured maximum.
+ * The controller is enabled with {@link ScannerConfig#adaptiveConcurrency}.
+ */
+public class ConcurrencyController {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	/** number of probe outcomes in a window */
+	static final int WINDOW_SIZE = 100;
+	/** how much the failure ratio may exceed the baseline before concurrency is decreased */
+	static final double TOLERATED_FAILURE_RATIO = 0.1;
+
+	private ResizableSemaphore permits;
+	private int maxLimit;
+	private int successes, timeouts, errors;
+	private double baselineFailureRatio;
+
+	/**
+	 * Starts controlling the specified permits, beginning with a fraction of their current limit.
+	 */
+	public synchronized void start(ResizableSemaphore permits) {
+		this.permits = permits;
+		this.maxLimit = permits.getLimit();
+		this.baselineFailureRatio = 1;
+		successes = timeouts = errors = 0;
+		permits.setLimit(max(1, maxLimit / 10));
+	}
+
+	public synchronized void stop() {
+		permits = null;
+	}
+
+	/**
+	 * @return current concurrency limit, or 0 if the controller is not active
+	 */
+	public synchronized int getLimit() {
+		return permits == null ? 0 : permits.getLimit();
+	}
+
+	/**
+	 * A probe has got a reply (positive or negative)
+	 */
+	public void recordSuccess() {
+		record(1, 0, 0);
+	}
+
+	/**
+	 * A probe has got no reply in time
+	 */
+	public void recordTimeout() {
+		record(0, 1, 0);
+	}
+
+	/**
+	 * A probe has failed with an error, e.g. an ICMP unreachable, which routers send (or not) under load
+	 */
+	public void recordError() {
+		record(0, 0, 1);
+	}
+
+	public synchronized void record(int successes, int timeouts, int errors) {
+		if (permits == null) return;
+		this.successes += successes;
+		this.timeouts += timeouts;
+		this.errors += errors;
+		if (this.successes + this.timeouts + this.errors >= WINDOW_SIZE) adjust();
+	}
+
+	private void adjust() {
+		int total = successes + timeouts + errors;
+		double failureRatio = (double) (timeouts + errors) / total;
+		// the baseline follows the lowest ratio, but slowly drifts up in case the network has changed
+		baselineFailureRatio = failureRatio < baselineFailureRatio ? failureRatio : baselineFailureRatio + (failureRatio - baselineFailureRatio) / 16;
+
+		int limit = permits.getLimit();
+		if (failureRatio > baselineFailureRatio + TOLERATED_FAILURE_RATIO)
+			limit = max(1, limit / 2);
+		else
+			limit = min(maxLimit, limit + max(1, maxLimit / 20));
+		permits.setLimit(limit);
+
+		LOG.fine("Window: " + successes + " replies, " + timeouts + " timeouts, " + errors + " errors, concurrency " + limit);
+		successes = timeouts = errors = 0;
+	}
+}
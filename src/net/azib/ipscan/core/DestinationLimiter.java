@@ -0,0 +1,147 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.ScannerConfig;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static net.azib.ipscan.util.InetAddressUtils.subnetOf;
+
+/**
+ * Limits the number of addresses scanned at once per destination host and per subnet (/24 or /64),
+ * so that a single network is not flooded even if many threads are allowed in total.
+ * Addresses, which destinations are saturated, are put aside and scanned later,
+ * letting the addresses of other subnets proceed in the meantime.
+ */
+public class DestinationLimiter {
+	/** Max number of addresses put aside while their destinations are saturated */
+	static final int MAX_DEFERRED = 1024;
+
+	private final int maxPerHost;
+	private final int maxPerSubnet;
+	private final Map<InetAddress, Integer> hostCounts = new HashMap<>();
+	private final Map<InetAddress, Integer> subnetCounts = new HashMap<>();
+	/** Deferred addresses grouped by subnet, in the order of their arrival */
+	private final Map<InetAddress, Deque<ScanningSubject>> deferred = new LinkedHashMap<>();
+	private int deferredCount;
+
+	public DestinationLimiter(ScannerConfig config) {
+		this(config.maxThreadsPerHost, config.maxThreadsPerSubnet);
+	}
+
+	/**
+	 * @param maxPerHost max addresses scanned at once per host, 0 means unlimited
+	 * @param maxPerSubnet max addresses scanned at once per subnet, 0 means unlimited
+	 */
+	DestinationLimiter(int maxPerHost, int maxPerSubnet) {
+		this.maxPerHost = maxPerHost;
+		this.maxPerSubnet = maxPerSubnet;
+	}
+
+	public boolean isLimited() {
+		return maxPerHost > 0 || maxPerSubnet > 0;
+	}
+
+	/**
+	 * Starts scanning of the subject if its destination allows it, otherwise defers it.
+	 * @return true if the subject can be scanned right now, false if it was deferred
+	 */
+	public synchronized boolean offer(ScanningSubject subject) {
+		if (!isLimited()) return true;
+		InetAddress subnet = subnetOf(subject.getAddress());
+		Deque<ScanningSubject> queue = deferred.get(subnet);
+		// don't overtake the addresses of the same subnet that are already waiting
+		if (queue == null && !isSaturated(subject.getAddress(), subnet)) {
+			acquire(subject.getAddress(), subnet);
+			return true;
+		}
+		deferred.computeIfAbsent(subnet, k -> new ArrayDeque<>()).add(subject);
+		deferredCount++;
+		return false;
+	}
+
+	/**
+	 * @return a deferred subject, which destination is not saturated anymore (scanning of it is started), or null
+	 */
+	public synchronized ScanningSubject poll() {
+		for (Iterator<Map.Entry<InetAddress, Deque<ScanningSubject>>> i = deferred.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<InetAddress, Deque<ScanningSubject>> entry = i.next();
+			InetAddress subnet = entry.getKey();
+			if (isSaturated(subnetCounts, subnet, maxPerSubnet)) continue;
+
+			Deque<ScanningSubject> queue = entry.getValue();
+			for (Iterator<ScanningSubject> j = queue.iterator(); j.hasNext(); ) {
+				ScanningSubject subject = j.next();
+				if (!isSaturated(hostCounts, subject.getAddress(), maxPerHost)) {
+					j.remove();
+					if (queue.isEmpty()) i.remove();
+					deferredCount--;
+					acquire(subject.getAddress(), subnet);
+					return subject;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Waits until a deferred subject can be scanned.
+	 * @return the subject (scanning of it is started) or null if the timeout has elapsed
+	 */
+	public synchronized ScanningSubject await(long timeoutMs) throws InterruptedException {
+		ScanningSubject subject = poll();
+		if (subject == null && deferredCount > 0) {
+			wait(timeoutMs);
+			subject = poll();
+		}
+		return subject;
+	}
+
+	/**
+	 * Must be called when scanning of a subject, allowed by {@link #offer} or {@link #poll}, is finished.
+	 */
+	public synchronized void release(ScanningSubject subject) {
+		if (!isLimited()) return;
+		decrement(hostCounts, subject.getAddress(), maxPerHost);
+		decrement(subnetCounts, subnetOf(subject.getAddress()), maxPerSubnet);
+		notifyAll();
+	}
+
+	public synchronized boolean hasDeferred() {
+		return deferredCount > 0;
+	}
+
+	/**
+	 * @return true if no more subjects should be deferred
+	 */
+	public synchronized boolean isFull() {
+		return deferredCount >= MAX_DEFERRED;
+	}
+
+	private boolean isSaturated(InetAddress address, InetAddress subnet) {
+		return isSaturated(hostCounts, address, maxPerHost) || isSaturated(subnetCounts, subnet, maxPerSubnet);
+	}
+
+	private void acquire(InetAddress address, InetAddress subnet) {
+		if (maxPerHost > 0) hostCounts.merge(address, 1, Integer::sum);
+		if (maxPerSubnet > 0) subnetCounts.merge(subnet, 1, Integer::sum);
+	}
+
+	private static boolean isSaturated(Map<InetAddress, Integer> counts, InetAddress key, int max) {
+		return max > 0 && counts.getOrDefault(key, 0) >= max;
+	}
+
+	private static void decrement(Map<InetAddress, Integer> counts, InetAddress key, int max) {
+		if (max > 0) counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+	}
+}
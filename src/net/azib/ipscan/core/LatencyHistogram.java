@@ -0,0 +1,98 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.max;
+
+/**
+ * Scan-wide histogram of latencies in nanoseconds, with HDR-style log-linear buckets:
+ * each power of 2 is split into {@link #SUB_BUCKETS}/2 linear buckets, so values are kept with about 3% precision
+ * over the whole range in a fixed amount of memory, and percentiles can be computed at any time.
+ */
+public class LatencyHistogram {
+	static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+	private final long[] counts = new long[indexOf(Long.MAX_VALUE) + 1];
+	private long count;
+	private long total;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**
+	 * @param nanos latency to add, negative values are ignored
+	 */
+	public synchronized void record(long nanos) {
+		if (nanos < 0) return;
+		counts[indexOf(nanos)]++;
+		count++;
+		total += nanos;
+		if (nanos < min) min = nanos;
+		if (nanos > max) max = nanos;
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getMin() {
+		return count > 0 ? min : 0;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized long getMean() {
+		return count > 0 ? total / count : 0;
+	}
+
+	/**
+	 * @param percentile from 0 to 100
+	 * @return the highest value of the bucket, where the percentile falls, not greater than the recorded maximum
+	 */
+	public synchronized long getPercentile(double percentile) {
+		long rank = max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.min(highestValueOf(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * @return number of values in the range, precise to the bucket boundaries:
+	 * buckets are counted by their lowest values, so adjacent ranges never count the same bucket twice
+	 */
+	public synchronized long getCount(long fromNanos, long toNanos) {
+		long result = 0;
+		for (int i = indexOf(max(0, fromNanos)); i < counts.length && lowestValueOf(i) < toNanos; i++) {
+			if (lowestValueOf(i) >= fromNanos) result += counts[i];
+		}
+		return result;
+	}
+
+	static int indexOf(long value) {
+		int magnitude = 63 - numberOfLeadingZeros(value | 1);
+		int shift = max(0, magnitude - SUB_BUCKET_BITS + 1);
+		return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	static long lowestValueOf(int index) {
+		if (index < SUB_BUCKETS) return index;
+		int shift = index / HALF_SUB_BUCKETS - 1;
+		return (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+	}
+
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) return index;
+		int shift = index / HALF_SUB_BUCKETS - 1;
+		return lowestValueOf(index) + (1L << shift) - 1;
+	}
+}
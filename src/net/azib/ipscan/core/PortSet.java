@@ -0,0 +1,102 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compact set of port numbers: a bitmap, which grows only up to the highest port in it (8 KB at most),
+ * instead of a boxed Integer and a tree node per port.
+ * <p>
+ * It is safe for concurrent adding, e.g. by workers scanning ports of the same host in parallel.
+ */
+public class PortSet {
+	private final BitSet ports;
+
+	public PortSet() {
+		this(new BitSet());
+	}
+
+	private PortSet(BitSet ports) {
+		this.ports = ports;
+	}
+
+	public synchronized void add(int port) {
+		ports.set(port);
+	}
+
+	public void addAll(PortSet that) {
+		BitSet other = that.bits();
+		synchronized (this) {
+			ports.or(other);
+		}
+	}
+
+	public synchronized boolean contains(int port) {
+		return port >= 0 && ports.get(port);
+	}
+
+	public synchronized int size() {
+		return ports.cardinality();
+	}
+
+	public synchronized boolean isEmpty() {
+		return ports.isEmpty();
+	}
+
+	public synchronized PortSet copy() {
+		return new PortSet(bits());
+	}
+
+	/**
+	 * @return the ports in ascending order
+	 */
+	public synchronized int[] toArray() {
+		return ports.stream().toArray();
+	}
+
+	/**
+	 * @return iterator over the ports in ascending order, which doesn't box them if {@link PrimitiveIterator.OfInt#nextInt()} is used
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		BitSet ports = bits();
+		return new PrimitiveIterator.OfInt() {
+			int next = ports.nextSetBit(0);
+
+			@Override public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override public int nextInt() {
+				if (next < 0) throw new NoSuchElementException();
+				int port = next;
+				next = ports.nextSetBit(port + 1);
+				return port;
+			}
+		};
+	}
+
+	/**
+	 * @return ports as ranges, e.g. 1,5-8,15, as accepted by {@link PortIterator}; two adjacent ports are not joined
+	 */
+	@Override public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int start = ports.nextSetBit(0); start >= 0; start = ports.nextSetBit(start)) {
+			int end = ports.nextClearBit(start) - 1;
+			if (sb.length() > 0) sb.append(',');
+			sb.append(start);
+			if (end > start) sb.append(end == start + 1 ? ',' : '-').append(end);
+			start = end + 1;
+		}
+		return sb.toString();
+	}
+
+	private synchronized BitSet bits() {
+		return (BitSet) ports.clone();
+	}
+}
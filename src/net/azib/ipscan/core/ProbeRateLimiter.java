@@ -0,0 +1,28 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.ScannerConfig;
+
+/**
+ * Scan-wide limiter of probes (packets or connection attempts) per second.
+ * All pingers and port scanning share the single instance.
+ * The rate is taken from {@link ScannerConfig#maxProbesPerSecond}, so changes apply to the next probes.
+ */
+public class ProbeRateLimiter extends RateLimiter {
+	private ScannerConfig config;
+
+	public ProbeRateLimiter(ScannerConfig config) {
+		super(0);
+		this.config = config;
+	}
+
+	@Override public void acquire() throws InterruptedException {
+		if (config != null && config.maxProbesPerSecond != getRate())
+			setRate(config.maxProbesPerSecond);
+		super.acquire();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.ScannerConfig;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static net.azib.ipscan.util.InetAddressUtils.subnetOf;
+
+/**
+ * Scan-wide round trip time estimator, which keeps the smoothed RTT and its variance per subnet (/24 or /64),
+ * the same way as TCP does it (Jacobson/Karels, RFC 6298).
+ * It learns from every completed ping and connect, and provides timeouts for the hosts of known subnets,
+ * even the ones that were not pinged yet, so that dead hosts and filtered ports fail fast
+ * once the latency of the network is known.
+ * <p>
+ * Timeouts are adapted only if {@link ScannerConfig#adaptPortTimeout} is enabled,
+ * and never go below {@link ScannerConfig#minPortTimeout} for ports or {@link ScannerConfig#minPingTimeout} for pings,
+ * as a lost ping reply makes the whole host look dead.
+ * <p>
+ * Estimates are cleared at the start of every scan, so that old latencies of the network are not used.
+ */
+public class RTTEstimator {
+	/** Samples needed before the estimate is trusted */
+	static final int MIN_SAMPLES = 3;
+	/** Estimates kept at most, e.g. for scans of random addresses */
+	static final int MAX_SUBNETS = 65536;
+
+	private final ScannerConfig config;
+	private final Map<InetAddress, Estimate> estimates = new ConcurrentHashMap<>();
+
+	public RTTEstimator(ScannerConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Learns from a completed round trip to the address, e.g. a ping reply or a connect that got SYN-ACK or RST.
+	 */
+	public void sample(InetAddress address, long rtt) {
+		InetAddress subnet = subnetOf(address);
+		Estimate estimate = estimates.get(subnet);
+		if (estimate == null) {
+			if (estimates.size() >= MAX_SUBNETS) estimates.clear();
+			estimate = estimates.computeIfAbsent(subnet, k -> new Estimate());
+		}
+		estimate.update(rtt);
+	}
+
+	/**
+	 * @param timeout the configured port timeout, which is the maximum
+	 * @return timeout adapted to the latency of the address' subnet, or the configured one if it is not known yet
+	 */
+	public int getTimeout(InetAddress address, int timeout) {
+		return adapt(address, timeout, config.minPortTimeout);
+	}
+
+	/**
+	 * @param timeout the configured ping timeout, which is the maximum
+	 * @return timeout adapted to the latency of the address' subnet, or the configured one if it is not known yet
+	 */
+	public int getPingTimeout(InetAddress address, int timeout) {
+		return adapt(address, timeout, config.minPingTimeout);
+	}
+
+	private int adapt(InetAddress address, int timeout, int minTimeout) {
+		if (!config.adaptPortTimeout) return timeout;
+		Estimate estimate = estimates.get(subnetOf(address));
+		if (estimate == null) return timeout;
+		int rto = estimate.getTimeout();
+		return rto < 0 ? timeout : min(max(rto, minTimeout), timeout);
+	}
+
+	/**
+	 * Forgets all the estimates, e.g. when a new scan is started
+	 */
+	public void clear() {
+		estimates.clear();
+	}
+
+	/**
+	 * Smoothed RTT and its variance of a single subnet
+	 */
+	static class Estimate {
+		private double srtt;
+		private double rttvar;
+		private int samples;
+
+		synchronized void update(long rtt) {
+			if (samples++ == 0) {
+				srtt = rtt;
+				rttvar = rtt / 2.0;
+			}
+			else {
+				rttvar += (abs(srtt - rtt) - rttvar) / 4;
+				srtt += (rtt - srtt) / 8;
+			}
+		}
+
+		/**
+		 * @return retransmission timeout in ms, or -1 if there are not enough samples yet
+		 */
+		synchronized int getTimeout() {
+			// at least 1 ms for the variance, as this is the granularity of the samples
+			return samples < MIN_SAMPLES ? -1 : (int) Math.ceil(srtt + max(1, 4 * rttvar));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token bucket rate limiter, shared among threads.
+ * Permits are handed out at evenly spaced moments, with a small burst allowed
+ * if the limiter has been idle, so pacing is smooth even at high rates.
+ */
+public class RateLimiter {
+	/** how much idle time can be accumulated for bursts */
+	static final long BURST_NANOS = MILLISECONDS.toNanos(50);
+
+	private double rate;
+	private long interval;
+	private long nextFreeTime = System.nanoTime();
+
+	/**
+	 * @param permitsPerSecond the rate, 0 means unlimited
+	 */
+	public RateLimiter(double permitsPerSecond) {
+		setRate(permitsPerSecond);
+	}
+
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @param permitsPerSecond the new rate, 0 means unlimited
+	 */
+	public synchronized void setRate(double permitsPerSecond) {
+		this.rate = max(0, permitsPerSecond);
+		this.interval = rate > 0 ? (long) (SECONDS.toNanos(1) / rate) : 0;
+	}
+
+	/**
+	 * Waits until the next permit becomes available.
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		long waitNanos = reserve();
+		if (waitNanos > 0) NANOSECONDS.sleep(waitNanos);
+	}
+
+	/**
+	 * Waits until the next permit becomes available, for use in loops that check the interrupted status.
+	 * @return false if the thread is interrupted (the interrupted status is preserved)
+	 */
+	public boolean pace() {
+		if (Thread.currentThread().isInterrupted()) return false;
+		try {
+			acquire();
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Reserves the next permit.
+	 * @return how long the caller must wait before using it, in nanoseconds
+	 */
+	synchronized long reserve() {
+		if (interval == 0) return 0;
+		long now = System.nanoTime();
+		// unused permits of the past accumulate only up to the burst size
+		nextFreeTime = max(nextFreeTime, now - BURST_NANOS);
+		long waitNanos = nextFreeTime - now;
+		nextFreeTime += interval;
+		return waitNanos;
+	}
+}
@@ -0,0 +1,388 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.GUIConfig;
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.feeders.Feeder;
+import net.azib.ipscan.feeders.FeederCreator;
+import net.azib.ipscan.feeders.FeederRegistry;
+import net.azib.ipscan.feeders.RescanFeeder;
+import net.azib.ipscan.fetchers.Fetcher;
+import net.azib.ipscan.fetchers.FetcherRegistry;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.core.ScanningResultFormat.escape;
+
+/**
+ * Checkpointing of long scans, so that they can be resumed after the program was terminated or the computer went to sleep.
+ * <p>
+ * The journal is a text file, which is only appended to while scanning:
+ * the header with the feeder, fetchers and config is followed by the results, which are kept in the list by the display method,
+ * and periodic checkpoints of the feeder position: the number of addresses taken from the feeder
+ * and those of them, which are not finished yet.
+ * Resumed scan skips the addresses that were already taken from the feeder, except the unfinished ones.
+ */
+public class ScanCheckpoint {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final String HEADER = "ipscan-checkpoint";
+	static final String FEEDER = "feeder";
+	static final String FETCHERS = "fetchers";
+	static final String CONFIG = "config";
+	static final String RESULT = "result";
+	static final String POSITION = "position";
+
+	/** Checkpoint interval in seconds, if not configured */
+	static final int DEFAULT_INTERVAL = 10;
+
+	private final ScannerConfig config;
+	private final FetcherRegistry fetcherRegistry;
+	private final FeederRegistry feederRegistry;
+	/** The display method decides which results are kept, all of them if there is no GUI */
+	private final GUIConfig guiConfig;
+
+	/** Explicitly requested journal file, e.g. from the command-line */
+	private File file;
+	/** Journal of the interrupted scan, which will be continued by the next scan */
+	private Journal resumed;
+	/** Settings of the user, which are replaced by those of the journal until the resumed scan is finished */
+	private Map<String, String> userConfig;
+
+	private PrintWriter out;
+	/** Number of addresses taken from the original feeder */
+	private long position;
+	/** Addresses taken from the feeder, which are not finished yet */
+	private final Set<InetAddress> unfinished = new LinkedHashSet<>();
+	private List<ScanningResult> resumedResults = emptyList();
+	private long lastCheckpointTime;
+
+	public ScanCheckpoint(ScannerConfig config, FetcherRegistry fetcherRegistry, FeederRegistry feederRegistry) {
+		this(config, fetcherRegistry, feederRegistry, null);
+	}
+
+	public ScanCheckpoint(ScannerConfig config, FetcherRegistry fetcherRegistry, FeederRegistry feederRegistry, GUIConfig guiConfig) {
+		this.config = config;
+		this.fetcherRegistry = fetcherRegistry;
+		this.feederRegistry = feederRegistry;
+		this.guiConfig = guiConfig;
+	}
+
+	/**
+	 * @return the default journal file, used if checkpoints are enabled in the preferences
+	 */
+	public static File defaultFile() {
+		return new File(System.getProperty("user.home"), ".ipscan/checkpoint.txt");
+	}
+
+	/**
+	 * Sets the journal file for the next scans, regardless of the configured checkpoint interval
+	 */
+	public void setFile(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the journal file for the next scan or null if checkpoints are disabled
+	 */
+	public File getFile() {
+		if (file != null) return file;
+		return config.checkpointInterval > 0 ? defaultFile() : null;
+	}
+
+	private long getIntervalMs() {
+		return (config.checkpointInterval > 0 ? config.checkpointInterval : DEFAULT_INTERVAL) * 1000L;
+	}
+
+	/**
+	 * Prepares for continuing of the scan, saved in the journal:
+	 * selects the same feeder, fetchers and config, so that the next scan will skip already finished addresses.
+	 * The config of the journal is used only for the resumed scan, the user's settings are restored when it is finished.
+	 */
+	public synchronized void resume(File file) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+			Journal journal = Journal.read(reader);
+			if (userConfig == null) userConfig = config.toMap();
+			config.apply(journal.config);
+			if (journal.fetcherIds.length > 0 && !Arrays.equals(journal.fetcherIds, selectedFetcherIds()))
+				fetcherRegistry.updateSelectedFetchers(journal.fetcherIds);
+			feederRegistry.select(journal.feederId);
+			findFeederCreator(journal.feederId).unserialize(journal.feederArgs);
+			this.file = file;
+			this.resumed = journal;
+		}
+		catch (IOException | RuntimeException e) {
+			restoreConfig();
+			throw new UserErrorException("checkpoint.failed", e);
+		}
+	}
+
+	private void restoreConfig() {
+		if (userConfig == null) return;
+		config.apply(userConfig);
+		userConfig = null;
+	}
+
+	/**
+	 * Starts journaling of a new scan or continues the resumed one.
+	 * @return the feeder to use for scanning, which keeps track of the position
+	 */
+	public synchronized Feeder start(Feeder feeder) {
+		Journal journal = resumed;
+		resumed = null;
+		resumedResults = emptyList();
+		File file = getFile();
+		// rescanning is not a continuation of any scan
+		if (file == null || feeder instanceof RescanFeeder) return feeder;
+
+		try {
+			if (file.getParentFile() != null) file.getParentFile().mkdirs();
+			out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, journal != null), UTF_8)));
+		}
+		catch (IOException e) {
+			throw new UserErrorException("checkpoint.failed", e);
+		}
+
+		unfinished.clear();
+		lastCheckpointTime = System.currentTimeMillis();
+		if (journal != null) {
+			position = journal.position;
+			resumedResults = new ArrayList<>(journal.results.values());
+			return new TrackingFeeder(feeder, journal.position, new ArrayList<>(journal.unfinished));
+		}
+
+		position = 0;
+		writeHeader(feeder);
+		return new TrackingFeeder(feeder, 0, emptyList());
+	}
+
+	/**
+	 * @return results of the resumed scan, which should be shown again
+	 */
+	public synchronized List<ScanningResult> getResumedResults() {
+		return resumedResults;
+	}
+
+	/**
+	 * Records the finished address, the result is saved to the journal if it is shown in the list,
+	 * so that the resumed scan has the same results as an uninterrupted one.
+	 */
+	public synchronized void scanned(ScanningResult result) {
+		if (out == null) return;
+		unfinished.remove(result.getAddress());
+		if (guiConfig == null || guiConfig.displayMethod.shows(result.getType()))
+			out.println(RESULT + '\t' + ScanningResultFormat.format(result));
+	}
+
+	/**
+	 * Records the address that was taken from the feeder, but was not scanned at all.
+	 */
+	public synchronized void skipped(InetAddress address) {
+		if (out != null) unfinished.remove(address);
+	}
+
+	/**
+	 * Saves the checkpoint if the interval has elapsed.
+	 */
+	public synchronized void update() {
+		if (out != null && System.currentTimeMillis() - lastCheckpointTime >= getIntervalMs())
+			checkpoint();
+	}
+
+	/**
+	 * Saves the last checkpoint and closes the journal.
+	 */
+	public synchronized void finish() {
+		restoreConfig();
+		if (out == null) return;
+		checkpoint();
+		out.close();
+		out = null;
+	}
+
+	private void checkpoint() {
+		StringBuilder line = new StringBuilder(POSITION).append('\t').append(position);
+		for (InetAddress address : unfinished) line.append('\t').append(address.getHostAddress());
+		out.println(line);
+		out.flush();
+		if (out.checkError()) LOG.log(WARNING, "Failed to write checkpoint to " + getFile());
+		lastCheckpointTime = System.currentTimeMillis();
+	}
+
+	private synchronized void taken(InetAddress address, boolean isNew) {
+		if (isNew) position++;
+		unfinished.add(address);
+	}
+
+	private void writeHeader(Feeder feeder) {
+		out.println(HEADER + '\t' + ScanningResultFormat.VERSION);
+		StringBuilder line = new StringBuilder(FEEDER).append('\t').append(feeder.getId());
+		for (String arg : findFeederCreator(feeder.getId()).serialize()) line.append('\t').append(escape(arg));
+		out.println(line);
+
+		line = new StringBuilder(FETCHERS);
+		for (String id : selectedFetcherIds()) line.append('\t').append(id);
+		out.println(line);
+
+		line = new StringBuilder(CONFIG);
+		for (Map.Entry<String, String> setting : config.toMap().entrySet())
+			line.append('\t').append(setting.getKey()).append('=').append(escape(setting.getValue()));
+		out.println(line);
+		out.flush();
+	}
+
+	private String[] selectedFetcherIds() {
+		return fetcherRegistry.getSelectedFetchers().stream().map(Fetcher::getId).toArray(String[]::new);
+	}
+
+	private FeederCreator findFeederCreator(String feederId) {
+		for (FeederCreator creator : feederRegistry) {
+			if (creator.getFeederId().equals(feederId)) return creator;
+		}
+		throw new IllegalArgumentException("Feeder unknown: " + feederId);
+	}
+
+	/**
+	 * The state of a scan, as read from the journal.
+	 */
+	static class Journal {
+		String feederId;
+		String[] feederArgs = {};
+		String[] fetcherIds = {};
+		Map<String, String> config = new HashMap<>();
+		/** Results of alive addresses, the later ones replace the earlier ones */
+		Map<InetAddress, ScanningResult> results = new LinkedHashMap<>();
+		long position;
+		Set<InetAddress> unfinished = new LinkedHashSet<>();
+
+		static Journal read(BufferedReader reader) throws IOException {
+			String line = reader.readLine();
+			if (line == null || !line.startsWith(HEADER))
+				throw new IOException("Not a checkpoint journal");
+			if (!line.equals(HEADER + '\t' + ScanningResultFormat.VERSION))
+				throw new IOException("Unsupported checkpoint journal version: " + line);
+
+			Journal journal = new Journal();
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t", -1);
+				try {
+					journal.readLine(parts[0], Arrays.copyOfRange(parts, 1, parts.length));
+				}
+				catch (IOException | RuntimeException e) {
+					// the last line can be incomplete if the program was killed while writing it
+					LOG.fine("Skipped broken checkpoint line: " + line);
+				}
+			}
+			if (journal.feederId == null)
+				throw new IOException("Feeder missing in the checkpoint journal");
+			// results could be saved after the last checkpoint
+			journal.unfinished.removeAll(journal.results.keySet());
+			return journal;
+		}
+
+		private void readLine(String type, String[] parts) throws IOException {
+			switch (type) {
+				case FEEDER:
+					feederId = parts[0];
+					feederArgs = Arrays.copyOfRange(parts, 1, parts.length);
+					break;
+				case FETCHERS:
+					fetcherIds = parts;
+					break;
+				case CONFIG:
+					for (String part : parts) {
+						int eq = part.indexOf('=');
+						config.put(part.substring(0, eq), part.substring(eq + 1));
+					}
+					break;
+				case RESULT:
+					ScanningResult result = ScanningResultFormat.parse(parts, 0);
+					results.put(result.getAddress(), result);
+					break;
+				case POSITION:
+					long taken = Long.parseLong(parts[0]);
+					Set<InetAddress> notFinished = new LinkedHashSet<>();
+					for (int i = 1; i < parts.length; i++) notFinished.add(InetAddress.getByName(parts[i]));
+					position = taken;
+					unfinished = notFinished;
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Keeps track of addresses taken from the original feeder.
+	 * When resuming, first yields the unfinished addresses and then skips all the addresses that were taken before.
+	 */
+	class TrackingFeeder implements Feeder {
+		private final Feeder feeder;
+		private final Iterator<InetAddress> toRescan;
+		private long skip;
+
+		TrackingFeeder(Feeder feeder, long skip, List<InetAddress> toRescan) {
+			this.feeder = feeder;
+			this.skip = skip;
+			this.toRescan = toRescan.iterator();
+		}
+
+		private void skipTaken() {
+			while (skip > 0 && feeder.hasNext()) {
+				feeder.next();
+				skip--;
+			}
+		}
+
+		@Override public boolean hasNext() {
+			if (toRescan.hasNext()) return true;
+			skipTaken();
+			return feeder.hasNext();
+		}
+
+		@Override public ScanningSubject next() {
+			if (toRescan.hasNext()) {
+				ScanningSubject subject = feeder.subject(toRescan.next());
+				taken(subject.getAddress(), false);
+				return subject;
+			}
+			skipTaken();
+			ScanningSubject subject = feeder.next();
+			taken(subject.getAddress(), true);
+			return subject;
+		}
+
+		@Override public int percentageComplete() {
+			return feeder.percentageComplete();
+		}
+
+		@Override public String getInfo() {
+			return feeder.getInfo();
+		}
+
+		@Override public boolean isLocalNetwork() {
+			return feeder.isLocalNetwork();
+		}
+
+		@Override public ScanningSubject subject(InetAddress ip) {
+			return feeder.subject(ip);
+		}
+
+		@Override public String getId() {
+			return feeder.getId();
+		}
+
+		@Override public String getName() {
+			return feeder.getName();
+		}
+	}
+}
@@ -5,18 +5,33 @@
  */
 package net.azib.ipscan.core;
 
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.net.AsyncConnector;
+import net.azib.ipscan.core.net.PingResult;
 import net.azib.ipscan.core.values.NotAvailable;
 import net.azib.ipscan.core.values.NotScanned;
 import net.azib.ipscan.feeders.Feeder;
 import net.azib.ipscan.fetchers.Fetcher;
 import net.azib.ipscan.fetchers.FetcherRegistry;
 import net.azib.ipscan.fetchers.MACFetcher;
+import net.azib.ipscan.fetchers.PingFetcher;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
+
 /**
  * Scanner functionality is encapsulated in this class.
  * It uses a list of fetchers to perform the actual scanning.
@@ -26,10 +41,33 @@ import java.util.logging.Logger;
 public class Scanner {
 	private static final Logger LOG = Logger.getLogger(Scanner.class.getName());
 	private FetcherRegistry fetcherRegistry;
+	private ScannerConfig config;
+	private RTTEstimator rttEstimator;
+	/** shared by the fetchers and pingers of the scan, closed after it */
+	private AsyncConnector connector;
 	private Map<Long, Fetcher> activeFetchers = new ConcurrentHashMap<>();
+	/** helper threads running fetchers on behalf of each scanning thread */
+	private Map<Long, Set<Thread>> helperThreads = new ConcurrentHashMap<>();
+	private ExecutorService helperPool;
+	private int discoveryFetcherCount;
 
 	public Scanner(FetcherRegistry fetcherRegistry) {
+		this(fetcherRegistry, null);
+	}
+
+	public Scanner(FetcherRegistry fetcherRegistry, ScannerConfig config) {
+		this(fetcherRegistry, config, null);
+	}
+
+	public Scanner(FetcherRegistry fetcherRegistry, ScannerConfig config, RTTEstimator rttEstimator) {
+		this(fetcherRegistry, config, rttEstimator, null);
+	}
+
+	public Scanner(FetcherRegistry fetcherRegistry, ScannerConfig config, RTTEstimator rttEstimator, AsyncConnector connector) {
 		this.fetcherRegistry = fetcherRegistry;
+		this.config = config;
+		this.rttEstimator = rttEstimator;
+		this.connector = connector;
 	}
 
 	/**
@@ -38,48 +76,112 @@ public class Scanner {
 	 * @param result where the results are injected
 	 */
 	public void scan(ScanningSubject subject, ScanningResult result) {
-		int fetcherIndex = 0;
+		scan(subject, result, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Executes only the specified range of registered fetchers, e.g. a single stage of a pipelined scan.
+	 * @param fromIndex index of the first fetcher to run
+	 * @param toIndex index after the last fetcher to run
+	 */
+	public void scan(ScanningSubject subject, ScanningResult result, int fromIndex, int toIndex) {
+		subject.rttEstimator = rttEstimator;
+		List<Fetcher> fetchers = new ArrayList<>(fetcherRegistry.getSelectedFetchers());
+		toIndex = Math.min(toIndex, fetchers.size());
+		if (helperPool != null && toIndex - fromIndex > 1)
+			new ConcurrentScan(subject, result, fetchers, fromIndex, toIndex).run();
+		else
+			scanSequentially(subject, result, fetchers, fromIndex, toIndex);
+
+		result.setMac((String) subject.getParameter(MACFetcher.ID));
+		result.setPingResult((PingResult) subject.getParameter(ScanningSubject.PARAMETER_PING_RESULT));
+		activeFetchers.remove(Thread.currentThread().getId());
+		
+		result.setType(subject.getResultType());
+	}
+
+	private void scanSequentially(ScanningSubject subject, ScanningResult result, List<Fetcher> fetchers, int fromIndex, int toIndex) {
 		boolean isScanningInterrupted = false;
-		for (Fetcher fetcher : fetcherRegistry.getSelectedFetchers()) {
+		for (int fetcherIndex = fromIndex; fetcherIndex < toIndex; fetcherIndex++) {
 			Object value = NotScanned.VALUE;
-			try {
-				activeFetchers.put(Thread.currentThread().getId(), fetcher);
-				if (!subject.isAddressAborted() && !isScanningInterrupted) {
-					// run the fetcher
-					value = fetcher.scan(subject);
-					// check if scanning was interrupted
-					isScanningInterrupted = Thread.currentThread().isInterrupted();
-					if (value == null)
-						value = isScanningInterrupted ? NotScanned.VALUE : NotAvailable.VALUE;
-				}
-			}
-			catch (Throwable e) {
-				LOG.log(Level.SEVERE, "", e);
+			if (!subject.isAddressAborted() && !isScanningInterrupted) {
+				value = fetch(fetchers.get(fetcherIndex), subject);
+				// check if scanning was interrupted
+				isScanningInterrupted = Thread.currentThread().isInterrupted();
 			}
 			// store the value
 			result.setValue(fetcherIndex, value);
-			fetcherIndex++;
 		}
-		result.setMac((String) subject.getParameter(MACFetcher.ID));
-		activeFetchers.remove(Thread.currentThread().getId());
-		
-		result.setType(subject.getResultType());
+	}
+
+	/**
+	 * Runs a single fetcher in the current thread.
+	 * @return the value to store in the result
+	 */
+	private Object fetch(Fetcher fetcher, ScanningSubject subject) {
+		Object value = NotScanned.VALUE;
+		try {
+			activeFetchers.put(Thread.currentThread().getId(), fetcher);
+			// run the fetcher
+			value = fetcher.scan(subject);
+			if (value == null)
+				value = Thread.currentThread().isInterrupted() ? NotScanned.VALUE : NotAvailable.VALUE;
+		}
+		catch (Throwable e) {
+			LOG.log(Level.SEVERE, "", e);
+		}
+		return value;
 	}
 
 	public void interrupt(Thread thread) {
 		Fetcher fetcher = activeFetchers.get(thread.getId());
 		if (fetcher != null) fetcher.cleanup();
+
+		Set<Thread> helpers = helperThreads.get(thread.getId());
+		if (helpers != null) for (Thread helper : helpers) interruptHelper(helper);
+	}
+
+	private void interruptHelper(Thread helper) {
+		Fetcher fetcher = activeFetchers.get(helper.getId());
+		if (fetcher != null) fetcher.cleanup();
+		helper.interrupt();
 	}
 	
 	/**
 	 * Init everything needed for scanning, including Fetchers
 	 */
 	public void init(Feeder feeder) {
+		// latencies of the previous scan may be outdated
+		if (rttEstimator != null) rttEstimator.clear();
+		discoveryFetcherCount = 0;
+		int fetcherIndex = 0;
 		for (Fetcher fetcher : fetcherRegistry.getSelectedFetchers()) {
 			fetcher.init(feeder);
+			fetcherIndex++;
+			if (fetcher instanceof PingFetcher) discoveryFetcherCount = fetcherIndex;
+		}
+		if (helperPool == null && config != null && config.concurrentFetchers) {
+			// not more helpers than scanning threads, the rest of the fetchers wait in the queue
+			int maxHelpers = Math.max(1, config.maxThreads);
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(maxHelpers, maxHelpers, 1, MINUTES, new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, getClass().getSimpleName() + " helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+			pool.allowCoreThreadTimeOut(true);
+			helperPool = pool;
 		}
 	}
 	
+	/**
+	 * Fetchers up to the last pinging one are enough to find out whether a host is alive,
+	 * so they can be run in a separate (discovery) stage of the scan, before the more expensive ones.
+	 * @return number of these fetchers at the start of the selected fetchers, valid after {@link #init(Feeder)}
+	 */
+	public int getDiscoveryFetcherCount() {
+		return discoveryFetcherCount;
+	}
+
 	/**
 	 * Cleanup after a scan
 	 */
@@ -88,5 +190,148 @@ public class Scanner {
 		for (Fetcher fetcher : fetcherRegistry.getSelectedFetchers()) {
 			fetcher.cleanup();
 		}
+		if (helperPool != null) {
+			helperPool.shutdown();
+			helperPool = null;
+		}
+		// the selector thread is started again by the next scan on demand
+		if (connector != null) connector.close();
+	}
+
+	/**
+	 * @return indexes of the preceding fetchers that the fetcher at the specified index must wait for
+	 */
+	static BitSet dependenciesOf(List<Fetcher> fetchers, int index) {
+		BitSet dependencies = new BitSet();
+		Collection<Class<? extends Fetcher>> types = fetchers.get(index).getDependencies();
+		for (int i = 0; i < index; i++) {
+			Fetcher preceding = fetchers.get(i);
+			if (types == null || types.stream().anyMatch(type -> type.isInstance(preceding)))
+				dependencies.set(i);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Runs fetchers of a single subject concurrently, as soon as the fetchers they depend on have completed.
+	 * Independent fetchers are handed over to helper threads, while the scanning thread waits for them.
+	 * Values are still stored at the index of each fetcher.
+	 */
+	private class ConcurrentScan {
+		private final ScanningSubject subject;
+		private final ScanningResult result;
+		private final List<Fetcher> fetchers;
+		private final List<BitSet> dependencies = new ArrayList<>();
+		private final BitSet started = new BitSet();
+		private final BitSet done = new BitSet();
+		private final Thread scanningThread = Thread.currentThread();
+		private final Set<Thread> helpers = ConcurrentHashMap.newKeySet();
+		private final BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+		/** fetchers of the subject running at once, including the one in the scanning thread */
+		private final int maxRunning = config.maxThreadsPerHost > 0 ? config.maxThreadsPerHost : Integer.MAX_VALUE;
+		private volatile boolean isScanningInterrupted;
+
+		ConcurrentScan(ScanningSubject subject, ScanningResult result, List<Fetcher> fetchers, int fromIndex, int toIndex) {
+			this.subject = subject;
+			this.result = result;
+			this.fetchers = fetchers;
+			for (int i = 0; i < fetchers.size(); i++) dependencies.add(dependenciesOf(fetchers, i));
+			// fetchers out of range are not run at all (they belong to another stage of the scan)
+			started.set(0, fromIndex);
+			started.set(toIndex, fetchers.size());
+			done.or(started);
+		}
+
+		void run() {
+			helperThreads.put(scanningThread.getId(), helpers);
+			try {
+				while (done.cardinality() < fetchers.size()) {
+					List<Integer> ready = new ArrayList<>();
+					for (int i = 0; i < fetchers.size(); i++) {
+						if (started.get(i) || dependencies.get(i).intersects(notDone())) continue;
+						if (subject.isAddressAborted() || isScanningInterrupted) {
+							started.set(i);
+							finish(i, NotScanned.VALUE);
+						}
+						else if (running() + ready.size() < maxRunning) {
+							// the others will be started when the running ones complete
+							started.set(i);
+							ready.add(i);
+						}
+					}
+
+					if (ready.size() == 1 && running() == 1) {
+						// nothing else to do, so no need to bother helpers
+						int i = ready.get(0);
+						finish(i, fetch(fetchers.get(i), subject));
+						if (scanningThread.isInterrupted()) isScanningInterrupted = true;
+					}
+					else {
+						for (int i : ready) runInHelper(i);
+						if (running() > 0) awaitHelper();
+					}
+				}
+			}
+			finally {
+				helperThreads.remove(scanningThread.getId());
+			}
+		}
+
+		private int running() {
+			return started.cardinality() - done.cardinality();
+		}
+
+		private BitSet notDone() {
+			BitSet notDone = (BitSet) done.clone();
+			notDone.flip(0, fetchers.size());
+			return notDone;
+		}
+
+		private void finish(int i, Object value) {
+			result.setValue(i, value);
+			done.set(i);
+		}
+
+		private void runInHelper(int i) {
+			helperPool.execute(() -> {
+				Thread helper = Thread.currentThread();
+				helpers.add(helper);
+				try {
+					// killing could have started before this helper was registered
+					if (isScanningInterrupted) helper.interrupt();
+					Object value = fetch(fetchers.get(i), subject);
+					if (helper.isInterrupted()) isScanningInterrupted = true;
+					result.setValue(i, value);
+				}
+				finally {
+					helpers.remove(helper);
+					activeFetchers.remove(helper.getId());
+					// don't leak the interrupt to the next task
+					Thread.interrupted();
+					completed.add(i);
+				}
+			});
+		}
+
+		private void awaitHelper() {
+			try {
+				done.set(completed.take());
+			}
+			catch (InterruptedException e) {
+				// scanning is being killed: stop the helpers, but still wait for them to finish
+				isScanningInterrupted = true;
+				for (Thread helper : helpers) interruptHelper(helper);
+				while (running() > 0) {
+					try {
+						done.set(completed.take());
+					}
+					catch (InterruptedException ignore) {
+					}
+				}
+				scanningThread.interrupt();
+			}
+			Integer i;
+			while ((i = completed.poll()) != null) done.set(i);
+		}
 	}
 }
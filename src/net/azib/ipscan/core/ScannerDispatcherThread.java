@@ -5,17 +5,23 @@
  */
 package net.azib.ipscan.core;
 
+import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.config.ScannerConfig;
 import net.azib.ipscan.core.state.ScanningState;
 import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.core.state.StateMachine.Transition;
 import net.azib.ipscan.core.state.StateTransitionListener;
 import net.azib.ipscan.feeders.Feeder;
+import net.azib.ipscan.util.ResizableSemaphore;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.azib.ipscan.core.state.ScanningState.KILLING;
@@ -28,7 +34,8 @@ import static net.azib.ipscan.util.InetAddressUtils.isLikelyBroadcast;
  * @author Anton Keks
  */
 public class ScannerDispatcherThread extends Thread implements ThreadFactory, StateTransitionListener {
-	
+	private static final Logger LOG = LoggerFactory.getLogger();
+
 	private static final long UI_UPDATE_INTERVAL_MS = 150;
 
 	private ScannerConfig config;
@@ -40,62 +47,109 @@ public class ScannerDispatcherThread extends Thread implements ThreadFactory, St
 	private AtomicInteger numActiveThreads = new AtomicInteger();
 	ThreadGroup threadGroup;
 	ExecutorService threadPool;
+	/** Limits the number of addresses scanned at once, the limit may be adapted while scanning */
+	ResizableSemaphore threadPermits;
+	private ConcurrencyController concurrencyController;
+	/** Journal of the scan for resuming it later, if enabled */
+	private ScanCheckpoint checkpoint;
+	/** Limits the number of addresses scanned at once per host and subnet */
+	DestinationLimiter destinationLimiter;
+	/** Limits the rate of starting scanning of new addresses */
+	RateLimiter hostRateLimiter;
+	/** Service stage of a pipelined scan, null if the scan is not pipelined */
+	ExecutorService servicePool;
+	/** Bounds the number of alive addresses handed over to the service stage */
+	Semaphore servicePermits;
+	RateLimiter serviceRateLimiter;
+	private boolean virtual;
+	/** Virtual threads cannot belong to our ThreadGroup, so they are tracked here for interruption */
+	private Set<Thread> virtualThreads = ConcurrentHashMap.newKeySet();
 	
 	private ScanningProgressCallback progressCallback;
 	private ScanningResultCallback resultsCallback;
 	
 	public ScannerDispatcherThread(Feeder feeder, Scanner scanner, StateMachine stateMachine, ScanningProgressCallback progressCallback, ScanningResultList scanningResults, ScannerConfig scannerConfig, ScanningResultCallback resultsCallback) {
+		this(feeder, scanner, stateMachine, progressCallback, scanningResults, scannerConfig, resultsCallback, new ConcurrencyController(), new ScanCheckpoint(scannerConfig, null, null));
+	}
+
+	public ScannerDispatcherThread(Feeder feeder, Scanner scanner, StateMachine stateMachine, ScanningProgressCallback progressCallback, ScanningResultList scanningResults, ScannerConfig scannerConfig, ScanningResultCallback resultsCallback, ConcurrencyController concurrencyController, ScanCheckpoint checkpoint) {
 		setName(getClass().getSimpleName());
 		this.config = scannerConfig;
+		this.concurrencyController = concurrencyController;
+		this.checkpoint = checkpoint;
 		this.stateMachine = stateMachine;
 		this.progressCallback = progressCallback;
 		this.resultsCallback = resultsCallback;
 		
 		this.threadGroup = new ThreadGroup(getName());
-		this.threadPool = Executors.newFixedThreadPool(config.maxThreads, this);
+		this.threadPool = config.useVirtualThreads ? newVirtualThreadPool() : null;
+		this.virtual = threadPool != null;
+		if (virtual)
+			this.threadPermits = new ResizableSemaphore(config.maxVirtualThreads);
+		else {
+			this.threadPool = Executors.newFixedThreadPool(config.maxThreads, this);
+			this.threadPermits = new ResizableSemaphore(config.maxThreads);
+		}
+		this.hostRateLimiter = new RateLimiter(hostsPerSecond(config));
+		this.destinationLimiter = new DestinationLimiter(config);
 		
 		// this thread is daemon because we want JVM to terminate it
 		// automatically if user closes the program (Main thread, that is)
 		setDaemon(true);
 		
-		this.feeder = feeder;
 		this.scanner = scanner;
 		this.scanningResultList = scanningResults;
 		try {
+			this.feeder = checkpoint.start(feeder);
 			this.scanningResultList.initNewScan(feeder);
 			// initialize in the main thread in order to catch exceptions gracefully
 			scanner.init(feeder);
 		}
 		catch (RuntimeException e) {
+			checkpoint.finish();
 			stateMachine.reset();
 			throw e;
 		}
+
+		if (config.pipelinedScanning && config.maxServiceThreads > 0) {
+			this.servicePool = Executors.newFixedThreadPool(config.maxServiceThreads, this);
+			// let as many addresses wait in the queue as there are service threads
+			this.servicePermits = new Semaphore(config.maxServiceThreads * 2);
+			this.serviceRateLimiter = new RateLimiter(config.maxServiceHostsPerSecond);
+		}
 	}
 
 	public void run() {
 		try {
 			// register this scan specific listener
 			stateMachine.addTransitionListener(this);
+			if (config.adaptiveConcurrency) concurrencyController.start(threadPermits);
+			for (ScanningResult result : checkpoint.getResumedResults()) {
+				resultsCallback.prepareForResults(result);
+				resultsCallback.consumeResults(result);
+			}
 			long lastNotifyTime = 0; 
 
 			try {
 				ScanningSubject subject = null;
-				while(feeder.hasNext() && stateMachine.inState(SCANNING)) {
-					// make a small delay between thread creation
-					Thread.sleep(config.threadDelay);
-					
-					if ((numActiveThreads.intValue() < config.maxThreads)) {					
-						subject = feeder.next();
-
-						if (config.skipBroadcastAddresses && isLikelyBroadcast(subject.getAddress(), subject.getIfAddress()))
-							continue;
-
-						ScanningResult result = scanningResultList.createResult(subject.getAddress());
-						resultsCallback.prepareForResults(result);
-																
-						// scan each IP in parallel, in a separate thread
-						AddressScannerTask scanningTask = new AddressScannerTask(subject, result);
-						threadPool.execute(scanningTask);
+				while((feeder.hasNext() || destinationLimiter.hasDeferred()) && stateMachine.inState(SCANNING)) {
+					if (acquireThread()) {
+						ScanningSubject next = nextSubject();
+						if (next == null) {
+							releaseThread();
+						}
+						else {
+							subject = next;
+							// keep the pace of thread creation
+							hostRateLimiter.acquire();
+
+							ScanningResult result = scanningResultList.createResult(subject.getAddress());
+							resultsCallback.prepareForResults(result);
+
+							// scan each IP in parallel, in a separate thread
+							AddressScannerTask scanningTask = new AddressScannerTask(subject, result);
+							threadPool.execute(scanningTask);
+						}
 					}
 					
 					// notify listeners of the progress we are doing (limiting the update rate)
@@ -103,6 +157,7 @@ public class ScannerDispatcherThread extends Thread implements ThreadFactory, St
 					if (now - lastNotifyTime >= UI_UPDATE_INTERVAL_MS && subject != null) {
 						lastNotifyTime = now;
 						progressCallback.updateProgress(subject.getAddress(), numActiveThreads.intValue(), feeder.percentageComplete());
+						checkpoint.update();
 					}
 				}
 			}
@@ -119,8 +174,11 @@ public class ScannerDispatcherThread extends Thread implements ThreadFactory, St
 
 			try {				
 				// now wait for all threads, which are still running
-				while (!threadPool.awaitTermination(UI_UPDATE_INTERVAL_MS, MILLISECONDS)) {
-					progressCallback.updateProgress(null, numActiveThreads.intValue(), 100);
+				awaitTermination(threadPool);
+				// discovery has finished, so no more addresses will come to the service stage
+				if (servicePool != null) {
+					servicePool.shutdown();
+					awaitTermination(servicePool);
 				}
 			} 
 			catch (InterruptedException e) {
@@ -133,11 +191,72 @@ public class ScannerDispatcherThread extends Thread implements ThreadFactory, St
 			stateMachine.complete();
 		}
 		finally {
+			checkpoint.finish();
+			concurrencyController.stop();
 			// unregister specific listener
 			stateMachine.removeTransitionListener(this);
 		}
 	}
 	
+	private void awaitTermination(ExecutorService pool) throws InterruptedException {
+		while (!pool.awaitTermination(UI_UPDATE_INTERVAL_MS, MILLISECONDS)) {
+			progressCallback.updateProgress(null, numActiveThreads.intValue(), 100);
+		}
+	}
+
+	/**
+	 * Virtual threads are available starting from Java 21, but the code is still compiled for older versions.
+	 * @return an executor that starts a new virtual thread for each task, or null if not supported
+	 */
+	static ExecutorService newVirtualThreadPool() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			LOG.warning("Virtual threads are not supported by Java " + System.getProperty("java.version") + ", using normal threads");
+			return null;
+		}
+	}
+
+	/**
+	 * @return configured rate of starting new addresses, derived from the older threadDelay if not set explicitly
+	 */
+	static double hostsPerSecond(ScannerConfig config) {
+		if (config.maxHostsPerSecond > 0) return config.maxHostsPerSecond;
+		return config.threadDelay > 0 ? 1000.0 / config.threadDelay : 0;
+	}
+
+	/**
+	 * Takes addresses, which were deferred because of saturated destinations, first.
+	 * Then reads the feeder further, deferring addresses of saturated destinations, so that other subnets are scanned meanwhile.
+	 * @return the next address to scan or null if there is none right now
+	 */
+	ScanningSubject nextSubject() throws InterruptedException {
+		ScanningSubject subject = destinationLimiter.poll();
+		while (subject == null && feeder.hasNext() && !destinationLimiter.isFull()) {
+			ScanningSubject next = feeder.next();
+			if (config.skipBroadcastAddresses && isLikelyBroadcast(next.getAddress(), next.getIfAddress())) {
+				checkpoint.skipped(next.getAddress());
+				continue;
+			}
+			if (destinationLimiter.offer(next)) subject = next;
+		}
+		// all destinations are saturated: wait for some of them to finish, but not for too long in order to keep reporting progress
+		return subject != null ? subject : destinationLimiter.await(UI_UPDATE_INTERVAL_MS);
+	}
+
+	/**
+	 * @return true if another address can be scanned right now
+	 */
+	private boolean acquireThread() throws InterruptedException {
+		// don't wait for too long in order to keep reporting progress
+		return threadPermits.tryAcquire(UI_UPDATE_INTERVAL_MS, MILLISECONDS);
+	}
+
+	private void releaseThread() {
+		threadPermits.release();
+	}
+
 	/**
 	 * Local stateMachine transition listener.
 	 * Currently used to kill all running threads if user says so.
@@ -146,8 +265,17 @@ public class ScannerDispatcherThread extends Thread implements ThreadFactory, St
 		if (state == KILLING) {
 			// try to interrupt all threads if we get to killing state
 			threadGroup.interrupt();
+			for (Thread thread : virtualThreads) interrupt(thread);
 		}
 	}
+
+	/**
+	 * Interrupts a virtual thread the same way as ThreadGroup interrupts the ones created by {@link #newThread(Runnable)}
+	 */
+	private void interrupt(Thread thread) {
+		scanner.interrupt(thread);
+		thread.interrupt();
+	}
 	
 	/**
 	 * This will create threads for the pool
@@ -182,15 +310,76 @@ public class ScannerDispatcherThread extends Thread implements ThreadFactory, St
 
 		public void run() {
 			// set current thread's name to ease debugging
-			Thread.currentThread().setName(getClass().getSimpleName() + ": " + subject);
-			
+			Thread thread = Thread.currentThread();
+			thread.setName(getClass().getSimpleName() + ": " + subject);
+			if (virtual) {
+				virtualThreads.add(thread);
+				// killing could have started before this thread was registered
+				if (stateMachine.inState(KILLING)) thread.interrupt();
+			}
+
+			boolean handedOver = false;
 			try {
-				scanner.scan(subject, result);
+				if (servicePool == null) {
+					scanner.scan(subject, result);
+					resultsCallback.consumeResults(result);
+				}
+				else handedOver = scanDiscoveryStage();
+			}
+			finally {
+				if (!handedOver) finished();
+				if (virtual) virtualThreads.remove(thread);
+				releaseThread();
+			}
+		}
+
+		/**
+		 * Runs the cheap fetchers (pinging) and hands over alive addresses to the service stage.
+		 * The discovery thread waits if the service stage cannot keep up.
+		 * @return true if the address was handed over
+		 */
+		private boolean scanDiscoveryStage() {
+			scanner.scan(subject, result, 0, scanner.getDiscoveryFetcherCount());
+			if (!subject.isAddressAborted()) {
+				try {
+					servicePermits.acquire();
+					servicePool.execute(this::scanServiceStage);
+					return true;
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					subject.abortAddressScanning();
+				}
+			}
+			// remaining values of dead addresses are filled right away
+			scanner.scan(subject, result, scanner.getDiscoveryFetcherCount(), Integer.MAX_VALUE);
+			resultsCallback.consumeResults(result);
+			return false;
+		}
+
+		private void scanServiceStage() {
+			try {
+				serviceRateLimiter.acquire();
+			}
+			catch (InterruptedException e) {
+				// scanning is being killed
+				subject.abortAddressScanning();
+			}
+			try {
+				scanner.scan(subject, result, scanner.getDiscoveryFetcherCount(), Integer.MAX_VALUE);
 				resultsCallback.consumeResults(result);
 			}
 			finally {
-				numActiveThreads.decrementAndGet();
+				finished();
+				servicePermits.release();
 			}
 		}
+
+		private void finished() {
+			// results of killed threads are incomplete, they need to be rescanned if resumed
+			if (result.isReady() && !stateMachine.inState(KILLING)) checkpoint.scanned(result);
+			numActiveThreads.decrementAndGet();
+			destinationLimiter.release(subject);
+		}
 	}
 }
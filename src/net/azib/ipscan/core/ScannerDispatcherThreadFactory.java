@@ -6,23 +6,47 @@
 package net.azib.ipscan.core;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.distributed.ScanCoordinator;
 import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.feeders.Feeder;
+import net.azib.ipscan.feeders.RescanFeeder;
 
 public class ScannerDispatcherThreadFactory {
 	private ScanningResultList scanningResults;
 	private Scanner scanner;
 	private StateMachine stateMachine;
 	private ScannerConfig scannerConfig;
+	private ConcurrencyController concurrencyController;
+	private ScanCheckpoint checkpoint;
+	private boolean distributed;
+	/** Port for workers of distributed scans, -1 if there are only local workers */
+	private int coordinatorPort = -1;
+	private int localWorkers;
 
-	public ScannerDispatcherThreadFactory(ScanningResultList scanningResults, Scanner scanner, StateMachine stateMachine, ScannerConfig scannerConfig) {
+	public ScannerDispatcherThreadFactory(ScanningResultList scanningResults, Scanner scanner, StateMachine stateMachine, ScannerConfig scannerConfig, ConcurrencyController concurrencyController, ScanCheckpoint checkpoint) {
 		this.scanningResults = scanningResults;
 		this.scanner = scanner;
 		this.stateMachine = stateMachine;
 		this.scannerConfig = scannerConfig;
+		this.concurrencyController = concurrencyController;
+		this.checkpoint = checkpoint;
 	}
 
-	public ScannerDispatcherThread createScannerThread(Feeder feeder, ScanningProgressCallback progressCallback, ScanningResultCallback resultsCallback) {
-		return new ScannerDispatcherThread(feeder, scanner, stateMachine, progressCallback, scanningResults, scannerConfig, resultsCallback);
+	/**
+	 * Makes the next scans distributed among workers, see {@link ScanCoordinator}.
+	 * Rescanning is still done locally.
+	 * @param port to listen for workers on, 0 means any free port, -1 means that only local workers are allowed
+	 * @param localWorkers number of worker processes to start on this computer
+	 */
+	public void distribute(int port, int localWorkers) {
+		this.distributed = true;
+		this.coordinatorPort = port;
+		this.localWorkers = localWorkers;
+	}
+
+	public Thread createScannerThread(Feeder feeder, ScanningProgressCallback progressCallback, ScanningResultCallback resultsCallback) {
+		if (distributed && !(feeder instanceof RescanFeeder))
+			return new ScanCoordinator(feeder, stateMachine, progressCallback, scanningResults, scannerConfig, resultsCallback, checkpoint, coordinatorPort, localWorkers);
+		return new ScannerDispatcherThread(feeder, scanner, stateMachine, progressCallback, scanningResults, scannerConfig, resultsCallback, concurrencyController, checkpoint);
 	}
 }
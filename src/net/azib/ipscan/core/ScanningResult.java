@@ -5,6 +5,8 @@
  */
 package net.azib.ipscan.core;
 
+import net.azib.ipscan.config.Labels;
+import net.azib.ipscan.core.net.PingResult;
 import net.azib.ipscan.fetchers.Fetcher;
 
 import java.net.InetAddress;
@@ -30,6 +32,7 @@ public class ScanningResult {
 
 	private InetAddress address;
 	private String mac;
+	private PingResult pingResult;
 
 	/** Scanning results, result of each Fetcher is an element */
 	private Object[] values;
@@ -59,6 +62,7 @@ public class ScanningResult {
 		values = new Object[values.length];
 		values[0] = address.getHostAddress();
 		type = ResultType.UNKNOWN;
+		pingResult = null;
 	}
 
 	public InetAddress getAddress() {
@@ -112,6 +116,17 @@ public class ScanningResult {
 		return mac;
 	}
 
+	public void setPingResult(PingResult pingResult) {
+		this.pingResult = pingResult;
+	}
+
+	/**
+	 * @return the result of pinging, used for latency statistics, or null if the host was not pinged
+	 */
+	public PingResult getPingResult() {
+		return pingResult;
+	}
+
 	/**
 	 * Returns all results for this IP address as a String.
 	 * This is used in showing the IP Details dialog box.
@@ -131,6 +146,16 @@ public class ScanningResult {
 			details.append(value != null ? value : "");
 			details.append(newLine);
 		}
+		if (pingResult != null && pingResult.isAlive()) {
+			details.append(Labels.getLabel("text.pingStatistics")).append(":\t");
+			details.append(String.format("%.1f/%.1f/%.1f/%.1f/%.1f", millis(pingResult.getShortestTimeNanos()), millis(pingResult.getAverageTimeNanos()),
+					millis(pingResult.getLongestTimeNanos()), millis(pingResult.getStdDevNanos()), millis(pingResult.getJitterNanos())));
+			details.append(Labels.getLabel("unit.ms")).append(newLine);
+		}
 		return details.toString();	
 	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
+	}
 }
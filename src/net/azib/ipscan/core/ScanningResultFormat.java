@@ -0,0 +1,181 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.core.ScanningResult.ResultType;
+import net.azib.ipscan.core.net.PingResult;
+import net.azib.ipscan.core.values.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Tab-separated text format of scanning results:
+ * the result type, the MAC address, the ping statistics and then the values, the first of them is the IP address.
+ * Used for saving of results to checkpoint journals and for passing them between processes.
+ * <p>
+ * Every value starts with a character denoting its type, so that parsed results are the same as the original ones
+ * for sorting and exporting. Values of unknown types are passed as text.
+ */
+public class ScanningResultFormat {
+	/** Version of the format, changes if the parsing of earlier lines will not work anymore */
+	public static final int VERSION = 3;
+
+	static final char NULL = '-';
+	static final char NOT_AVAILABLE = 'A';
+	static final char NOT_SCANNED = 'S';
+	static final char ADDRESS = '@';
+	static final char INTEGER = 'I';
+	static final char INTEGER_WITH_UNIT = 'U';
+	/** NumericRangeList displayed as a list */
+	static final char NUMBERS = 'N';
+	/** NumericRangeList displayed as ranges */
+	static final char NUMBER_RANGES = 'R';
+	static final char TEXT = 'T';
+	/** PingResult summary: packets,replies,min,avg,max,stddev,jitter,ttl, times in nanoseconds */
+	static final char PING = 'P';
+
+	/** Max numbers in a list, as many as there are ports */
+	static final int MAX_NUMBERS = 65536;
+
+	/**
+	 * @return the result as a single line
+	 */
+	public static String format(ScanningResult result) {
+		StringBuilder line = new StringBuilder().append(result.getType());
+		line.append('\t').append(encode(result.getMac()));
+		line.append('\t').append(encodePing(result.getPingResult()));
+		for (Object value : result.getValues()) line.append('\t').append(encode(value));
+		return line.toString();
+	}
+
+	/**
+	 * @param parts the line returned by {@link #format}, split by tabs
+	 * @param offset index of the first part to parse
+	 * @return new result with the same values as the formatted one
+	 */
+	public static ScanningResult parse(String[] parts, int offset) throws IOException {
+		Object[] values = new Object[Math.max(0, parts.length - offset - 3)];
+		for (int i = 0; i < values.length; i++) values[i] = decode(parts[offset + 3 + i]);
+		if (values.length == 0 || values[0] == null) throw new IOException("Address missing");
+		InetAddress address = InetAddress.getByName(values[0].toString());
+		ScanningResult result = new ScanningResult(address, values.length);
+		result.setValues(values);
+		result.setType(ResultType.valueOf(parts[offset]));
+		Object mac = decode(parts[offset + 1]);
+		result.setMac(mac != null ? mac.toString() : null);
+		result.setPingResult(decodePing(parts[offset + 2], address));
+		return result;
+	}
+
+	static String encodePing(PingResult ping) {
+		if (ping == null) return String.valueOf(NULL);
+		return PING + (ping.getPacketCount() + "," + ping.getReplyCount() + "," + ping.getShortestTimeNanos() + "," +
+				(ping.isAlive() ? ping.getAverageTimeNanos() : 0) + "," + ping.getLongestTimeNanos() + "," +
+				ping.getStdDevNanos() + "," + ping.getJitterNanos() + "," + ping.getTTL());
+	}
+
+	static PingResult decodePing(String value, InetAddress address) throws IOException {
+		if (value.equals(String.valueOf(NULL))) return null;
+		if (value.isEmpty() || value.charAt(0) != PING) throw new IOException("Ping statistics missing: " + value);
+		try {
+			String[] stats = value.substring(1).split(",");
+			if (stats.length != 8) throw new IllegalArgumentException("Wrong number of ping statistics");
+			PingResult ping = new PingResult(address, Integer.parseInt(stats[0]), Integer.parseInt(stats[1]), Long.parseLong(stats[2]),
+					Long.parseLong(stats[3]), Long.parseLong(stats[4]), Long.parseLong(stats[5]), Long.parseLong(stats[6]));
+			ping.setTTL(Integer.parseInt(stats[7]));
+			return ping;
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Malformed ping statistics: " + value, e);
+		}
+	}
+
+	static String encode(Object value) {
+		if (value == null) return String.valueOf(NULL);
+		if (value == NotAvailable.VALUE) return String.valueOf(NOT_AVAILABLE);
+		if (value == NotScanned.VALUE) return String.valueOf(NOT_SCANNED);
+		if (value instanceof InetAddressHolder) return ADDRESS + value.toString();
+		if (value instanceof Integer) return INTEGER + value.toString();
+		if (value instanceof IntegerWithUnit) {
+			IntegerWithUnit number = (IntegerWithUnit) value;
+			return INTEGER_WITH_UNIT + (number.intValue() + " " + number.getUnitLabel());
+		}
+		if (value instanceof NumericRangeList) {
+			NumericRangeList list = (NumericRangeList) value;
+			return (list.isDisplayAsRanges() ? NUMBER_RANGES : NUMBERS) + encodeNumbers(list.getNumbers());
+		}
+		return TEXT + escape(value);
+	}
+
+	static Object decode(String value) throws IOException {
+		if (value.isEmpty()) throw new IOException("Value type missing");
+		String data = value.substring(1);
+		try {
+			switch (value.charAt(0)) {
+				case NULL: return null;
+				case NOT_AVAILABLE: return NotAvailable.VALUE;
+				case NOT_SCANNED: return NotScanned.VALUE;
+				case ADDRESS: return new InetAddressHolder(InetAddress.getByName(data));
+				case INTEGER: return Integer.valueOf(data);
+				case INTEGER_WITH_UNIT:
+					int space = data.indexOf(' ');
+					return new IntegerWithUnit(Integer.parseInt(data.substring(0, space)), data.substring(space + 1));
+				case NUMBERS: return new NumericRangeList(decodeNumbers(data), false);
+				case NUMBER_RANGES: return new NumericRangeList(decodeNumbers(data), true);
+				case TEXT: return data;
+				default: throw new IOException("Unknown value type: " + value);
+			}
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Malformed value: " + value, e);
+		}
+	}
+
+	/**
+	 * @param numbers sorted numbers
+	 * @return e.g. 1,5-8,15
+	 */
+	static String encodeNumbers(int[] numbers) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < numbers.length; i++) {
+			int start = numbers[i];
+			while (i + 1 < numbers.length && numbers[i + 1] == numbers[i] + 1) i++;
+			if (sb.length() > 0) sb.append(',');
+			sb.append(start);
+			if (numbers[i] != start) sb.append('-').append(numbers[i]);
+		}
+		return sb.toString();
+	}
+
+	static int[] decodeNumbers(String ranges) {
+		if (ranges.isEmpty()) return new int[0];
+		String[] parts = ranges.split(",");
+		int count = 0;
+		int[][] bounds = new int[parts.length][];
+		for (int i = 0; i < parts.length; i++) {
+			int dash = parts[i].indexOf('-', 1);
+			int start = Integer.parseInt(dash < 0 ? parts[i] : parts[i].substring(0, dash));
+			int end = dash < 0 ? start : Integer.parseInt(parts[i].substring(dash + 1));
+			bounds[i] = new int[] {start, end};
+			count += end - start + 1;
+			if (end < start || count > MAX_NUMBERS) throw new IllegalArgumentException("Too many numbers: " + ranges);
+		}
+		int[] numbers = new int[count];
+		int n = 0;
+		for (int[] range : bounds) {
+			for (int number = range[0]; number <= range[1]; number++) numbers[n++] = number;
+		}
+		return numbers;
+	}
+
+	/**
+	 * @return the value that doesn't break the line
+	 */
+	public static String escape(Object value) {
+		return value == null ? "" : value.toString().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+}
@@ -6,6 +6,7 @@
 package net.azib.ipscan.core;
 
 import net.azib.ipscan.core.ScanningResult.ResultType;
+import net.azib.ipscan.core.net.PingResult;
 import net.azib.ipscan.core.state.ScanningState;
 import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.core.state.StateMachine.Transition;
@@ -244,6 +245,10 @@ public class ScanningResultList implements Iterable<ScanningResult> {
 		if (info == null) {
 			return;
 		}
+		PingResult pingResult = result.getPingResult();
+		if (pingResult != null && pingResult.isAlive()) {
+			info.latency.record(pingResult.getAverageTimeNanos());
+		}
 		if (result.getType() == ResultType.ALIVE) {
 			info.numAlive++;
 		}
@@ -274,6 +279,7 @@ public class ScanningResultList implements Iterable<ScanningResult> {
 		protected int numScanned;
 		protected int numAlive;
 		protected int numWithPorts;	
+		protected LatencyHistogram latency = new LatencyHistogram();
 		
 		/**
 		 * @return total scan time, in milliseconds.
@@ -307,6 +313,13 @@ public class ScanningResultList implements Iterable<ScanningResult> {
 			return numWithPorts;
 		}
 
+		/**
+		 * @return histogram of average ping times of alive hosts, in nanoseconds
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
 		/**
 		 * @return true if the scan is completed (not aborted) 
 		 */
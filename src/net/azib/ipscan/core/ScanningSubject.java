@@ -43,11 +43,13 @@ public class ScanningSubject {
 	/** Arbitrary parameters for sharing among different (but related) Fetchers */
 	private Map<String, Object> parameters;
 	/** The result type constant value, can be modified by some Fetchers */
-	private ResultType resultType = ResultType.UNKNOWN;
+	private volatile ResultType resultType = ResultType.UNKNOWN;
 	/** Whether we need to continue scanning or it can be aborted */
-	private boolean isAborted = false;
+	private volatile boolean isAborted = false;
 	/** Adapted after pinging port timeout - any fetcher can make use of it */
-	int adaptedPortTimeout = -1;
+	volatile int adaptedPortTimeout = -1;
+	/** Latency of the subnet learned during the scan, set by the Scanner, can be null */
+	RTTEstimator rttEstimator;
 
 	public ScanningSubject(InetAddress address) {
 		this(address, InetAddressUtils.getInterface(address));
@@ -61,7 +63,7 @@ public class ScanningSubject {
 		this.address = address;
 		this.netIf = netIf;
 		this.ifAddr = ifAddr;
-		this.parameters = new HashMap<>(); // single-threaded access only
+		this.parameters = Collections.synchronizedMap(new HashMap<>()); // independent fetchers may run concurrently
 		this.config = Config.getConfig().forScanner();
 	}
 	
@@ -173,8 +175,16 @@ public class ScanningSubject {
 				return adaptedPortTimeout;
 			}
 		}
-		// if no pinging results are available yet, return the full timeout
-		return config.portTimeout;
+		// if no pinging results are available yet, use the latency of the subnet, if already known
+		return rttEstimator != null ? rttEstimator.getTimeout(address, config.portTimeout) : config.portTimeout;
+	}
+
+	/**
+	 * @param timeout the configured ping timeout
+	 * @return ping timeout adapted to the latency of the subnet, if already known
+	 */
+	public int getAdaptedPingTimeout(int timeout) {
+		return rttEstimator != null ? rttEstimator.getPingTimeout(address, timeout) : timeout;
 	}
 
 	public boolean isLocal() {
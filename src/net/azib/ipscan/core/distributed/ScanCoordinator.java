@@ -0,0 +1,453 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.distributed;
+
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.*;
+import net.azib.ipscan.core.state.ScanningState;
+import net.azib.ipscan.core.state.StateMachine;
+import net.azib.ipscan.core.state.StateMachine.Transition;
+import net.azib.ipscan.core.state.StateTransitionListener;
+import net.azib.ipscan.feeders.Feeder;
+import net.azib.ipscan.fetchers.Fetcher;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.core.ScanningResultFormat.escape;
+import static net.azib.ipscan.core.state.ScanningState.KILLING;
+import static net.azib.ipscan.core.state.ScanningState.SCANNING;
+import static net.azib.ipscan.util.IOUtils.closeQuietly;
+import static net.azib.ipscan.util.InetAddressUtils.isLikelyBroadcast;
+
+/**
+ * Coordinator of a distributed scan: used instead of {@link ScannerDispatcherThread}, but doesn't scan by itself.
+ * <p>
+ * The addresses of the feeder are split into shards, which are handed over to {@link ScanWorker}s connected over TCP.
+ * Workers stream the results back, which are then reported the same way as local results,
+ * so the result table and exporters work as usual.
+ * Shards of a failed worker are reassigned to other workers, except the addresses which results were already received.
+ * <p>
+ * The protocol is line-based, tab-separated UTF-8 text: coordinator sends the selected fetchers, the config and then the shards,
+ * workers reply with a line per scanned address and a line per finished shard.
+ * Before that, workers must prove that they know the shared secret by replying with its HMAC of a random challenge.
+ * The secret is taken from the {@link #SECRET_ENV} environment variable, which is required if workers on other computers are allowed.
+ * If only workers on this computer are used, the coordinator listens on the loopback interface and generates the secret by itself.
+ */
+public class ScanCoordinator extends Thread implements StateTransitionListener {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	/** Environment variable with the secret shared by the coordinator and the workers */
+	public static final String SECRET_ENV = "IPSCAN_WORKER_SECRET";
+
+	static final String HELLO = "ipscan-coordinator";
+	static final String AUTH = "auth";
+	static final String FETCHERS = "fetchers";
+	static final String CONFIG = "config";
+	static final String SHARD = "shard";
+	static final String RESULT = "result";
+	static final String DONE = "done";
+	static final String END = "end";
+
+	/** Max number of addresses in a shard */
+	static final int SHARD_SIZE = 256;
+	/** Shards sent to a worker in advance, so that it doesn't need to wait for the next one */
+	static final int SHARDS_PER_WORKER = 2;
+	/** Workers, which haven't reported anything for this long, are considered dead */
+	static final int WORKER_TIMEOUT_MS = 5 * 60 * 1000;
+	/** Connections, which haven't authenticated for this long, are dropped */
+	static final int AUTH_TIMEOUT_MS = 10 * 1000;
+
+	private static final long UI_UPDATE_INTERVAL_MS = 150;
+
+	private final Feeder feeder;
+	private final StateMachine stateMachine;
+	private final ScanningProgressCallback progressCallback;
+	private final ScanningResultList scanningResultList;
+	private final ScannerConfig config;
+	private final ScanningResultCallback resultsCallback;
+	private final ScanCheckpoint checkpoint;
+	private final int localWorkers;
+	private final String secret;
+
+	private final ServerSocket serverSocket;
+	private final List<Process> processes = new ArrayList<>();
+	private final Set<WorkerConnection> connections = ConcurrentHashMap.newKeySet();
+
+	private final Object lock = new Object();
+	/** Shards of failed workers, which are handed out before the new ones */
+	private final Deque<Shard> failedShards = new ArrayDeque<>();
+	/** Shards currently being scanned by workers */
+	private final Map<Integer, Shard> assignedShards = new HashMap<>();
+	private int nextShardId;
+	private InetAddress lastAddress;
+
+	/**
+	 * @param port to listen for workers on, 0 means any free port, -1 means any free port on the loopback interface for local workers only
+	 * @param localWorkers number of worker processes to start on this computer
+	 */
+	public ScanCoordinator(Feeder feeder, StateMachine stateMachine, ScanningProgressCallback progressCallback, ScanningResultList scanningResults, ScannerConfig scannerConfig, ScanningResultCallback resultsCallback, ScanCheckpoint checkpoint, int port, int localWorkers) {
+		this(feeder, stateMachine, progressCallback, scanningResults, scannerConfig, resultsCallback, checkpoint, port, localWorkers, System.getenv(SECRET_ENV));
+	}
+
+	ScanCoordinator(Feeder feeder, StateMachine stateMachine, ScanningProgressCallback progressCallback, ScanningResultList scanningResults, ScannerConfig scannerConfig, ScanningResultCallback resultsCallback, ScanCheckpoint checkpoint, int port, int localWorkers, String secret) {
+		setName(getClass().getSimpleName());
+		setDaemon(true);
+		this.stateMachine = stateMachine;
+		this.progressCallback = progressCallback;
+		this.scanningResultList = scanningResults;
+		this.config = scannerConfig;
+		this.resultsCallback = resultsCallback;
+		this.checkpoint = checkpoint;
+		this.localWorkers = localWorkers;
+		try {
+			if (secret == null || secret.isEmpty()) {
+				// workers on other computers can't know a generated one
+				if (port >= 0) throw new UserErrorException("distributed.secret");
+				secret = newChallenge();
+			}
+			this.secret = secret;
+			this.feeder = checkpoint.start(feeder);
+			scanningResults.initNewScan(feeder);
+			this.serverSocket = port >= 0 ? new ServerSocket(port) : new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		}
+		catch (IOException e) {
+			checkpoint.finish();
+			stateMachine.reset();
+			throw new UserErrorException("distributed.failed", e);
+		}
+		catch (RuntimeException e) {
+			checkpoint.finish();
+			stateMachine.reset();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the port workers should connect to
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public void run() {
+		try {
+			stateMachine.addTransitionListener(this);
+			for (ScanningResult result : checkpoint.getResumedResults()) {
+				resultsCallback.prepareForResults(result);
+				resultsCallback.consumeResults(result);
+			}
+			Thread acceptor = new Thread(this::acceptWorkers, getName() + ": acceptor");
+			acceptor.setDaemon(true);
+			acceptor.start();
+			startLocalWorkers();
+
+			try {
+				while (stateMachine.inState(SCANNING) && !await(this::isFinished)) {
+					updateProgress();
+					checkpoint.update();
+				}
+				// killing could have started already
+				if (!stateMachine.inState(KILLING)) stateMachine.stop();
+				// let workers finish the shards they already have, unless killed
+				while (!stateMachine.inState(KILLING) && !await(assignedShards::isEmpty)) {
+					updateProgress();
+				}
+			}
+			catch (InterruptedException e) {
+				// just end the loop
+			}
+			stateMachine.complete();
+		}
+		finally {
+			closeQuietly(serverSocket);
+			// idle workers end by themselves, the rest are not needed anymore
+			for (WorkerConnection connection : connections) connection.close();
+			for (Process process : processes) process.destroy();
+			checkpoint.finish();
+			stateMachine.removeTransitionListener(this);
+		}
+	}
+
+	private boolean await(Condition condition) throws InterruptedException {
+		synchronized (lock) {
+			if (!condition.isMet()) lock.wait(UI_UPDATE_INTERVAL_MS);
+			return condition.isMet();
+		}
+	}
+
+	private void updateProgress() {
+		InetAddress address;
+		int pendingAddresses = 0, percentageComplete;
+		synchronized (lock) {
+			address = lastAddress;
+			for (Shard shard : assignedShards.values()) pendingAddresses += shard.remaining.size();
+			percentageComplete = feeder.percentageComplete();
+		}
+		progressCallback.updateProgress(address, pendingAddresses, percentageComplete);
+	}
+
+	/**
+	 * @return true if all addresses of the feeder are scanned
+	 */
+	private boolean isFinished() {
+		return !feeder.hasNext() && failedShards.isEmpty() && assignedShards.isEmpty();
+	}
+
+	private void startLocalWorkers() {
+		String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+		String address = serverSocket.getInetAddress().isAnyLocalAddress() ? "127.0.0.1" : serverSocket.getInetAddress().getHostAddress();
+		for (int i = 0; i < localWorkers; i++) {
+			try {
+				ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						ScanWorker.class.getName(), address + ":" + getPort()).inheritIO();
+				// not on the command-line, which other users can see
+				builder.environment().put(SECRET_ENV, secret);
+				processes.add(builder.start());
+			}
+			catch (IOException e) {
+				LOG.log(WARNING, "Failed to start a local worker", e);
+			}
+		}
+	}
+
+	private void acceptWorkers() {
+		try {
+			while (!serverSocket.isClosed()) {
+				Socket socket = serverSocket.accept();
+				socket.setSoTimeout(WORKER_TIMEOUT_MS);
+				WorkerConnection connection = new WorkerConnection(socket);
+				connections.add(connection);
+				connection.start();
+			}
+		}
+		catch (IOException e) {
+			if (!serverSocket.isClosed()) LOG.log(WARNING, "Failed to accept workers", e);
+		}
+	}
+
+	/**
+	 * @param wait true to wait until a shard is available
+	 * @return the next shard for scanning or null if there is none
+	 */
+	Shard takeShard(boolean wait) throws InterruptedException {
+		synchronized (lock) {
+			while (true) {
+				if (!stateMachine.inState(SCANNING)) return null;
+				Shard shard = failedShards.poll();
+				if (shard == null) shard = nextShard();
+				if (shard != null) {
+					assignedShards.put(shard.id, shard);
+					return shard;
+				}
+				if (!wait || isFinished()) return null;
+				lock.wait();
+			}
+		}
+	}
+
+	private Shard nextShard() {
+		List<InetAddress> addresses = new ArrayList<>(SHARD_SIZE);
+		while (addresses.size() < SHARD_SIZE && feeder.hasNext()) {
+			ScanningSubject subject = feeder.next();
+			if (config.skipBroadcastAddresses && isLikelyBroadcast(subject.getAddress(), subject.getIfAddress())) {
+				checkpoint.skipped(subject.getAddress());
+				continue;
+			}
+			addresses.add(subject.getAddress());
+		}
+		return addresses.isEmpty() ? null : new Shard(nextShardId++, addresses);
+	}
+
+	/**
+	 * @return true if the result belongs to the shard and it wasn't received before
+	 */
+	private boolean received(Shard shard, InetAddress address) {
+		synchronized (lock) {
+			lastAddress = address;
+			return shard.remaining.remove(address);
+		}
+	}
+
+	private void finished(Shard shard) {
+		synchronized (lock) {
+			assignedShards.remove(shard.id);
+			// the worker has not scanned these at all
+			for (InetAddress address : shard.remaining) checkpoint.skipped(address);
+			lock.notifyAll();
+		}
+	}
+
+	private void failed(Collection<Shard> shards) {
+		synchronized (lock) {
+			for (Shard shard : shards) {
+				assignedShards.remove(shard.id);
+				if (!shard.remaining.isEmpty()) failedShards.add(shard);
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void publish(ScanningResult received) {
+		ScanningResult result = scanningResultList.createResult(received.getAddress());
+		resultsCallback.prepareForResults(result);
+		result.setValues(Arrays.copyOf(received.getValues().toArray(), result.getValues().size()));
+		result.setType(received.getType());
+		resultsCallback.consumeResults(result);
+		checkpoint.scanned(result);
+	}
+
+	/**
+	 * Stops handing out of shards when scanning is stopped and drops the workers when it is killed.
+	 */
+	public void transitionTo(ScanningState state, Transition transition) {
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+		if (state == KILLING) {
+			for (WorkerConnection connection : connections) connection.close();
+		}
+	}
+
+	/**
+	 * @return random hex string
+	 */
+	static String newChallenge() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		return hex(bytes);
+	}
+
+	/**
+	 * @return the response to the challenge, which proves the knowledge of the secret
+	 */
+	static String authenticate(String secret, String challenge) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret.getBytes(UTF_8), "HmacSHA256"));
+			return hex(mac.doFinal(challenge.getBytes(UTF_8)));
+		}
+		catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return sb.toString();
+	}
+
+	private interface Condition {
+		boolean isMet();
+	}
+
+	/**
+	 * Serves a single connected worker.
+	 */
+	class WorkerConnection extends Thread {
+		private final Socket socket;
+		private final Map<Integer, Shard> inFlight = new HashMap<>();
+
+		WorkerConnection(Socket socket) {
+			super(ScanCoordinator.this.getName() + ": " + socket.getRemoteSocketAddress());
+			setDaemon(true);
+			this.socket = socket;
+		}
+
+		public void run() {
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+				PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8)));
+				authenticateWorker(in, out);
+				sendConfig(out);
+				while (true) {
+					Shard shard;
+					while (inFlight.size() < SHARDS_PER_WORKER && (shard = takeShard(inFlight.isEmpty())) != null) {
+						inFlight.put(shard.id, shard);
+						out.println(SHARD + '\t' + shard.id + '\t' + shard.encode());
+					}
+					out.flush();
+					if (inFlight.isEmpty()) break;
+
+					String line = in.readLine();
+					if (line == null) throw new EOFException("Worker disconnected");
+					receive(line.split("\t", -1));
+				}
+				out.println(END);
+				out.flush();
+			}
+			catch (IOException | RuntimeException e) {
+				if (!stateMachine.inState(KILLING)) LOG.log(WARNING, getName() + " failed, reassigning " + inFlight.values(), e);
+			}
+			catch (InterruptedException e) {
+				// just close the connection
+			}
+			finally {
+				failed(inFlight.values());
+				close();
+				connections.remove(this);
+			}
+		}
+
+		private void authenticateWorker(BufferedReader in, PrintWriter out) throws IOException {
+			String challenge = newChallenge();
+			out.println(HELLO + '\t' + ScanningResultFormat.VERSION + '\t' + challenge);
+			out.flush();
+			socket.setSoTimeout(AUTH_TIMEOUT_MS);
+			String line = in.readLine();
+			String expected = AUTH + '\t' + authenticate(secret, challenge);
+			if (line == null || !MessageDigest.isEqual(expected.getBytes(UTF_8), line.getBytes(UTF_8)))
+				throw new IOException("Worker not authenticated");
+			socket.setSoTimeout(WORKER_TIMEOUT_MS);
+		}
+
+		private void sendConfig(PrintWriter out) {
+			StringBuilder line = new StringBuilder(FETCHERS);
+			for (Fetcher fetcher : scanningResultList.getFetchers()) line.append('\t').append(fetcher.getId());
+			out.println(line);
+
+			line = new StringBuilder(CONFIG);
+			for (Map.Entry<String, String> setting : config.toMap().entrySet())
+				line.append('\t').append(setting.getKey()).append('=').append(escape(setting.getValue()));
+			out.println(line);
+		}
+
+		private void receive(String[] parts) throws IOException {
+			Shard shard = inFlight.get(Integer.valueOf(parts[1]));
+			if (shard == null) throw new IOException("Unknown shard: " + parts[1]);
+			switch (parts[0]) {
+				case RESULT:
+					ScanningResult result = ScanningResultFormat.parse(parts, 2);
+					if (received(shard, result.getAddress())) publish(result);
+					break;
+				case DONE:
+					inFlight.remove(shard.id);
+					finished(shard);
+					break;
+				default:
+					throw new IOException("Unexpected: " + parts[0]);
+			}
+		}
+
+		void close() {
+			closeQuietly(socket);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.distributed;
+
+import net.azib.ipscan.config.*;
+import net.azib.ipscan.core.*;
+import net.azib.ipscan.core.state.StateMachine;
+import net.azib.ipscan.di.Injector;
+import net.azib.ipscan.fetchers.Fetcher;
+import net.azib.ipscan.fetchers.FetcherRegistry;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.logging.Level.SEVERE;
+import static net.azib.ipscan.core.distributed.ScanCoordinator.*;
+import static net.azib.ipscan.core.state.ScanningState.SCANNING;
+
+/**
+ * Worker of a distributed scan: connects to the {@link ScanCoordinator},
+ * scans the shards it receives with the usual {@link ScannerDispatcherThread} and streams the results back.
+ * Runs without the GUI, e.g. <tt>java -cp ipscan.jar net.azib.ipscan.core.distributed.ScanWorker host:port</tt>,
+ * with the secret of the coordinator in the {@link ScanCoordinator#SECRET_ENV} environment variable.
+ */
+public class ScanWorker {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	private final ScannerConfig config;
+	private final FetcherRegistry fetcherRegistry;
+	private final Scanner scanner;
+
+	public ScanWorker(ScannerConfig config, FetcherRegistry fetcherRegistry) {
+		this(config, fetcherRegistry, new Scanner(fetcherRegistry, config, new RTTEstimator(config)));
+	}
+
+	public ScanWorker(ScannerConfig config, FetcherRegistry fetcherRegistry, Scanner scanner) {
+		this.config = config;
+		this.fetcherRegistry = fetcherRegistry;
+		this.scanner = scanner;
+	}
+
+	public static void main(String... args) {
+		int colon = args.length == 1 ? args[0].lastIndexOf(':') : -1;
+		String secret = System.getenv(SECRET_ENV);
+		if (colon <= 0 || secret == null || secret.isEmpty()) {
+			System.err.println("Usage: " + SECRET_ENV + "=<secret> " + ScanWorker.class.getName() + " <coordinator-host>:<port>");
+			System.exit(1);
+		}
+		try {
+			Labels.initialize(Config.getConfig().getLocale());
+			Injector injector = new ComponentRegistry().init(false);
+			// selection of fetchers comes from the coordinator, so it must not replace the one of the user
+			FetcherRegistry fetcherRegistry = new FetcherRegistry(injector.requireAll(Fetcher.class), Config.getConfig().getPreferences().node("worker"), null);
+			ScanWorker worker = new ScanWorker(injector.require(ScannerConfig.class), fetcherRegistry, injector.require(Scanner.class));
+			try (Socket socket = new Socket(args[0].substring(0, colon), Integer.parseInt(args[0].substring(colon + 1)))) {
+				worker.serve(socket.getInputStream(), socket.getOutputStream(), secret);
+			}
+		}
+		catch (Exception e) {
+			LOG.log(SEVERE, "Worker failed", e);
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Scans the shards received from the coordinator until it has no more of them.
+	 * @param secret shared with the coordinator
+	 */
+	public void serve(InputStream input, OutputStream output, String secret) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(input, UTF_8));
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(output, UTF_8)));
+		String line = in.readLine();
+		if (line == null || !line.startsWith(HELLO))
+			throw new IOException("Not a scan coordinator");
+		String[] hello = line.split("\t");
+		if (hello.length != 3 || !hello[1].equals(String.valueOf(ScanningResultFormat.VERSION)))
+			throw new IOException("Unsupported coordinator version: " + line);
+		out.println(AUTH + '\t' + authenticate(secret, hello[2]));
+		out.flush();
+
+		StateMachine stateMachine = new StateMachine() {};
+		while ((line = in.readLine()) != null) {
+			String[] parts = line.split("\t", -1);
+			switch (parts[0]) {
+				case FETCHERS:
+					selectFetchers(Arrays.copyOfRange(parts, 1, parts.length));
+					break;
+				case CONFIG:
+					applyConfig(Arrays.copyOfRange(parts, 1, parts.length));
+					break;
+				case SHARD:
+					scan(Integer.parseInt(parts[1]), Shard.decode(parts, 2), stateMachine, out);
+					break;
+				case END:
+					return;
+			}
+		}
+	}
+
+	private void selectFetchers(String[] ids) throws IOException {
+		for (String id : ids) {
+			if (fetcherRegistry.getRegisteredFetchers().stream().noneMatch(f -> f.getId().equals(id)))
+				throw new IOException("Fetcher unknown: " + id);
+		}
+		fetcherRegistry.updateSelectedFetchers(ids);
+	}
+
+	private void applyConfig(String[] settings) {
+		Map<String, String> map = new HashMap<>();
+		for (String setting : settings) {
+			int eq = setting.indexOf('=');
+			map.put(setting.substring(0, eq), setting.substring(eq + 1));
+		}
+		config.apply(map);
+		// journal is kept by the coordinator
+		config.checkpointInterval = 0;
+		// broadcast addresses are already skipped by the coordinator, every address of a shard needs a result
+		config.skipBroadcastAddresses = false;
+	}
+
+	private void scan(int shardId, List<InetAddress> addresses, StateMachine stateMachine, PrintWriter out) throws IOException {
+		stateMachine.transitionToNext();
+		stateMachine.startScanning();
+		ScanningResultCallback resultsCallback = new ScanningResultCallback() {
+			@Override public void prepareForResults(ScanningResult result) {
+			}
+
+			@Override public void consumeResults(ScanningResult result) {
+				synchronized (out) {
+					out.println(RESULT + '\t' + shardId + '\t' + ScanningResultFormat.format(result));
+					// the coordinator is gone, no need to continue
+					if (out.checkError() && stateMachine.inState(SCANNING)) stateMachine.stop();
+				}
+			}
+		};
+		new ScannerDispatcherThread(new ShardFeeder(addresses, "shard " + shardId), scanner, stateMachine,
+				(address, runningThreads, percentageComplete) -> {}, new ScanningResultList(fetcherRegistry), config, resultsCallback).run();
+
+		synchronized (out) {
+			out.println(DONE + '\t' + shardId);
+			if (out.checkError()) throw new IOException("Coordinator disconnected");
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.distributed;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static net.azib.ipscan.util.InetAddressUtils.increment;
+
+/**
+ * A part of the scanned address space, handed over to a single worker.
+ * On the wire, consecutive addresses are sent as runs, e.g. <tt>10.0.0.1-10.0.0.255</tt>.
+ */
+class Shard {
+	final int id;
+	/** Addresses of the shard, which results have not been received yet */
+	final Set<InetAddress> remaining;
+
+	Shard(int id, Collection<InetAddress> addresses) {
+		this.id = id;
+		this.remaining = new LinkedHashSet<>(addresses);
+	}
+
+	/**
+	 * @return tab-separated runs of the remaining addresses
+	 */
+	String encode() {
+		StringBuilder runs = new StringBuilder();
+		InetAddress start = null, end = null;
+		for (InetAddress address : remaining) {
+			if (end != null && increment(end).equals(address)) {
+				end = address;
+				continue;
+			}
+			appendRun(runs, start, end);
+			start = end = address;
+		}
+		appendRun(runs, start, end);
+		return runs.toString();
+	}
+
+	private static void appendRun(StringBuilder runs, InetAddress start, InetAddress end) {
+		if (start == null) return;
+		if (runs.length() > 0) runs.append('\t');
+		runs.append(start.getHostAddress());
+		if (!start.equals(end)) runs.append('-').append(end.getHostAddress());
+	}
+
+	/**
+	 * @param runs as returned by {@link #encode()}, split by tabs
+	 * @param offset index of the first run
+	 * @return all addresses of the runs
+	 */
+	static List<InetAddress> decode(String[] runs, int offset) throws UnknownHostException {
+		List<InetAddress> addresses = new ArrayList<>();
+		for (int i = offset; i < runs.length; i++) {
+			int dash = runs[i].indexOf('-');
+			InetAddress address = InetAddress.getByName(dash < 0 ? runs[i] : runs[i].substring(0, dash));
+			InetAddress end = dash < 0 ? address : InetAddress.getByName(runs[i].substring(dash + 1));
+			addresses.add(address);
+			while (!address.equals(end)) {
+				if (addresses.size() > ScanCoordinator.SHARD_SIZE)
+					throw new UnknownHostException("Too long run: " + runs[i]);
+				address = increment(address);
+				addresses.add(address);
+			}
+		}
+		return addresses;
+	}
+
+	@Override public String toString() {
+		return "shard " + id;
+	}
+}
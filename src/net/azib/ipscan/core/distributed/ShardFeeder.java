@@ -0,0 +1,51 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.distributed;
+
+import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.feeders.AbstractFeeder;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * Feeds the addresses of a single shard to the scanner of a worker.
+ */
+class ShardFeeder extends AbstractFeeder {
+	private final List<InetAddress> addresses;
+	private final String info;
+	private int index;
+
+	ShardFeeder(List<InetAddress> addresses, String info) {
+		this.addresses = addresses;
+		this.info = info;
+		if (!addresses.isEmpty()) initInterfaces(addresses.get(0));
+	}
+
+	@Override public boolean hasNext() {
+		return index < addresses.size();
+	}
+
+	@Override public ScanningSubject next() {
+		return subject(addresses.get(index++));
+	}
+
+	@Override public int percentageComplete() {
+		return addresses.isEmpty() ? 100 : index * 100 / addresses.size();
+	}
+
+	@Override public String getInfo() {
+		return info;
+	}
+
+	@Override public String getId() {
+		return "feeder.shard";
+	}
+
+	@Override public String getName() {
+		return "Shard";
+	}
+}
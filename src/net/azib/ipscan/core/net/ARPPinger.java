@@ -5,7 +5,7 @@ import net.azib.ipscan.fetchers.MACFetcher;
 
 import java.io.IOException;
 
-import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 
 public class ARPPinger implements Pinger {
 	private MACFetcher macFetcher;
@@ -25,13 +25,13 @@ public class ARPPinger implements Pinger {
 		if (trigger != null) count -= count / 2;
 		PingResult result = new PingResult(subject.getAddress(), count);
 		for (int i = 0; i < count; i++) {
-			long start = currentTimeMillis();
+			long start = nanoTime();
 			if (trigger != null) {
 				// this should issue an ARP request for the IP
 				result.merge(trigger.ping(subject, 1));
 			}
 			String mac = macFetcher.scan(subject);
-			if (mac != null) result.addReply(currentTimeMillis() - start);
+			if (mac != null) result.addReplyNanos(nanoTime() - start);
 		}
 		return result;
 	}
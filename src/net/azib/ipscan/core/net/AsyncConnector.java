@@ -0,0 +1,279 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.RTTEstimator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import static java.lang.Math.max;
+import static java.net.StandardSocketOptions.*;
+import static java.nio.channels.SelectionKey.OP_CONNECT;
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.core.net.ConnectResult.*;
+import static net.azib.ipscan.util.IOUtils.closeQuietly;
+
+/**
+ * AsyncConnector makes non-blocking TCP connection attempts.
+ * All attempts of the scan share a single Selector, served by one daemon thread,
+ * so thousands of connects can be in flight without occupying scanning threads.
+ * The number of simultaneous attempts is limited by {@link ScannerConfig#maxPendingConnects}
+ * (open file descriptors are a finite resource).
+ */
+public class AsyncConnector implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final int DEFAULT_MAX_PENDING = 1000;
+
+	private final Semaphore pendingPermits;
+	private final RTTEstimator rttEstimator;
+	private final Set<Attempt> inFlight = ConcurrentHashMap.newKeySet();
+
+	private Selector selector;
+	private Thread selectorThread;
+	/** Attempts to be registered by the current selector thread */
+	private Queue<Attempt> registrations;
+
+	public AsyncConnector(ScannerConfig config) {
+		this(config, null);
+	}
+
+	public AsyncConnector(ScannerConfig config, RTTEstimator rttEstimator) {
+		this(config.maxPendingConnects > 0 ? config.maxPendingConnects : DEFAULT_MAX_PENDING, rttEstimator);
+	}
+
+	AsyncConnector(int maxPending) {
+		this(maxPending, null);
+	}
+
+	AsyncConnector(int maxPending, RTTEstimator rttEstimator) {
+		this.pendingPermits = new Semaphore(maxPending);
+		this.rttEstimator = rttEstimator;
+	}
+
+	/**
+	 * Starts a non-blocking connection attempt.
+	 * Blocks only if too many attempts are already in flight.
+	 * @return the attempt, which completes with the {@link ConnectResult}; it can be cancelled
+	 */
+	public Attempt connect(InetSocketAddress address, int timeout) throws InterruptedException {
+		pendingPermits.acquire();
+		SocketChannel channel;
+		try {
+			channel = SocketChannel.open();
+		}
+		catch (IOException e) {
+			channel = null;
+		}
+		Attempt attempt = new Attempt(channel, address, timeout);
+		if (channel == null) {
+			attempt.complete(FAILED);
+			return attempt;
+		}
+		try {
+			channel.configureBlocking(false);
+			channel.setOption(SO_REUSEADDR, true);
+			channel.setOption(SO_RCVBUF, 32);
+			if (channel.connect(address)) {
+				attempt.complete(OPEN);
+			}
+			else {
+				register(attempt);
+			}
+		}
+		catch (IOException e) {
+			attempt.complete(resultOf(e));
+		}
+		return attempt;
+	}
+
+	/**
+	 * Maps exceptions of connect() to results, the same way the blocking scanning code does.
+	 */
+	public static ConnectResult resultOf(IOException e) {
+		String msg = e.getMessage() == null ? "" : e.getMessage();
+		// RST should result in ConnectException, but on macOS ConnectionException can also come with e.g. "No route to host"
+		if (e instanceof ConnectException && msg.contains(/*Connection*/"refused"))
+			return CLOSED;
+		// this should result in NoRouteToHostException or ConnectException, but not all Java implementation respect that
+		if (e instanceof NoRouteToHostException || msg.contains(/*No*/"route to host") || msg.contains(/*Host is*/"down") || msg.contains(/*Network*/"unreachable"))
+			return UNREACHABLE;
+		return FAILED;
+	}
+
+	/**
+	 * @return number of attempts currently in flight
+	 */
+	public int getPendingCount() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Cancels all attempts that are currently in flight, e.g. when scanning is being killed.
+	 */
+	public void cancelAll() {
+		for (Attempt attempt : inFlight) attempt.cancel(false);
+	}
+
+	private synchronized void register(Attempt attempt) throws IOException {
+		if (selectorThread == null || !selectorThread.isAlive()) {
+			Selector selector = this.selector = Selector.open();
+			// a closed thread may still be running, so it must not pick up attempts of the new one
+			Queue<Attempt> registrations = this.registrations = new ConcurrentLinkedQueue<>();
+			selectorThread = new Thread(() -> run(selector, registrations), getClass().getSimpleName());
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		registrations.add(attempt);
+		selector.wakeup();
+	}
+
+	private void run(Selector selector, Queue<Attempt> registrations) {
+		// the heap is accessed only by this thread
+		PriorityQueue<Attempt> deadlines = new PriorityQueue<>(comparingLong(a -> a.deadline));
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Attempt next = deadlines.peek();
+				selector.select(next == null ? 0 : max(1, NANOSECONDS.toMillis(next.deadline - System.nanoTime())));
+
+				Attempt attempt;
+				while ((attempt = registrations.poll()) != null) {
+					try {
+						if (!attempt.isDone()) {
+							attempt.channel.register(selector, OP_CONNECT, attempt);
+							deadlines.add(attempt);
+						}
+					}
+					catch (ClosedChannelException e) {
+						attempt.cancel(false);
+					}
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					attempt = (Attempt) key.attachment();
+					try {
+						if (((SocketChannel) key.channel()).finishConnect())
+							attempt.complete(OPEN);
+					}
+					catch (IOException e) {
+						attempt.complete(resultOf(e));
+					}
+				}
+
+				long now = System.nanoTime();
+				while ((attempt = deadlines.peek()) != null && (attempt.isDone() || attempt.deadline <= now)) {
+					deadlines.poll().complete(TIMEOUT);
+				}
+			}
+		}
+		catch (IOException e) {
+			LOG.log(WARNING, "Selector failed", e);
+		}
+		finally {
+			for (SelectionKey key : selector.keys()) ((Attempt) key.attachment()).cancel(false);
+			Attempt attempt;
+			while ((attempt = registrations.poll()) != null) attempt.cancel(false);
+			closeQuietly(selector);
+		}
+	}
+
+	/**
+	 * Stops the selector thread, cancelling all attempts in flight.
+	 * The connector can still be used afterwards, a new thread will be started on demand.
+	 */
+	@Override public synchronized void close() {
+		// also the ones not registered with the selector yet
+		cancelAll();
+		if (selectorThread != null) {
+			selectorThread.interrupt();
+			selector.wakeup();
+			selectorThread = null;
+		}
+	}
+
+	/**
+	 * A single connection attempt, the channel is closed as soon as the result is known.
+	 */
+	public class Attempt extends CompletableFuture<ConnectResult> {
+		private final InetSocketAddress address;
+		private final long startTime = System.nanoTime();
+		private final long deadline;
+		private final SocketChannel channel;
+		private long endTime;
+
+		Attempt(SocketChannel channel, InetSocketAddress address, int timeout) {
+			this.channel = channel;
+			this.address = address;
+			this.deadline = startTime + MILLISECONDS.toNanos(timeout);
+			inFlight.add(this);
+			whenComplete((result, e) -> finish(result));
+		}
+
+		private void finish(ConnectResult result) {
+			endTime = System.nanoTime();
+			if (inFlight.remove(this)) {
+				try {
+					// avoid TIME_WAIT, the same way as blocking scanning does
+					if (result == OPEN) channel.setOption(SO_LINGER, 0);
+				}
+				catch (IOException ignore) {
+				}
+				closeQuietly(channel);
+				pendingPermits.release();
+				// both SYN-ACK and RST take a round trip
+				if (rttEstimator != null && result != null && result.isAlive())
+					rttEstimator.sample(address.getAddress(), getTime());
+			}
+		}
+
+		public InetSocketAddress getAddress() {
+			return address;
+		}
+
+		public int getPort() {
+			return address.getPort();
+		}
+
+		/**
+		 * @return time from the start of the attempt until its completion, in milliseconds
+		 */
+		public long getTime() {
+			return NANOSECONDS.toMillis(getTimeNanos());
+		}
+
+		/**
+		 * @return time from the start of the attempt until its completion, in nanoseconds
+		 */
+		public long getTimeNanos() {
+			return (endTime == 0 ? System.nanoTime() : endTime) - startTime;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.ScanningSubject;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static net.azib.ipscan.core.net.ConnectResult.UNREACHABLE;
+
+/**
+ * Non-blocking TCP pinger: connects to all the probe ports of {@link TCPPinger} at once
+ * and takes the first SYN-ACK or RST as the reply, cancelling the remaining attempts.
+ * Connects are made by the {@link AsyncConnector}, which is shared with port scanning,
+ * so a single Selector serves all the hosts.
+ */
+public class AsyncTCPPinger implements Pinger {
+	private final int timeout;
+	private final int minTimeout;
+	private final AsyncConnector connector;
+	private final ProbeRateLimiter rateLimiter;
+
+	public AsyncTCPPinger(ScannerConfig config, AsyncConnector connector, ProbeRateLimiter rateLimiter) {
+		this.timeout = config.pingTimeout;
+		this.minTimeout = config.minPortTimeout;
+		this.connector = connector;
+		this.rateLimiter = rateLimiter;
+	}
+
+	public PingResult ping(ScanningSubject subject, int count) {
+		PingResult result = new PingResult(subject.getAddress(), count);
+		int workingPort = -1;
+
+		for (int i = 0; i < count; i++) {
+			Set<Integer> ports = new LinkedHashSet<>();
+			if (workingPort >= 0) ports.add(workingPort);
+			else {
+				// try the requested port as well, if it is available
+				if (subject.isAnyPortRequested()) ports.add(subject.requestedPortsIterator().next());
+				for (int port : TCPPinger.PROBE_TCP_PORTS) ports.add(port);
+			}
+
+			// unlike blocking connect, zero timeout would mean no waiting at all
+			int maxTimeout = subject.getAdaptedPingTimeout(this.timeout);
+			int timeout = result.isTimeoutAdaptationAllowed() ? min(max(result.getLongestTime() * 2, minTimeout), maxTimeout) : maxTimeout;
+			List<AsyncConnector.Attempt> attempts = new ArrayList<>(ports.size());
+			try {
+				for (int port : ports) {
+					if (!rateLimiter.pace()) return result;
+					attempts.add(connector.connect(new InetSocketAddress(subject.getAddress(), port), timeout));
+				}
+				AsyncConnector.Attempt reply = firstReply(attempts).get();
+				if (reply != null) {
+					// RST also means that the host is alive
+					result.addReplyNanos(reply.getTimeNanos());
+					// one positive result is enough for TCP
+					result.enableTimeoutAdaptation();
+					workingPort = reply.getPort();
+				}
+				else if (attempts.stream().anyMatch(a -> !a.isCompletedExceptionally() && a.getNow(null) == UNREACHABLE)) {
+					// host is down
+					break;
+				}
+			}
+			catch (InterruptedException e) {
+				// scanning is being killed
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e) {
+				break;
+			}
+			finally {
+				for (AsyncConnector.Attempt attempt : attempts) attempt.cancel(false);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the first attempt, which has got a reply, or null if all of them are without replies
+	 */
+	private static CompletableFuture<AsyncConnector.Attempt> firstReply(List<AsyncConnector.Attempt> attempts) {
+		CompletableFuture<AsyncConnector.Attempt> first = new CompletableFuture<>();
+		CompletableFuture<?>[] checks = new CompletableFuture<?>[attempts.size()];
+		for (int i = 0; i < checks.length; i++) {
+			AsyncConnector.Attempt attempt = attempts.get(i);
+			checks[i] = attempt.thenAccept(result -> { if (result.isAlive()) first.complete(attempt); });
+		}
+		// depend on the checks, not the attempts, so that a reply is never missed
+		CompletableFuture.allOf(checks).whenComplete((v, e) -> first.complete(null));
+		return first;
+	}
+}
@@ -0,0 +1,244 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.ScanningSubject;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import static java.lang.Math.max;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.util.IOUtils.closeQuietly;
+
+/**
+ * Batched UDP pinger: the same probes as {@link UDPPinger} sends, but all of them are non-blocking.
+ * Probes of all hosts are multiplexed by a single Selector, served by one daemon thread,
+ * so waiting for replies doesn't occupy a thread per probe, and all probes of a host are sent at once.
+ * <p>
+ * Each probe uses its own connected channel, because ICMP port unreachable errors,
+ * which tell that the host is alive, are reported by the OS only to connected sockets.
+ */
+public class AsyncUDPPinger implements Pinger {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	private final int timeout;
+	private final ProbeRateLimiter rateLimiter;
+	/** Limits the number of open channels */
+	private final Semaphore pendingPermits;
+	private final Queue<Probe> registrations = new ConcurrentLinkedQueue<>();
+
+	private Selector selector;
+	private Thread selectorThread;
+
+	public AsyncUDPPinger(ScannerConfig config) {
+		this(config, new ProbeRateLimiter(config));
+	}
+
+	public AsyncUDPPinger(ScannerConfig config, ProbeRateLimiter rateLimiter) {
+		this.timeout = config.pingTimeout;
+		this.rateLimiter = rateLimiter;
+		this.pendingPermits = new Semaphore(config.maxPendingConnects > 0 ? config.maxPendingConnects : AsyncConnector.DEFAULT_MAX_PENDING);
+	}
+
+	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		List<Probe> probes = send(subject.getAddress(), count, subject.getAdaptedPingTimeout(timeout));
+		try {
+			for (Probe probe : probes) {
+				try {
+					probe.get();
+				}
+				catch (CancellationException | ExecutionException ignore) {
+					// the pinger is being closed
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// scanning is being killed, count only the replies received so far
+			Thread.currentThread().interrupt();
+			for (Probe probe : probes) probe.cancel(false);
+		}
+		return collect(subject.getAddress(), count, probes);
+	}
+
+	private List<Probe> send(InetAddress address, int count, int timeout) {
+		List<Probe> probes = new ArrayList<>(count);
+		for (int i = 0; i < count && rateLimiter.pace(); i++) {
+			try {
+				pendingPermits.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			Probe probe = new Probe(timeout);
+			probes.add(probe);
+			probe.send(address);
+		}
+		return probes;
+	}
+
+	private static PingResult collect(InetAddress address, int count, List<Probe> probes) {
+		PingResult result = new PingResult(address, count);
+		for (Probe probe : probes) {
+			if (probe.isReplied()) result.addReplyNanos(probe.replyTime);
+		}
+		return result;
+	}
+
+	private synchronized Selector ensureStarted() throws IOException {
+		if (selectorThread == null || !selectorThread.isAlive()) {
+			Selector selector = this.selector = Selector.open();
+			selectorThread = new Thread(() -> run(selector), getClass().getSimpleName());
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		return selector;
+	}
+
+	private void run(Selector selector) {
+		// the heap is accessed only by this thread
+		PriorityQueue<Probe> deadlines = new PriorityQueue<>(comparingLong(p -> p.deadline));
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Probe next = deadlines.peek();
+				selector.select(next == null ? 0 : max(1, NANOSECONDS.toMillis(next.deadline - System.nanoTime())));
+
+				Probe probe;
+				while ((probe = registrations.poll()) != null) {
+					try {
+						if (!probe.isDone()) {
+							probe.channel.register(selector, OP_READ, probe);
+							deadlines.add(probe);
+						}
+					}
+					catch (ClosedChannelException e) {
+						probe.cancel(false);
+					}
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					probe = (Probe) key.attachment();
+					try {
+						buffer.clear();
+						// any reply means that the host is alive
+						((DatagramChannel) key.channel()).read(buffer);
+						probe.replied();
+					}
+					catch (PortUnreachableException e) {
+						probe.replied();
+					}
+					catch (IOException e) {
+						// no route to host, etc
+						probe.complete(false);
+					}
+				}
+
+				long now = System.nanoTime();
+				while ((probe = deadlines.peek()) != null && (probe.isDone() || probe.deadline <= now)) {
+					deadlines.poll().complete(false);
+				}
+			}
+		}
+		catch (IOException e) {
+			LOG.log(WARNING, "Selector failed", e);
+		}
+		finally {
+			for (SelectionKey key : selector.keys()) ((Probe) key.attachment()).cancel(false);
+			closeQuietly(selector);
+		}
+	}
+
+	/**
+	 * Stops the selector thread, cancelling all probes waiting for replies.
+	 * A new thread will be started on demand.
+	 */
+	@Override public synchronized void close() {
+		if (selectorThread != null) {
+			selectorThread.interrupt();
+			selector.wakeup();
+			selectorThread = null;
+		}
+	}
+
+	/**
+	 * A single probe, completes with true if the host has replied.
+	 * The channel is closed as soon as the outcome is known.
+	 */
+	class Probe extends CompletableFuture<Boolean> {
+		private final long startTime = System.nanoTime();
+		private final long deadline;
+		private DatagramChannel channel;
+		private volatile long replyTime;
+
+		Probe(int timeout) {
+			deadline = startTime + MILLISECONDS.toNanos(timeout);
+			whenComplete((replied, e) -> {
+				closeQuietly(channel);
+				pendingPermits.release();
+			});
+		}
+
+		void send(InetAddress address) {
+			try {
+				channel = DatagramChannel.open();
+				channel.configureBlocking(false);
+				channel.connect(new InetSocketAddress(address, UDPPinger.PROBE_UDP_PORT));
+				ByteBuffer payload = ByteBuffer.allocate(8).putLong(System.currentTimeMillis());
+				payload.flip();
+				channel.write(payload);
+				registrations.add(this);
+				ensureStarted().wakeup();
+			}
+			catch (PortUnreachableException e) {
+				replied();
+			}
+			catch (IOException e) {
+				// host or network is unreachable, etc
+				complete(false);
+			}
+		}
+
+		void replied() {
+			replyTime = System.nanoTime() - startTime;
+			complete(true);
+		}
+
+		boolean isReplied() {
+			// the reply could come after the timeout
+			return isDone() && !isCompletedExceptionally() && join();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.core.ScanningSubject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+import static net.azib.ipscan.util.InetAddressUtils.subnetOf;
+
+/**
+ * Self-calibrating pinger: the first hosts of each subnet (/24 or /64) are pinged with all the other registered pingers at once,
+ * then the pinger that has detected most of the alive hosts, the fastest one on ties, is used for the rest of the subnet.
+ * At most {@link #MAX_CALIBRATION_SAMPLES} hosts of a subnet are calibrated at a time, the others wait for the choice.
+ * <p/>
+ * This way users don't need to guess, which pinger works best in their network.
+ */
+public class AutoPinger implements Pinger {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final String ID = "pinger.auto";
+	/** Alive hosts to see before the choice is made */
+	static final int CALIBRATION_HOSTS = 3;
+	/** Hosts to sample at most, if there are not enough alive ones */
+	static final int MAX_CALIBRATION_SAMPLES = 16;
+	/** Subnets to remember at most, e.g. for scans of random addresses */
+	static final int MAX_SUBNETS = 65536;
+
+	/** Candidate pingers in the order of preference, used on ties */
+	private final Map<String, Pinger> candidates;
+	private final Map<InetAddress, Calibration> calibrations = new ConcurrentHashMap<>();
+
+	public AutoPinger(PingerRegistry registry) {
+		this(registry.createCandidates());
+	}
+
+	AutoPinger(Map<String, Pinger> candidates) {
+		this.candidates = candidates;
+	}
+
+	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		if (candidates.isEmpty()) return new PingResult(subject.getAddress(), count);
+
+		InetAddress subnet = subnetOf(subject.getAddress());
+		Calibration calibration = calibrations.get(subnet);
+		if (calibration == null) {
+			if (calibrations.size() >= MAX_SUBNETS) calibrations.clear();
+			calibration = calibrations.computeIfAbsent(subnet, Calibration::new);
+		}
+
+		String choice;
+		while ((choice = calibration.getChoice()) == null) {
+			if (calibration.tryStart()) {
+				try {
+					return calibrate(subject, count, calibration);
+				}
+				finally {
+					calibration.finished();
+				}
+			}
+			try {
+				calibration.await();
+			}
+			catch (InterruptedException e) {
+				// scanning is being killed
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		return candidates.get(choice).ping(subject, count);
+	}
+
+	/**
+	 * Pings the subject with all the candidates at once.
+	 * @return the best of the results
+	 */
+	private PingResult calibrate(ScanningSubject subject, int count, Calibration calibration) {
+		Map<String, Future<PingResult>> futures = new LinkedHashMap<>();
+		for (Map.Entry<String, Pinger> candidate : candidates.entrySet()) {
+			Pinger pinger = candidate.getValue();
+			futures.put(candidate.getKey(), ConcurrentProbes.pool.submit(() -> pinger.ping(subject, count)));
+		}
+
+		Map<String, PingResult> results = new LinkedHashMap<>();
+		try {
+			for (Map.Entry<String, Future<PingResult>> future : futures.entrySet()) {
+				try {
+					results.put(future.getKey(), future.getValue().get());
+				}
+				catch (ExecutionException e) {
+					// this pinger doesn't work here, e.g. not allowed
+					LOG.log(FINE, future.getKey() + " failed for " + subject, e.getCause());
+				}
+			}
+			calibration.record(results);
+		}
+		catch (InterruptedException e) {
+			// scanning is being killed
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			for (Future<PingResult> future : futures.values()) future.cancel(true);
+		}
+
+		PingResult best = null;
+		for (PingResult result : results.values()) {
+			if (best == null || compare(result.getReplyCount(), result.isAlive() ? result.getAverageTimeNanos() : 0,
+					best.getReplyCount(), best.isAlive() ? best.getAverageTimeNanos() : 0) < 0)
+				best = result;
+		}
+		return best != null ? best : new PingResult(subject.getAddress(), count);
+	}
+
+	/**
+	 * @return negative if the first one is better: detects more, or is faster on average if detects the same
+	 */
+	static int compare(int detected1, long averageTime1, int detected2, long averageTime2) {
+		return detected1 != detected2 ? Integer.compare(detected2, detected1) : Long.compare(averageTime1, averageTime2);
+	}
+
+	/**
+	 * @return the chosen pinger for the subnet of the address, or null if it is still being calibrated
+	 */
+	String getChoice(InetAddress address) {
+		Calibration calibration = calibrations.get(subnetOf(address));
+		return calibration != null ? calibration.getChoice() : null;
+	}
+
+	@Override public void close() throws IOException {
+		calibrations.clear();
+		for (Pinger pinger : candidates.values()) pinger.close();
+	}
+
+	/**
+	 * Detection rate and latency of each candidate in a single subnet
+	 */
+	class Calibration {
+		private final InetAddress subnet;
+		private final Map<String, Score> scores = new LinkedHashMap<>();
+		private int samples;
+		private int aliveSamples;
+		/** Hosts being calibrated now */
+		private int inFlight;
+		private volatile String choice;
+
+		Calibration(InetAddress subnet) {
+			this.subnet = subnet;
+		}
+
+		String getChoice() {
+			return choice;
+		}
+
+		/**
+		 * @return true if one more host can be calibrated now, {@link #finished()} must be called after it
+		 */
+		synchronized boolean tryStart() {
+			if (choice != null || inFlight >= MAX_CALIBRATION_SAMPLES) return false;
+			inFlight++;
+			return true;
+		}
+
+		synchronized void finished() {
+			inFlight--;
+			notifyAll();
+		}
+
+		/**
+		 * Waits until the choice is made or another host can be calibrated
+		 */
+		synchronized void await() throws InterruptedException {
+			while (choice == null && inFlight >= MAX_CALIBRATION_SAMPLES) wait();
+		}
+
+		synchronized void record(Map<String, PingResult> results) {
+			if (choice != null) return;
+			samples++;
+			boolean alive = false;
+			for (Map.Entry<String, PingResult> result : results.entrySet()) {
+				if (!result.getValue().isAlive()) continue;
+				alive = true;
+				Score score = scores.computeIfAbsent(result.getKey(), k -> new Score());
+				score.detected++;
+				score.totalTime += result.getValue().getAverageTimeNanos();
+			}
+			if (alive) aliveSamples++;
+
+			if (aliveSamples >= CALIBRATION_HOSTS || samples >= MAX_CALIBRATION_SAMPLES) {
+				String best = candidates.keySet().iterator().next();
+				Score bestScore = new Score();
+				for (String name : candidates.keySet()) {
+					Score score = scores.get(name);
+					if (score != null && score.compareTo(bestScore) < 0) {
+						best = name;
+						bestScore = score;
+					}
+				}
+				LOG.info("Selected " + best + " for " + subnet.getHostAddress() + ", detected " + bestScore.detected + " of " + aliveSamples + " hosts");
+				choice = best;
+			}
+		}
+	}
+
+	static class Score implements Comparable<Score> {
+		int detected;
+		long totalTime;
+
+		@Override public int compareTo(Score that) {
+			return compare(detected, detected > 0 ? totalTime / detected : 0, that.detected, that.detected > 0 ? that.totalTime / that.detected : 0);
+		}
+	}
+}
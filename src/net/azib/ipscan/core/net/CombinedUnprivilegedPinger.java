@@ -6,28 +6,54 @@
 
 package net.azib.ipscan.core.net;
 
+import net.azib.ipscan.config.ScannerConfig;
 import net.azib.ipscan.core.ScanningSubject;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * CombinedUnprivilegedPinger - uses both UDP and TCP for pinging.
  * A better default alternative for unprivileged users.
+ * <p/>
+ * If {@link ScannerConfig#concurrentPings} is enabled, UDP and TCP are raced "happy eyeballs" style (RFC 8305):
+ * TCP starts after a short head start of UDP, the first positive result wins, and the other pinger is cancelled.
  *
  * @author Anton Keks
  */
 public class CombinedUnprivilegedPinger implements Pinger {
+	/** Head start of UDP before TCP is started as well, the connection attempt delay of RFC 8305 */
+	static final int HEAD_START_MS = 250;
+
 	private TCPPinger tcpPinger;
 	private UDPPinger udpPinger;
+	private boolean racing;
 
 	public CombinedUnprivilegedPinger(TCPPinger tcpPinger, UDPPinger udpPinger) {
+		this(tcpPinger, udpPinger, false);
+	}
+
+	public CombinedUnprivilegedPinger(ScannerConfig config, TCPPinger tcpPinger, UDPPinger udpPinger) {
+		this(tcpPinger, udpPinger, config.concurrentPings);
+	}
+
+	CombinedUnprivilegedPinger(TCPPinger tcpPinger, UDPPinger udpPinger, boolean racing) {
 		this.tcpPinger = tcpPinger;
 		this.udpPinger = udpPinger;
+		this.racing = racing;
 	}
 
 	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		if (racing) return race(subject, count);
+
 		// try UDP first - it should be more reliable in general
 		int udpCountInitialCount = max(1, count / 2);
 		PingResult udpResult = udpPinger.ping(subject, udpCountInitialCount);
@@ -37,4 +63,51 @@ public class CombinedUnprivilegedPinger implements Pinger {
 		// fallback to TCP - it may detect some hosts UDP cannot
 		return tcpPinger.ping(subject, count);
 	}
+
+	/**
+	 * Runs both pingers concurrently, UDP with a head start.
+	 * @return the first positive result, or all the negative ones merged together
+	 */
+	private PingResult race(ScanningSubject subject, int count) throws IOException {
+		CompletionService<PingResult> completion = new ExecutorCompletionService<>(ConcurrentProbes.pool);
+		List<Future<PingResult>> racers = new ArrayList<>(2);
+		racers.add(completion.submit(() -> udpPinger.ping(subject, count)));
+		boolean tcpStarted = false;
+
+		PingResult result = null;
+		IOException error = null;
+		try {
+			for (int pending = 1; pending > 0; ) {
+				Future<PingResult> finished = tcpStarted ? completion.take() : completion.poll(HEAD_START_MS, MILLISECONDS);
+				if (finished != null) {
+					pending--;
+					try {
+						PingResult finishedResult = finished.get();
+						if (finishedResult.isAlive()) return finishedResult;
+						result = result == null ? finishedResult : result.merge(finishedResult);
+					}
+					catch (ExecutionException e) {
+						// the other pinger may still succeed, e.g. if UDP is not allowed
+						error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+					}
+				}
+				if (!tcpStarted) {
+					// no reply during the head start, or UDP has already failed
+					racers.add(completion.submit(() -> tcpPinger.ping(subject, count)));
+					tcpStarted = true;
+					pending++;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// scanning is being killed
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			// the loser is not needed anymore
+			for (Future<PingResult> racer : racers) racer.cancel(true);
+		}
+		if (result == null && error != null) throw error;
+		return result != null ? result : new PingResult(subject.getAddress(), count);
+	}
 }
@@ -0,0 +1,89 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.ScanningSubject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Sends all the probes of a host at once, staggered by a few milliseconds, each blocking probe in its own thread,
+ * and collects the replies against a single deadline.
+ * This way a dead host costs a single timeout instead of a timeout per probe (see {@link net.azib.ipscan.config.ScannerConfig#concurrentPings}).
+ */
+class ConcurrentProbes {
+	/** Delay between the probes, so that they don't arrive as a single burst */
+	static final int STAGGER_MS = 5;
+
+	/** Max threads for the probes of all the hosts being scanned */
+	static final int MAX_THREADS = 256;
+
+	/**
+	 * Threads for the blocking probes, also used for racing of pingers.
+	 * Idle threads die after a minute. When all the threads are busy, the submitting thread runs the task itself,
+	 * so that pingers racing in the pool never wait for the probes that can't get a thread.
+	 */
+	static final ThreadPoolExecutor pool = new ThreadPoolExecutor(0, MAX_THREADS, 1, MINUTES, new SynchronousQueue<>(), r -> {
+		Thread thread = new Thread(r, ConcurrentProbes.class.getSimpleName());
+		thread.setDaemon(true);
+		return thread;
+	}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+	interface Probe {
+		/**
+		 * Sends a single probe and waits for its reply.
+		 * @param index of the probe, starting from 0
+		 * @param timeout remaining until the deadline
+		 * @return round trip time in nanoseconds, or -1 if there was no reply
+		 */
+		long send(int index, int timeout) throws IOException;
+	}
+
+	/**
+	 * @param timeout for all the probes, counted from the first one
+	 * @return the result with replies of all the probes
+	 */
+	static PingResult ping(ScanningSubject subject, int count, int timeout, ProbeRateLimiter rateLimiter, Probe probe) throws IOException {
+		PingResult result = new PingResult(subject.getAddress(), count);
+		long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeout);
+		List<Future<Long>> probes = new ArrayList<>(count);
+		try {
+			for (int i = 0; i < count && rateLimiter.pace(); i++) {
+				if (i > 0) Thread.sleep(STAGGER_MS);
+				int index = i;
+				probes.add(pool.submit(() -> probe.send(index, (int) max(1, NANOSECONDS.toMillis(deadline - System.nanoTime())))));
+			}
+			for (Future<Long> future : probes) {
+				long time = future.get();
+				if (time >= 0) result.addReplyNanos(time);
+			}
+		}
+		catch (InterruptedException e) {
+			// scanning is being killed
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+		finally {
+			for (Future<Long> future : probes) future.cancel(true);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,29 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+/**
+ * Outcome of a single TCP connection attempt, made by {@link AsyncConnector}.
+ */
+public enum ConnectResult {
+	/** SYN-ACK received, the port is open */
+	OPEN,
+	/** RST received, the port is closed, but the host is alive */
+	CLOSED,
+	/** no reply within the timeout, the port is probably filtered */
+	TIMEOUT,
+	/** ICMP unreachable or similar, the host is most probably down */
+	UNREACHABLE,
+	/** some other local or unexpected error */
+	FAILED;
+
+	/**
+	 * @return true if the remote host has replied somehow
+	 */
+	public boolean isAlive() {
+		return this == OPEN || this == CLOSED;
+	}
+}
@@ -1,28 +1,41 @@
 package net.azib.ipscan.core.net;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
 import net.azib.ipscan.core.ScanningSubject;
 
 import java.io.IOException;
 import java.net.ConnectException;
 
-import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 
 public class JavaPinger implements Pinger {
 	private int timeout;
+	private boolean concurrent;
+	private ProbeRateLimiter rateLimiter;
 
 	public JavaPinger(ScannerConfig config) {
+		this(config, new ProbeRateLimiter(config));
+	}
+
+	public JavaPinger(ScannerConfig config, ProbeRateLimiter rateLimiter) {
 		this.timeout = config.pingTimeout;
+		this.concurrent = config.concurrentPings;
+		this.rateLimiter = rateLimiter;
 	}
 
 	@Override
 	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		int timeout = subject.getAdaptedPingTimeout(this.timeout);
+		if (concurrent && count > 1)
+			return ConcurrentProbes.ping(subject, count, timeout, rateLimiter, (i, remaining) -> probe(subject, remaining));
+
 		PingResult result = new PingResult(subject.getAddress(), count);
-		for (int i = 0; i < count; i++) {
+		for (int i = 0; i < count && rateLimiter.pace(); i++) {
 			try {
-				long start = currentTimeMillis();
+				long start = nanoTime();
 				if (subject.getAddress().isReachable(timeout))
-					result.addReply(currentTimeMillis() - start);
+					result.addReplyNanos(nanoTime() - start);
 			}
 			catch (ConnectException e) {
 				// these happen on Mac
@@ -30,4 +43,15 @@ public class JavaPinger implements Pinger {
 		}
 		return result;
 	}
+
+	private long probe(ScanningSubject subject, int timeout) throws IOException {
+		try {
+			long start = nanoTime();
+			return subject.getAddress().isReachable(timeout) ? nanoTime() - start : -1;
+		}
+		catch (ConnectException e) {
+			// these happen on Mac
+			return -1;
+		}
+	}
 }
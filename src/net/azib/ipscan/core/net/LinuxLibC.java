@@ -0,0 +1,73 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+
+/**
+ * JNA binding for socket functions of the Linux C library, used for unprivileged ICMP sockets and netlink
+ */
+public interface LinuxLibC extends Library {
+	LinuxLibC dll = Loader.load();
+	class Loader {
+		public static LinuxLibC load() {
+			return Native.load("c", LinuxLibC.class);
+		}
+	}
+
+	int AF_INET = 2;
+	int AF_INET6 = 10;
+	int SOCK_DGRAM = 2;
+	int IPPROTO_ICMP = 1;
+	int IPPROTO_ICMPV6 = 58;
+	int SOL_SOCKET = 1;
+	int SO_RCVTIMEO = 20;
+	int SOL_IP = 0;
+	int IP_TTL = 2;
+	int IP_RECVTTL = 12;
+	int IPPROTO_IPV6 = 41;
+	int IPV6_RECVHOPLIMIT = 51;
+	int IPV6_HOPLIMIT = 52;
+	int AF_NETLINK = 16;
+	int SOCK_RAW = 3;
+	int NETLINK_ROUTE = 0;
+	int ENOBUFS = 105;
+
+	int socket(int domain, int type, int protocol);
+
+	int setsockopt(int fd, int level, int name, Pointer value, int length);
+
+	int bind(int fd, byte[] address, int addressLength);
+
+	NativeLong sendto(int fd, byte[] buffer, NativeLong length, int flags, byte[] address, int addressLength);
+
+	NativeLong recv(int fd, byte[] buffer, NativeLong length, int flags);
+
+	NativeLong recvmsg(int fd, MsgHdr message, int flags);
+
+	int close(int fd);
+
+	@Structure.FieldOrder({"name", "nameLength", "iov", "iovLength", "control", "controlLength", "flags"})
+	class MsgHdr extends Structure {
+		public Pointer name;
+		public int nameLength;
+		public Pointer iov;
+		public NativeLong iovLength;
+		public Pointer control;
+		public NativeLong controlLength;
+		public int flags;
+	}
+
+	@Structure.FieldOrder({"base", "length"})
+	class IoVec extends Structure {
+		public Pointer base;
+		public NativeLong length;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.core.net.LinuxLibC.IoVec;
+import net.azib.ipscan.core.net.LinuxLibC.MsgHdr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.azib.ipscan.core.net.LinuxLibC.*;
+
+/**
+ * Linux-only pinger, which sends real ICMP echo requests without root privileges,
+ * using ping sockets (SOCK_DGRAM + IPPROTO_ICMP), allowed for the groups in <tt>net.ipv4.ping_group_range</tt>.
+ * <p/>
+ * Requests to all hosts are sent through a single socket per address family,
+ * replies are matched to the requests by their sequence numbers by a single receiving thread.
+ */
+public class LinuxPinger implements Pinger {
+	private static final int ECHO_REQUEST = 8;
+	private static final int ECHO_REPLY = 0;
+	private static final int ECHO6_REQUEST = 128;
+	private static final int ECHO6_REPLY = 129;
+	private static final int ECHO_SIZE = 16;
+	/** How often the receiving thread checks whether the socket is closed */
+	private static final int RECEIVE_TIMEOUT_MS = 200;
+
+	private final int timeout;
+	private final ProbeRateLimiter rateLimiter;
+	private IcmpSocket socket4;
+	private IcmpSocket socket6;
+
+	public LinuxPinger(ScannerConfig config) throws IOException {
+		this(config, new ProbeRateLimiter(config));
+	}
+
+	public LinuxPinger(ScannerConfig config, ProbeRateLimiter rateLimiter) throws IOException {
+		this.timeout = config.pingTimeout;
+		this.rateLimiter = rateLimiter;
+		// fail early if ping sockets are not allowed
+		getSocket(false);
+	}
+
+	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		IcmpSocket socket = getSocket(subject.isIPv6());
+		PingResult result = new PingResult(subject.getAddress(), count);
+
+		List<Probe> probes = new ArrayList<>(count);
+		try {
+			for (int i = 0; i < count && rateLimiter.pace(); i++) {
+				probes.add(socket.send(subject.getAddress()));
+			}
+			// all requests are already sent, so they share the deadline
+			long deadline = System.nanoTime() + MILLISECONDS.toNanos(subject.getAdaptedPingTimeout(timeout));
+			for (Probe probe : probes) {
+				try {
+					int ttl = probe.get(max(0, deadline - System.nanoTime()), NANOSECONDS);
+					result.addReplyNanos(probe.getTime());
+					if (ttl > 0) result.setTTL(ttl);
+				}
+				catch (TimeoutException | ExecutionException | CancellationException ignore) {
+					// no reply
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// scanning is being killed
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			for (Probe probe : probes) socket.forget(probe);
+		}
+		return result;
+	}
+
+	private synchronized IcmpSocket getSocket(boolean ipv6) throws IOException {
+		if (ipv6) {
+			if (socket6 == null) socket6 = new IcmpSocket(true);
+			return socket6;
+		}
+		if (socket4 == null) socket4 = new IcmpSocket(false);
+		return socket4;
+	}
+
+	/**
+	 * Closes the sockets, new ones will be opened on demand.
+	 */
+	@Override public synchronized void close() {
+		if (socket4 != null) socket4.close();
+		if (socket6 != null) socket6.close();
+		socket4 = socket6 = null;
+	}
+
+	/**
+	 * A single echo request, completes with the TTL of the reply (0 if unknown).
+	 */
+	static class Probe extends CompletableFuture<Integer> {
+		private final InetAddress address;
+		private final int sequence;
+		private final long startTime = System.nanoTime();
+		private long endTime;
+
+		Probe(InetAddress address, int sequence) {
+			this.address = address;
+			this.sequence = sequence;
+		}
+
+		void replied(int ttl) {
+			endTime = System.nanoTime();
+			complete(ttl);
+		}
+
+		/**
+		 * @return round trip time in nanoseconds
+		 */
+		long getTime() {
+			return endTime - startTime;
+		}
+	}
+
+	/**
+	 * Ping socket of a single address family with its receiving thread.
+	 */
+	class IcmpSocket implements Closeable {
+		private final boolean ipv6;
+		private final int fd;
+		private final Map<Integer, Probe> pending = new ConcurrentHashMap<>();
+		private final AtomicInteger sequence = new AtomicInteger();
+		private volatile boolean closed;
+
+		IcmpSocket(boolean ipv6) throws IOException {
+			this.ipv6 = ipv6;
+			this.fd = dll.socket(ipv6 ? AF_INET6 : AF_INET, SOCK_DGRAM, ipv6 ? IPPROTO_ICMPV6 : IPPROTO_ICMP);
+			if (fd < 0) throw new IOException("Unable to open ICMP socket, error " + Native.getLastError() + ", check net.ipv4.ping_group_range");
+
+			Memory receiveTimeout = new Memory(NativeLong.SIZE * 2);
+			receiveTimeout.setNativeLong(0, new NativeLong(0));
+			receiveTimeout.setNativeLong(NativeLong.SIZE, new NativeLong(RECEIVE_TIMEOUT_MS * 1000));
+			dll.setsockopt(fd, SOL_SOCKET, SO_RCVTIMEO, receiveTimeout, (int) receiveTimeout.size());
+			// ask for TTL of replies
+			Memory enabled = new Memory(4);
+			enabled.setInt(0, 1);
+			dll.setsockopt(fd, ipv6 ? IPPROTO_IPV6 : SOL_IP, ipv6 ? IPV6_RECVHOPLIMIT : IP_RECVTTL, enabled, 4);
+
+			Thread receiver = new Thread(this::receive, LinuxPinger.class.getSimpleName() + (ipv6 ? "6" : ""));
+			receiver.setDaemon(true);
+			receiver.start();
+		}
+
+		Probe send(InetAddress address) {
+			Probe probe = new Probe(address, sequence.incrementAndGet() & 0xFFFF);
+			pending.put(probe.sequence, probe);
+
+			// identifier and checksum are filled in by the kernel
+			ByteBuffer packet = ByteBuffer.allocate(ECHO_SIZE);
+			packet.put((byte) (ipv6 ? ECHO6_REQUEST : ECHO_REQUEST)).put((byte) 0).putShort((short) 0).putShort((short) 0);
+			packet.putShort((short) probe.sequence).putLong(probe.startTime);
+			byte[] socketAddress = socketAddress(address);
+			if (dll.sendto(fd, packet.array(), new NativeLong(ECHO_SIZE), 0, socketAddress, socketAddress.length).longValue() < 0) {
+				// e.g. network is unreachable
+				forget(probe);
+				probe.completeExceptionally(new IOException("Unable to send ICMP, error " + Native.getLastError()));
+			}
+			return probe;
+		}
+
+		void forget(Probe probe) {
+			pending.remove(probe.sequence, probe);
+		}
+
+		private byte[] socketAddress(InetAddress address) {
+			ByteBuffer buffer = ByteBuffer.allocate(ipv6 ? 28 : 16).order(ByteOrder.nativeOrder());
+			buffer.putShort((short) (ipv6 ? AF_INET6 : AF_INET)).putShort((short) 0);
+			if (ipv6) {
+				buffer.putInt(0).put(address.getAddress()).putInt(((Inet6Address) address).getScopeId());
+			}
+			else buffer.put(address.getAddress());
+			return buffer.array();
+		}
+
+		private void receive() {
+			Memory data = new Memory(1500);
+			Memory control = new Memory(256);
+			Memory name = new Memory(32);
+			IoVec iov = new IoVec();
+			iov.base = data;
+			iov.length = new NativeLong(data.size());
+			iov.write();
+			MsgHdr message = new MsgHdr();
+			try {
+				while (!closed) {
+					message.name = name;
+					message.nameLength = (int) name.size();
+					message.iov = iov.getPointer();
+					message.iovLength = new NativeLong(1);
+					message.control = control;
+					message.controlLength = new NativeLong(control.size());
+					message.flags = 0;
+					// returns -1 on receive timeout
+					long length = dll.recvmsg(fd, message, 0).longValue();
+					if (length < 8 || (data.getByte(0) & 0xFF) != (ipv6 ? ECHO6_REPLY : ECHO_REPLY)) continue;
+
+					int sequence = ((data.getByte(6) & 0xFF) << 8) | (data.getByte(7) & 0xFF);
+					Probe probe = pending.get(sequence);
+					if (probe != null && probe.address.equals(sourceAddress(name)) && pending.remove(sequence, probe))
+						probe.replied(ttl(control, message.controlLength.longValue()));
+				}
+			}
+			finally {
+				dll.close(fd);
+				for (Probe probe : pending.values()) probe.cancel(false);
+			}
+		}
+
+		private InetAddress sourceAddress(Memory name) {
+			try {
+				return InetAddress.getByAddress(ipv6 ? name.getByteArray(8, 16) : name.getByteArray(4, 4));
+			}
+			catch (UnknownHostException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * @return TTL (hop limit for IPv6) from the control messages, 0 if not found
+		 */
+		private int ttl(Memory control, long length) {
+			int headerSize = NativeLong.SIZE + 8;
+			for (long offset = 0; offset + headerSize <= length; ) {
+				long cmsgLength = control.getNativeLong(offset).longValue();
+				int level = control.getInt(offset + NativeLong.SIZE);
+				int type = control.getInt(offset + NativeLong.SIZE + 4);
+				if (ipv6 ? level == IPPROTO_IPV6 && type == IPV6_HOPLIMIT : level == SOL_IP && type == IP_TTL)
+					return control.getInt(offset + headerSize);
+				if (cmsgLength < headerSize) break;
+				// control messages are aligned to the size of size_t
+				offset += (cmsgLength + NativeLong.SIZE - 1) & -NativeLong.SIZE;
+			}
+			return 0;
+		}
+
+		@Override public void close() {
+			// the receiving thread will close the socket after its receive timeout
+			closed = true;
+		}
+	}
+}
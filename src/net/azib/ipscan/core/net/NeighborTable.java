@@ -0,0 +1,284 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.core.net;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import net.azib.ipscan.config.LoggerFactory;
+import net.azib.ipscan.config.Platform;
+import net.azib.ipscan.fetchers.MACFetcher;
+
+import java.io.Closeable;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.core.net.LinuxLibC.*;
+
+/**
+ * Mirror of the Linux kernel neighbor table (ARP for IPv4 and NDP for IPv6), kept up to date via netlink:
+ * the whole table is dumped with RTM_GETNEIGH on start, then RTM_NEWNEIGH/RTM_DELNEIGH events are applied as they come.
+ * <p>
+ * The OS already knows the MAC addresses of the hosts it has talked to recently,
+ * so they can be looked up from memory or used as the list of hosts to scan without sweeping the whole network.
+ * On other platforms or if netlink is not available, the table is always empty.
+ */
+public class NeighborTable implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final int NLMSG_ERROR = 2;
+	static final int NLMSG_DONE = 3;
+	static final int RTM_NEWNEIGH = 28;
+	static final int RTM_DELNEIGH = 29;
+	static final int RTM_GETNEIGH = 30;
+	static final int RTMGRP_NEIGH = 4;
+	static final int NLM_F_REQUEST = 1;
+	static final int NLM_F_DUMP = 0x300;
+	static final int NDA_DST = 1;
+	static final int NDA_LLADDR = 2;
+	static final int NUD_REACHABLE = 0x02;
+	static final int NUD_STALE = 0x04;
+	static final int NUD_DELAY = 0x08;
+	static final int NUD_PROBE = 0x10;
+	static final int NUD_PERMANENT = 0x80;
+	/** States, in which the link layer address is known (incomplete, failed and noarp entries have none) */
+	static final int NUD_VALID = NUD_REACHABLE | NUD_STALE | NUD_DELAY | NUD_PROBE | NUD_PERMANENT;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int NDMSG_SIZE = 12;
+	/** How often the receiving thread checks whether the socket is closed */
+	private static final int RECEIVE_TIMEOUT_MS = 200;
+	private static final int DUMP_TIMEOUT_MS = 1000;
+
+	private final Map<InetAddress, String> macs = new ConcurrentHashMap<>();
+	private volatile Subscription subscription;
+	private boolean unavailable;
+
+	/**
+	 * Subscribes to the neighbor events and dumps the current table, if not done yet.
+	 * @return false if the table can't be obtained on this system
+	 */
+	public boolean start() {
+		Subscription subscription = this.subscription;
+		if (subscription == null) {
+			synchronized (this) {
+				if (this.subscription == null) {
+					if (unavailable || !Platform.LINUX || (this.subscription = Subscription.open(this)) == null) {
+						unavailable = true;
+						return false;
+					}
+				}
+				subscription = this.subscription;
+			}
+		}
+		try {
+			// lookups right after start should already see the existing entries
+			subscription.dumped.await(DUMP_TIMEOUT_MS, MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return true;
+	}
+
+	/**
+	 * @return MAC address in upper case, separated with colons, or null if the address is not a known neighbor
+	 */
+	public String getMAC(InetAddress address) {
+		return start() ? macs.get(address) : null;
+	}
+
+	/**
+	 * @return addresses of all neighbors with known MAC addresses, IPv4 first, in ascending order
+	 */
+	public List<InetAddress> getNeighbors() {
+		List<InetAddress> neighbors = new ArrayList<>();
+		if (start()) neighbors.addAll(macs.keySet());
+		neighbors.sort((a, b) -> {
+			byte[] bytesA = a.getAddress(), bytesB = b.getAddress();
+			return bytesA.length != bytesB.length ? bytesA.length - bytesB.length : Arrays.compareUnsigned(bytesA, bytesB);
+		});
+		return neighbors;
+	}
+
+	/**
+	 * Applies all netlink messages in the buffer to the table.
+	 * @return true if the end of the dump was reached
+	 */
+	boolean parse(ByteBuffer buffer) {
+		boolean done = false;
+		while (buffer.remaining() >= HEADER_SIZE) {
+			int start = buffer.position();
+			int length = buffer.getInt(start);
+			int type = buffer.getShort(start + 4) & 0xFFFF;
+			if (length < HEADER_SIZE || length > buffer.limit() - start) break;
+
+			if (type == NLMSG_DONE || type == NLMSG_ERROR) done = true;
+			else if ((type == RTM_NEWNEIGH || type == RTM_DELNEIGH) && length >= HEADER_SIZE + NDMSG_SIZE)
+				parseNeighbor(buffer, start + HEADER_SIZE, start + length, type == RTM_NEWNEIGH);
+
+			// messages are aligned to 4 bytes
+			buffer.position(Math.min(buffer.limit(), start + ((length + 3) & ~3)));
+		}
+		return done;
+	}
+
+	private void parseNeighbor(ByteBuffer buffer, int offset, int end, boolean added) {
+		int family = buffer.get(offset) & 0xFF;
+		int interfaceIndex = buffer.getInt(offset + 4);
+		int state = buffer.getShort(offset + 8) & 0xFFFF;
+
+		byte[] destination = null, linkLayerAddress = null;
+		for (int attr = offset + NDMSG_SIZE; attr + 4 <= end; ) {
+			int attrLength = buffer.getShort(attr) & 0xFFFF;
+			int attrType = buffer.getShort(attr + 2) & 0xFFFF;
+			if (attrLength < 4 || attr + attrLength > end) break;
+			byte[] value = new byte[attrLength - 4];
+			for (int i = 0; i < value.length; i++) value[i] = buffer.get(attr + 4 + i);
+			if (attrType == NDA_DST) destination = value;
+			else if (attrType == NDA_LLADDR) linkLayerAddress = value;
+			attr += (attrLength + 3) & ~3;
+		}
+
+		InetAddress address = toAddress(family, destination, interfaceIndex);
+		if (address == null) return;
+		if (added && (state & NUD_VALID) != 0 && linkLayerAddress != null && linkLayerAddress.length == 6)
+			macs.put(address, MACFetcher.bytesToMAC(linkLayerAddress));
+		else
+			macs.remove(address);
+	}
+
+	private static InetAddress toAddress(int family, byte[] bytes, int interfaceIndex) {
+		try {
+			if (family == AF_INET && bytes != null && bytes.length == 4)
+				return InetAddress.getByAddress(bytes);
+			if (family == AF_INET6 && bytes != null && bytes.length == 16) {
+				// link-local addresses are reachable only through the interface they were seen on
+				boolean linkLocal = bytes[0] == (byte) 0xFE && (bytes[1] & 0xC0) == 0x80;
+				return linkLocal ? Inet6Address.getByAddress(null, bytes, interfaceIndex) : InetAddress.getByAddress(bytes);
+			}
+		}
+		catch (UnknownHostException e) {
+			// wrong length, checked above
+		}
+		return null;
+	}
+
+	/**
+	 * Unsubscribes from the events, the table will be dumped again on the next lookup.
+	 */
+	@Override public synchronized void close() {
+		if (subscription != null) subscription.close();
+		subscription = null;
+		macs.clear();
+	}
+
+	/**
+	 * Netlink socket subscribed to the neighbor events with its receiving thread.
+	 */
+	static class Subscription implements Closeable {
+		private final NeighborTable table;
+		private final int fd;
+		private final CountDownLatch dumped = new CountDownLatch(1);
+		private volatile boolean closed;
+
+		private Subscription(NeighborTable table, int fd) {
+			this.table = table;
+			this.fd = fd;
+		}
+
+		/**
+		 * @return new subscription, which has already requested the dump, or null if netlink is not available
+		 */
+		static Subscription open(NeighborTable table) {
+			try {
+				int fd = dll.socket(AF_NETLINK, SOCK_RAW, NETLINK_ROUTE);
+				if (fd < 0) {
+					LOG.warning("Unable to open netlink socket, error " + Native.getLastError());
+					return null;
+				}
+				Memory receiveTimeout = new Memory(NativeLong.SIZE * 2);
+				receiveTimeout.setNativeLong(0, new NativeLong(0));
+				receiveTimeout.setNativeLong(NativeLong.SIZE, new NativeLong(RECEIVE_TIMEOUT_MS * 1000));
+				dll.setsockopt(fd, SOL_SOCKET, SO_RCVTIMEO, receiveTimeout, (int) receiveTimeout.size());
+
+				byte[] address = netlinkAddress(RTMGRP_NEIGH);
+				if (dll.bind(fd, address, address.length) < 0) {
+					LOG.warning("Unable to subscribe to neighbor events, error " + Native.getLastError());
+					dll.close(fd);
+					return null;
+				}
+
+				Subscription subscription = new Subscription(table, fd);
+				Thread receiver = new Thread(subscription::receive, NeighborTable.class.getSimpleName());
+				receiver.setDaemon(true);
+				receiver.start();
+				subscription.requestDump();
+				return subscription;
+			}
+			catch (LinkageError e) {
+				LOG.log(WARNING, "Netlink is not available", e);
+				return null;
+			}
+		}
+
+		private void requestDump() {
+			ByteBuffer request = ByteBuffer.allocate(HEADER_SIZE + NDMSG_SIZE).order(ByteOrder.nativeOrder());
+			request.putInt(HEADER_SIZE + NDMSG_SIZE).putShort((short) RTM_GETNEIGH).putShort((short) (NLM_F_REQUEST | NLM_F_DUMP));
+			// sequence and port id, then ndmsg with AF_UNSPEC family for both IPv4 and IPv6 neighbors
+			request.putInt(1).putInt(0);
+			byte[] kernel = netlinkAddress(0);
+			if (dll.sendto(fd, request.array(), new NativeLong(request.capacity()), 0, kernel, kernel.length).longValue() < 0) {
+				LOG.warning("Unable to dump neighbor table, error " + Native.getLastError());
+				dumped.countDown();
+			}
+		}
+
+		private static byte[] netlinkAddress(int groups) {
+			ByteBuffer address = ByteBuffer.allocate(12).order(ByteOrder.nativeOrder());
+			return address.putShort((short) AF_NETLINK).putShort((short) 0).putInt(0).putInt(groups).array();
+		}
+
+		private void receive() {
+			byte[] buffer = new byte[64 * 1024];
+			try {
+				while (!closed) {
+					// returns -1 on receive timeout
+					int length = (int) dll.recv(fd, buffer, new NativeLong(buffer.length), 0).longValue();
+					if (length > 0 && !closed) {
+						if (table.parse(ByteBuffer.wrap(buffer, 0, length).order(ByteOrder.nativeOrder())))
+							dumped.countDown();
+					}
+					else if (length < 0 && Native.getLastError() == ENOBUFS) {
+						// events were lost because of a burst, so dump everything again
+						requestDump();
+					}
+				}
+			}
+			finally {
+				dll.close(fd);
+				dumped.countDown();
+			}
+		}
+
+		@Override public void close() {
+			// the receiving thread will close the socket after its receive timeout
+			closed = true;
+		}
+	}
+}
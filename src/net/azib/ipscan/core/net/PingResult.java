@@ -7,8 +7,12 @@ package net.azib.ipscan.core.net;
 
 import java.net.InetAddress;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 /**
- * The result of pinging
+ * The result of pinging.
+ * Round trip times are kept in nanoseconds, so that sub-millisecond latencies of LANs can be told apart.
  *
  * @author Anton Keks
  */
@@ -17,7 +21,11 @@ public class PingResult {
 
 	private int ttl;
 	private long totalTime;
+	private long shortestTime = Long.MAX_VALUE;
 	private long longestTime;
+	private double totalSquaredTime;
+	private double jitter;
+	private long lastTime = -1;
 	private int packetCount;
 	private int replyCount;
 	private boolean timeoutAdaptationAllowed;
@@ -27,11 +35,45 @@ public class PingResult {
 		this.packetCount = packetCount;
 	}
 
+	/**
+	 * Restores the result from its summary, e.g. received from another process.
+	 * All times are in nanoseconds.
+	 */
+	public PingResult(InetAddress address, int packetCount, int replyCount, long shortestTime, long averageTime, long longestTime, long stdDev, long jitter) {
+		this(address, packetCount);
+		if (replyCount <= 0) return;
+		this.replyCount = replyCount;
+		this.shortestTime = shortestTime;
+		this.longestTime = longestTime;
+		this.totalTime = averageTime * replyCount;
+		// half a nanosecond more, so that the truncated square root gives the same standard deviation back
+		this.totalSquaredTime = replyCount * ((double) averageTime * averageTime + (stdDev + 0.5) * (stdDev + 0.5));
+		this.jitter = jitter;
+		this.timeoutAdaptationAllowed = replyCount > 2;
+	}
+
+	/**
+	 * @param time round trip time in milliseconds, for pingers that can't measure it more precisely
+	 */
 	public void addReply(long time) {
+		addReplyNanos(MILLISECONDS.toNanos(time));
+	}
+
+	/**
+	 * @param time round trip time in nanoseconds, measured with {@link System#nanoTime()}
+	 */
+	public void addReplyNanos(long time) {
 		replyCount++;
 		if (time > longestTime)
 			longestTime = time;
+		if (time < shortestTime)
+			shortestTime = time;
 		totalTime += time;
+		totalSquaredTime += (double) time * time;
+		// interarrival jitter estimator of RFC 3550, applied to consecutive round trip times
+		if (lastTime >= 0)
+			jitter += (Math.abs(time - lastTime) - jitter) / 16;
+		lastTime = time;
 		// this is for ports fetcher, etc
 		timeoutAdaptationAllowed = replyCount > 2;
 	}
@@ -44,12 +86,46 @@ public class PingResult {
 		this.ttl = ttl;
 	}
 	
+	/**
+	 * @return average round trip time in milliseconds, rounded down
+	 */
 	public int getAverageTime() {
-		return (int)(totalTime / replyCount);
+		return (int) NANOSECONDS.toMillis(getAverageTimeNanos());
 	}
 	
+	/**
+	 * @return longest round trip time in milliseconds, rounded up, so that it can be used for timeouts
+	 */
 	public int getLongestTime() {
-		return (int)longestTime;
+		return (int) NANOSECONDS.toMillis(longestTime + MILLISECONDS.toNanos(1) - 1);
+	}
+
+	public long getAverageTimeNanos() {
+		return totalTime / replyCount;
+	}
+
+	public long getShortestTimeNanos() {
+		return replyCount > 0 ? shortestTime : 0;
+	}
+
+	public long getLongestTimeNanos() {
+		return longestTime;
+	}
+
+	/**
+	 * @return standard deviation of round trip times in nanoseconds
+	 */
+	public long getStdDevNanos() {
+		if (replyCount == 0) return 0;
+		double average = (double) totalTime / replyCount;
+		return (long) Math.sqrt(Math.max(0, totalSquaredTime / replyCount - average * average));
+	}
+
+	/**
+	 * @return smoothed variation of consecutive round trip times in nanoseconds
+	 */
+	public long getJitterNanos() {
+		return (long) jitter;
 	}
 
 	public int getPacketLoss() {
@@ -90,6 +166,13 @@ public class PingResult {
 	PingResult merge(PingResult result) {
 		this.packetCount += result.packetCount;
 		this.replyCount += result.replyCount;
+		this.totalTime += result.totalTime;
+		this.totalSquaredTime += result.totalSquaredTime;
+		this.shortestTime = Math.min(shortestTime, result.shortestTime);
+		this.longestTime = Math.max(longestTime, result.longestTime);
+		this.jitter = Math.max(jitter, result.jitter);
+		if (ttl == 0) this.ttl = result.ttl;
+		this.timeoutAdaptationAllowed |= result.timeoutAdaptationAllowed;
 		return this;
 	}
 }
@@ -44,10 +44,16 @@ public class PingerRegistry {
 		if (Platform.WINDOWS)
 			pingers.put("pinger.windows", (Class<Pinger>) Class.forName(getClass().getPackage().getName() + ".WindowsPinger"));
 		pingers.put("pinger.udp", UDPPinger.class);
+		pingers.put("pinger.udp.async", AsyncUDPPinger.class);
 		pingers.put("pinger.tcp", TCPPinger.class);
+		pingers.put("pinger.tcp.async", AsyncTCPPinger.class);
 		pingers.put("pinger.combined", CombinedUnprivilegedPinger.class);
 		pingers.put("pinger.java", JavaPinger.class);
+		// not the first one, as it fails if ICMP sockets are not allowed for the user
+		if (Platform.LINUX)
+			pingers.put("pinger.linux", LinuxPinger.class);
 		pingers.put("pinger.arp", ARPPinger.class);
+		pingers.put(AutoPinger.ID, AutoPinger.class);
 	}
 
 	public String[] getRegisteredNames() {
@@ -69,6 +75,24 @@ public class PingerRegistry {
 		return mainPinger;
 	}
 
+	/**
+	 * Creates all the pingers, which can be used on this system, for calibration by {@link AutoPinger}
+	 */
+	Map<String, Pinger> createCandidates() {
+		Map<String, Pinger> candidates = new LinkedHashMap<>();
+		for (Map.Entry<String, Class<? extends Pinger>> pinger : pingers.entrySet()) {
+			if (pinger.getValue() == AutoPinger.class) continue;
+			try {
+				candidates.put(pinger.getKey(), createPinger(pinger.getValue(), scannerConfig.pingTimeout));
+			}
+			catch (RuntimeException e) {
+				// e.g. ICMP is not allowed for this user
+				LOG.fine("Skipping " + pinger.getKey() + ": " + e);
+			}
+		}
+		return candidates;
+	}
+
 	Pinger createPinger(String pingerName, int timeout) throws FetcherException {
 		return createPinger(pingers.get(pingerName), timeout);
 	}
@@ -7,6 +7,7 @@ package net.azib.ipscan.core.net;
 
 import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
 import net.azib.ipscan.core.ScanningSubject;
 
 import java.io.IOException;
@@ -29,20 +30,38 @@ public class TCPPinger implements Pinger {
 	private static final Logger LOG = LoggerFactory.getLogger();
 
 	// try different ports in sequence, starting with 80 (which is most probably not filtered)
-	private static final int[] PROBE_TCP_PORTS = {80, 7, 443, 139, 22};
+	static final int[] PROBE_TCP_PORTS = {80, 7, 443, 139, 22};
 
 	private int timeout;
+	private boolean concurrent;
+	private ProbeRateLimiter rateLimiter;
 
 	public TCPPinger(ScannerConfig config) {
+		this(config, new ProbeRateLimiter(config));
+	}
+
+	public TCPPinger(ScannerConfig config, ProbeRateLimiter rateLimiter) {
 		this.timeout = config.pingTimeout;
+		this.concurrent = config.concurrentPings;
+		this.rateLimiter = rateLimiter;
 	}
 
-	public PingResult ping(ScanningSubject subject, int count) {
+	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		if (concurrent && count > 1) {
+			// probe different ports at once, starting with the requested one, if it is available
+			int requestedPort = subject.isAnyPortRequested() ? subject.requestedPortsIterator().next() : -1;
+			PingResult result = ConcurrentProbes.ping(subject, count, subject.getAdaptedPingTimeout(timeout), rateLimiter,
+				(i, remaining) -> probe(subject, i == 0 && requestedPort >= 0 ? requestedPort : PROBE_TCP_PORTS[i % PROBE_TCP_PORTS.length], remaining));
+			// one positive result is enough for TCP
+			result.enableTimeoutAdaptation();
+			return result;
+		}
+
 		PingResult result = new PingResult(subject.getAddress(), count);
 		int workingPort = -1;
 
 		Socket socket;
-		for (int i = 0; i < count && !Thread.currentThread().isInterrupted(); i++) {
+		for (int i = 0; i < count && rateLimiter.pace(); i++) {
 			socket = new Socket();
 			// cycle through different ports until a working one is found
 			int probePort = workingPort >= 0 ? workingPort : PROBE_TCP_PORTS[i % PROBE_TCP_PORTS.length];
@@ -50,12 +69,13 @@ public class TCPPinger implements Pinger {
 			if (i == 0 && subject.isAnyPortRequested())
 				probePort = subject.requestedPortsIterator().next();
 
-			long startTime = System.currentTimeMillis();
+			long startTime = System.nanoTime();
 			try {
 				// set some optimization options
 				socket.setReuseAddress(true);
 				socket.setReceiveBufferSize(32);
-				int timeout = result.isTimeoutAdaptationAllowed() ? min(result.getLongestTime() * 2, this.timeout) : this.timeout;
+				int maxTimeout = subject.getAdaptedPingTimeout(this.timeout);
+				int timeout = result.isTimeoutAdaptationAllowed() ? min(result.getLongestTime() * 2, maxTimeout) : maxTimeout;
 				socket.connect(new InetSocketAddress(subject.getAddress(), probePort), timeout);
 				if (socket.isConnected()) {
 					// it worked - success
@@ -92,8 +112,29 @@ public class TCPPinger implements Pinger {
 		return result;
 	}
 
+	private long probe(ScanningSubject subject, int port, int timeout) {
+		Socket socket = new Socket();
+		long startTime = System.nanoTime();
+		try {
+			socket.setReuseAddress(true);
+			socket.setReceiveBufferSize(32);
+			socket.connect(new InetSocketAddress(subject.getAddress(), port), timeout);
+			return System.nanoTime() - startTime;
+		}
+		catch (SocketTimeoutException e) {
+			return -1;
+		}
+		catch (IOException e) {
+			// RST means that the host is alive
+			return AsyncConnector.resultOf(e) == ConnectResult.CLOSED ? System.nanoTime() - startTime : -1;
+		}
+		finally {
+			closeQuietly(socket);
+		}
+	}
+
 	private void success(PingResult result, long startTime) {
-		result.addReply(System.currentTimeMillis() - startTime);
+		result.addReplyNanos(System.nanoTime() - startTime);
 		// one positive result is enough for TCP 
 		result.enableTimeoutAdaptation();
 	}
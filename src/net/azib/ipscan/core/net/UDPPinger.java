@@ -7,6 +7,7 @@ package net.azib.ipscan.core.net;
 
 import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
 import net.azib.ipscan.core.ScanningSubject;
 
 import java.io.IOException;
@@ -25,26 +26,37 @@ import static net.azib.ipscan.util.IOUtils.closeQuietly;
 public class UDPPinger implements Pinger {
 	private static final Logger LOG = LoggerFactory.getLogger();
 
-	private static final int PROBE_UDP_PORT = 37381;
+	static final int PROBE_UDP_PORT = 37381;
 
 	private int timeout;
+	private boolean concurrent;
+	private ProbeRateLimiter rateLimiter;
 
 	public UDPPinger(ScannerConfig config) {
+		this(config, new ProbeRateLimiter(config));
+	}
+
+	public UDPPinger(ScannerConfig config, ProbeRateLimiter rateLimiter) {
 		this.timeout = config.pingTimeout;
+		this.concurrent = config.concurrentPings;
+		this.rateLimiter = rateLimiter;
 	}
 
 	public PingResult ping(ScanningSubject subject, int count) throws IOException {
+		if (concurrent && count > 1)
+			return ConcurrentProbes.ping(subject, count, subject.getAdaptedPingTimeout(timeout), rateLimiter, (i, remaining) -> probe(subject, remaining));
+
 		PingResult result = new PingResult(subject.getAddress(), count);
 
 		DatagramSocket socket = null;
 		try {
 			socket = new DatagramSocket();
-			socket.setSoTimeout(timeout);
+			socket.setSoTimeout(subject.getAdaptedPingTimeout(timeout));
 			socket.connect(subject.getAddress(), PROBE_UDP_PORT);
 
-			for (int i = 0; i < count && !Thread.currentThread().isInterrupted(); i++) {
+			for (int i = 0; i < count && rateLimiter.pace(); i++) {
 				byte[] payload = new byte[8];
-				long startTime = System.currentTimeMillis();
+				long startTime = System.nanoTime();
 				ByteBuffer.wrap(payload).putLong(startTime);
 				DatagramPacket packet = new DatagramPacket(payload, payload.length);
 				try {
@@ -52,7 +64,7 @@ public class UDPPinger implements Pinger {
 					socket.receive(packet);
 				}
 				catch (PortUnreachableException e) {
-					result.addReply(System.currentTimeMillis() - startTime);
+					result.addReplyNanos(System.nanoTime() - startTime);
 				}
 				catch (SocketTimeoutException ignore) {
 				}
@@ -78,4 +90,32 @@ public class UDPPinger implements Pinger {
 			closeQuietly(socket);
 		}
 	}
+
+	/**
+	 * Single probe with its own socket, so that the port unreachable error is not taken by another probe
+	 */
+	private long probe(ScanningSubject subject, int timeout) throws IOException {
+		try (DatagramSocket socket = new DatagramSocket()) {
+			socket.setSoTimeout(timeout);
+			socket.connect(subject.getAddress(), PROBE_UDP_PORT);
+			byte[] payload = new byte[8];
+			long startTime = System.nanoTime();
+			ByteBuffer.wrap(payload).putLong(startTime);
+			DatagramPacket packet = new DatagramPacket(payload, payload.length);
+			try {
+				socket.send(packet);
+				socket.receive(packet);
+			}
+			catch (PortUnreachableException e) {
+				return System.nanoTime() - startTime;
+			}
+			catch (SocketTimeoutException | NoRouteToHostException ignore) {
+				// no reply or the host is down
+			}
+			catch (IOException e) {
+				LOG.log(FINER, subject.toString(), e);
+			}
+			return -1;
+		}
+	}
 }
@@ -8,6 +8,7 @@ package net.azib.ipscan.core.net;
 import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.core.net.WinIpHlpDll.Icmp6EchoReply;
 import net.azib.ipscan.core.net.WinIpHlpDll.IcmpEchoReply;
@@ -17,7 +18,6 @@ import net.azib.ipscan.core.net.WinIpHlpDll.IpAddrByVal;
 import java.io.IOException;
 import java.util.Arrays;
 
-import static java.lang.Thread.currentThread;
 import static net.azib.ipscan.core.net.WinIpHlp.toIp6Addr;
 import static net.azib.ipscan.core.net.WinIpHlp.toIpAddr;
 import static net.azib.ipscan.core.net.WinIpHlpDll.dll;
@@ -33,10 +33,16 @@ import static net.azib.ipscan.core.net.WinIpHlpDll.dll;
  */
 public class WindowsPinger implements Pinger {
 	private int timeout;
+	private ProbeRateLimiter rateLimiter;
 	private Ip6SockAddrByRef anyIp6SourceAddr = new Ip6SockAddrByRef();
 
 	public WindowsPinger(ScannerConfig config) {
+		this(config, new ProbeRateLimiter(config));
+	}
+
+	public WindowsPinger(ScannerConfig config, ProbeRateLimiter rateLimiter) {
 		this.timeout = config.pingTimeout;
+		this.rateLimiter = rateLimiter;
 	}
 
 	public PingResult ping(ScanningSubject subject, int count) throws IOException {
@@ -57,9 +63,10 @@ public class WindowsPinger implements Pinger {
 		Pointer replyData = new Memory(replyDataSize);
 
 		PingResult result = new PingResult(subject.getAddress(), count);
+		int timeout = subject.getAdaptedPingTimeout(this.timeout);
 		try {
 			IpAddrByVal ipaddr = toIpAddr(subject.getAddress());
-			for (int i = 1; i <= count && !currentThread().isInterrupted(); i++) {
+			for (int i = 1; i <= count && rateLimiter.pace(); i++) {
 				int numReplies = dll.IcmpSendEcho(handle, ipaddr, sendData, (short) sendDataSize, null, replyData, replyDataSize, timeout);
 				IcmpEchoReply echoReply = new IcmpEchoReply(replyData);
 				if (numReplies > 0 && echoReply.status == 0 && Arrays.equals(echoReply.address.bytes, ipaddr.bytes)) {
@@ -85,9 +92,10 @@ public class WindowsPinger implements Pinger {
 		Pointer replyData = new Memory(replyDataSize);
 
 		PingResult result = new PingResult(subject.getAddress(), count);
+		int timeout = subject.getAdaptedPingTimeout(this.timeout);
 		try {
 			Ip6SockAddrByRef ipaddr = toIp6Addr(subject.getAddress());
-			for (int i = 1; i <= count && !currentThread().isInterrupted(); i++) {
+			for (int i = 1; i <= count && rateLimiter.pace(); i++) {
 				int numReplies = dll.Icmp6SendEcho2(handle, null, null, null, anyIp6SourceAddr, toIp6Addr(subject.getAddress()),
 						sendData, (short) sendDataSize, null, replyData, replyDataSize, timeout);
 				Icmp6EchoReply echoReply = new Icmp6EchoReply(replyData);
@@ -26,6 +26,10 @@ public class IntegerWithUnit implements Comparable<IntegerWithUnit> {
 	public int intValue() {
 		return value;
 	}
+
+	public String getUnitLabel() {
+		return unitLabel;
+	}
 	
 	public String toString() {
 		return value + Labels.getLabel("unit." + unitLabel);
@@ -5,6 +5,8 @@
  */
 package net.azib.ipscan.core.values;
 
+import net.azib.ipscan.core.PortSet;
+
 import java.util.Collection;
 
 /**
@@ -38,6 +40,34 @@ public class NumericRangeList implements Comparable<NumericRangeList> {
 		
 		this.displayAsRanges = displayAsRanges;
 	}
+
+	/**
+	 * Creates a new instance with the ports of the set, without boxing them.
+	 * @param displayAsRanges whether toString() outputs all number or their ranges
+	 */
+	public NumericRangeList(PortSet ports, boolean displayAsRanges) {
+		this(ports.toArray(), displayAsRanges);
+	}
+
+	/**
+	 * @param numbers sorted numbers, not copied
+	 * @param displayAsRanges whether toString() outputs all number or their ranges
+	 */
+	public NumericRangeList(int[] numbers, boolean displayAsRanges) {
+		this.numbers = numbers;
+		this.displayAsRanges = displayAsRanges;
+	}
+
+	/**
+	 * @return copy of the numbers
+	 */
+	public int[] getNumbers() {
+		return numbers.clone();
+	}
+
+	public boolean isDisplayAsRanges() {
+		return displayAsRanges;
+	}
 	
 	/**
 	 * Outputs nice, human-friendly numeric list, displayed either as ranges or fully
@@ -8,6 +8,7 @@ package net.azib.ipscan.feeders;
 import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.config.Version;
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.util.DNSCache;
 import net.azib.ipscan.util.InetAddressUtils;
 
 import java.io.*;
@@ -42,6 +43,8 @@ public class FileFeeder extends AbstractFeeder {
 	private Map<String, ScanningSubject> foundHosts;
 	private Iterator<ScanningSubject> foundIPAddressesIterator;
 	private Stream<NetworkInterface> networkInterfaces;
+	/** Lookups are not cached if null */
+	private final DNSCache cache;
 	
 	private int currentIndex;
 
@@ -50,6 +53,11 @@ public class FileFeeder extends AbstractFeeder {
 	}
 	
 	public FileFeeder() {
+		this((DNSCache) null);
+	}
+
+	private FileFeeder(DNSCache cache) {
+		this.cache = cache;
 		try {
 			networkInterfaces = NetworkInterface.networkInterfaces();
 		}
@@ -59,7 +67,11 @@ public class FileFeeder extends AbstractFeeder {
 	}
 	
 	public FileFeeder(String fileName) {
-		this();
+		this(fileName, null);
+	}
+
+	public FileFeeder(String fileName, DNSCache cache) {
+		this(cache);
 		try {
 			findHosts(new FileReader(fileName));
 		}
@@ -69,7 +81,11 @@ public class FileFeeder extends AbstractFeeder {
 	}
 
 	public FileFeeder(Reader reader) {
-		this();
+		this(reader, null);
+	}
+
+	public FileFeeder(Reader reader, DNSCache cache) {
+		this(cache);
 		findHosts(reader);
 	}
 
@@ -85,6 +101,30 @@ public class FileFeeder extends AbstractFeeder {
 		return sb.toString();
 	}
 
+	/**
+	 * Resolves host names through the {@link DNSCache}, if any, so that the same files can be rescanned without repeating the lookups.
+	 */
+	private InetAddress lookup(String host) throws UnknownHostException {
+		// IP addresses end with a digit, unlike host names with their top-level domains
+		if (cache == null || Character.isDigit(host.charAt(host.length() - 1))) return InetAddress.getByName(host);
+
+		String key = "A " + host;
+		DNSCache.Entry<InetAddress> cached = cache.get(key);
+		if (cached != null) {
+			if (cached.value == null) throw new UnknownHostException(host);
+			return cached.value;
+		}
+		try {
+			InetAddress address = InetAddress.getByName(host);
+			cache.put(key, address, DNSCache.DEFAULT_TTL);
+			return address;
+		}
+		catch (UnknownHostException e) {
+			cache.put(key, null, DNSCache.DEFAULT_TTL);
+			throw e;
+		}
+	}
+
 	private void findHosts(Reader reader) {
 		currentIndex = 0;
 		foundHosts = new LinkedHashMap<>();
@@ -101,7 +141,7 @@ public class FileFeeder extends AbstractFeeder {
 						if (host.equals(Version.OWN_HOST)) continue;
 						ScanningSubject subject = foundHosts.get(host);
 						if (subject == null) {
-							InetAddress address = InetAddress.getByName(host);
+							InetAddress address = lookup(host);
 							subject = new ScanningSubject(address, InetAddressUtils.getInterface(address, networkInterfaces));
 						}
 						
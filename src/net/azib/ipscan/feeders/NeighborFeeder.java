@@ -0,0 +1,58 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.feeders;
+
+import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.core.net.NeighborTable;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * Passive discovery feeder: takes the hosts that the OS already knows from its neighbor (ARP/NDP) table,
+ * so that a LAN inventory can start from the hosts known to be present instead of sweeping every address.
+ */
+public class NeighborFeeder extends AbstractFeeder {
+	private List<InetAddress> addresses;
+	private int index;
+
+	@Override public String getId() {
+		return "feeder.neighbors";
+	}
+
+	public NeighborFeeder() {
+	}
+
+	public NeighborFeeder(NeighborTable neighborTable) {
+		if (!neighborTable.start())
+			throw new FeederException("neighbors.unavailable");
+		this.addresses = neighborTable.getNeighbors();
+		if (addresses.isEmpty())
+			throw new FeederException("neighbors.nothingFound");
+		initInterfaces(addresses.get(0));
+	}
+
+	@Override public boolean hasNext() {
+		return index < addresses.size();
+	}
+
+	@Override public ScanningSubject next() {
+		return subject(addresses.get(index++));
+	}
+
+	@Override public int percentageComplete() {
+		return index * 100 / addresses.size();
+	}
+
+	@Override public boolean isLocalNetwork() {
+		// neighbors are on the LAN by definition
+		return true;
+	}
+
+	@Override public String getInfo() {
+		return addresses == null ? "" : String.valueOf(addresses.size());
+	}
+}
@@ -0,0 +1,182 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.fetchers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Snapshot of the kernel neighbor table (<tt>/proc/net/arp</tt>), shared by all the lookups of a scan.
+ * The table is parsed once into a map keyed by the IPv4 address as int, then all lookups are served from memory.
+ * <p>
+ * The snapshot is re-read after {@link #REFRESH_MS}, or earlier if a lookup misses, because the entry may have been
+ * just added by an ARP request triggered by pinging. Reads after misses are limited to one per {@link #MISS_REFRESH_MS},
+ * so concurrent threads don't parse the whole table for each dead host.
+ */
+class ARPTable {
+	static final Path PROC_NET_ARP = Path.of("/proc/net/arp");
+	static final long REFRESH_MS = 5000;
+	static final long MISS_REFRESH_MS = 100;
+
+	private final Path file;
+	private final long refreshNanos;
+	private final long missRefreshNanos;
+	private volatile Snapshot snapshot;
+
+	ARPTable() {
+		this(PROC_NET_ARP, REFRESH_MS, MISS_REFRESH_MS);
+	}
+
+	ARPTable(Path file, long refreshMs, long missRefreshMs) {
+		this.file = file;
+		this.refreshNanos = MILLISECONDS.toNanos(refreshMs);
+		this.missRefreshNanos = MILLISECONDS.toNanos(missRefreshMs);
+	}
+
+	/**
+	 * @return MAC address in upper case, separated with colons, or null if the table has no complete entry for the address
+	 */
+	String get(InetAddress address) {
+		// ARP is only for IPv4
+		if (!(address instanceof Inet4Address)) return null;
+		int ip = toInt(address.getAddress());
+
+		Snapshot snapshot = fresh(refreshNanos);
+		String mac = snapshot.get(ip);
+		if (mac == null) {
+			snapshot = fresh(missRefreshNanos);
+			mac = snapshot.get(ip);
+		}
+		return mac;
+	}
+
+	/**
+	 * Forces the table to be re-read on the next lookup, e.g. when a new scan is started.
+	 */
+	void invalidate() {
+		snapshot = null;
+	}
+
+	private Snapshot fresh(long maxAgeNanos) {
+		Snapshot snapshot = this.snapshot;
+		if (snapshot != null && System.nanoTime() - snapshot.time < maxAgeNanos) return snapshot;
+		synchronized (this) {
+			// another thread may have already re-read it while this one was waiting
+			snapshot = this.snapshot;
+			if (snapshot == null || System.nanoTime() - snapshot.time >= maxAgeNanos)
+				this.snapshot = snapshot = read();
+			return snapshot;
+		}
+	}
+
+	private Snapshot read() {
+		Snapshot snapshot = new Snapshot(System.nanoTime());
+		try (BufferedReader reader = Files.newBufferedReader(file)) {
+			// skip the header
+			String line = reader.readLine();
+			while ((line = reader.readLine()) != null) {
+				// IP address, HW type, Flags, HW address, Mask, Device
+				String[] columns = line.trim().split("\\s+");
+				if (columns.length < 4) continue;
+				// zero flags mean an incomplete entry, without a MAC
+				if (columns[2].equals("0x0")) continue;
+				int ip = parseIPv4(columns[0]);
+				if (ip != 0) snapshot.put(ip, columns[3].toUpperCase());
+			}
+		}
+		catch (IOException e) {
+			// no table, e.g. not Linux: everything is a miss
+		}
+		return snapshot;
+	}
+
+	static int toInt(byte[] address) {
+		return (address[0] & 0xFF) << 24 | (address[1] & 0xFF) << 16 | (address[2] & 0xFF) << 8 | (address[3] & 0xFF);
+	}
+
+	/**
+	 * @return the address as int or 0 if it is not a dotted IPv4 address (0.0.0.0 is never a neighbor)
+	 */
+	static int parseIPv4(String s) {
+		int ip = 0, octet = 0, octets = 0, digits = 0;
+		for (int i = 0; i <= s.length(); i++) {
+			char c = i < s.length() ? s.charAt(i) : '.';
+			if (c == '.') {
+				if (digits == 0 || octet > 255) return 0;
+				ip = ip << 8 | octet;
+				octet = digits = 0;
+				octets++;
+			}
+			else if (c >= '0' && c <= '9' && digits < 3) {
+				octet = octet * 10 + c - '0';
+				digits++;
+			}
+			else return 0;
+		}
+		return octets == 4 ? ip : 0;
+	}
+
+	/**
+	 * Open addressing int to String hash map, without boxing of the keys.
+	 * Zero key marks an empty slot. Filled by a single thread before it is published, read-only afterwards.
+	 */
+	static class Snapshot {
+		private final long time;
+		private int[] keys = new int[64];
+		private String[] values = new String[64];
+		private int size;
+
+		Snapshot(long time) {
+			this.time = time;
+		}
+
+		String get(int key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+				if (keys[i] == key) return values[i];
+			}
+			return null;
+		}
+
+		void put(int key, String value) {
+			// keep the load factor below 1/2
+			if ((size + 1) * 2 > keys.length) grow();
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+			if (keys[i] == 0) size++;
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		int size() {
+			return size;
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			String[] oldValues = values;
+			keys = new int[oldKeys.length * 2];
+			values = new String[oldValues.length * 2];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+			}
+		}
+
+		private static int hash(int key) {
+			// addresses of a LAN differ only in the last bits
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
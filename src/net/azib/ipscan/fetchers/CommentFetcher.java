@@ -7,6 +7,10 @@ package net.azib.ipscan.fetchers;
 import net.azib.ipscan.config.CommentsConfig;
 import net.azib.ipscan.core.ScanningSubject;
 
+import java.util.Collection;
+
+import static java.util.Arrays.asList;
+
 /**
  * A fetcher for displaying of user-defined comments about every IP address.
  * 
@@ -25,6 +29,11 @@ public class CommentFetcher extends AbstractFetcher {
 		return ID;
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return asList(PingFetcher.class, MACFetcher.class);
+	}
+
 	public Object scan(ScanningSubject subject) {
 		String mac = (String) subject.getParameter(MACFetcher.ID);
 		return commentsConfig.getComment(subject.getAddress(), mac);
@@ -10,6 +10,8 @@ import net.azib.ipscan.core.values.NotAvailable;
 import net.azib.ipscan.core.values.NotScanned;
 import net.azib.ipscan.feeders.Feeder;
 
+import java.util.Collection;
+
 /**
  * Interface of all IP Fetchers.
  * 
@@ -52,6 +54,16 @@ public interface Fetcher extends Cloneable, Plugin {
 	 */
 	Object scan(ScanningSubject subject);
 
+	/**
+	 * Fetchers of the same subject may run concurrently, unless they depend on each other's results
+	 * (usually shared via {@link ScanningSubject} parameters).
+	 * @return types of fetchers that must complete before this one, if selected before it in the list,
+	 * or null if all the preceding fetchers must complete (the safe default)
+	 */
+	default Collection<Class<? extends Fetcher>> getDependencies() {
+		return null;
+	}
+
 	/**
 	 * Called before scanning has started to do any initialization stuff
 	 */
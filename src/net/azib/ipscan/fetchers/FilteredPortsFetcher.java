@@ -6,12 +6,15 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
+import net.azib.ipscan.core.PortSet;
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.RTTEstimator;
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.core.net.AsyncConnector;
 import net.azib.ipscan.core.values.NotScanned;
 import net.azib.ipscan.core.values.NumericRangeList;
 
-import java.util.SortedSet;
-
 /**
  * FilteredPortsFetcher uses the scanning results of PortsFetcher to display filtered ports.
  *
@@ -23,6 +26,10 @@ public class FilteredPortsFetcher extends PortsFetcher {
 		super(scannerConfig);
 	}
 
+	public FilteredPortsFetcher(ScannerConfig scannerConfig, AsyncConnector connector, ProbeRateLimiter rateLimiter, ConcurrencyController concurrencyController, RTTEstimator rttEstimator) {
+		super(scannerConfig, connector, rateLimiter, concurrencyController, rttEstimator);
+	}
+
 	public String getId() {
 		return "fetcher.ports.filtered";
 	}
@@ -32,7 +39,7 @@ public class FilteredPortsFetcher extends PortsFetcher {
 		if (!portsScanned)
 			return NotScanned.VALUE;
 
-		SortedSet<Integer> filteredPorts = getFilteredPorts(subject);
-		return filteredPorts.size() > 0 ? new NumericRangeList(filteredPorts, displayAsRanges) : null;
+		PortSet filteredPorts = getFilteredPorts(subject);
+		return !filteredPorts.isEmpty() ? new NumericRangeList(filteredPorts, displayAsRanges) : null;
 	}
 }
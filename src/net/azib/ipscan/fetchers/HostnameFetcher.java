@@ -6,9 +6,13 @@ package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.util.DNSCache;
+import net.azib.ipscan.util.DNSResolver;
 import net.azib.ipscan.util.MDNSResolver;
 import net.azib.ipscan.util.NetBIOSResolver;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -16,12 +20,17 @@ import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.Collection;
 import java.util.logging.Logger;
 
+import static java.util.Collections.singleton;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.WARNING;
 
 /**
  * HostnameFetcher retrieves hostnames of IP addresses by reverse DNS lookups.
+ * Lookups are done by the built-in {@link DNSResolver} if name servers are known, otherwise by the OS.
+ * Results are kept in the {@link DNSCache}, so rescans don't repeat them.
  * 
  * @author Anton Keks
  */
@@ -46,12 +55,70 @@ public class HostnameFetcher extends AbstractFetcher {
 
 	public static final String ID = "fetcher.hostname";
 
-	public HostnameFetcher() {}
+	private final DNSResolver resolver;
+	private final NetBIOSResolver netbiosResolver;
+	private final DNSCache cache;
+	/** Shared by all threads of a scan */
+	private volatile MDNSResolver mdnsResolver;
+
+	public HostnameFetcher() {
+		this(null, null, null);
+	}
+
+	public HostnameFetcher(DNSResolver resolver, NetBIOSResolver netbiosResolver, DNSCache cache) {
+		this.resolver = resolver;
+		this.netbiosResolver = netbiosResolver;
+		this.cache = cache;
+	}
 
 	public String getId() {
 		return ID;
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return singleton(PingFetcher.class);
+	}
+
+	private String resolveWithDNS(InetAddress ip) {
+		String key = "PTR " + ip.getHostAddress();
+		if (cache != null) {
+			DNSCache.Entry<String> cached = cache.get(key);
+			if (cached != null) return cached.value;
+		}
+
+		if (resolver != null && resolver.isAvailable()) {
+			try {
+				DNSResolver.Answer answer = resolver.lookup(ip);
+				String name = answer.name;
+				int ttl = answer.ttl;
+				if (name == null) {
+					// the name can still be known to the OS, e.g. from the hosts file
+					name = resolveWithRegularDNS(ip);
+					if (name != null) ttl = DNSCache.DEFAULT_TTL;
+				}
+				if (cache != null) cache.put(key, name, ttl);
+				return name;
+			}
+			catch (SocketTimeoutException e) {
+				// the name server doesn't respond, but the name can still be known to the OS
+				LOG.log(FINE, "No response from name servers for " + ip);
+			}
+			catch (InterruptedIOException e) {
+				// scanning is being stopped
+				if (Thread.currentThread().isInterrupted()) return null;
+			}
+			catch (IOException e) {
+				// e.g. the name server has failed, the OS may know better
+				LOG.log(FINE, "DNS client failed for " + ip, e);
+			}
+		}
+
+		String name = resolveWithRegularDNS(ip);
+		if (cache != null) cache.put(key, name, DNSCache.DEFAULT_TTL);
+		return name;
+	}
+
 	@SuppressWarnings("PrimitiveArrayArgumentToVariableArgMethod")
 	private String resolveWithRegularDNS(InetAddress ip) {
 		try {
@@ -69,13 +136,12 @@ public class HostnameFetcher extends AbstractFetcher {
 	}
 
 	private String resolveWithMulticastDNS(ScanningSubject subject) {
+		MDNSResolver resolver = mdnsResolver;
+		if (resolver == null) return null;
 		try {
-			MDNSResolver resolver = new MDNSResolver(subject.getAdaptedPortTimeout());
-			String name = resolver.resolve(subject.getAddress());
-			resolver.close();
-			return name;
+			return resolver.resolve(subject.getAddress(), subject.getAdaptedPortTimeout());
 		}
-		catch (SocketTimeoutException | SocketException e) {
+		catch (InterruptedIOException | SocketException e) {
 			return null;
 		}
 		catch (Exception e) {
@@ -85,13 +151,12 @@ public class HostnameFetcher extends AbstractFetcher {
 	}
 
 	private String resolveWithNetBIOS(ScanningSubject subject) {
+		if (netbiosResolver == null) return null;
 		try {
-			NetBIOSResolver resolver = new NetBIOSResolver(subject.getAdaptedPortTimeout());
-			String[] names = resolver.resolve(subject.getAddress());
-			resolver.close();
+			String[] names = NetBIOSInfoFetcher.resolveNames(netbiosResolver, subject);
 			return names == null ? null : names[0];
 		}
-		catch (SocketTimeoutException | SocketException e) {
+		catch (SocketException e) {
 			return null;
 		}
 		catch (Exception e) {
@@ -101,9 +166,22 @@ public class HostnameFetcher extends AbstractFetcher {
 	}
 
 	public Object scan(ScanningSubject subject) {
-		String name = resolveWithRegularDNS(subject.getAddress());
+		String name = resolveWithDNS(subject.getAddress());
 		if (name == null && subject.isLocal()) name = resolveWithMulticastDNS(subject);
 		if (name == null && subject.isLocal()) name = resolveWithNetBIOS(subject);
 		return name;
 	}
+
+	@Override public void init() {
+		if (mdnsResolver == null) mdnsResolver = new MDNSResolver();
+	}
+
+	@Override public void cleanup() {
+		if (mdnsResolver != null) {
+			mdnsResolver.close();
+			mdnsResolver = null;
+		}
+		if (netbiosResolver != null) netbiosResolver.close();
+		if (cache != null) LOG.info(cache.toString());
+	}
 }
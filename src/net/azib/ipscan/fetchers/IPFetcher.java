@@ -7,6 +7,10 @@ package net.azib.ipscan.fetchers;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.core.values.InetAddressHolder;
 
+import java.util.Collection;
+
+import static java.util.Collections.singleton;
+
 /**
  * Dummy fetcher, which is able to return the textual representation 
  * of the passed IP address.
@@ -22,6 +26,11 @@ public class IPFetcher extends AbstractFetcher {
 		return ID;
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return singleton(PingFetcher.class);
+	}
+
 	public Object scan(ScanningSubject subject) {
 		return new InetAddressHolder(subject.getAddress());
 	}
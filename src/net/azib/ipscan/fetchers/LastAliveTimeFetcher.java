@@ -8,6 +8,10 @@ package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.core.ScanningSubject;
 
+import java.util.Collection;
+
+import static java.util.Collections.singleton;
+
 /**
  * LastAliveTimeFetcher
  *
@@ -22,6 +26,11 @@ public class LastAliveTimeFetcher extends AbstractFetcher {
 		return null;
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return singleton(PingFetcher.class);
+	}
+
 	public Object scan(ScanningSubject subject) {
 		// TODO Auto-generated method stub
 		return null;
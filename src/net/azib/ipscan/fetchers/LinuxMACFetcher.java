@@ -1,40 +1,40 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.core.ScanningSubject;
-
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.stream.Stream;
+import net.azib.ipscan.core.net.NeighborTable;
+import net.azib.ipscan.feeders.Feeder;
 
 import static net.azib.ipscan.fetchers.UnixMACFetcher.getLocalMAC;
 
 public class LinuxMACFetcher extends MACFetcher {
-	private static final Path ARP_TABLE = Path.of("/proc/net/arp");
-	private int flagsIndex;
-	private int macIndex;
-	private int macLength = 17;
+	private final NeighborTable neighborTable;
+	private final ARPTable arpTable;
 
 	public LinuxMACFetcher() {
-		String line = arpLines().findFirst().get();
-		flagsIndex = line.indexOf("Flags");
-		macIndex = line.indexOf("HW addr");
+		this(new NeighborTable());
 	}
 
-	private static Stream<String> arpLines() {
-		try {
-			return Files.lines(ARP_TABLE);
-		} catch (Exception e) {
-			return Stream.empty();
-		}
+	public LinuxMACFetcher(NeighborTable neighborTable) {
+		this(neighborTable, new ARPTable());
+	}
+
+	LinuxMACFetcher(NeighborTable neighborTable, ARPTable arpTable) {
+		this.neighborTable = neighborTable;
+		this.arpTable = arpTable;
+	}
+
+	@Override public void init(Feeder feeder) {
+		// don't serve entries left from the previous scan
+		arpTable.invalidate();
 	}
 
 	@Override public String resolveMAC(ScanningSubject subject) {
 		try {
-			String ip = subject.getAddress().getHostAddress();
-			return arpLines()
-				.filter(line -> line.startsWith(ip + " ") && !line.substring(flagsIndex, flagsIndex + 3).equals("0x0")).findFirst()
-				.map(line -> line.substring(macIndex, macIndex + macLength).toUpperCase())
-				.orElse(getLocalMAC(subject));
+			// the neighbor table is kept up to date by netlink events and covers IPv6 as well
+			String mac = neighborTable.getMAC(subject.getAddress());
+			// the event about an entry just added by pinging may not be received yet
+			if (mac == null) mac = arpTable.get(subject.getAddress());
+			return mac != null ? mac : getLocalMAC(subject);
 		}
 		catch (Exception e) {
 			return null;
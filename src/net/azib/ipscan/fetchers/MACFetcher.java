@@ -3,9 +3,12 @@ package net.azib.ipscan.fetchers;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.gui.fetchers.MACFetcherPrefs;
 
+import java.util.Collection;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static java.util.Collections.singleton;
+
 public abstract class MACFetcher extends AbstractFetcher {
 	public static final String ID = "fetcher.mac";
 	static final Pattern macAddressPattern = Pattern.compile("([a-fA-F0-9]{1,2}[-:]){5}[a-fA-F0-9]{1,2}");
@@ -16,6 +19,11 @@ public abstract class MACFetcher extends AbstractFetcher {
 		return ID;
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return singleton(PingFetcher.class);
+	}
+
 	@Override public final String scan(ScanningSubject subject) {
 		String mac = (String) subject.getParameter(ID);
 		if (mac == null) mac = resolveMAC(subject);
@@ -25,7 +33,7 @@ public abstract class MACFetcher extends AbstractFetcher {
 
 	protected abstract String resolveMAC(ScanningSubject subject);
 
-	static String bytesToMAC(byte[] bytes) {
+	public static String bytesToMAC(byte[] bytes) {
 		StringBuilder mac = new StringBuilder();
 		for (byte b : bytes) mac.append(String.format("%02X", b)).append(":");
 		if (mac.length() > 0) mac.deleteCharAt(mac.length()-1);
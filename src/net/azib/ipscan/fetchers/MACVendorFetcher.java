@@ -5,9 +5,12 @@ import net.azib.ipscan.core.ScanningSubject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import static java.util.Arrays.asList;
+
 public class MACVendorFetcher extends AbstractFetcher {
 	public static final String ID = "fetcher.mac.vendor";
 	private static Map<String, String> vendors = new HashMap<>();
@@ -36,6 +39,11 @@ public class MACVendorFetcher extends AbstractFetcher {
 		}
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return asList(PingFetcher.class, MACFetcher.class);
+	}
+
 	@Override
 	public Object scan(ScanningSubject subject) {
 		String mac = (String)subject.getParameter(MACFetcher.ID);
@@ -10,30 +10,78 @@ import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.util.NetBIOSResolver;
 
+import java.io.IOException;
 import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
+import static java.util.Collections.singleton;
 import static java.util.logging.Level.WARNING;
 
 /**
  * NetBIOSInfoFetcher - gathers NetBIOS info about Windows machines.
  * Provided for feature-compatibility with version 2.x
+ * <p>
+ * The names are requested once per host and shared with {@link HostnameFetcher}.
  *
  * @author Anton Keks
  */
 public class NetBIOSInfoFetcher extends AbstractFetcher {
-	public NetBIOSInfoFetcher() {}
-
 	private static final Logger LOG = LoggerFactory.getLogger();
 
+	/** Subject parameter with the pending or completed lookup, for fetchers to share */
+	static final String PARAMETER_NETBIOS_NAMES = "netbios";
+
+	private final NetBIOSResolver resolver;
+
+	public NetBIOSInfoFetcher() {
+		this(new NetBIOSResolver());
+	}
+
+	public NetBIOSInfoFetcher(NetBIOSResolver resolver) {
+		this.resolver = resolver;
+	}
+
 	public String getId() {
 		return "fetcher.netbios";
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return singleton(PingFetcher.class);
+	}
+
+	/**
+	 * @return computer name, user name, group name and MAC address, or null if the host hasn't replied
+	 */
+	@SuppressWarnings("unchecked")
+	static String[] resolveNames(NetBIOSResolver resolver, ScanningSubject subject) throws IOException {
+		CompletableFuture<String[]> names;
+		synchronized (subject) {
+			names = (CompletableFuture<String[]>) subject.getParameter(PARAMETER_NETBIOS_NAMES);
+			if (names == null) {
+				names = resolver.resolveAsync(subject.getAddress(), subject.getAdaptedPortTimeout());
+				subject.setParameter(PARAMETER_NETBIOS_NAMES, names);
+			}
+		}
+		try {
+			return names.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
 	public Object scan(ScanningSubject subject) {
-		try (NetBIOSResolver netbios = new NetBIOSResolver(subject.getAdaptedPortTimeout())) {
-			String[] names = netbios.resolve(subject.getAddress());
+		try {
+			String[] names = resolveNames(resolver, subject);
 			if (names == null) return null;
 
 			String computerName = names[0];
@@ -45,12 +93,8 @@ public class NetBIOSInfoFetcher extends AbstractFetcher {
 					(userName != null ? userName + "@" : "") +
 					(computerName != null ? computerName + ' ' : "") + '[' + macAddress + ']';
 		}
-		catch (SocketTimeoutException e) {
-			// this is not a derivative of SocketException
-			return null;
-		}
 		catch (SocketException e) {
-			// this includes PortUnreachableException
+			// e.g. network is unreachable
 			return null;
 		}
 		catch (Exception e) {
@@ -59,4 +103,8 @@ public class NetBIOSInfoFetcher extends AbstractFetcher {
 			return null;
 		}
 	}
+
+	@Override public void cleanup() {
+		resolver.close();
+	}
 }
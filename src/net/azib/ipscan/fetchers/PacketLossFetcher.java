@@ -1,6 +1,8 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
+import net.azib.ipscan.core.RTTEstimator;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.core.net.PingResult;
 import net.azib.ipscan.core.net.PingerRegistry;
@@ -20,6 +22,10 @@ public class PacketLossFetcher extends PingFetcher {
 		super(pingerRegistry, scannerConfig);
 	}
 
+	public PacketLossFetcher(PingerRegistry pingerRegistry, ScannerConfig scannerConfig, ConcurrencyController concurrencyController, RTTEstimator rttEstimator) {
+		super(pingerRegistry, scannerConfig, concurrencyController, rttEstimator);
+	}
+
 	public String getId() {
 		return "fetcher.packetloss";
 	}
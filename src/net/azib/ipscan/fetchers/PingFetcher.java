@@ -6,6 +6,8 @@ package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
+import net.azib.ipscan.core.RTTEstimator;
 import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.core.net.PingResult;
@@ -41,10 +43,18 @@ public class PingFetcher extends AbstractFetcher {
 
 	/** The registry used for creation of Pinger instances */
 	private PingerRegistry pingerRegistry;
+	private ConcurrencyController concurrencyController;
+	private RTTEstimator rttEstimator;
 	
 	public PingFetcher(PingerRegistry pingerRegistry, ScannerConfig scannerConfig) {
+		this(pingerRegistry, scannerConfig, null, null);
+	}
+
+	public PingFetcher(PingerRegistry pingerRegistry, ScannerConfig scannerConfig, ConcurrencyController concurrencyController, RTTEstimator rttEstimator) {
 		this.pingerRegistry = pingerRegistry;
 		this.config = scannerConfig;
+		this.concurrencyController = concurrencyController;
+		this.rttEstimator = rttEstimator;
 	}
 
 	public String getId() {
@@ -70,6 +80,12 @@ public class PingFetcher extends AbstractFetcher {
 			// return an empty ping result
 			result = new PingResult(subject.getAddress(), 0);
 		}
+		// lost replies of an alive host may mean congestion, dead hosts tell nothing
+		if (concurrencyController != null && result.isAlive())
+			concurrencyController.record(result.getReplyCount(), result.getPacketLoss(), 0);
+		// the latency of the subnet will shorten timeouts for the rest of its hosts
+		if (rttEstimator != null && result.isAlive())
+			rttEstimator.sample(subject.getAddress(), result.getAverageTime());
 		// remember the result for other fetchers to use
 		subject.setParameter(PARAMETER_PING_RESULT, result);
 		return result;
@@ -5,6 +5,8 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
+import net.azib.ipscan.core.RTTEstimator;
 import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.core.net.PingResult;
@@ -22,6 +24,10 @@ public class PingTTLFetcher extends PingFetcher {
 		super(pingerRegistry, scannerConfig);
 	}
 
+	public PingTTLFetcher(PingerRegistry pingerRegistry, ScannerConfig scannerConfig, ConcurrencyController concurrencyController, RTTEstimator rttEstimator) {
+		super(pingerRegistry, scannerConfig, concurrencyController, rttEstimator);
+	}
+
 	public String getId() {
 		return "fetcher.ping.ttl";
 	}
@@ -7,6 +7,7 @@ package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.LoggerFactory;
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.PortSet;
 import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.core.ScanningSubject;
 import net.azib.ipscan.gui.fetchers.PortTextFetcherPrefs;
@@ -15,15 +16,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.*;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static java.lang.Thread.currentThread;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 import static net.azib.ipscan.fetchers.PortsFetcher.PARAMETER_OPEN_PORTS;
 
@@ -98,10 +99,9 @@ public abstract class PortTextFetcher extends AbstractFetcher {
 
 	private Iterator<Integer> getPortIterator(ScanningSubject subject) {
 		if (scanOpenPorts) {
-			@SuppressWarnings("unchecked")
-			SortedSet<Integer> openPorts = (SortedSet<Integer>) subject.getParameter(PARAMETER_OPEN_PORTS);
+			PortSet openPorts = (PortSet) subject.getParameter(PARAMETER_OPEN_PORTS);
 			if (openPorts != null) {
-				SortedSet<Integer> ports = new TreeSet<>(openPorts);
+				PortSet ports = openPorts.copy();
 				ports.add(defaultPort);
 				return ports.iterator();
 			}
@@ -109,6 +109,11 @@ public abstract class PortTextFetcher extends AbstractFetcher {
 		return subject.isAnyPortRequested() ? subject.requestedPortsIterator() : singleton(defaultPort).iterator();
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return asList(PingFetcher.class, PortsFetcher.class);
+	}
+
 	@Override
 	public Class<? extends FetcherPrefs> getPreferencesClass() {
 		return PortTextFetcherPrefs.class;
@@ -6,9 +6,15 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
 import net.azib.ipscan.core.PortIterator;
+import net.azib.ipscan.core.PortSet;
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.RTTEstimator;
 import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.core.net.AsyncConnector;
+import net.azib.ipscan.core.net.ConnectResult;
 import net.azib.ipscan.core.values.NotScanned;
 import net.azib.ipscan.core.values.NumericRangeList;
 import net.azib.ipscan.gui.fetchers.PortsFetcherPrefs;
@@ -20,9 +26,23 @@ import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * PortsFetcher scans TCP ports.
@@ -36,16 +56,32 @@ public class PortsFetcher extends AbstractFetcher {
 	
 	static final String PARAMETER_OPEN_PORTS = "openPorts";
 	static final String PARAMETER_FILTERED_PORTS = "filteredPorts";
+
+	/** number of ports taken by a worker at once when scanning ports of a host in parallel */
+	static final int PORT_CHUNK_SIZE = 32;
 	
 	private ScannerConfig config;
 	private ThreadResourceBinder<Socket> sockets = new ThreadResourceBinder<>();
+	private AsyncConnector connector;
+	private ProbeRateLimiter rateLimiter;
+	private ConcurrencyController concurrencyController;
+	private RTTEstimator rttEstimator;
+	private volatile ExecutorService workerPool;
 	
 	// initialize preferences for this scan
 	private PortIterator portIteratorPrototype;
 	protected boolean displayAsRanges = true;	// TODO: make configurable
 	
 	public PortsFetcher(ScannerConfig scannerConfig) {
+		this(scannerConfig, null, null, null, null);
+	}
+
+	public PortsFetcher(ScannerConfig scannerConfig, AsyncConnector connector, ProbeRateLimiter rateLimiter, ConcurrencyController concurrencyController, RTTEstimator rttEstimator) {
 		this.config = scannerConfig;
+		this.connector = connector;
+		this.rateLimiter = rateLimiter;
+		this.concurrencyController = concurrencyController;
+		this.rttEstimator = rttEstimator;
 	}
 
 	public String getId() {
@@ -69,14 +105,13 @@ public class PortsFetcher extends AbstractFetcher {
 	 * @param subject the address to scan
 	 * @return true if any ports were scanned, false otherwise
 	 */
-	@SuppressWarnings("unchecked")
 	protected boolean scanPorts(ScanningSubject subject) {
-		SortedSet<Integer> openPorts = getOpenPorts(subject);
+		PortSet openPorts = getOpenPorts(subject);
 					
 		if (openPorts == null) {
 			// no results are available yet, let's proceed with the scanning
-			openPorts = new TreeSet<>();
-			SortedSet<Integer> filteredPorts = new TreeSet<>();
+			openPorts = new PortSet();
+			PortSet filteredPorts = new PortSet();
 			subject.setParameter(PARAMETER_OPEN_PORTS, openPorts);
 			subject.setParameter(PARAMETER_FILTERED_PORTS, filteredPorts);
 
@@ -86,53 +121,180 @@ public class PortsFetcher extends AbstractFetcher {
 			Iterator<Integer> portsIterator = portIteratorPrototype.copy();
 			if (config.useRequestedPorts && subject.isAnyPortRequested()) {
 				// add requested ports to the iteration
-				portsIterator = new SequenceIterator<>(portsIterator, subject.requestedPortsIterator());
+				@SuppressWarnings("unchecked")
+				Iterator<Integer> withRequestedPorts = new SequenceIterator<>(portsIterator, subject.requestedPortsIterator());
+				portsIterator = withRequestedPorts;
 			}
 			if (!portsIterator.hasNext()) {
 				// no ports are configured for scanning
 				return false;
 			}
 
-			while (portsIterator.hasNext() && !Thread.currentThread().isInterrupted()) {
-				// TODO: UDP ports?
-				Socket socket = sockets.bind(new Socket());
-				int port = portsIterator.next();
-				try {			
-					// set some optimization options
-					socket.setReuseAddress(true);
-					socket.setReceiveBufferSize(32);
-					// now connect
-					socket.connect(new InetSocketAddress(subject.getAddress(), port), portTimeout);
-					// some more options
-					socket.setSoLinger(true, 0);
-					socket.setSendBufferSize(16);
-					socket.setTcpNoDelay(true);
-					
-					if (socket.isConnected()) openPorts.add(port);
-				}
-				catch (SocketTimeoutException e) {
-					filteredPorts.add(port);
+			// timeouts of a host that answers pings or other ports are filtered ports, not congestion
+			AtomicBoolean hostAnswered = new AtomicBoolean(ResultType.ALIVE.matches(subject.getResultType()));
+			if (config.useNonBlockingPorts)
+				scanPortsNonBlocking(subject.getAddress(), portsIterator, portTimeout, openPorts, filteredPorts, hostAnswered);
+			else if (config.maxConnectsPerHost > 1)
+				scanPortsParallel(subject.getAddress(), portsIterator, portTimeout, openPorts, filteredPorts, hostAnswered);
+			else
+				scanPortsBlocking(subject.getAddress(), portsIterator, portTimeout, openPorts, filteredPorts, hostAnswered);
+		}
+		return true;
+	}
+
+	/**
+	 * Connects to one port at a time, occupying the current thread for the whole duration.
+	 */
+	private void scanPortsBlocking(InetAddress address, Iterator<Integer> portsIterator, int portTimeout, PortSet openPorts, PortSet filteredPorts, AtomicBoolean hostAnswered) {
+		while (portsIterator.hasNext() && rateLimiter.pace()) {
+			// TODO: UDP ports?
+			Socket socket = sockets.bind(new Socket());
+			int port = portsIterator.next();
+			long startTime = System.nanoTime();
+			try {			
+				// set some optimization options
+				socket.setReuseAddress(true);
+				socket.setReceiveBufferSize(32);
+				// now connect
+				socket.connect(new InetSocketAddress(address, port), portTimeout);
+				sample(address, startTime);
+				// some more options
+				socket.setSoLinger(true, 0);
+				socket.setSendBufferSize(16);
+				socket.setTcpNoDelay(true);
+				
+				if (socket.isConnected()) openPorts.add(port);
+				record(ConnectResult.OPEN, hostAnswered);
+			}
+			catch (SocketTimeoutException e) {
+				filteredPorts.add(port);
+				record(ConnectResult.TIMEOUT, hostAnswered);
+			}
+			catch (IOException e) {
+				// connection refused
+				assert e instanceof ConnectException : e;
+				ConnectResult result = AsyncConnector.resultOf(e);
+				if (result.isAlive()) sample(address, startTime);
+				record(result, hostAnswered);
+			}
+			finally {
+				sockets.closeAndUnbind(socket);
+			}
+		}
+	}
+
+	/**
+	 * Splits the ports into chunks, which are scanned by up to {@link ScannerConfig#maxConnectsPerHost} workers at once.
+	 * The current thread is one of the workers, the others are borrowed from the pool if it has free ones.
+	 */
+	private void scanPortsParallel(InetAddress address, Iterator<Integer> portsIterator, int portTimeout, PortSet openPorts, PortSet filteredPorts, AtomicBoolean hostAnswered) {
+		// the sets are shared by the workers, PortSet is thread-safe
+		Runnable worker = () -> {
+			List<Integer> chunk;
+			while (!Thread.currentThread().isInterrupted() && !(chunk = nextChunk(portsIterator)).isEmpty())
+				scanPortsBlocking(address, chunk.iterator(), portTimeout, openPorts, filteredPorts, hostAnswered);
+		};
+
+		List<Future<?>> helpers = new ArrayList<>();
+		ExecutorService pool = workerPool;
+		try {
+			for (int i = 1; i < config.maxConnectsPerHost && pool != null; i++) {
+				try {
+					helpers.add(pool.submit(worker));
 				}
-				catch (IOException e) {
-					// connection refused
-					assert e instanceof ConnectException : e;
+				catch (RejectedExecutionException e) {
+					// all the workers are busy with other hosts or scanning is over, the current thread will do the rest
+					break;
 				}
-				finally {
-					sockets.closeAndUnbind(socket);
+			}
+			worker.run();
+			for (Future<?> helper : helpers) helper.get();
+		}
+		catch (InterruptedException e) {
+			// scanning is being killed, let the Scanner know
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			throw new FetcherException(e.getCause());
+		}
+		finally {
+			for (Future<?> helper : helpers) helper.cancel(true);
+		}
+	}
+
+	static List<Integer> nextChunk(Iterator<Integer> portsIterator) {
+		synchronized (portsIterator) {
+			List<Integer> chunk = new ArrayList<>(PORT_CHUNK_SIZE);
+			while (chunk.size() < PORT_CHUNK_SIZE && portsIterator.hasNext()) chunk.add(portsIterator.next());
+			return chunk;
+		}
+	}
+
+	/**
+	 * Starts connecting to all the ports at once using the shared {@link AsyncConnector}, then collects the results.
+	 * The number of connects in flight is limited by the connector, not by the number of threads.
+	 */
+	private void scanPortsNonBlocking(InetAddress address, Iterator<Integer> portsIterator, int portTimeout, PortSet openPorts, PortSet filteredPorts, AtomicBoolean hostAnswered) {
+		List<AsyncConnector.Attempt> attempts = new ArrayList<>();
+		try {
+			while (portsIterator.hasNext()) {
+				rateLimiter.acquire();
+				attempts.add(connector.connect(new InetSocketAddress(address, portsIterator.next()), portTimeout));
+			}
+			for (AsyncConnector.Attempt attempt : attempts) {
+				if (attempt.get().isAlive()) hostAnswered.set(true);
+			}
+			for (AsyncConnector.Attempt attempt : attempts) {
+				record(attempt.get(), hostAnswered);
+				switch (attempt.get()) {
+					case OPEN: openPorts.add(attempt.getPort()); break;
+					case TIMEOUT: filteredPorts.add(attempt.getPort()); break;
 				}
 			}
 		}
-		return true;
+		catch (InterruptedException e) {
+			// scanning is being killed, let the Scanner know
+			Thread.currentThread().interrupt();
+		}
+		catch (CancellationException e) {
+			// cleanup() has cancelled everything in flight
+		}
+		catch (ExecutionException e) {
+			throw new FetcherException(e.getCause());
+		}
+		finally {
+			for (AsyncConnector.Attempt attempt : attempts) attempt.cancel(false);
+		}
+	}
+
+	/**
+	 * Reports the outcome of a connection attempt to the {@link ConcurrencyController}.
+	 * Timeouts are reported only until the host answers: then they mean filtered ports, e.g. by a firewall,
+	 * which are the majority of a port sweep and would keep the concurrency low for no reason.
+	 */
+	private void record(ConnectResult result, AtomicBoolean hostAnswered) {
+		if (result.isAlive()) hostAnswered.set(true);
+		if (concurrencyController == null) return;
+		if (result.isAlive()) concurrencyController.recordSuccess();
+		else if (result == ConnectResult.TIMEOUT) {
+			if (!hostAnswered.get()) concurrencyController.recordTimeout();
+		}
+		else concurrencyController.recordError();
+	}
+
+	/**
+	 * Reports the round trip time of a completed connect to the {@link RTTEstimator}
+	 */
+	private void sample(InetAddress address, long startTime) {
+		if (rttEstimator != null) rttEstimator.sample(address, NANOSECONDS.toMillis(System.nanoTime() - startTime));
 	}
 
-	@SuppressWarnings("unchecked")
-	protected SortedSet<Integer> getFilteredPorts(ScanningSubject subject) {
-		return (SortedSet<Integer>) subject.getParameter(PARAMETER_FILTERED_PORTS);
+	protected PortSet getFilteredPorts(ScanningSubject subject) {
+		return (PortSet) subject.getParameter(PARAMETER_FILTERED_PORTS);
 	}
 
-	@SuppressWarnings("unchecked")
-	protected SortedSet<Integer> getOpenPorts(ScanningSubject subject) {
-		return (SortedSet<Integer>) subject.getParameter(PARAMETER_OPEN_PORTS);
+	protected PortSet getOpenPorts(ScanningSubject subject) {
+		return (PortSet) subject.getParameter(PARAMETER_OPEN_PORTS);
 	}
 	
 	/*
@@ -143,7 +305,7 @@ public class PortsFetcher extends AbstractFetcher {
 		if (!portsScanned)
 			return NotScanned.VALUE;
 		
-		SortedSet<Integer> openPorts = getOpenPorts(subject);
+		PortSet openPorts = getOpenPorts(subject);
 		if (!openPorts.isEmpty()) {
 			subject.setResultType(ResultType.WITH_PORTS);
 			return new NumericRangeList(openPorts, displayAsRanges);
@@ -151,13 +313,36 @@ public class PortsFetcher extends AbstractFetcher {
 		return null;
 	}
 
+	@Override
+	public Collection<Class<? extends Fetcher>> getDependencies() {
+		return asList(PingFetcher.class, PortsFetcher.class);
+	}
+
 	public void init() {
 		// rebuild port iterator before each scan
 		this.portIteratorPrototype = new PortIterator(config.portString);
+		if (connector == null && config.useNonBlockingPorts)
+			connector = new AsyncConnector(config);
+		if (rateLimiter == null)
+			rateLimiter = new ProbeRateLimiter(config);
+		if (workerPool == null && config.maxConnectsPerHost > 1) {
+			// not more workers than scanning threads, tasks are not queued as the threads can scan alone
+			workerPool = new ThreadPoolExecutor(0, Math.max(1, config.maxThreads), 1, MINUTES, new SynchronousQueue<>(), r -> {
+				Thread thread = new Thread(r, getClass().getSimpleName() + " worker");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
 	}
 
-  @Override
-  public void cleanup() {
-    sockets.close();
-  }
+	@Override
+	public void cleanup() {
+		// interrupted threads cancel their own non-blocking attempts, the shared connector is closed by the Scanner after the scan
+		sockets.close();
+		ExecutorService pool = workerPool;
+		if (pool != null) {
+			workerPool = null;
+			pool.shutdownNow();
+		}
+	}
 }
@@ -45,17 +45,34 @@ public class PreferencesDialog extends AbstractModalDialog {
 	private Composite displayTab;
 	private Text threadDelayText;
 	private Text maxThreadsText;
+	private Button virtualThreadsCheckbox;
+	private Text maxVirtualThreadsText;
+	private Button adaptiveConcurrencyCheckbox;
+	private Button concurrentFetchersCheckbox;
+	private Button pipelinedScanningCheckbox;
+	private Text maxServiceThreadsText;
+	private Text maxServiceHostsPerSecondText;
+	private Text maxHostsPerSecondText;
+	private Text maxProbesPerSecondText;
+	private Text maxThreadsPerHostText;
+	private Text maxThreadsPerSubnetText;
 	private Button deadHostsCheckbox;
 	private Text pingingTimeoutText;
 	private Text pingingCountText;
+	private Button concurrentPingsCheckbox;
 	private Combo pingersCombo;
 	private Button skipBroadcastsCheckbox;
+	private Text checkpointIntervalText;
+	private Text dnsCacheMaxTTLText;
 	private Composite portsTab;
 	private TabItem portsTabItem;
 	private Text portTimeoutText;
 	private Button adaptTimeoutCheckbox;
 	private Button addRequestedPortsCheckbox;
 	private Text minPortTimeoutText;
+	private Button nonBlockingPortsCheckbox;
+	private Text maxPendingConnectsText;
+	private Text maxConnectsPerHostText;
 	private Text portsText;
 	private Text notAvailableText;
 	private Text notScannedText;
@@ -182,6 +199,70 @@ public class PreferencesDialog extends AbstractModalDialog {
 		maxThreadsText = new Text(threadsGroup, SWT.BORDER);
 		maxThreadsText.setLayoutData(gridData);
 
+		GridData threadsGridDataWithSpan = new GridData();
+		threadsGridDataWithSpan.horizontalSpan = 2;
+		virtualThreadsCheckbox = new Button(threadsGroup, SWT.CHECK);
+		virtualThreadsCheckbox.setText(Labels.getLabel("preferences.threads.virtual"));
+		virtualThreadsCheckbox.setLayoutData(threadsGridDataWithSpan);
+		virtualThreadsCheckbox.addListener(SWT.Selection, event -> maxVirtualThreadsText.setEnabled(virtualThreadsCheckbox.getSelection()));
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxVirtualThreads"));
+		maxVirtualThreadsText = new Text(threadsGroup, SWT.BORDER);
+		maxVirtualThreadsText.setLayoutData(gridData);
+
+		GridData adaptiveConcurrencyGridData = new GridData();
+		adaptiveConcurrencyGridData.horizontalSpan = 2;
+		adaptiveConcurrencyCheckbox = new Button(threadsGroup, SWT.CHECK);
+		adaptiveConcurrencyCheckbox.setText(Labels.getLabel("preferences.threads.adaptive"));
+		adaptiveConcurrencyCheckbox.setLayoutData(adaptiveConcurrencyGridData);
+
+		concurrentFetchersCheckbox = new Button(threadsGroup, SWT.CHECK);
+		concurrentFetchersCheckbox.setText(Labels.getLabel("preferences.threads.concurrentFetchers"));
+		GridData concurrentFetchersGridData = new GridData();
+		concurrentFetchersGridData.horizontalSpan = 2;
+		concurrentFetchersCheckbox.setLayoutData(concurrentFetchersGridData);
+
+		GridData pipelinedScanningGridData = new GridData();
+		pipelinedScanningGridData.horizontalSpan = 2;
+		pipelinedScanningCheckbox = new Button(threadsGroup, SWT.CHECK);
+		pipelinedScanningCheckbox.setText(Labels.getLabel("preferences.threads.pipelined"));
+		pipelinedScanningCheckbox.setLayoutData(pipelinedScanningGridData);
+		pipelinedScanningCheckbox.addListener(SWT.Selection, event -> {
+			maxServiceThreadsText.setEnabled(pipelinedScanningCheckbox.getSelection());
+			maxServiceHostsPerSecondText.setEnabled(pipelinedScanningCheckbox.getSelection());
+		});
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxServiceThreads"));
+		maxServiceThreadsText = new Text(threadsGroup, SWT.BORDER);
+		maxServiceThreadsText.setLayoutData(gridData);
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxServiceHostsPerSecond"));
+		maxServiceHostsPerSecondText = new Text(threadsGroup, SWT.BORDER);
+		maxServiceHostsPerSecondText.setLayoutData(gridData);
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxHostsPerSecond"));
+		maxHostsPerSecondText = new Text(threadsGroup, SWT.BORDER);
+		maxHostsPerSecondText.setLayoutData(gridData);
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxProbesPerSecond"));
+		maxProbesPerSecondText = new Text(threadsGroup, SWT.BORDER);
+		maxProbesPerSecondText.setLayoutData(gridData);
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxThreadsPerHost"));
+		maxThreadsPerHostText = new Text(threadsGroup, SWT.BORDER);
+		maxThreadsPerHostText.setLayoutData(gridData);
+
+		label = new Label(threadsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.threads.maxThreadsPerSubnet"));
+		maxThreadsPerSubnetText = new Text(threadsGroup, SWT.BORDER);
+		maxThreadsPerSubnetText.setLayoutData(gridData);
+
 		Group pingingGroup = new Group(scanningTab, SWT.NONE);
 		pingingGroup.setLayout(groupLayout);
 		pingingGroup.setText(Labels.getLabel("preferences.pinging"));
@@ -214,6 +295,10 @@ public class PreferencesDialog extends AbstractModalDialog {
 		deadHostsCheckbox.setText(Labels.getLabel("preferences.pinging.deadHosts"));
 		deadHostsCheckbox.setLayoutData(gridDataWithSpan);
 
+		concurrentPingsCheckbox = new Button(pingingGroup, SWT.CHECK);
+		concurrentPingsCheckbox.setText(Labels.getLabel("preferences.pinging.concurrent"));
+		concurrentPingsCheckbox.setLayoutData(gridDataWithSpan);
+
 		Group skippingGroup = new Group(scanningTab, SWT.NONE);
 		skippingGroup.setLayout(groupLayout);
 		skippingGroup.setText(Labels.getLabel("preferences.skipping"));
@@ -223,6 +308,24 @@ public class PreferencesDialog extends AbstractModalDialog {
 		GridData gridDataWithSpan2 = new GridData();
 		gridDataWithSpan2.horizontalSpan = 2;
 		skipBroadcastsCheckbox.setLayoutData(gridDataWithSpan2);
+
+		Group checkpointGroup = new Group(scanningTab, SWT.NONE);
+		checkpointGroup.setLayout(groupLayout);
+		checkpointGroup.setText(Labels.getLabel("preferences.checkpoint"));
+
+		label = new Label(checkpointGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.checkpoint.interval"));
+		checkpointIntervalText = new Text(checkpointGroup, SWT.BORDER);
+		checkpointIntervalText.setLayoutData(gridData);
+
+		Group dnsGroup = new Group(scanningTab, SWT.NONE);
+		dnsGroup.setLayout(groupLayout);
+		dnsGroup.setText(Labels.getLabel("preferences.dns"));
+
+		label = new Label(dnsGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.dns.cacheTTL"));
+		dnsCacheMaxTTLText = new Text(dnsGroup, SWT.BORDER);
+		dnsCacheMaxTTLText.setLayoutData(gridData);
 	}
 
 	/**
@@ -337,6 +440,26 @@ public class PreferencesDialog extends AbstractModalDialog {
 		minPortTimeoutText = new Text(timingGroup, SWT.BORDER);
 		minPortTimeoutText.setLayoutData(gridData);
 
+		GridData gridData2 = new GridData();
+		gridData2.horizontalSpan = 2;
+		nonBlockingPortsCheckbox = new Button(timingGroup, SWT.CHECK);
+		nonBlockingPortsCheckbox.setText(Labels.getLabel("preferences.ports.timing.nonBlocking"));
+		nonBlockingPortsCheckbox.setLayoutData(gridData2);
+		nonBlockingPortsCheckbox.addListener(SWT.Selection, event -> {
+			maxPendingConnectsText.setEnabled(nonBlockingPortsCheckbox.getSelection());
+			maxConnectsPerHostText.setEnabled(!nonBlockingPortsCheckbox.getSelection());
+		});
+
+		label = new Label(timingGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.ports.timing.maxPendingConnects"));
+		maxPendingConnectsText = new Text(timingGroup, SWT.BORDER);
+		maxPendingConnectsText.setLayoutData(gridData);
+
+		label = new Label(timingGroup, SWT.NONE);
+		label.setText(Labels.getLabel("preferences.ports.timing.maxConnectsPerHost"));
+		maxConnectsPerHostText = new Text(timingGroup, SWT.BORDER);
+		maxConnectsPerHostText.setLayoutData(gridData);
+
 		RowLayout portsLayout = new RowLayout(SWT.VERTICAL);
 		portsLayout.fill = true;
 		portsLayout.marginHeight = 2;
@@ -373,6 +496,20 @@ public class PreferencesDialog extends AbstractModalDialog {
 	private void loadPreferences() {
 		maxThreadsText.setText(Integer.toString(scannerConfig.maxThreads));
 		threadDelayText.setText(Integer.toString(scannerConfig.threadDelay));
+		virtualThreadsCheckbox.setSelection(scannerConfig.useVirtualThreads);
+		maxVirtualThreadsText.setText(Integer.toString(scannerConfig.maxVirtualThreads));
+		maxVirtualThreadsText.setEnabled(scannerConfig.useVirtualThreads);
+		adaptiveConcurrencyCheckbox.setSelection(scannerConfig.adaptiveConcurrency);
+		concurrentFetchersCheckbox.setSelection(scannerConfig.concurrentFetchers);
+		pipelinedScanningCheckbox.setSelection(scannerConfig.pipelinedScanning);
+		maxServiceThreadsText.setText(Integer.toString(scannerConfig.maxServiceThreads));
+		maxServiceThreadsText.setEnabled(scannerConfig.pipelinedScanning);
+		maxServiceHostsPerSecondText.setText(Integer.toString(scannerConfig.maxServiceHostsPerSecond));
+		maxServiceHostsPerSecondText.setEnabled(scannerConfig.pipelinedScanning);
+		maxHostsPerSecondText.setText(Integer.toString(scannerConfig.maxHostsPerSecond));
+		maxProbesPerSecondText.setText(Integer.toString(scannerConfig.maxProbesPerSecond));
+		maxThreadsPerHostText.setText(Integer.toString(scannerConfig.maxThreadsPerHost));
+		maxThreadsPerSubnetText.setText(Integer.toString(scannerConfig.maxThreadsPerSubnet));
 		String[] pingerNames = pingerRegistry.getRegisteredNames();
 		for (int i = 0; i < pingerNames.length; i++) {
 			if (scannerConfig.selectedPinger.equals(pingerNames[i])) {
@@ -382,11 +519,19 @@ public class PreferencesDialog extends AbstractModalDialog {
 		pingingCountText.setText(Integer.toString(scannerConfig.pingCount));
 		pingingTimeoutText.setText(Integer.toString(scannerConfig.pingTimeout));
 		deadHostsCheckbox.setSelection(scannerConfig.scanDeadHosts);
+		concurrentPingsCheckbox.setSelection(scannerConfig.concurrentPings);
 		skipBroadcastsCheckbox.setSelection(scannerConfig.skipBroadcastAddresses);
+		checkpointIntervalText.setText(Integer.toString(scannerConfig.checkpointInterval));
+		dnsCacheMaxTTLText.setText(Integer.toString(scannerConfig.dnsCacheMaxTTL));
 		portTimeoutText.setText(Integer.toString(scannerConfig.portTimeout));
 		adaptTimeoutCheckbox.setSelection(scannerConfig.adaptPortTimeout);
 		minPortTimeoutText.setText(Integer.toString(scannerConfig.minPortTimeout));
 		minPortTimeoutText.setEnabled(scannerConfig.adaptPortTimeout);
+		nonBlockingPortsCheckbox.setSelection(scannerConfig.useNonBlockingPorts);
+		maxPendingConnectsText.setText(Integer.toString(scannerConfig.maxPendingConnects));
+		maxPendingConnectsText.setEnabled(scannerConfig.useNonBlockingPorts);
+		maxConnectsPerHostText.setText(Integer.toString(scannerConfig.maxConnectsPerHost));
+		maxConnectsPerHostText.setEnabled(!scannerConfig.useNonBlockingPorts);
 		portsText.setText(scannerConfig.portString);
 		addRequestedPortsCheckbox.setSelection(scannerConfig.useRequestedPorts);
 		notAvailableText.setText(scannerConfig.notAvailableText);
@@ -417,13 +562,30 @@ public class PreferencesDialog extends AbstractModalDialog {
 		scannerConfig.selectedPinger = (String) pingersCombo.getData(Integer.toString(pingersCombo.getSelectionIndex()));
 		scannerConfig.maxThreads = parseIntValue(maxThreadsText);
 		scannerConfig.threadDelay = parseIntValue(threadDelayText);
+		scannerConfig.useVirtualThreads = virtualThreadsCheckbox.getSelection();
+		scannerConfig.maxVirtualThreads = parseIntValue(maxVirtualThreadsText);
+		scannerConfig.adaptiveConcurrency = adaptiveConcurrencyCheckbox.getSelection();
+		scannerConfig.concurrentFetchers = concurrentFetchersCheckbox.getSelection();
+		scannerConfig.pipelinedScanning = pipelinedScanningCheckbox.getSelection();
+		scannerConfig.maxServiceThreads = parseIntValue(maxServiceThreadsText);
+		scannerConfig.maxServiceHostsPerSecond = parseIntValue(maxServiceHostsPerSecondText);
+		scannerConfig.maxHostsPerSecond = parseIntValue(maxHostsPerSecondText);
+		scannerConfig.maxProbesPerSecond = parseIntValue(maxProbesPerSecondText);
+		scannerConfig.maxThreadsPerHost = parseIntValue(maxThreadsPerHostText);
+		scannerConfig.maxThreadsPerSubnet = parseIntValue(maxThreadsPerSubnetText);
 		scannerConfig.pingCount = parseIntValue(pingingCountText);
 		scannerConfig.pingTimeout = parseIntValue(pingingTimeoutText);
 		scannerConfig.scanDeadHosts = deadHostsCheckbox.getSelection();
+		scannerConfig.concurrentPings = concurrentPingsCheckbox.getSelection();
 		scannerConfig.skipBroadcastAddresses = skipBroadcastsCheckbox.getSelection();
+		scannerConfig.checkpointInterval = parseIntValue(checkpointIntervalText);
+		scannerConfig.dnsCacheMaxTTL = parseIntValue(dnsCacheMaxTTLText);
 		scannerConfig.portTimeout = parseIntValue(portTimeoutText);
 		scannerConfig.adaptPortTimeout = adaptTimeoutCheckbox.getSelection();
 		scannerConfig.minPortTimeout = parseIntValue(minPortTimeoutText);
+		scannerConfig.useNonBlockingPorts = nonBlockingPortsCheckbox.getSelection();
+		scannerConfig.maxPendingConnects = parseIntValue(maxPendingConnectsText);
+		scannerConfig.maxConnectsPerHost = parseIntValue(maxConnectsPerHostText);
 		scannerConfig.portString = portsText.getText();
 		scannerConfig.useRequestedPorts = addRequestedPortsCheckbox.getSelection();
 		scannerConfig.notAvailableText = notAvailableText.getText();
@@ -7,6 +7,7 @@
 package net.azib.ipscan.gui;
 
 import net.azib.ipscan.config.Labels;
+import net.azib.ipscan.core.LatencyHistogram;
 import net.azib.ipscan.core.ScanningResultList;
 import net.azib.ipscan.core.ScanningResultList.ScanInfo;
 import net.azib.ipscan.core.UserErrorException;
@@ -20,7 +21,9 @@ import java.text.NumberFormat;
  * @author Anton Keks
  */
 public class StatisticsDialog extends InfoDialog {
-	
+	/** Boundaries of the latency histogram lines, in nanoseconds */
+	static final long[] LATENCY_BOUNDS = {0, 100000, 1000000, 10000000, 100000000, 1000000000, Long.MAX_VALUE};
+
 	private final ScanningResultList scanningResults;
 
 	public StatisticsDialog(ScanningResultList scanningResults) {
@@ -60,8 +63,35 @@ public class StatisticsDialog extends InfoDialog {
 		text.append(Labels.getLabel("text.scan.hosts.alive")).append(scanInfo.getAliveCount()).append(ln);
 		if (scanInfo.getWithPortsCount() > 0) 
 			text.append(Labels.getLabel("text.scan.hosts.ports")).append(scanInfo.getWithPortsCount()).append(ln);
+
+		LatencyHistogram latency = scanInfo.getLatency();
+		if (latency.getCount() > 0) {
+			text.append(ln).append(Labels.getLabel("text.scan.latency"))
+				.append(latencyToText(latency.getMin())).append(" / ")
+				.append(latencyToText(latency.getMean())).append(" / ")
+				.append(latencyToText(latency.getMax())).append(ln);
+			text.append(Labels.getLabel("text.scan.latency.percentiles"))
+				.append(latencyToText(latency.getPercentile(50))).append(" / ")
+				.append(latencyToText(latency.getPercentile(90))).append(" / ")
+				.append(latencyToText(latency.getPercentile(99))).append(ln);
+			// coarse histogram by orders of magnitude
+			for (int i = 1; i < LATENCY_BOUNDS.length; i++) {
+				long count = latency.getCount(LATENCY_BOUNDS[i - 1], LATENCY_BOUNDS[i]);
+				if (count == 0) continue;
+				text.append(i == LATENCY_BOUNDS.length - 1 ? "> " + latencyToText(LATENCY_BOUNDS[i - 1]) :
+					latencyToText(LATENCY_BOUNDS[i - 1]) + " - " + latencyToText(LATENCY_BOUNDS[i])).append(": ").append(count).append(ln);
+			}
+		}
 		return text.toString();
 	}
+
+	/**
+	 * @param nanos latency in nanoseconds
+	 * @return provided latency in milliseconds, with sub-millisecond precision
+	 */
+	static String latencyToText(long nanos) {
+		return new DecimalFormat("#.###").format(nanos / 1000000.0) + Labels.getLabel("unit.ms");
+	}
 	
 	/**
 	 * @param scanTime in milliseconds
@@ -9,6 +9,7 @@ import net.azib.ipscan.config.GUIConfig;
 import net.azib.ipscan.config.GUIConfig.DisplayMethod;
 import net.azib.ipscan.config.Labels;
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
 import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.gui.actions.CommandsMenuActions.Delete;
 import net.azib.ipscan.gui.actions.ToolsActions.SelectDead;
@@ -37,13 +38,15 @@ public class StatusBar {
 	private ProgressBar progressBar;
 	
 	private ScannerConfig scannerConfig;
+	private ConcurrencyController concurrencyController;
 	private GUIConfig guiConfig;
 	private StateMachine stateMachine;
 	private ResultTable resultTable;
 
-	public StatusBar(Shell shell, GUIConfig guiConfig, ScannerConfig scannerConfig, ResultTable resultTable, StateMachine stateMachine) {
+	public StatusBar(Shell shell, GUIConfig guiConfig, ScannerConfig scannerConfig, ResultTable resultTable, StateMachine stateMachine, ConcurrencyController concurrencyController) {
 		this.guiConfig = guiConfig;
 		this.scannerConfig = scannerConfig;
+		this.concurrencyController = concurrencyController;
 		this.stateMachine = stateMachine;
 		this.resultTable = resultTable;
 		this.resultTable.addListener(SWT.Selection, new TableSelection(this, stateMachine));
@@ -65,7 +68,8 @@ public class StatusBar {
 		updateConfigText();
 
 		threadsText = new Label(composite, SWT.BORDER);
-		setRunningThreads(Math.min(scannerConfig.maxThreads, 200)); // this should set the longest possible text		
+		int longestThreads = Math.min(scannerConfig.maxThreads, 200);
+		setRunningThreads(longestThreads, scannerConfig.adaptiveConcurrency ? longestThreads : 0); // this should set the longest possible text
 		threadsText.pack(); // calculate the width
 		threadsText.setLayoutData(formData(threadsText.getSize().x, SWT.DEFAULT, new FormAttachment(displayMethodText), null, new FormAttachment(0), new FormAttachment(100)));
 		setRunningThreads(0); // set back to 0 at startup
@@ -109,8 +113,15 @@ public class StatusBar {
 	}
 
 	public void setRunningThreads(int runningThreads) {
+		setRunningThreads(runningThreads, concurrencyController.getLimit());
+	}
+
+	/**
+	 * @param limit the current adaptive concurrency limit, 0 if not adaptive
+	 */
+	private void setRunningThreads(int runningThreads, int limit) {
 		if (!threadsText.isDisposed()) { 
-			boolean maxThreadsReached = runningThreads == scannerConfig.maxThreads;
+			boolean maxThreadsReached = runningThreads == scannerConfig.maxThreads || limit > 0 && runningThreads >= limit;
 			if (maxThreadsReachedBefore || maxThreadsReached) {
 				Color newColor = threadsText.getDisplay().getSystemColor(maxThreadsReached ? SWT.COLOR_RED : SWT.COLOR_WIDGET_FOREGROUND);
 				threadsText.setForeground(newColor);
@@ -118,6 +129,7 @@ public class StatusBar {
 			maxThreadsReachedBefore = maxThreadsReached;
 			
 			threadsText.setText(Labels.getLabel("text.threads") + runningThreads + 
+					(limit > 0 ? Labels.getLabel("text.threads.limit") + limit : "") +
 					(maxThreadsReached ? Labels.getLabel("text.threads.max") : ""));
 		}
 	}
@@ -8,6 +8,7 @@ package net.azib.ipscan.gui.actions;
 import net.azib.ipscan.Main;
 import net.azib.ipscan.config.Labels;
 import net.azib.ipscan.config.Version;
+import net.azib.ipscan.core.ScanCheckpoint;
 import net.azib.ipscan.core.ScanningResult;
 import net.azib.ipscan.core.ScanningResultList;
 import net.azib.ipscan.core.UserErrorException;
@@ -211,6 +212,34 @@ public class ScanMenuActions {
 		}
 	}
 
+	public static final class ResumeFromCheckpoint implements Listener {
+		private final ScanCheckpoint checkpoint;
+		private final ResultTable resultTable;
+		private final StateMachine stateMachine;
+
+		public ResumeFromCheckpoint(ScanCheckpoint checkpoint, ResultTable resultTable, StateMachine stateMachine) {
+			this.checkpoint = checkpoint;
+			this.resultTable = resultTable;
+			this.stateMachine = stateMachine;
+		}
+
+		public void handleEvent(Event event) {
+			FileDialog fileDialog = new FileDialog(resultTable.getShell(), SWT.OPEN);
+			fileDialog.setText(Labels.getLabel("menu.scan.resume").replace("&", "").replace("...", ""));
+			File defaultFile = ScanCheckpoint.defaultFile();
+			fileDialog.setFilterPath(defaultFile.getParent());
+			fileDialog.setFileName(defaultFile.getName());
+
+			String fileName = fileDialog.open();
+			if (fileName == null) return;
+
+			checkpoint.resume(new File(fileName));
+			// the previous results will be added again by the resumed scan
+			resultTable.removeAll();
+			stateMachine.continueScanning();
+		}
+	}
+
 	public static final class Quit implements Listener {
 		public Quit() {
 		}
@@ -38,7 +38,7 @@ import static net.azib.ipscan.gui.util.LayoutHelper.icon;
  */
 public class StartStopScanningAction implements SelectionListener, ScanningProgressCallback, StateTransitionListener {
 	private ScannerDispatcherThreadFactory scannerThreadFactory;
-	private ScannerDispatcherThread scannerThread;
+	private Thread scannerThread;
 	private GUIConfig guiConfig;
 	private PingerRegistry pingerRegistry;
 
@@ -7,6 +7,7 @@ package net.azib.ipscan.gui.feeders;
 
 import net.azib.ipscan.feeders.Feeder;
 import net.azib.ipscan.feeders.FileFeeder;
+import net.azib.ipscan.util.DNSCache;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
@@ -25,10 +26,12 @@ import static net.azib.ipscan.config.Labels.getLabel;
  * @author Anton Keks
  */
 public class FileFeederGUI extends AbstractFeederGUI {
+	private final DNSCache dnsCache;
 	private Text fileNameText;
 
-	public FileFeederGUI(FeederArea parent) {
+	public FileFeederGUI(FeederArea parent, DNSCache dnsCache) {
 		super(parent);
+		this.dnsCache = dnsCache;
 		feeder = new FileFeeder();
 	}
 
@@ -59,7 +62,7 @@ public class FileFeederGUI extends AbstractFeederGUI {
 	}
 
 	public Feeder createFeeder() {
-		feeder = new FileFeeder(fileNameText.getText());
+		feeder = new FileFeeder(fileNameText.getText(), dnsCache);
 		return feeder;
 	}
 	
@@ -0,0 +1,52 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.gui.feeders;
+
+import net.azib.ipscan.core.net.NeighborTable;
+import net.azib.ipscan.feeders.Feeder;
+import net.azib.ipscan.feeders.NeighborFeeder;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Label;
+
+import static net.azib.ipscan.config.Labels.getLabel;
+
+/**
+ * GUI for initialization of NeighborFeeder, which has no settings.
+ */
+public class NeighborFeederGUI extends AbstractFeederGUI {
+	private final NeighborTable neighborTable;
+
+	public NeighborFeederGUI(FeederArea parent, NeighborTable neighborTable) {
+		super(parent);
+		this.neighborTable = neighborTable;
+		feeder = new NeighborFeeder();
+	}
+
+	public void initialize() {
+		setLayout(new GridLayout(1, false));
+		Label infoLabel = new Label(this, SWT.NONE);
+		infoLabel.setText(getLabel("feeder.neighbors.info"));
+		pack();
+	}
+
+	public Feeder createFeeder() {
+		feeder = new NeighborFeeder(neighborTable);
+		return feeder;
+	}
+
+	public String[] serialize() {
+		return new String[0];
+	}
+
+	public void unserialize(String[] parts) {
+		// nothing to restore
+	}
+
+	public String[] serializePartsLabels() {
+		return new String[0];
+	}
+}
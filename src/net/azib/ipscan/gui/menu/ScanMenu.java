@@ -9,6 +9,7 @@ public class ScanMenu extends AbstractMenu {
 
 	public ScanMenu(Shell parent,
 					ScanMenuActions.LoadFromFile loadFromFile,
+					ScanMenuActions.ResumeFromCheckpoint resumeFromCheckpoint,
 					ScanMenuActions.SaveAll saveAll,
 					ScanMenuActions.SaveSelection saveSelection,
 					ScanMenuActions.Quit quit) {
@@ -18,6 +19,7 @@ public class ScanMenu extends AbstractMenu {
 //		initMenuItem(subMenu, "menu.scan.newWindow", "Ctrl+N", new Integer(SWT.MOD1 | 'N'), initListener(FileActions.NewWindow.class));
 //		initMenuItem(subMenu, null, null, null, null);
 		initMenuItem(this, "menu.scan.load", "", SWT.MOD1 | 'O', loadFromFile, true);
+		initMenuItem(this, "menu.scan.resume", null, null, resumeFromCheckpoint, true);
 		initMenuItem(this, "menu.scan.exportAll", "Ctrl+S", SWT.MOD1 | 'S', saveAll, false);
 		initMenuItem(this, "menu.scan.exportSelection", null, null, saveSelection, false);
 //		initMenuItem(subMenu, null, null, null, null);
@@ -0,0 +1,115 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.util;
+
+import net.azib.ipscan.config.ScannerConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Cache of DNS lookup results, shared by all scans of the process via the Injector.
+ * Java's own caches are disabled (see Main), because they don't honor the TTLs of the answers,
+ * so this one keeps both positive and negative results for as long as name servers allow,
+ * but not longer than {@link ScannerConfig#dnsCacheMaxTTL}. The least recently used entries are evicted when it is full.
+ */
+public class DNSCache {
+	/** Entries to keep at most, enough for a few /16 networks */
+	static final int MAX_SIZE = 65536;
+	/** TTL in seconds for lookups done by the OS, which doesn't tell the real one */
+	public static final int DEFAULT_TTL = 300;
+
+	private final ScannerConfig config;
+	private final Map<String, Entry<?>> entries;
+	private long hits;
+	private long misses;
+
+	public DNSCache(ScannerConfig config) {
+		this(config, MAX_SIZE);
+	}
+
+	DNSCache(ScannerConfig config, int maxSize) {
+		this.config = config;
+		this.entries = new LinkedHashMap<String, DNSCache.Entry<?>>(16, 0.75f, true) {
+			@Override protected boolean removeEldestEntry(Map.Entry<String, DNSCache.Entry<?>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param key lookup type and name, e.g. "PTR 192.168.0.1"
+	 * @return the cached result, or null if there is none or it has expired
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> Entry<T> get(String key) {
+		Entry<T> entry = (Entry<T>) entries.get(key);
+		if (entry != null && entry.expires - nanoTime() <= 0) {
+			entries.remove(key);
+			entry = null;
+		}
+		if (entry != null) hits++; else misses++;
+		return entry;
+	}
+
+	/**
+	 * @param value the result, or null if the name doesn't exist (negative result)
+	 * @param ttl for how long the result is valid, in seconds
+	 */
+	public synchronized <T> void put(String key, T value, int ttl) {
+		ttl = Math.min(ttl, config.dnsCacheMaxTTL);
+		if (ttl <= 0) return;
+		entries.put(key, new Entry<>(value, nanoTime() + SECONDS.toNanos(ttl)));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		hits = misses = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return share of lookups served from the cache, 0..1
+	 */
+	public synchronized double getHitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	@Override public synchronized String toString() {
+		return String.format("DNS cache: %d entries, %d hits, %d misses (%.0f%%)", entries.size(), hits, misses, getHitRate() * 100);
+	}
+
+	long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Cached result, which may be negative
+	 */
+	public static class Entry<T> {
+		/** null if the name doesn't exist */
+		public final T value;
+		final long expires;
+
+		Entry(T value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.util;
+
+import net.azib.ipscan.config.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.util.IOUtils.closeQuietly;
+
+/**
+ * Asynchronous DNS client for reverse (PTR) lookups, which doesn't block a thread per lookup in the resolver of libc.
+ * Queries of all scanning threads are pipelined through a single non-blocking UDP channel, served by one daemon thread,
+ * and responses are matched to the queries by their random IDs. Unanswered queries are retried with the next name server.
+ * <p>
+ * Name servers are read from <tt>/etc/resolv.conf</tt>. If there are none (e.g. on Windows), the client is not available.
+ */
+public class DNSResolver implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final Path RESOLV_CONF = Path.of("/etc/resolv.conf");
+	static final int DNS_PORT = 53;
+	static final int TYPE_SOA = 6;
+	static final int TYPE_PTR = 12;
+	static final int CLASS_IN = 1;
+	static final int RCODE_NXDOMAIN = 3;
+	/** Recursion desired */
+	static final int FLAG_RD = 0x0100;
+	static final int HEADER_SIZE = 12;
+	/** Defaults of resolv.conf are 5 seconds and 2 attempts, which is too long for scanning */
+	static final int DEFAULT_TIMEOUT = 2000;
+	static final int DEFAULT_ATTEMPTS = 2;
+	/** Queries in flight at most, so that the name servers are not flooded */
+	static final int MAX_PENDING = 256;
+	/** TTL of negative answers in seconds, if the name server hasn't provided its SOA */
+	static final int NEGATIVE_TTL = 60;
+
+	private final List<InetSocketAddress> servers;
+	private final int timeout;
+	private final int attempts;
+	private final Queue<Query> queue = new ConcurrentLinkedQueue<>();
+
+	private Selector selector;
+	private Thread selectorThread;
+
+	public DNSResolver() {
+		this(readServers(RESOLV_CONF), DEFAULT_TIMEOUT, DEFAULT_ATTEMPTS);
+	}
+
+	/**
+	 * @param timeout of a single attempt in milliseconds
+	 * @param attempts in total, each one to the next server
+	 */
+	DNSResolver(List<InetSocketAddress> servers, int timeout, int attempts) {
+		this.servers = servers;
+		this.timeout = timeout;
+		this.attempts = attempts;
+	}
+
+	/**
+	 * @return false if there are no name servers to query
+	 */
+	public boolean isAvailable() {
+		return !servers.isEmpty();
+	}
+
+	/**
+	 * Sends the PTR query without waiting for the response.
+	 * @return the answer, which completes with {@link SocketTimeoutException} if none of the servers have responded
+	 */
+	public CompletableFuture<Answer> resolveAsync(InetAddress address) {
+		Query query = new Query(reverseName(address));
+		try {
+			if (!isAvailable()) throw new IOException("No name servers");
+			Selector selector = ensureStarted();
+			queue.add(query);
+			selector.wakeup();
+		}
+		catch (IOException e) {
+			query.completeExceptionally(e);
+		}
+		return query;
+	}
+
+	/**
+	 * @return the name of the address or null if it has none
+	 * @throws SocketTimeoutException if none of the servers have responded
+	 */
+	public String resolve(InetAddress address) throws IOException {
+		return lookup(address).name;
+	}
+
+	/**
+	 * @return the answer with its TTL, e.g. for caching
+	 * @throws SocketTimeoutException if none of the servers have responded
+	 */
+	public Answer lookup(InetAddress address) throws IOException {
+		CompletableFuture<Answer> answer = resolveAsync(address);
+		try {
+			return answer.get();
+		}
+		catch (InterruptedException e) {
+			answer.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (CancellationException e) {
+			throw new InterruptedIOException("Resolver is closed");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private synchronized Selector ensureStarted() throws IOException {
+		if (selectorThread == null || !selectorThread.isAlive()) {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.bind(null);
+			Selector selector = this.selector = Selector.open();
+			channel.register(selector, OP_READ);
+			selectorThread = new Thread(() -> run(selector, channel), getClass().getSimpleName());
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		return selector;
+	}
+
+	private void run(Selector selector, DatagramChannel channel) {
+		// these are accessed only by this thread
+		Map<Integer, Query> pending = new HashMap<>();
+		PriorityQueue<Deadline> deadlines = new PriorityQueue<>(comparingLong(d -> d.time));
+		Random random = new SecureRandom();
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Deadline deadline = deadlines.peek();
+				selector.select(deadline == null ? 0 : max(1, NANOSECONDS.toMillis(deadline.time - System.nanoTime())));
+				selector.selectedKeys().clear();
+
+				Query query;
+				SocketAddress source;
+				while ((source = channel.receive(buffer)) != null) {
+					buffer.flip();
+					query = receive(source, buffer, pending);
+					// the server has failed, ask the next one right away
+					if (query != null) send(channel, query, pending, deadlines, random);
+					buffer.clear();
+				}
+
+				long now = System.nanoTime();
+				while ((deadline = deadlines.peek()) != null && deadline.time <= now) {
+					query = deadlines.poll().query;
+					// the query may have been already answered or retried
+					if (deadline.attempt != query.attempt) continue;
+					if (pending.get(query.id) == query) pending.remove(query.id);
+					if (query.isDone()) continue;
+					if (++query.attempt < attempts) send(channel, query, pending, deadlines, random);
+					else query.completeExceptionally(new SocketTimeoutException("No response to " + query.name));
+				}
+
+				while (pending.size() < MAX_PENDING && (query = queue.poll()) != null) {
+					if (!query.isDone()) send(channel, query, pending, deadlines, random);
+				}
+			}
+		}
+		catch (IOException e) {
+			LOG.log(WARNING, "DNS client failed", e);
+		}
+		finally {
+			closeQuietly(channel);
+			closeQuietly(selector);
+			for (Query query : pending.values()) query.cancel(false);
+			Query query;
+			while ((query = queue.poll()) != null) query.cancel(false);
+		}
+	}
+
+	private void send(DatagramChannel channel, Query query, Map<Integer, Query> pending, PriorityQueue<Deadline> deadlines, Random random) {
+		do query.id = random.nextInt(0x10000); while (pending.containsKey(query.id));
+		query.server = servers.get(query.attempt % servers.size());
+		pending.put(query.id, query);
+		deadlines.add(new Deadline(query, System.nanoTime() + MILLISECONDS.toNanos(timeout)));
+		try {
+			channel.send(query(query.id, query.name), query.server);
+		}
+		catch (IOException e) {
+			// e.g. network is unreachable, the next server will be tried after the timeout
+			LOG.fine("Unable to query " + query.server + ": " + e);
+		}
+	}
+
+	/**
+	 * Completes the query, which the response is for.
+	 * @return the query if it needs to be retried
+	 */
+	private Query receive(SocketAddress source, ByteBuffer response, Map<Integer, Query> pending) {
+		try {
+			if (response.limit() < HEADER_SIZE) return null;
+			int id = response.getShort(0) & 0xFFFF;
+			Query query = pending.get(id);
+			// spoofed or late responses are ignored
+			if (query == null || !query.server.equals(source)) return null;
+			int offset = HEADER_SIZE;
+			if ((response.getShort(4) & 0xFFFF) != 1 || !query.name.equalsIgnoreCase(readName(response, offset))) return null;
+			offset = skipName(response, offset) + 4;
+
+			int rcode = response.getShort(2) & 0xF;
+			if (rcode != 0 && rcode != RCODE_NXDOMAIN) {
+				// server failure, refused, etc
+				pending.remove(id);
+				if (++query.attempt < attempts) return query;
+				query.completeExceptionally(new IOException("DNS error " + rcode + " for " + query.name));
+				return null;
+			}
+
+			Answer answer = parseAnswer(response, offset);
+			pending.remove(id);
+			query.complete(answer);
+		}
+		catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			// malformed response
+		}
+		return null;
+	}
+
+	/**
+	 * @param offset of the answer section
+	 * @return the first PTR record of the answer section, or the negative answer with the TTL from SOA in the authority section
+	 */
+	static Answer parseAnswer(ByteBuffer response, int offset) {
+		int answers = response.getShort(6) & 0xFFFF;
+		int authorities = response.getShort(8) & 0xFFFF;
+		int negativeTTL = NEGATIVE_TTL;
+		for (int i = 0; i < answers + authorities; i++) {
+			offset = skipName(response, offset);
+			int type = response.getShort(offset) & 0xFFFF;
+			int ttl = max(0, response.getInt(offset + 4));
+			int length = response.getShort(offset + 8) & 0xFFFF;
+			offset += 10;
+			if (i < answers && type == TYPE_PTR)
+				return new Answer(readName(response, offset), ttl);
+			if (i >= answers && type == TYPE_SOA) {
+				// negative answers are cached for the minimum of SOA's TTL and its MINIMUM field (RFC 2308)
+				int minimum = response.getInt(skipName(response, skipName(response, offset)) + 16);
+				negativeTTL = min(ttl, max(0, minimum));
+			}
+			offset += length;
+		}
+		return new Answer(null, negativeTTL);
+	}
+
+	static ByteBuffer query(int id, String name) {
+		ByteBuffer query = ByteBuffer.allocate(HEADER_SIZE + name.length() + 2 + 4);
+		query.putShort((short) id).putShort((short) FLAG_RD).putShort((short) 1).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+		for (String label : name.split("\\.")) {
+			query.put((byte) label.length()).put(label.getBytes(StandardCharsets.US_ASCII));
+		}
+		query.put((byte) 0).putShort((short) TYPE_PTR).putShort((short) CLASS_IN);
+		return query.flip();
+	}
+
+	/**
+	 * @return the name at the offset, following compression pointers
+	 */
+	static String readName(ByteBuffer buffer, int offset) {
+		StringBuilder name = new StringBuilder();
+		// limit the jumps, so that pointer loops don't hang
+		for (int jumps = 0; jumps < 64; ) {
+			int length = buffer.get(offset) & 0xFF;
+			if (length == 0) break;
+			if ((length & 0xC0) == 0xC0) {
+				offset = (buffer.getShort(offset) & 0x3FFF);
+				jumps++;
+				continue;
+			}
+			if (name.length() > 0) name.append('.');
+			for (int i = 1; i <= length; i++) name.append((char) (buffer.get(offset + i) & 0xFF));
+			offset += length + 1;
+		}
+		return name.toString();
+	}
+
+	/**
+	 * @return the offset right after the name
+	 */
+	static int skipName(ByteBuffer buffer, int offset) {
+		while (true) {
+			int length = buffer.get(offset) & 0xFF;
+			if (length == 0) return offset + 1;
+			if ((length & 0xC0) == 0xC0) return offset + 2;
+			offset += length + 1;
+		}
+	}
+
+	static String reverseName(InetAddress address) {
+		byte[] bytes = address.getAddress();
+		StringBuilder name = new StringBuilder(72);
+		if (address instanceof Inet4Address) {
+			for (int i = bytes.length - 1; i >= 0; i--) name.append(bytes[i] & 0xFF).append('.');
+			return name.append("in-addr.arpa").toString();
+		}
+		for (int i = bytes.length - 1; i >= 0; i--) {
+			name.append(Character.forDigit(bytes[i] & 0xF, 16)).append('.');
+			name.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append('.');
+		}
+		return name.append("ip6.arpa").toString();
+	}
+
+	/**
+	 * @return name servers listed in the file, in the same order
+	 */
+	static List<InetSocketAddress> readServers(Path file) {
+		List<InetSocketAddress> servers = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(file)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.trim().split("\\s+");
+				if (tokens.length < 2 || !tokens[0].equals("nameserver")) continue;
+				// literal addresses are parsed without lookups
+				if (Character.digit(tokens[1].charAt(0), 16) < 0 && tokens[1].charAt(0) != ':') continue;
+				try {
+					servers.add(new InetSocketAddress(InetAddress.getByName(tokens[1]), DNS_PORT));
+				}
+				catch (IOException e) {
+					LOG.fine("Invalid name server: " + tokens[1]);
+				}
+			}
+		}
+		catch (IOException e) {
+			// no resolv.conf, e.g. on Windows
+		}
+		return servers;
+	}
+
+	/**
+	 * Stops the client thread, cancelling all queries waiting for responses.
+	 * A new thread will be started on demand.
+	 */
+	@Override public synchronized void close() {
+		if (selectorThread != null) {
+			selectorThread.interrupt();
+			selector.wakeup();
+			selectorThread = null;
+		}
+	}
+
+	/**
+	 * Result of a reverse lookup
+	 */
+	public static class Answer {
+		/** name of the address, null if it has none */
+		public final String name;
+		/** for how long the answer can be cached, in seconds */
+		public final int ttl;
+
+		public Answer(String name, int ttl) {
+			this.name = name;
+			this.ttl = ttl;
+		}
+	}
+
+	/**
+	 * A single PTR query, completes with the answer
+	 */
+	static class Query extends CompletableFuture<Answer> {
+		private final String name;
+		private int id;
+		private int attempt;
+		private InetSocketAddress server;
+
+		Query(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Timeout of a single attempt of the query
+	 */
+	static class Deadline {
+		private final Query query;
+		private final int attempt;
+		private final long time;
+
+		Deadline(Query query, long time) {
+			this.query = query;
+			this.attempt = query.attempt;
+			this.time = time;
+		}
+	}
+}
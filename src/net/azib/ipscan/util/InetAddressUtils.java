@@ -31,6 +31,9 @@ public class InetAddressUtils {
 	static final Logger LOG = LoggerFactory.getLogger();
 
 	// Warning! IPv4 specific code
+	private static final InetAddress IPV4_SUBNET_MASK = parseNetmask(24);
+	private static final InetAddress IPV6_SUBNET_MASK = parseNetmask(64);
+
 	public static final Pattern HOSTNAME_REGEX = Pattern.compile("\\b((([a-z]|[a-z0-9][a-z0-9\\-]*[a-z0-9])\\.)+([a-z]{2,})|\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3})\\b", CASE_INSENSITIVE);
 
 	public static InetAddress startRangeByNetmask(InetAddress address, InetAddress netmask) {
@@ -63,6 +66,14 @@ public class InetAddressUtils {
 		}
 	}
 
+	/**
+	 * @return the /24 network of an IPv4 address or the /64 network of an IPv6 address,
+	 * which is usually a single LAN behind the same router/firewall
+	 */
+	public static InetAddress subnetOf(InetAddress address) {
+		return startRangeByNetmask(address, address instanceof Inet6Address ? IPV6_SUBNET_MASK : IPV4_SUBNET_MASK);
+	}
+
 	/**
 	 * Compares two IP addresses.
 	 * @return true in case inetAddress1 is greater than inetAddress2
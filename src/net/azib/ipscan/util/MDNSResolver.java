@@ -1,23 +1,227 @@
 package net.azib.ipscan.util;
 
+import net.azib.ipscan.config.LoggerFactory;
+
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.DatagramPacket;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
-import java.net.MulticastSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import static java.lang.Math.max;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.util.DNSResolver.HEADER_SIZE;
+import static net.azib.ipscan.util.DNSResolver.TYPE_PTR;
+import static net.azib.ipscan.util.DNSResolver.readName;
+import static net.azib.ipscan.util.DNSResolver.skipName;
+import static net.azib.ipscan.util.IOUtils.closeQuietly;
 
+/**
+ * Multicast DNS (Bonjour, Avahi) resolver of local host names, meant to be shared by all threads of a scan.
+ * <p>
+ * PTR queries go through a single socket, several questions per packet, and every response that arrives is matched
+ * to the waiting hosts by the reverse name in its answers, not by request IDs, as responders may answer any of the questions.
+ * Hosts queried in the same packet share the deadline, so unanswered ones don't cost a timeout each.
+ */
 public class MDNSResolver implements Closeable {
-	InetAddress mdnsIP = InetAddress.getByName("224.0.0.251");
-	private int mdnsPort = 5353;
-	MulticastSocket socket = new MulticastSocket();
-
-	public MDNSResolver(int timeout) throws IOException {
-		socket.setSoTimeout(timeout);
-		socket.setTimeToLive(1);
-		// TODO: iPhones respond only back to the multicast address and port 5353 provided requestId == 0
-		// socket.joinGroup(mdnsIP);
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final InetSocketAddress MDNS_ADDRESS = new InetSocketAddress("224.0.0.251", 5353);
+	/** Questions per packet at most, so that it fits into 512 bytes */
+	static final int MAX_QUESTIONS = 16;
+
+	private final SocketAddress target;
+	/** Queries in flight by reverse name, accessed by the caller threads for coalescing */
+	private final Map<String, Query> pending = new ConcurrentHashMap<>();
+
+	private Selector selector;
+	private Thread selectorThread;
+	/** Queries to be sent by the current selector thread */
+	private Queue<Query> queue;
+	private boolean closed;
+
+	public MDNSResolver() {
+		this(MDNS_ADDRESS);
+	}
+
+	MDNSResolver(SocketAddress target) {
+		this.target = target;
+	}
+
+	/**
+	 * Sends the PTR query with the next packet.
+	 * @param timeout in milliseconds
+	 * @return the name, or null if there was no response in time
+	 */
+	public CompletableFuture<String> resolveAsync(InetAddress address, int timeout) {
+		String name = DNSResolver.reverseName(address);
+		Query query = new Query(name, timeout);
+		Query existing = pending.putIfAbsent(name, query);
+		// the same host is already being resolved by another thread
+		if (existing != null) return existing;
+		try {
+			enqueue(query);
+		}
+		catch (IOException e) {
+			pending.remove(name, query);
+			query.completeExceptionally(e);
+		}
+		return query;
+	}
+
+	/**
+	 * @param timeout in milliseconds
+	 * @return the name, or null if there was no response in time
+	 */
+	public String resolve(InetAddress address, int timeout) throws IOException {
+		CompletableFuture<String> name = resolveAsync(address, timeout);
+		try {
+			return name.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private synchronized void enqueue(Query query) throws IOException {
+		if (closed) throw new SocketException("Resolver is closed");
+		if (selectorThread == null || !selectorThread.isAlive()) {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 1);
+			// not joining the group: responses to queries from a port other than 5353 are unicast back (RFC 6762, 6.7)
+			channel.bind(null);
+			Selector selector = this.selector = Selector.open();
+			channel.register(selector, OP_READ);
+			Queue<Query> queue = this.queue = new ConcurrentLinkedQueue<>();
+			selectorThread = new Thread(() -> run(selector, channel, queue), getClass().getSimpleName());
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		queue.add(query);
+		selector.wakeup();
+	}
+
+	private void run(Selector selector, DatagramChannel channel, Queue<Query> queue) {
+		// accessed only by this thread
+		PriorityQueue<Query> deadlines = new PriorityQueue<>(comparingLong(q -> q.deadline));
+		List<Query> batch = new ArrayList<>(MAX_QUESTIONS);
+		ByteBuffer buffer = ByteBuffer.allocate(9000);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Query query = deadlines.peek();
+				selector.select(query == null ? 0 : max(1, NANOSECONDS.toMillis(query.deadline - System.nanoTime())));
+				selector.selectedKeys().clear();
+
+				while (channel.receive(buffer) != null) {
+					buffer.flip();
+					receive(buffer);
+					buffer.clear();
+				}
+
+				long now = System.nanoTime();
+				while ((query = deadlines.peek()) != null && query.deadline <= now) {
+					deadlines.poll();
+					pending.remove(query.name, query);
+					query.complete(null);
+				}
+
+				// queries that have queued up meanwhile are sent together
+				while ((query = queue.poll()) != null) {
+					if (!query.isDone()) batch.add(query);
+					if (batch.size() == MAX_QUESTIONS || (queue.isEmpty() && !batch.isEmpty())) {
+						send(channel, batch);
+						now = System.nanoTime();
+						for (Query sent : batch) {
+							sent.deadline = now + MILLISECONDS.toNanos(sent.timeout);
+							deadlines.add(sent);
+						}
+						batch.clear();
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			LOG.log(WARNING, "mDNS resolver failed", e);
+		}
+		finally {
+			closeQuietly(channel);
+			closeQuietly(selector);
+			// queries of the next thread, if any, are left alone
+			Query query;
+			deadlines.addAll(batch);
+			while ((query = queue.poll()) != null) deadlines.add(query);
+			for (Query left : deadlines) {
+				pending.remove(left.name, left);
+				left.complete(null);
+			}
+		}
+	}
+
+	private void send(DatagramChannel channel, List<Query> batch) {
+		String[] names = batch.stream().map(q -> q.name).toArray(String[]::new);
+		try {
+			channel.send(ByteBuffer.wrap(dnsRequest(0, names)), target);
+		}
+		catch (IOException e) {
+			// e.g. no multicast route, the queries will just time out
+			LOG.fine("Unable to send mDNS query: " + e);
+		}
+	}
+
+	/**
+	 * Completes the queries for all PTR records in the response, both in its answer and additional sections.
+	 */
+	void receive(ByteBuffer response) {
+		try {
+			if (response.limit() < HEADER_SIZE || (response.getShort(2) & 0x8000) == 0) return;
+			int questions = response.getShort(4) & 0xFFFF;
+			int records = (response.getShort(6) & 0xFFFF) + (response.getShort(8) & 0xFFFF) + (response.getShort(10) & 0xFFFF);
+			int offset = HEADER_SIZE;
+			for (int i = 0; i < questions; i++) offset = skipName(response, offset) + 4;
+			for (int i = 0; i < records; i++) {
+				String owner = readName(response, offset);
+				offset = skipName(response, offset);
+				int type = response.getShort(offset) & 0xFFFF;
+				int length = response.getShort(offset + 8) & 0xFFFF;
+				offset += 10;
+				if (type == TYPE_PTR) {
+					Query query = pending.remove(owner.toLowerCase());
+					if (query != null) query.complete(readName(response, offset));
+				}
+				offset += length;
+			}
+		}
+		catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			// malformed response
+		}
 	}
 
 	void writeName(DataOutputStream out, String name) throws IOException {
@@ -32,53 +236,46 @@ public class MDNSResolver implements Closeable {
 		out.writeByte(0);
 	}
 
-	String decodeName(byte[] data, int offset, int length) {
-		StringBuilder s = new StringBuilder(length);
-		for (int i = offset; i < offset + length; i++) {
-			byte len = data[i];
-			if (len == 0) break;
-			s.append(new String(data, i + 1, len)).append('.');
-			i += len;
-		}
-		s.setLength(s.length() - 1);
-		return s.toString();
-	}
-
-	byte[] dnsRequest(int id, String name) throws IOException {
+	byte[] dnsRequest(int id, String ... names) throws IOException {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		DataOutputStream out = new DataOutputStream(baos);
 		out.writeShort(id);
-		out.write(new byte[] {0, 0, 0, 1, 0, 0, 0, 0, 0, 0});
-		writeName(out, name);
-		out.write(new byte[] {0, 0xc, 0, 1});
+		out.writeShort(0);
+		out.writeShort(names.length);
+		out.write(new byte[] {0, 0, 0, 0, 0, 0});
+		for (String name : names) {
+			writeName(out, name);
+			out.write(new byte[] {0, 0xc, 0, 1});
+		}
 		return baos.toByteArray();
 	}
 
-	String reverseName(byte[] addr) {
-		// note: only IPv4 is supported here
-		return (addr[3]&0xFF) + "." + (addr[2]&0xFF) + "." + (addr[1]&0xFF) + "." + (addr[0]&0xFF) + ".in-addr.arpa";
+	/**
+	 * Stops the resolver, the pending queries complete without a name.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (selectorThread != null) {
+			selectorThread.interrupt();
+			selector.wakeup();
+		}
 	}
 
-	public String resolve(InetAddress ip) throws IOException {
-		byte[] addr = ip.getAddress();
-		int requestId = addr[2] * 0xFF + addr[3];
-		byte[] request = dnsRequest(requestId, reverseName(addr));
-		socket.send(new DatagramPacket(request, request.length, mdnsIP, mdnsPort));
-
-		DatagramPacket respPacket = new DatagramPacket(new byte[512], 512);
-		socket.receive(respPacket);
-		byte[] response = respPacket.getData();
-		if (response[0] != request[0] && response[1] != request[1]) return null;
-		int numQueries = response[5];
-		int offset = (numQueries == 0 ? 12 : request.length) + 2 + 2 + 2 + 4 + 2;
-		return decodeName(response, offset, respPacket.getLength() - offset);
+	public static void main(String[] args) throws IOException {
+		try (MDNSResolver resolver = new MDNSResolver()) {
+			System.out.println(resolver.resolve(InetAddress.getByName(args.length > 0 ? args[0] : "192.168.0.10"), 2000));
+		}
 	}
 
-	public void close() {
-		socket.close();
-	}
+	static class Query extends CompletableFuture<String> {
+		final String name;
+		final int timeout;
+		/** accessed only by the selector thread */
+		long deadline;
 
-	public static void main(String[] args) throws IOException {
-		System.out.println(new MDNSResolver(2000).resolve(InetAddress.getByName("192.168.0.10")));
+		Query(String name, int timeout) {
+			this.name = name;
+			this.timeout = timeout;
+		}
 	}
 }
@@ -1,14 +1,44 @@
 package net.azib.ipscan.util;
 
+import net.azib.ipscan.config.LoggerFactory;
+
 import java.io.Closeable;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Selector;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import static java.lang.Math.max;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.WARNING;
+import static net.azib.ipscan.util.IOUtils.closeQuietly;
 
+/**
+ * NetBIOS name service (NBSTAT) resolver, shared by all fetchers and threads of a scan.
+ * <p>
+ * Queries to all the hosts are sent from a single non-blocking channel, served by one daemon thread,
+ * and replies are matched to the waiting hosts by their source addresses.
+ * Concurrent lookups of the same host share a single query.
+ */
 public class NetBIOSResolver implements Closeable {
-	private static final int NETBIOS_UDP_PORT = 137;
+	private static final Logger LOG = LoggerFactory.getLogger();
+
+	static final int NETBIOS_UDP_PORT = 137;
 	private static final byte[] REQUEST_DATA = {(byte)0xA2, 0x48, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x20, 0x43, 0x4b, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x41, 0x00, 0x00, 0x21, 0x00, 0x01};
 
 	private static final int RESPONSE_TYPE_POS = 47;
@@ -21,29 +51,151 @@ public class NetBIOSResolver implements Closeable {
 	private static final int NAME_TYPE_DOMAIN = 0x00;
 	private static final int NAME_TYPE_MESSENGER = 0x03;
 
-	DatagramSocket socket = new DatagramSocket();
+	private final int port;
+	/** Queries in flight by the target address */
+	private final Map<InetAddress, Query> pending = new ConcurrentHashMap<>();
+
+	private Selector selector;
+	private Thread selectorThread;
+	/** Queries to be sent by the current selector thread */
+	private Queue<Query> queue;
+
+	public NetBIOSResolver() {
+		this(NETBIOS_UDP_PORT);
+	}
+
+	NetBIOSResolver(int port) {
+		this.port = port;
+	}
 
-	public NetBIOSResolver(int timeout) throws SocketException {
-		socket.setSoTimeout(timeout);
+	/**
+	 * Sends the NBSTAT query without waiting for the reply.
+	 * @param timeout in milliseconds
+	 * @return computer name, user name, group name and MAC address, or null if the host hasn't replied in time
+	 */
+	public CompletableFuture<String[]> resolveAsync(InetAddress ip, int timeout) {
+		Query query = new Query(ip, timeout);
+		Query existing = pending.putIfAbsent(ip, query);
+		if (existing != null) return existing;
+		try {
+			enqueue(query);
+		}
+		catch (IOException e) {
+			pending.remove(ip, query);
+			query.completeExceptionally(e);
+		}
+		return query;
 	}
 
-	public String[] resolve(InetAddress ip) throws IOException {
-		socket.send(new DatagramPacket(REQUEST_DATA, REQUEST_DATA.length, ip, NETBIOS_UDP_PORT));
+	/**
+	 * @param timeout in milliseconds
+	 * @return computer name, user name, group name and MAC address, or null if the host hasn't replied in time
+	 */
+	public String[] resolve(InetAddress ip, int timeout) throws IOException {
+		CompletableFuture<String[]> names = resolveAsync(ip, timeout);
+		try {
+			return names.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
 
-		byte[] response = new byte[1024];
-		DatagramPacket responsePacket = new DatagramPacket(response, response.length);
-		socket.receive(responsePacket);
+	private synchronized void enqueue(Query query) throws IOException {
+		if (selectorThread == null || !selectorThread.isAlive()) {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.bind(null);
+			Selector selector = this.selector = Selector.open();
+			channel.register(selector, OP_READ);
+			Queue<Query> queue = this.queue = new ConcurrentLinkedQueue<>();
+			selectorThread = new Thread(() -> run(selector, channel, queue), getClass().getSimpleName());
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		queue.add(query);
+		selector.wakeup();
+	}
 
-		if (responsePacket.getLength() < RESPONSE_BASE_LEN || response[RESPONSE_TYPE_POS] != RESPONSE_TYPE_NBSTAT) {
+	private void run(Selector selector, DatagramChannel channel, Queue<Query> queue) {
+		// accessed only by this thread
+		PriorityQueue<Query> deadlines = new PriorityQueue<>(comparingLong(q -> q.deadline));
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Query query = deadlines.peek();
+				selector.select(query == null ? 0 : max(1, NANOSECONDS.toMillis(query.deadline - System.nanoTime())));
+				selector.selectedKeys().clear();
+
+				SocketAddress source;
+				while ((source = channel.receive(buffer)) != null) {
+					query = pending.get(((InetSocketAddress) source).getAddress());
+					if (query != null) {
+						pending.remove(query.ip, query);
+						query.complete(parseResponse(buffer.array(), buffer.position()));
+					}
+					buffer.clear();
+				}
+
+				long now = System.nanoTime();
+				while ((query = deadlines.peek()) != null && query.deadline <= now) {
+					deadlines.poll();
+					pending.remove(query.ip, query);
+					query.complete(null);
+				}
+
+				while ((query = queue.poll()) != null) {
+					try {
+						channel.send(ByteBuffer.wrap(REQUEST_DATA), new InetSocketAddress(query.ip, port));
+						query.deadline = System.nanoTime() + MILLISECONDS.toNanos(query.timeout);
+						deadlines.add(query);
+					}
+					catch (IOException e) {
+						// e.g. no route to host
+						pending.remove(query.ip, query);
+						query.complete(null);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			LOG.log(WARNING, "NetBIOS resolver failed", e);
+		}
+		finally {
+			closeQuietly(channel);
+			closeQuietly(selector);
+			// queries of the next thread, if any, are left alone
+			Query query;
+			while ((query = queue.poll()) != null) deadlines.add(query);
+			for (Query left : deadlines) {
+				pending.remove(left.ip, left);
+				left.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * @return the names from the reply, or null if it doesn't have them
+	 */
+	static String[] parseResponse(byte[] response, int length) {
+		if (length < RESPONSE_BASE_LEN || response[RESPONSE_TYPE_POS] != RESPONSE_TYPE_NBSTAT) {
 			return null; // response was too short - no names returned
 		}
 
 		int nameCount = response[RESPONSE_BASE_LEN - 1] & 0xFF;
-		if (responsePacket.getLength() < RESPONSE_BASE_LEN + RESPONSE_NAME_BLOCK_LEN * nameCount) {
+		if (length < RESPONSE_BASE_LEN + RESPONSE_NAME_BLOCK_LEN * nameCount) {
 			return null; // data was truncated or something is wrong
 		}
 
-		return extractNames(response, nameCount);
+		// the buffer is reused, so anything after the received bytes must not be mistaken for the MAC address
+		byte[] received = new byte[max(length, RESPONSE_BASE_LEN + RESPONSE_NAME_BLOCK_LEN * nameCount + 6)];
+		System.arraycopy(response, 0, received, 0, length);
+		return extractNames(received, nameCount);
 	}
 
 	static String[] extractNames(byte[] response, int nameCount) {
@@ -92,7 +244,27 @@ public class NetBIOSResolver implements Closeable {
 		return response[RESPONSE_BASE_LEN + RESPONSE_NAME_BLOCK_LEN * i + RESPONSE_NAME_LEN] & 0xFF;
 	}
 
-	public void close() {
-		socket.close();
+	/**
+	 * Stops the resolver thread, the pending queries complete without names.
+	 * It is started again by the next query.
+	 */
+	public synchronized void close() {
+		if (selectorThread != null) {
+			selectorThread.interrupt();
+			selector.wakeup();
+			selectorThread = null;
+		}
+	}
+
+	static class Query extends CompletableFuture<String[]> {
+		final InetAddress ip;
+		final int timeout;
+		/** accessed only by the selector thread */
+		long deadline;
+
+		Query(InetAddress ip, int timeout) {
+			this.ip = ip;
+			this.timeout = timeout;
+		}
 	}
 }
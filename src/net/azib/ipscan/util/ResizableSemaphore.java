@@ -0,0 +1,35 @@
+/*
+  This file is a part of Angry IP Scanner source code,
+  see http://www.angryip.org/ for more information.
+  Licensed under GPLv2.
+ */
+package net.azib.ipscan.util;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Semaphore, which total number of permits can be changed while it is in use.
+ * If the limit is lowered, the permits that are currently acquired are not taken away,
+ * but new acquires will wait until enough of them are released.
+ */
+public class ResizableSemaphore extends Semaphore {
+	private static final long serialVersionUID = 1L;
+
+	private int limit;
+
+	public ResizableSemaphore(int limit) {
+		super(limit);
+		this.limit = limit;
+	}
+
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	public synchronized void setLimit(int newLimit) {
+		int delta = newLimit - limit;
+		limit = newLimit;
+		if (delta > 0) release(delta);
+		else if (delta < 0) reducePermits(-delta);
+	}
+}
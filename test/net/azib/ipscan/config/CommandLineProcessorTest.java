@@ -7,6 +7,7 @@ import net.azib.ipscan.feeders.FeederRegistry;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -80,6 +81,61 @@ public class CommandLineProcessorTest {
 		verify(feederCreator).unserialize();
 	}
 
+	@Test
+	public void checkpoints() {
+		when(feederCreator.getFeederId()).thenReturn("feeder.feeder");
+		when(feederCreator.serializePartsLabels()).thenReturn(new String[0]);
+
+		processor.parse("-f:feeder", "-c", "scan.checkpoint");
+		assertEquals(new File("scan.checkpoint"), processor.checkpointFile);
+		assertFalse(processor.autoStart);
+	}
+
+	@Test
+	public void resumeDoesNotNeedFeeder() {
+		processor.parse("-r", "scan.checkpoint", "-q");
+		assertEquals(new File("scan.checkpoint"), processor.resumeFile);
+		assertNull(processor.feederCreator);
+		assertTrue(processor.autoStart);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void resumeWithFeeder() {
+		when(feederCreator.getFeederId()).thenReturn("feeder.feeder");
+		when(feederCreator.serializePartsLabels()).thenReturn(new String[0]);
+		processor.parse("-f:feeder", "-r", "scan.checkpoint");
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void missingCheckpointFile() {
+		processor.parse("-r", "-s");
+	}
+
+	@Test
+	public void distributed() {
+		when(feederCreator.getFeederId()).thenReturn("feeder.feeder");
+		when(feederCreator.serializePartsLabels()).thenReturn(new String[0]);
+
+		processor.parse("-f:feeder", "-d", "7777");
+		assertEquals(7777, processor.coordinatorPort);
+		assertEquals(0, processor.localWorkers);
+	}
+
+	@Test
+	public void localWorkers() {
+		when(feederCreator.getFeederId()).thenReturn("feeder.feeder");
+		when(feederCreator.serializePartsLabels()).thenReturn(new String[0]);
+
+		processor.parse("-f:feeder", "-w", "3");
+		assertEquals(-1, processor.coordinatorPort);
+		assertEquals(3, processor.localWorkers);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void missingWorkerCount() {
+		processor.parse("-w", "-s");
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void missingRequiredFeeder() {
 		processor.parse("-o", "exporter");
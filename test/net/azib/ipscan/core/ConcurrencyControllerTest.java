@@ -0,0 +1,59 @@
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.util.ResizableSemaphore;
+import org.junit.Test;
+
+import static net.azib.ipscan.core.ConcurrencyController.WINDOW_SIZE;
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrencyControllerTest {
+	private ConcurrencyController controller = new ConcurrencyController();
+	private ResizableSemaphore permits = new ResizableSemaphore(100);
+
+	@Test
+	public void inactiveByDefault() {
+		assertEquals(0, controller.getLimit());
+		controller.recordTimeout();
+		assertEquals(100, permits.availablePermits());
+	}
+
+	@Test
+	public void startsSlowAndIncreasesAdditively() {
+		controller.start(permits);
+		assertEquals(10, controller.getLimit());
+		assertEquals(10, permits.availablePermits());
+
+		controller.record(WINDOW_SIZE, 0, 0);
+		assertEquals(15, controller.getLimit());
+		for (int i = 0; i < 100; i++) controller.record(WINDOW_SIZE, 0, 0);
+		assertEquals(100, controller.getLimit());
+
+		controller.stop();
+		assertEquals(0, controller.getLimit());
+	}
+
+	@Test
+	public void decreasesMultiplicativelyOnCongestion() {
+		controller.start(permits);
+		for (int i = 0; i < 10; i++) controller.record(WINDOW_SIZE * 9 / 10, WINDOW_SIZE / 10, 0);
+		int limit = controller.getLimit();
+
+		controller.record(WINDOW_SIZE / 2, WINDOW_SIZE / 4, WINDOW_SIZE / 4);
+		assertEquals(limit / 2, controller.getLimit());
+		assertEquals(limit / 2, permits.availablePermits());
+	}
+
+	@Test
+	public void permitsInUseAreNotTakenAway() throws Exception {
+		controller.start(permits);
+		permits.acquire(10);
+		controller.record(WINDOW_SIZE, 0, 0);
+		assertEquals(15, controller.getLimit());
+		controller.record(0, WINDOW_SIZE, 0);
+		controller.record(0, 0, WINDOW_SIZE);
+		assertEquals(3, controller.getLimit());
+		assertEquals(-7, permits.availablePermits());
+		permits.release(10);
+		assertEquals(3, permits.availablePermits());
+	}
+}
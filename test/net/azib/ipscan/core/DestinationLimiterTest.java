@@ -0,0 +1,98 @@
+package net.azib.ipscan.core;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.*;
+
+public class DestinationLimiterTest {
+	@Test
+	public void unlimited() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(0, 0);
+		assertFalse(limiter.isLimited());
+		for (int i = 0; i < 10; i++) assertTrue(limiter.offer(subject("192.168.0.1")));
+		assertFalse(limiter.hasDeferred());
+	}
+
+	@Test
+	public void perHost() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(1, 0);
+		ScanningSubject first = subject("10.0.0.1");
+		ScanningSubject second = subject("10.0.0.1");
+		assertTrue(limiter.offer(first));
+		assertFalse(limiter.offer(second));
+		assertTrue(limiter.hasDeferred());
+		assertNull(limiter.poll());
+
+		limiter.release(first);
+		assertSame(second, limiter.poll());
+		assertFalse(limiter.hasDeferred());
+	}
+
+	@Test
+	public void otherSubnetsProceedWhileOneIsSaturated() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(0, 2);
+		ScanningSubject a1 = subject("10.0.1.1");
+		assertTrue(limiter.offer(a1));
+		assertTrue(limiter.offer(subject("10.0.1.2")));
+		ScanningSubject a3 = subject("10.0.1.3");
+		assertFalse(limiter.offer(a3));
+		ScanningSubject a4 = subject("10.0.1.4");
+		assertFalse(limiter.offer(a4));
+		assertTrue(limiter.offer(subject("10.0.2.1")));
+		assertNull(limiter.poll());
+
+		limiter.release(a1);
+		assertSame(a3, limiter.poll());
+		assertNull(limiter.poll());
+		assertTrue(limiter.hasDeferred());
+	}
+
+	@Test
+	public void waitingAddressesAreNotOvertaken() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(1, 0);
+		ScanningSubject first = subject("10.0.0.1");
+		assertTrue(limiter.offer(first));
+		assertFalse(limiter.offer(subject("10.0.0.1")));
+		assertFalse("another host of the same subnet waits for its turn", limiter.offer(subject("10.0.0.2")));
+		assertTrue(limiter.offer(subject("10.0.3.1")));
+	}
+
+	@Test
+	public void ipv6SubnetIs64() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(0, 1);
+		assertTrue(limiter.offer(subject("2001:db8::1")));
+		assertFalse(limiter.offer(subject("2001:db8::ffff:2")));
+		assertTrue(limiter.offer(subject("2001:db8:0:1::1")));
+	}
+
+	@Test
+	public void awaitReturnsWhenReleased() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(1, 0);
+		ScanningSubject first = subject("10.0.0.1");
+		ScanningSubject second = subject("10.0.0.1");
+		limiter.offer(first);
+		limiter.offer(second);
+		assertNull(limiter.await(10));
+
+		new Thread(() -> limiter.release(first)).start();
+		assertSame(second, limiter.await(5000));
+	}
+
+	@Test
+	public void isFull() throws Exception {
+		DestinationLimiter limiter = new DestinationLimiter(0, 1);
+		limiter.offer(subject("10.0.0.0"));
+		for (int i = 0; i < DestinationLimiter.MAX_DEFERRED; i++) {
+			assertFalse(limiter.isFull());
+			limiter.offer(subject("10.0.0." + (i % 256)));
+		}
+		assertTrue(limiter.isFull());
+	}
+
+	private static ScanningSubject subject(String address) throws UnknownHostException {
+		return new ScanningSubject(InetAddress.getByName(address));
+	}
+}
@@ -0,0 +1,60 @@
+package net.azib.ipscan.core;
+
+import org.junit.Test;
+
+import static net.azib.ipscan.core.LatencyHistogram.*;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+	LatencyHistogram histogram = new LatencyHistogram();
+
+	@Test
+	public void bucketsAreContiguous() {
+		assertEquals(0, indexOf(0));
+		assertEquals(SUB_BUCKETS - 1, indexOf(SUB_BUCKETS - 1));
+		for (int i = 1; i < indexOf(Long.MAX_VALUE); i++) {
+			assertEquals(i, indexOf(lowestValueOf(i)));
+			assertEquals(i, indexOf(highestValueOf(i)));
+			assertEquals(highestValueOf(i - 1) + 1, lowestValueOf(i));
+		}
+		assertEquals(Long.MAX_VALUE, highestValueOf(indexOf(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void bucketsArePreciseEnough() {
+		for (long value = 1; value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			int index = indexOf(value);
+			assertTrue(highestValueOf(index) - lowestValueOf(index) <= value / (SUB_BUCKETS / 2));
+		}
+	}
+
+	@Test
+	public void empty() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean());
+	}
+
+	@Test
+	public void stats() {
+		for (int i = 1; i <= 100; i++) histogram.record(i * 1000000L);
+		histogram.record(-1);
+		assertEquals(100, histogram.getCount());
+		assertEquals(1000000, histogram.getMin());
+		assertEquals(100000000, histogram.getMax());
+		assertEquals(50500000, histogram.getMean());
+		assertEquals(50000000, histogram.getPercentile(50), 50000000 / 16);
+		assertEquals(99000000, histogram.getPercentile(99), 99000000 / 16);
+		assertEquals(100000000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void countInRanges() {
+		for (int i = 1; i <= 100; i++) histogram.record(i * 1000000L);
+		assertEquals(100, histogram.getCount(0, Long.MAX_VALUE));
+		assertEquals(0, histogram.getCount(0, 900000));
+		assertEquals(histogram.getCount(), histogram.getCount(0, 10000000) + histogram.getCount(10000000, Long.MAX_VALUE));
+		assertEquals(9, histogram.getCount(0, 10000000), 1);
+	}
+}
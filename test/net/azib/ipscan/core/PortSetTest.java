@@ -0,0 +1,82 @@
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.core.values.NumericRangeList;
+import org.junit.Test;
+
+import java.util.PrimitiveIterator;
+
+import static org.junit.Assert.*;
+
+public class PortSetTest {
+	PortSet ports = new PortSet();
+
+	@Test
+	public void empty() {
+		assertTrue(ports.isEmpty());
+		assertEquals(0, ports.size());
+		assertEquals("", ports.toString());
+		assertFalse(ports.iterator().hasNext());
+		assertArrayEquals(new int[0], ports.toArray());
+	}
+
+	@Test
+	public void portsAreSorted() {
+		for (int port : new int[] {8080, 22, 65535, 80, 22}) ports.add(port);
+		assertEquals(4, ports.size());
+		assertTrue(ports.contains(65535));
+		assertFalse(ports.contains(23));
+		assertFalse(ports.contains(-1));
+		assertArrayEquals(new int[] {22, 80, 8080, 65535}, ports.toArray());
+
+		PrimitiveIterator.OfInt i = ports.iterator();
+		assertEquals(22, i.nextInt());
+		assertEquals(80, i.nextInt());
+		assertEquals(8080, i.nextInt());
+		assertEquals(65535, i.nextInt());
+		assertFalse(i.hasNext());
+	}
+
+	@Test
+	public void rangesAreRenderedLikeNumericRangeList() {
+		for (int port : new int[] {1, 5, 6, 7, 8, 15, 20, 21}) ports.add(port);
+		assertEquals("1,5-8,15,20,21", ports.toString());
+		assertEquals(new NumericRangeList(ports, true).toString(), ports.toString());
+		assertEquals("1,5,6,7,8,15,20,21", new NumericRangeList(ports, false).toString());
+
+		// can be parsed back
+		PortIterator parsed = new PortIterator(ports.toString());
+		for (int port : ports.toArray()) assertEquals(port, (int) parsed.next());
+		assertFalse(parsed.hasNext());
+
+		PortSet all = new PortSet();
+		for (int port = 1; port < 65536; port++) all.add(port);
+		assertEquals("1-65535", all.toString());
+	}
+
+	@Test
+	public void copyAndAddAll() {
+		ports.add(80);
+		PortSet copy = ports.copy();
+		copy.add(443);
+		assertEquals("80", ports.toString());
+		assertEquals("80,443", copy.toString());
+
+		ports.addAll(copy);
+		ports.add(8080);
+		assertEquals("80,443,8080", ports.toString());
+	}
+
+	@Test
+	public void concurrentAdding() throws Exception {
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int port = offset; port < 65536; port += threads.length) ports.add(port);
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		assertEquals(65536, ports.size());
+	}
+}
@@ -0,0 +1,87 @@
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.ScannerConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class RTTEstimatorTest {
+	private ScannerConfig config = mock(ScannerConfig.class);
+	private RTTEstimator estimator = new RTTEstimator(config);
+
+	@Before
+	public void setUp() {
+		config.adaptPortTimeout = true;
+		config.minPortTimeout = 10;
+		config.minPingTimeout = 200;
+	}
+
+	@Test
+	public void unknownSubnetGetsFullTimeout() throws Exception {
+		assertEquals(2000, estimator.getTimeout(InetAddress.getByName("10.0.0.1"), 2000));
+	}
+
+	@Test
+	public void notEnoughSamples() throws Exception {
+		for (int i = 1; i < RTTEstimator.MIN_SAMPLES; i++) estimator.sample(InetAddress.getByName("10.0.0.1"), 20);
+		assertEquals(2000, estimator.getTimeout(InetAddress.getByName("10.0.0.2"), 2000));
+	}
+
+	@Test
+	public void timeoutIsSharedBySubnet() throws Exception {
+		// the first sample sets variance to half of it, then constant samples decrease it by 1/4 each time
+		estimator.sample(InetAddress.getByName("10.0.0.1"), 40);
+		estimator.sample(InetAddress.getByName("10.0.0.2"), 40);
+		estimator.sample(InetAddress.getByName("10.0.0.3"), 40);
+		// srtt = 40, rttvar = 20 * 0.75^2 = 11.25
+		assertEquals(85, estimator.getTimeout(InetAddress.getByName("10.0.0.200"), 2000));
+		assertEquals(2000, estimator.getTimeout(InetAddress.getByName("10.0.1.1"), 2000));
+	}
+
+	@Test
+	public void varianceFollowsJitter() throws Exception {
+		InetAddress address = InetAddress.getByName("10.0.0.1");
+		for (int i = 0; i < 50; i++) estimator.sample(address, 10);
+		int stable = estimator.getTimeout(address, 2000);
+		assertEquals(11, stable);
+		for (int i = 0; i < 10; i++) estimator.sample(address, i % 2 == 0 ? 10 : 50);
+		assertEquals(true, estimator.getTimeout(address, 2000) > stable + 50);
+	}
+
+	@Test
+	public void clampedByConfig() throws Exception {
+		InetAddress address = InetAddress.getByName("2001:db8::1");
+		for (int i = 0; i < 5; i++) estimator.sample(address, 1);
+		assertEquals(config.minPortTimeout, estimator.getTimeout(InetAddress.getByName("2001:db8::ffff"), 2000));
+		for (int i = 0; i < 5; i++) estimator.sample(address, 5000);
+		assertEquals(2000, estimator.getTimeout(address, 2000));
+	}
+
+	@Test
+	public void pingTimeoutHasItsOwnMinimum() throws Exception {
+		InetAddress address = InetAddress.getByName("10.0.0.1");
+		for (int i = 0; i < 5; i++) estimator.sample(address, 1);
+		assertEquals(config.minPortTimeout, estimator.getTimeout(address, 2000));
+		assertEquals(config.minPingTimeout, estimator.getPingTimeout(address, 2000));
+	}
+
+	@Test
+	public void clear() throws Exception {
+		InetAddress address = InetAddress.getByName("10.0.0.1");
+		for (int i = 0; i < 5; i++) estimator.sample(address, 1);
+		estimator.clear();
+		assertEquals(2000, estimator.getTimeout(address, 2000));
+	}
+
+	@Test
+	public void disabledAdaptation() throws Exception {
+		config.adaptPortTimeout = false;
+		InetAddress address = InetAddress.getByName("10.0.0.1");
+		for (int i = 0; i < 5; i++) estimator.sample(address, 10);
+		assertEquals(2000, estimator.getTimeout(address, 2000));
+	}
+}
@@ -0,0 +1,60 @@
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.ScannerConfig;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class RateLimiterTest {
+	@Test
+	public void unlimited() {
+		RateLimiter limiter = new RateLimiter(0);
+		for (int i = 0; i < 1000; i++) assertEquals(0, limiter.reserve());
+	}
+
+	@Test
+	public void permitsAreEvenlySpaced() {
+		RateLimiter limiter = new RateLimiter(1000);
+		// the burst is available right away
+		long burst = MILLISECONDS.toNanos(50) / MILLISECONDS.toNanos(1);
+		for (int i = 0; i < burst; i++) limiter.reserve();
+		long wait = limiter.reserve();
+		for (int i = 0; i < 10; i++) {
+			long next = limiter.reserve();
+			assertTrue(next - wait > MILLISECONDS.toNanos(1) - 100000);
+			wait = next;
+		}
+	}
+
+	@Test
+	public void acquireWaits() throws Exception {
+		RateLimiter limiter = new RateLimiter(100);
+		// use up the burst
+		while (limiter.reserve() <= 0);
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) limiter.acquire();
+		assertTrue(NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+	}
+
+	@Test
+	public void paceStopsWhenInterrupted() {
+		RateLimiter limiter = new RateLimiter(1);
+		Thread.currentThread().interrupt();
+		assertFalse(limiter.pace());
+		assertTrue(Thread.interrupted());
+	}
+
+	@Test
+	public void probeRateIsTakenFromConfig() throws Exception {
+		ScannerConfig config = mock(ScannerConfig.class);
+		ProbeRateLimiter limiter = new ProbeRateLimiter(config);
+		limiter.acquire();
+		assertEquals(0, limiter.getRate(), 0);
+		config.maxProbesPerSecond = 500;
+		limiter.acquire();
+		assertEquals(500, limiter.getRate(), 0);
+	}
+}
@@ -0,0 +1,204 @@
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.GUIConfig;
+import net.azib.ipscan.config.GUIConfig.DisplayMethod;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ScanningResult.ResultType;
+import net.azib.ipscan.feeders.Feeder;
+import net.azib.ipscan.feeders.FeederCreator;
+import net.azib.ipscan.feeders.FeederRegistry;
+import net.azib.ipscan.feeders.RangeFeeder;
+import net.azib.ipscan.feeders.RescanFeeder;
+import net.azib.ipscan.fetchers.Fetcher;
+import net.azib.ipscan.fetchers.FetcherRegistry;
+import net.azib.ipscan.fetchers.IPFetcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ScanCheckpointTest {
+	private File file;
+	private ScannerConfig config = mock(ScannerConfig.class);
+	private FeederCreator feederCreator = mock(FeederCreator.class);
+	private FeederRegistry feederRegistry = mock(FeederRegistry.class);
+	private FetcherRegistry fetcherRegistry = mock(FetcherRegistry.class);
+	private GUIConfig guiConfig = mock(GUIConfig.class);
+	private ScanCheckpoint checkpoint;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("checkpoint", "txt");
+		when(feederCreator.getFeederId()).thenReturn("feeder.range");
+		when(feederCreator.serialize()).thenReturn(new String[] {"10.0.0.1", "10.0.0.10"});
+		when(feederRegistry.iterator()).then(i -> singletonList(feederCreator).iterator());
+		Fetcher pingFetcher = mock(Fetcher.class);
+		when(pingFetcher.getId()).thenReturn("fetcher.ping");
+		when(fetcherRegistry.getSelectedFetchers()).thenReturn(asList(new IPFetcher(), pingFetcher));
+		guiConfig.displayMethod = DisplayMethod.ALIVE;
+		checkpoint = new ScanCheckpoint(config, fetcherRegistry, feederRegistry, guiConfig);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void disabledByDefault() {
+		Feeder feeder = new RangeFeeder("10.0.0.1", "10.0.0.10");
+		assertNull(checkpoint.getFile());
+		assertSame(feeder, checkpoint.start(feeder));
+		config.checkpointInterval = 60;
+		assertEquals(ScanCheckpoint.defaultFile(), checkpoint.getFile());
+	}
+
+	@Test
+	public void rescanIsNotJournaled() {
+		checkpoint.setFile(file);
+		Feeder feeder = new RescanFeeder(new RangeFeeder("10.0.0.1", "10.0.0.10"), "10.0.0.5");
+		assertSame(feeder, checkpoint.start(feeder));
+	}
+
+	@Test
+	public void resumeSkipsFinishedAddresses() throws Exception {
+		config.portString = "22";
+		checkpoint.setFile(file);
+		Feeder feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		assertEquals("feeder.range", feeder.getId());
+		assertEquals("10.0.0.1 - 10.0.0.10", feeder.getInfo());
+
+		scanned(feeder.next(), ResultType.ALIVE);
+		scanned(feeder.next(), ResultType.DEAD);
+		feeder.next(); // still scanning
+		checkpoint.skipped(feeder.next().getAddress());
+		scanned(feeder.next(), ResultType.WITH_PORTS);
+		checkpoint.finish();
+
+		ScannerConfig newConfig = mock(ScannerConfig.class);
+		ScanCheckpoint resumed = new ScanCheckpoint(newConfig, fetcherRegistry, feederRegistry, guiConfig);
+		resumed.resume(file);
+		assertEquals("22", newConfig.portString);
+		verify(feederRegistry).select("feeder.range");
+		verify(feederCreator).unserialize("10.0.0.1", "10.0.0.10");
+		verify(fetcherRegistry, never()).updateSelectedFetchers(any());
+
+		feeder = resumed.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		List<ScanningResult> results = resumed.getResumedResults();
+		assertEquals(2, results.size());
+		assertEquals(InetAddress.getByName("10.0.0.1"), results.get(0).getAddress());
+		assertEquals(ResultType.ALIVE, results.get(0).getType());
+		assertEquals(asList("10.0.0.1", "ALIVE value"), results.get(0).getValues());
+		assertEquals(ResultType.WITH_PORTS, results.get(1).getType());
+
+		assertEquals(asList("10.0.0.3", "10.0.0.6", "10.0.0.7", "10.0.0.8", "10.0.0.9", "10.0.0.10"), addresses(feeder));
+	}
+
+	@Test
+	public void resultsAreJournaledAsDisplayed() throws Exception {
+		guiConfig.displayMethod = DisplayMethod.ALL;
+		checkpoint.setFile(file);
+		Feeder feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		scanned(feeder.next(), ResultType.DEAD);
+		scanned(feeder.next(), ResultType.ALIVE);
+		checkpoint.finish();
+
+		checkpoint.resume(file);
+		checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		List<ScanningResult> results = checkpoint.getResumedResults();
+		assertEquals(2, results.size());
+		assertEquals(ResultType.DEAD, results.get(0).getType());
+		checkpoint.finish();
+
+		guiConfig.displayMethod = DisplayMethod.PORTS;
+		file.delete();
+		feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		scanned(feeder.next(), ResultType.ALIVE);
+		scanned(feeder.next(), ResultType.WITH_PORTS);
+		checkpoint.finish();
+
+		checkpoint.resume(file);
+		checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		results = checkpoint.getResumedResults();
+		assertEquals(1, results.size());
+		assertEquals(ResultType.WITH_PORTS, results.get(0).getType());
+	}
+
+	@Test
+	public void configOfUserIsRestoredAfterResumedScan() throws Exception {
+		config.portString = "22";
+		checkpoint.setFile(file);
+		checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10")).next();
+		checkpoint.finish();
+
+		config.portString = "80";
+		checkpoint.resume(file);
+		assertEquals("22", config.portString);
+		checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		assertEquals("22", config.portString);
+		checkpoint.finish();
+		assertEquals("80", config.portString);
+	}
+
+	@Test
+	public void resumedScanCanBeResumedAgain() throws Exception {
+		checkpoint.setFile(file);
+		Feeder feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		feeder.next();
+		scanned(feeder.next(), ResultType.ALIVE);
+		checkpoint.finish();
+
+		checkpoint.resume(file);
+		feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		scanned(feeder.next(), ResultType.DEAD);
+		feeder.next();
+		checkpoint.finish();
+
+		checkpoint.resume(file);
+		feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		assertEquals(1, checkpoint.getResumedResults().size());
+		assertEquals(asList("10.0.0.3", "10.0.0.4", "10.0.0.5", "10.0.0.6", "10.0.0.7", "10.0.0.8", "10.0.0.9", "10.0.0.10"), addresses(feeder));
+	}
+
+	@Test
+	public void incompleteLastLineIsIgnored() throws Exception {
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write("ipscan-checkpoint\t3\nfeeder\tfeeder.range\t10.0.0.1\t10.0.0.10\nposition\t3\t10.0.0.2\nresult\tALIVE");
+		}
+		checkpoint.resume(file);
+		Feeder feeder = checkpoint.start(new RangeFeeder("10.0.0.1", "10.0.0.10"));
+		assertEquals("10.0.0.2", feeder.next().getAddress().getHostAddress());
+		assertEquals("10.0.0.4", feeder.next().getAddress().getHostAddress());
+	}
+
+	@Test(expected = UserErrorException.class)
+	public void notAJournal() throws Exception {
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write("Generated by Angry IP Scanner\n");
+		}
+		checkpoint.resume(file);
+	}
+
+	private void scanned(ScanningSubject subject, ResultType type) {
+		ScanningResult result = new ScanningResult(subject.getAddress(), 2);
+		result.setValue(1, type + " value");
+		result.setType(type);
+		checkpoint.scanned(result);
+	}
+
+	private static List<String> addresses(Feeder feeder) {
+		List<String> addresses = new ArrayList<>();
+		while (feeder.hasNext()) addresses.add(feeder.next().getAddress().getHostAddress());
+		return addresses;
+	}
+}
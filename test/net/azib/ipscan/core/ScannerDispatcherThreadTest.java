@@ -7,15 +7,19 @@ package net.azib.ipscan.core;
 
 import java.net.InetAddress;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import net.azib.ipscan.config.ScannerConfig;
 import net.azib.ipscan.core.ScanningResultList.ScanInfo;
+import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.feeders.Feeder;
 import net.azib.ipscan.fetchers.Fetcher;
 import net.azib.ipscan.fetchers.FetcherRegistry;
 import net.azib.ipscan.fetchers.IPFetcher;
 
+import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
@@ -53,6 +57,17 @@ public class ScannerDispatcherThreadTest {
 		assertTrue(thread.isDaemon());
 		assertEquals(config.maxThreads, ((ThreadPoolExecutor)thread.threadPool).getMaximumPoolSize());
 		assertEquals(thread, ((ThreadPoolExecutor) thread.threadPool).getThreadFactory());
+		assertEquals(config.maxThreads, thread.threadPermits.availablePermits());
+	}
+
+	@Test
+	public void hostsPerSecond() throws Exception {
+		ScannerConfig config = mock(ScannerConfig.class);
+		assertEquals(0, ScannerDispatcherThread.hostsPerSecond(config), 0);
+		config.threadDelay = 20;
+		assertEquals(50, ScannerDispatcherThread.hostsPerSecond(config), 0);
+		config.maxHostsPerSecond = 1000;
+		assertEquals(1000, ScannerDispatcherThread.hostsPerSecond(config), 0);
 	}
 	
 	@Test
@@ -63,4 +78,90 @@ public class ScannerDispatcherThreadTest {
 		assertTrue(t.isDaemon());
 		assertSame(thread.threadGroup, t.getThreadGroup());
 	}
+
+	@Test
+	public void nextSubjectInterleavesSubnets() throws Exception {
+		FetcherRegistry registry = mock(FetcherRegistry.class);
+		when(registry.getSelectedFetchers()).thenReturn(Collections.<Fetcher>singleton(new IPFetcher()));
+		ScanningSubject first = new ScanningSubject(InetAddress.getByName("10.0.0.1"));
+		ScanningSubject sameSubnet = new ScanningSubject(InetAddress.getByName("10.0.0.2"));
+		ScanningSubject otherSubnet = new ScanningSubject(InetAddress.getByName("10.0.1.1"));
+		Feeder feeder = mock(Feeder.class);
+		Iterator<ScanningSubject> subjects = asList(first, sameSubnet, otherSubnet).iterator();
+		when(feeder.hasNext()).then(i -> subjects.hasNext());
+		when(feeder.next()).then(i -> subjects.next());
+
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.maxThreads = 10;
+		config.maxThreadsPerSubnet = 1;
+
+		ScannerDispatcherThread thread = new ScannerDispatcherThread(feeder, new Scanner(registry), null, null, new ScanningResultList(registry), config, null);
+		assertSame(first, thread.nextSubject());
+		assertSame(otherSubnet, thread.nextSubject());
+		assertNull(thread.nextSubject());
+		assertTrue(thread.destinationLimiter.hasDeferred());
+
+		thread.destinationLimiter.release(first);
+		assertSame(sameSubnet, thread.nextSubject());
+	}
+
+	@Test
+	public void virtualThreadsHaveSeparateLimit() throws Exception {
+		FetcherRegistry registry = mock(FetcherRegistry.class);
+		when(registry.getSelectedFetchers()).thenReturn(Collections.<Fetcher>singleton(new IPFetcher()));
+		Feeder feeder = mock(Feeder.class);
+
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.maxThreads = 10;
+		config.useVirtualThreads = true;
+		config.maxVirtualThreads = 10000;
+
+		ScannerDispatcherThread thread = new ScannerDispatcherThread(feeder, new Scanner(registry), null, null, new ScanningResultList(registry), config, null);
+		if (ScannerDispatcherThread.newVirtualThreadPool() != null) {
+			assertEquals(config.maxVirtualThreads, thread.threadPermits.availablePermits());
+			assertFalse(thread.threadPool instanceof ThreadPoolExecutor);
+		}
+		else {
+			// older Java versions fall back to normal threads
+			assertEquals(config.maxThreads, thread.threadPermits.availablePermits());
+			assertEquals(config.maxThreads, ((ThreadPoolExecutor) thread.threadPool).getMaximumPoolSize());
+		}
+	}
+
+	@Test
+	public void pipelinedScanHandsOverOnlyAliveAddresses() throws Exception {
+		FetcherRegistry registry = mock(FetcherRegistry.class);
+		when(registry.getSelectedFetchers()).thenReturn(Collections.<Fetcher>singleton(new IPFetcher()));
+		ScanningSubject alive = new ScanningSubject(InetAddress.getLoopbackAddress());
+		ScanningSubject dead = new ScanningSubject(InetAddress.getByName("127.0.0.2"));
+		Feeder feeder = mock(Feeder.class);
+		Iterator<ScanningSubject> subjects = asList(alive, dead).iterator();
+		when(feeder.hasNext()).then(i -> subjects.hasNext());
+		when(feeder.next()).then(i -> subjects.next());
+
+		Scanner scanner = mock(Scanner.class);
+		when(scanner.getDiscoveryFetcherCount()).thenReturn(1);
+		doAnswer(i -> { dead.abortAddressScanning(); return null; }).when(scanner).scan(same(dead), any(), eq(0), eq(1));
+
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.maxThreads = 10;
+		config.pipelinedScanning = true;
+		config.maxServiceThreads = 1;
+
+		StateMachine stateMachine = new StateMachine() {};
+		stateMachine.transitionToNext();
+		stateMachine.startScanning();
+		ScanningResultCallback resultsCallback = mock(ScanningResultCallback.class);
+		ScannerDispatcherThread thread = new ScannerDispatcherThread(feeder, scanner, stateMachine, mock(ScanningProgressCallback.class), new ScanningResultList(registry), config, resultsCallback);
+		assertEquals(2, thread.servicePermits.availablePermits());
+		thread.run();
+
+		verify(scanner).scan(same(alive), any(), eq(0), eq(1));
+		verify(scanner).scan(same(alive), any(), eq(1), eq(Integer.MAX_VALUE));
+		// the dead address only gets its remaining values filled in
+		verify(scanner).scan(same(dead), any(), eq(1), eq(Integer.MAX_VALUE));
+		verify(resultsCallback, times(2)).consumeResults(any());
+		assertTrue(thread.servicePool.isTerminated());
+		assertEquals(2, thread.servicePermits.availablePermits());
+	}
 }
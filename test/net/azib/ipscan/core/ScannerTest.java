@@ -1,24 +1,36 @@
 package net.azib.ipscan.core;
 
+import net.azib.ipscan.config.ScannerConfig;
 import net.azib.ipscan.core.ScanningResult.ResultType;
+import net.azib.ipscan.core.net.AsyncConnector;
 import net.azib.ipscan.core.values.NotAvailable;
 import net.azib.ipscan.core.values.NotScanned;
 import net.azib.ipscan.feeders.Feeder;
 import net.azib.ipscan.fetchers.AbstractFetcher;
 import net.azib.ipscan.fetchers.Fetcher;
 import net.azib.ipscan.fetchers.FetcherRegistry;
+import net.azib.ipscan.fetchers.IPFetcher;
+import net.azib.ipscan.fetchers.PingFetcher;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * ScannerTest
@@ -80,6 +92,114 @@ public class ScannerTest {
 		assertTrue(Thread.interrupted());
 	}
 
+	@Test
+	public void independentFetchersRunConcurrently() throws Exception {
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.concurrentFetchers = true;
+		config.maxThreads = 10;
+		CountDownLatch latch = new CountDownLatch(2);
+		fetcherRegistry = mock(FetcherRegistry.class);
+		when(fetcherRegistry.getSelectedFetchers()).thenReturn(
+			Arrays.asList(new Fetcher[] {new FakeFetcher(), new LatchFetcher(latch), new LatchFetcher(latch), new DependentFetcher()})
+		);
+		scanner = new Scanner(fetcherRegistry, config);
+		scanner.init(mock(Feeder.class));
+
+		ScanningResult scanningResult = new ScanningResult(InetAddress.getLocalHost(), 4);
+		scanner.scan(new ScanningSubject(InetAddress.getLocalHost()), scanningResult);
+
+		assertEquals(ResultType.ALIVE, scanningResult.getType());
+		assertEquals(Arrays.asList("blah", "latched", "latched", 211082L), scanningResult.getValues());
+	}
+
+	@Test
+	public void deadHostAbortWorksConcurrently() throws Exception {
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.concurrentFetchers = true;
+		config.maxThreads = 10;
+		fetcherRegistry = mock(FetcherRegistry.class);
+		when(fetcherRegistry.getSelectedFetchers()).thenReturn(
+			Arrays.asList(new Fetcher[] {new PlainValueFetcher(), new AddressAbortingFetcher(), new FailingFetcher(), new FailingFetcher()})
+		);
+		scanner = new Scanner(fetcherRegistry, config);
+		scanner.init(mock(Feeder.class));
+
+		ScanningResult scanningResult = new ScanningResult(InetAddress.getLocalHost(), 4);
+		scanner.scan(new ScanningSubject(InetAddress.getLocalHost()), scanningResult);
+
+		assertEquals(Arrays.asList("plainValue", "666 ms", NotScanned.VALUE, NotScanned.VALUE), scanningResult.getValues());
+	}
+
+	@Test
+	public void fetchersOfHostAreLimited() throws Exception {
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.concurrentFetchers = true;
+		config.maxThreads = 10;
+		config.maxThreadsPerHost = 2;
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Fetcher[] fetchers = new Fetcher[5];
+		for (int i = 0; i < fetchers.length; i++) fetchers[i] = new CountingFetcher(running, maxRunning);
+		fetcherRegistry = mock(FetcherRegistry.class);
+		when(fetcherRegistry.getSelectedFetchers()).thenReturn(Arrays.asList(fetchers));
+		scanner = new Scanner(fetcherRegistry, config);
+		scanner.init(mock(Feeder.class));
+
+		ScanningResult scanningResult = new ScanningResult(InetAddress.getLocalHost(), fetchers.length);
+		scanner.scan(new ScanningSubject(InetAddress.getLocalHost()), scanningResult);
+		scanner.cleanup();
+
+		assertEquals(Arrays.asList("counted", "counted", "counted", "counted", "counted"), scanningResult.getValues());
+		assertTrue(maxRunning.get() <= 2);
+	}
+
+	@Test
+	public void scanStages() throws Exception {
+		fetcherRegistry = mock(FetcherRegistry.class);
+		PingFetcher pingFetcher = mock(PingFetcher.class);
+		when(pingFetcher.scan(any())).thenReturn("pong");
+		when(fetcherRegistry.getSelectedFetchers()).thenReturn(
+			Arrays.asList(new Fetcher[] {new PlainValueFetcher(), pingFetcher, new PlainValueFetcher()})
+		);
+		scanner = new Scanner(fetcherRegistry);
+		scanner.init(mock(Feeder.class));
+		assertEquals(2, scanner.getDiscoveryFetcherCount());
+
+		ScanningResult scanningResult = new ScanningResult(InetAddress.getLocalHost(), 3);
+		ScanningSubject subject = new ScanningSubject(InetAddress.getLocalHost());
+		scanner.scan(subject, scanningResult, 0, scanner.getDiscoveryFetcherCount());
+		assertEquals(Arrays.asList("plainValue", "pong", null), scanningResult.getValues());
+		scanner.scan(subject, scanningResult, scanner.getDiscoveryFetcherCount(), Integer.MAX_VALUE);
+		assertEquals(Arrays.asList("plainValue", "pong", "plainValue"), scanningResult.getValues());
+	}
+
+	@Test
+	public void dependencies() throws Exception {
+		List<Fetcher> fetchers = Arrays.asList(new IPFetcher(), new FakeFetcher(), new DependentFetcher(), new FakeFetcher() {
+			@Override public Collection<Class<? extends Fetcher>> getDependencies() {
+				return null;
+			}
+		});
+		assertTrue(Scanner.dependenciesOf(fetchers, 0).isEmpty());
+		assertTrue(Scanner.dependenciesOf(fetchers, 1).isEmpty());
+		assertEquals("{1}", Scanner.dependenciesOf(fetchers, 2).toString());
+		assertEquals("{0, 1, 2}", Scanner.dependenciesOf(fetchers, 3).toString());
+	}
+
+	@Test
+	public void pluginsDependOnAllPrecedingFetchers() throws Exception {
+		List<Fetcher> fetchers = Arrays.asList(new FakeFetcher(), new AbstractFetcher() {
+			@Override public String getId() {
+				return "plugin";
+			}
+
+			@Override public Object scan(ScanningSubject subject) {
+				return null;
+			}
+		});
+		assertEquals("{0}", Scanner.dependenciesOf(fetchers, 1).toString());
+	}
+
 	@Test
 	public void testInit() {
 		scanner.init(mock(Feeder.class));
@@ -98,11 +218,26 @@ public class ScannerTest {
 		assertTrue(cleanupCalled.contains(AddressAbortingFetcher.class));
 	}
 
+	@Test
+	public void connectorIsClosedAfterScan() {
+		AsyncConnector connector = mock(AsyncConnector.class);
+		scanner = new Scanner(fetcherRegistry, null, null, connector);
+		scanner.init(mock(Feeder.class));
+		verify(connector, never()).close();
+		scanner.cleanup();
+		verify(connector).close();
+	}
+
 	private class FakeFetcher extends AbstractFetcher {
 		public String getId() {
 			return null;
 		}
 
+		@Override public Collection<Class<? extends Fetcher>> getDependencies() {
+			// like built-in fetchers
+			return singleton(PingFetcher.class);
+		}
+
 		public Object scan(ScanningSubject subject) {
 			try {
 				// check that the IP is correct
@@ -146,6 +281,11 @@ public class ScannerTest {
 	}
 	
 	private class FailingFetcher extends FakeFetcher {
+		@Override public Collection<Class<? extends Fetcher>> getDependencies() {
+			// like a PingFetcher dependency of real fetchers
+			return singleton(AddressAbortingFetcher.class);
+		}
+
 		public Object scan(ScanningSubject subject) {
 			fail("This fetcher should not be reached");
 			return null;
@@ -158,6 +298,68 @@ public class ScannerTest {
 		}
 	}
 	
+	/** Runs only if another instance runs at the same time */
+	private class LatchFetcher extends FakeFetcher {
+		private CountDownLatch latch;
+
+		LatchFetcher(CountDownLatch latch) {
+			this.latch = latch;
+		}
+
+		@Override public Collection<Class<? extends Fetcher>> getDependencies() {
+			return emptySet();
+		}
+
+		public Object scan(ScanningSubject subject) {
+			latch.countDown();
+			try {
+				return latch.await(5, SECONDS) ? "latched" : "timeout";
+			}
+			catch (InterruptedException e) {
+				return null;
+			}
+		}
+	}
+
+	/** Remembers how many fetchers have run at once */
+	private class CountingFetcher extends FakeFetcher {
+		private AtomicInteger running;
+		private AtomicInteger maxRunning;
+
+		CountingFetcher(AtomicInteger running, AtomicInteger maxRunning) {
+			this.running = running;
+			this.maxRunning = maxRunning;
+		}
+
+		@Override public Collection<Class<? extends Fetcher>> getDependencies() {
+			return emptySet();
+		}
+
+		public Object scan(ScanningSubject subject) {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e) {
+				return null;
+			}
+			finally {
+				running.decrementAndGet();
+			}
+			return "counted";
+		}
+	}
+
+	private class DependentFetcher extends FakeFetcher {
+		@Override public Collection<Class<? extends Fetcher>> getDependencies() {
+			return singleton(FakeFetcher.class);
+		}
+
+		public Object scan(ScanningSubject subject) {
+			return subject.getParameter("megaParam");
+		}
+	}
+
 	private class InterruptedFetcher extends FakeFetcher {
 		public Object scan(ScanningSubject subject) {
 			// set the interrupt flag (actually this is set from the outside when user wants to kill the threads)
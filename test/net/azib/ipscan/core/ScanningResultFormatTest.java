@@ -0,0 +1,138 @@
+package net.azib.ipscan.core;
+
+import net.azib.ipscan.config.Labels;
+import net.azib.ipscan.core.ScanningResult.ResultType;
+import net.azib.ipscan.core.net.PingResult;
+import net.azib.ipscan.core.values.*;
+import net.azib.ipscan.exporters.CSVExporter;
+import net.azib.ipscan.exporters.Exporter;
+import net.azib.ipscan.exporters.IPListExporter;
+import net.azib.ipscan.fetchers.IPFetcher;
+import net.azib.ipscan.fetchers.PortsFetcher;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ScanningResultFormatTest {
+	@Before
+	public void setUp() {
+		Labels.initialize(Locale.ENGLISH);
+	}
+
+	@Test
+	public void valuesKeepTheirTypes() throws Exception {
+		ScanningResult result = result("10.0.0.1", new IntegerWithUnit(12, "ms"), null, NotAvailable.VALUE, NotScanned.VALUE, 64,
+				new NumericRangeList(new int[] {22, 80, 81, 82, 443}, true), new NumericRangeList(new int[] {1, 2}, false), "text\twith tab");
+		ScanningResult parsed = roundTrip(result);
+
+		assertEquals(result.getAddress(), parsed.getAddress());
+		assertEquals(ResultType.WITH_PORTS, parsed.getType());
+		for (int i = 0; i < 6; i++) assertEquals(result.getValues().get(i), parsed.getValues().get(i));
+		assertEquals("22,80-82,443", parsed.getValues().get(6).toString());
+		assertEquals("1,2", parsed.getValues().get(7).toString());
+		assertEquals("text with tab", parsed.getValues().get(8));
+	}
+
+	@Test
+	public void exportOfParsedResultIsTheSame() throws Exception {
+		ScanningResult result = result("10.0.0.1", new IntegerWithUnit(100, "ms"), null, NotAvailable.VALUE,
+				new NumericRangeList(new int[] {22, 80, 81, 82, 443}, true), "name");
+		ScanningResult parsed = roundTrip(result);
+
+		String[] fetchers = {Labels.getLabel(IPFetcher.ID), "Ping", "Hostname", "TTL", Labels.getLabel(PortsFetcher.ID), "Comment"};
+		for (Exporter exporter : new Exporter[] {new CSVExporter(), new IPListExporter()}) {
+			String expected = export(exporter, fetchers, result);
+			assertEquals(expected, export(exporter, fetchers, parsed));
+		}
+		assertTrue(export(new IPListExporter(), fetchers, parsed).contains("10.0.0.1:443"));
+	}
+
+	@Test
+	public void parsedResultsAreSortedByValue() throws Exception {
+		ScanningResult fast = roundTrip(result("10.0.0.1", new IntegerWithUnit(12, "ms")));
+		ScanningResult slow = roundTrip(result("10.0.0.2", new IntegerWithUnit(100, "ms")));
+		ScanningResultComparator comparator = new ScanningResultComparator();
+		comparator.byIndex(1, true);
+		assertTrue(comparator.compare(fast, slow) < 0);
+	}
+
+	@Test
+	public void pingStatisticsAndMacArePassed() throws Exception {
+		ScanningResult result = result("10.0.0.1", new IntegerWithUnit(2, "ms"));
+		result.setMac("00:11:22:33:44:55");
+		PingResult ping = new PingResult(result.getAddress(), 4);
+		ping.setTTL(64);
+		for (long time : new long[] {1200000, 2500000, 1800000}) ping.addReplyNanos(time);
+		result.setPingResult(ping);
+
+		ScanningResult parsed = roundTrip(result);
+		assertEquals("00:11:22:33:44:55", parsed.getMac());
+		PingResult parsedPing = parsed.getPingResult();
+		assertEquals(4, parsedPing.getPacketCount());
+		assertEquals(3, parsedPing.getReplyCount());
+		assertEquals(64, parsedPing.getTTL());
+		assertEquals(ping.getShortestTimeNanos(), parsedPing.getShortestTimeNanos());
+		assertEquals(ping.getAverageTimeNanos(), parsedPing.getAverageTimeNanos());
+		assertEquals(ping.getLongestTimeNanos(), parsedPing.getLongestTimeNanos());
+		assertEquals(ping.getStdDevNanos(), parsedPing.getStdDevNanos());
+		assertEquals(ping.getJitterNanos(), parsedPing.getJitterNanos());
+		assertTrue(parsedPing.isTimeoutAdaptationAllowed());
+	}
+
+	@Test
+	public void deadHostsAreNotAlive() throws Exception {
+		ScanningResult result = result("10.0.0.1", NotAvailable.VALUE);
+		result.setPingResult(new PingResult(result.getAddress(), 3));
+
+		ScanningResult parsed = roundTrip(result);
+		assertNull(parsed.getMac());
+		assertEquals(3, parsed.getPingResult().getPacketCount());
+		assertFalse(parsed.getPingResult().isAlive());
+		assertNull(roundTrip(result("10.0.0.2")).getPingResult());
+	}
+
+	@Test(expected = IOException.class)
+	public void malformedPingStatistics() throws Exception {
+		ScanningResultFormat.parse("ALIVE\t-\tP1,1,2\t@10.0.0.1".split("\t"), 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownValueType() throws Exception {
+		ScanningResultFormat.parse("ALIVE\t-\t-\t@10.0.0.1\tX".split("\t"), 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void tooManyNumbers() throws Exception {
+		ScanningResultFormat.parse("ALIVE\t-\t-\t@10.0.0.1\tR1-2000000000".split("\t"), 0);
+	}
+
+	private static ScanningResult result(String address, Object ... values) throws Exception {
+		ScanningResult result = new ScanningResult(InetAddress.getByName(address), values.length + 1);
+		Object[] all = new Object[values.length + 1];
+		all[0] = new InetAddressHolder(result.getAddress());
+		System.arraycopy(values, 0, all, 1, values.length);
+		result.setValues(all);
+		result.setType(ResultType.WITH_PORTS);
+		return result;
+	}
+
+	private static ScanningResult roundTrip(ScanningResult result) throws IOException {
+		String line = ScanningResultFormat.format(result);
+		return ScanningResultFormat.parse(("result\t" + line).split("\t", -1), 1);
+	}
+
+	private static String export(Exporter exporter, String[] fetchers, ScanningResult result) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exporter.start(out, "feeder");
+		exporter.setFetchers(fetchers);
+		exporter.nextAddressResults(result.getValues().toArray());
+		exporter.end();
+		return out.toString();
+	}
+}
@@ -1,8 +1,10 @@
 package net.azib.ipscan.core;
 
+import net.azib.ipscan.config.Labels;
 import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.core.ScanningResultList.ScanInfo;
 import net.azib.ipscan.core.ScanningResultList.StopScanningListener;
+import net.azib.ipscan.core.net.PingResult;
 import net.azib.ipscan.core.state.ScanningState;
 import net.azib.ipscan.core.state.StateMachine;
 import net.azib.ipscan.core.state.StateMachine.Transition;
@@ -100,6 +102,24 @@ public class ScanningResultListTest {
 		assertEquals(1, scanningResults.getScanInfo().getAliveCount());
 		assertEquals(0, scanningResults.getScanInfo().getWithPortsCount());
 	}
+
+	@Test
+	public void testLatencyStatistics() throws Exception {
+		ScanningResult result = scanningResults.createResult(InetAddress.getByName("6.6.6.6"));
+		PingResult pingResult = new PingResult(result.getAddress(), 2);
+		pingResult.addReplyNanos(300000);
+		result.setPingResult(pingResult);
+		result.setType(ResultType.ALIVE);
+		scanningResults.registerAtIndex(0, result);
+
+		result = scanningResults.createResult(InetAddress.getByName("7.7.7.7"));
+		result.setPingResult(new PingResult(result.getAddress(), 2));
+		result.setType(ResultType.DEAD);
+		scanningResults.registerAtIndex(1, result);
+
+		assertEquals(1, scanningResults.getScanInfo().getLatency().getCount());
+		assertEquals(300000, scanningResults.getScanInfo().getLatency().getMean());
+	}
 	
 	@Test
 	public void testResultType() throws Exception {
@@ -282,6 +302,15 @@ public class ScanningResultListTest {
 		assertTrue(s.contains(fetchers.get(1).getName() + ":\t123" + ln));
 		assertTrue(s.contains(fetchers.get(2).getName() + ":\txxxxx" + ln));
 		assertTrue(s.contains(fetchers.get(3).getName() + ":\t" + ln));
+		assertFalse(s.contains(Labels.getLabel("text.pingStatistics")));
+
+		PingResult pingResult = new PingResult(result.getAddress(), 3);
+		pingResult.addReplyNanos(1000000);
+		pingResult.addReplyNanos(3000000);
+		result.setPingResult(pingResult);
+		s = result.toString();
+		assertTrue(s.endsWith(Labels.getLabel("text.pingStatistics") + ":\t" +
+				String.format("%.1f/%.1f/%.1f/%.1f/%.1f", 1.0, 2.0, 3.0, 1.0, pingResult.getJitterNanos() / 1000000.0) + Labels.getLabel("unit.ms") + ln));
 	}
 	
 	@Test
@@ -87,4 +87,16 @@ public class ScanningSubjectTest {
 		pingResult.enableTimeoutAdaptation();
 		assertEquals(config.minPortTimeout, subject.getAdaptedPortTimeout());
 	}
+
+	@Test
+	public void timeoutFromSubnetLatency() {
+		config.minPortTimeout = 50;
+		subject.setParameter(ScanningSubject.PARAMETER_PING_RESULT, null);
+		subject.rttEstimator = new RTTEstimator(config);
+		for (int i = 0; i < RTTEstimator.MIN_SAMPLES; i++) subject.rttEstimator.sample(subject.getAddress(), 100);
+		// srtt = 100, rttvar = 50 * 0.75^2
+		assertEquals(213, subject.getAdaptedPortTimeout());
+		assertEquals(subject.getAdaptedPortTimeout(), subject.getAdaptedPingTimeout(2000));
+		assertEquals(80, subject.getAdaptedPingTimeout(80));
+	}
 }
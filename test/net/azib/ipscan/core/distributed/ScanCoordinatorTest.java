@@ -0,0 +1,149 @@
+package net.azib.ipscan.core.distributed;
+
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ScanCheckpoint;
+import net.azib.ipscan.core.ScanningProgressCallback;
+import net.azib.ipscan.core.ScanningResult;
+import net.azib.ipscan.core.ScanningResultCallback;
+import net.azib.ipscan.core.ScanningResultList;
+import net.azib.ipscan.core.UserErrorException;
+import net.azib.ipscan.core.state.ScanningState;
+import net.azib.ipscan.core.state.StateMachine;
+import net.azib.ipscan.core.values.InetAddressHolder;
+import net.azib.ipscan.feeders.RangeFeeder;
+import net.azib.ipscan.fetchers.Fetcher;
+import net.azib.ipscan.fetchers.FetcherRegistry;
+import net.azib.ipscan.fetchers.IPFetcher;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.prefs.Preferences;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ScanCoordinatorTest {
+	private StateMachine stateMachine = new StateMachine() {};
+	private ScannerConfig config = mock(ScannerConfig.class);
+	private List<ScanningResult> results = Collections.synchronizedList(new ArrayList<>());
+	private ScanCoordinator coordinator;
+
+	@Before
+	public void setUp() {
+		FetcherRegistry registry = mock(FetcherRegistry.class);
+		when(registry.getSelectedFetchers()).thenReturn(singletonList(new IPFetcher()));
+		config.maxThreads = 10;
+		stateMachine.transitionToNext();
+		stateMachine.startScanning();
+		ScanningResultCallback resultsCallback = new ScanningResultCallback() {
+			@Override public void prepareForResults(ScanningResult result) {}
+			@Override public void consumeResults(ScanningResult result) { results.add(result); }
+		};
+		coordinator = new ScanCoordinator(new RangeFeeder("10.0.0.1", "10.0.2.44"), stateMachine, mock(ScanningProgressCallback.class),
+				new ScanningResultList(registry), config, resultsCallback, new ScanCheckpoint(config, null, null), -1, 0, "secret");
+	}
+
+	@Test
+	public void shardsOfFailedWorkerAreReassigned() throws Exception {
+		coordinator.start();
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			PrintWriter out = authenticate(in, socket, "secret");
+			String line;
+			while (!(line = in.readLine()).startsWith(ScanCoordinator.SHARD));
+			assertEquals("shard\t0\t10.0.0.1-10.0.1.0", line);
+			out.println("result\t0\tALIVE\t-\t-\t@10.0.0.1");
+			// the worker dies before finishing the shard
+		}
+
+		Thread worker = startWorker();
+		coordinator.join(10000);
+		assertFalse(coordinator.isAlive());
+		worker.join(1000);
+		assertFalse(worker.isAlive());
+
+		assertEquals(ScanningState.IDLE, stateMachine.getState());
+		assertEquals(556, results.size());
+		Set<InetAddress> addresses = new HashSet<>();
+		for (ScanningResult result : results) {
+			addresses.add(result.getAddress());
+			assertEquals(new InetAddressHolder(result.getAddress()), result.getValues().get(0));
+		}
+		assertEquals(556, addresses.size());
+		assertEquals(ScanningResult.ResultType.ALIVE, results.get(0).getType());
+	}
+
+	@Test
+	public void workersAreDroppedWhenKilled() throws Exception {
+		coordinator.start();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			authenticate(in, socket, "secret");
+			while (!in.readLine().startsWith(ScanCoordinator.SHARD));
+			stateMachine.transitionToNext();
+			assertEquals(ScanningState.STOPPING, stateMachine.getState());
+			stateMachine.transitionToNext();
+			coordinator.join(10000);
+			assertFalse(coordinator.isAlive());
+			assertEquals(ScanningState.IDLE, stateMachine.getState());
+		}
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	public void workersWithoutSecretGetNothing() throws Exception {
+		coordinator.start();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			authenticate(in, socket, "wrong");
+			assertNull(in.readLine());
+		}
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	public void secretIsRequiredForRemoteWorkers() throws Exception {
+		try {
+			new ScanCoordinator(new RangeFeeder("10.0.0.1", "10.0.0.2"), stateMachine, mock(ScanningProgressCallback.class),
+					new ScanningResultList(mock(FetcherRegistry.class)), config, mock(ScanningResultCallback.class), new ScanCheckpoint(config, null, null), 0, 0, null);
+			fail("secret is required for workers on other computers");
+		}
+		catch (UserErrorException e) {
+			assertEquals(ScanningState.IDLE, stateMachine.getState());
+		}
+	}
+
+	private static PrintWriter authenticate(BufferedReader in, Socket socket, String secret) throws Exception {
+		String[] hello = in.readLine().split("\t");
+		assertEquals(ScanCoordinator.HELLO, hello[0]);
+		PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+		out.println(ScanCoordinator.AUTH + "\t" + ScanCoordinator.authenticate(secret, hello[2]));
+		return out;
+	}
+
+	private Thread startWorker() throws Exception {
+		ScannerConfig workerConfig = mock(ScannerConfig.class);
+		workerConfig.maxThreads = 10;
+		FetcherRegistry fetcherRegistry = new FetcherRegistry(Collections.<Fetcher>singletonList(new IPFetcher()), mock(Preferences.class), null);
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort());
+		Thread worker = new Thread(() -> {
+			try (Socket s = socket) {
+				new ScanWorker(workerConfig, fetcherRegistry).serve(s.getInputStream(), s.getOutputStream(), "secret");
+			}
+			catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		worker.start();
+		return worker;
+	}
+}
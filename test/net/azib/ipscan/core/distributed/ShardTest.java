@@ -0,0 +1,38 @@
+package net.azib.ipscan.core.distributed;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class ShardTest {
+	@Test
+	public void consecutiveAddressesAreEncodedAsRuns() throws Exception {
+		List<InetAddress> addresses = addresses("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.5", "10.0.0.255", "10.0.1.0", "::1");
+		Shard shard = new Shard(1, addresses);
+		assertEquals("10.0.0.1-10.0.0.3\t10.0.0.5\t10.0.0.255-10.0.1.0\t0:0:0:0:0:0:0:1", shard.encode());
+		assertEquals(addresses, Shard.decode(("shard\t1\t" + shard.encode()).split("\t"), 2));
+	}
+
+	@Test
+	public void onlyRemainingAddressesAreEncoded() throws Exception {
+		Shard shard = new Shard(2, addresses("10.0.0.1", "10.0.0.2", "10.0.0.3"));
+		shard.remaining.remove(InetAddress.getByName("10.0.0.2"));
+		assertEquals("10.0.0.1\t10.0.0.3", shard.encode());
+		assertEquals("", new Shard(3, addresses()).encode());
+	}
+
+	@Test(expected = java.net.UnknownHostException.class)
+	public void tooLongRunsAreRejected() throws Exception {
+		Shard.decode(new String[] {"10.0.0.0-10.255.255.255"}, 0);
+	}
+
+	private static List<InetAddress> addresses(String... ips) throws Exception {
+		InetAddress[] addresses = new InetAddress[ips.length];
+		for (int i = 0; i < ips.length; i++) addresses[i] = InetAddress.getByName(ips[i]);
+		return asList(addresses);
+	}
+}
@@ -0,0 +1,100 @@
+package net.azib.ipscan.core.net;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static net.azib.ipscan.core.net.ConnectResult.*;
+import static org.junit.Assert.*;
+
+public class AsyncConnectorTest {
+	private AsyncConnector connector = new AsyncConnector(10);
+
+	@After
+	public void tearDown() {
+		connector.close();
+	}
+
+	@Test
+	public void openPort() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			AsyncConnector.Attempt attempt = connector.connect(new InetSocketAddress(server.getInetAddress(), server.getLocalPort()), 1000);
+			assertEquals(OPEN, attempt.get());
+			assertEquals(server.getLocalPort(), attempt.getPort());
+			assertEquals(0, connector.getPendingCount());
+		}
+	}
+
+	@Test
+	public void closedPort() throws Exception {
+		int port;
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			port = server.getLocalPort();
+		}
+		AsyncConnector.Attempt attempt = connector.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1000);
+		assertEquals(CLOSED, attempt.get());
+		assertTrue(attempt.get().isAlive());
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			InetSocketAddress address = fillBacklog(server);
+			AsyncConnector.Attempt attempt = connector.connect(address, 50);
+			assertEquals(TIMEOUT, attempt.get());
+			assertTrue(attempt.getTime() >= 50);
+			assertTrue(attempt.getTime() < 1000);
+		}
+	}
+
+	@Test(expected = CancellationException.class)
+	public void cancelAll() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			AsyncConnector.Attempt attempt = connector.connect(fillBacklog(server), 5000);
+			connector.cancelAll();
+			assertEquals(0, connector.getPendingCount());
+			attempt.get();
+		}
+	}
+
+	@Test
+	public void closeCancelsAttemptsAndCanBeReused() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			AsyncConnector.Attempt attempt = connector.connect(fillBacklog(server), 5000);
+			connector.close();
+			assertTrue(attempt.isCancelled());
+			assertEquals(0, connector.getPendingCount());
+		}
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			assertEquals(OPEN, connector.connect(new InetSocketAddress(server.getInetAddress(), server.getLocalPort()), 1000).get());
+		}
+	}
+
+	/**
+	 * A listening socket with the full backlog drops further SYNs, so connects to it time out.
+	 */
+	private InetSocketAddress fillBacklog(ServerSocket server) throws Exception {
+		InetSocketAddress address = new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+		List<AsyncConnector.Attempt> backlog = new ArrayList<>();
+		for (int i = 0; i < 2; i++) backlog.add(connector.connect(address, 1000));
+		for (AsyncConnector.Attempt attempt : backlog) assertEquals(OPEN, attempt.get());
+		return address;
+	}
+
+	@Test
+	public void resultOfExceptions() {
+		assertEquals(CLOSED, AsyncConnector.resultOf(new ConnectException("Connection refused")));
+		assertEquals(UNREACHABLE, AsyncConnector.resultOf(new NoRouteToHostException()));
+		assertEquals(UNREACHABLE, AsyncConnector.resultOf(new ConnectException("Network is unreachable")));
+		assertEquals(FAILED, AsyncConnector.resultOf(new IOException("Too many open files")));
+	}
+}
@@ -0,0 +1,25 @@
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.core.ScanningSubject;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+
+public class AsyncTCPPingerTest extends AbstractPingerTest {
+	public AsyncTCPPingerTest() throws Exception {
+		super(AsyncTCPPinger.class);
+	}
+
+	@Test
+	public void requestedPortIsProbedTogetherWithOthers() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			ScanningSubject subject = new ScanningSubject(InetAddress.getLoopbackAddress());
+			subject.addRequestedPort(server.getLocalPort());
+			PingResult result = pinger.ping(subject, 3);
+			assertEquals(3, result.getReplyCount());
+		}
+	}
+}
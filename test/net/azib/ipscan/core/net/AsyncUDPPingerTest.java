@@ -0,0 +1,47 @@
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.Platform;
+import net.azib.ipscan.core.ScanningSubject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class AsyncUDPPingerTest extends AbstractPingerTest {
+	public AsyncUDPPingerTest() throws Exception {
+		super(AsyncUDPPinger.class);
+	}
+
+	@Test @Override
+	public void pingAlive() throws IOException {
+		assumeTrue(Platform.LINUX);
+		super.pingAlive();
+	}
+
+	@Test
+	public void manyHostsAtOnce() throws Exception {
+		assumeTrue(Platform.LINUX);
+		ExecutorService threads = Executors.newFixedThreadPool(50);
+		try {
+			List<Future<PingResult>> results = new ArrayList<>();
+			for (int i = 1; i <= 50; i++) {
+				ScanningSubject subject = new ScanningSubject(InetAddress.getByName("127.0.0." + i));
+				results.add(threads.submit(() -> pinger.ping(subject, 2)));
+			}
+			for (Future<PingResult> result : results) {
+				assertEquals(2, result.get().getReplyCount());
+			}
+		}
+		finally {
+			threads.shutdown();
+		}
+	}
+}
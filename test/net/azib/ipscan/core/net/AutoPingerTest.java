@@ -0,0 +1,149 @@
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.core.ScanningSubject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.azib.ipscan.core.net.AutoPinger.CALIBRATION_HOSTS;
+import static net.azib.ipscan.core.net.AutoPinger.MAX_CALIBRATION_SAMPLES;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class AutoPingerTest {
+	Pinger udp = mock(Pinger.class);
+	Pinger tcp = mock(Pinger.class);
+	Map<String, Pinger> candidates = new LinkedHashMap<>();
+	AutoPinger pinger;
+
+	@Test
+	public void choosesPingerDetectingMostHosts() throws IOException {
+		when(udp.ping(any(), anyInt())).thenAnswer(i -> result(i.getArgument(0), i.getArgument(1), 0, 0));
+		when(tcp.ping(any(), anyInt())).thenAnswer(i -> result(i.getArgument(0), i.getArgument(1), 1, 5000000));
+		createPinger();
+
+		for (int i = 1; i <= CALIBRATION_HOSTS; i++) {
+			assertNull(pinger.getChoice(address("10.0.0.1")));
+			assertTrue(pinger.ping(subject("10.0.0." + i), 2).isAlive());
+		}
+		assertEquals("pinger.tcp", pinger.getChoice(address("10.0.0.1")));
+
+		reset(udp);
+		pinger.ping(subject("10.0.0.100"), 2);
+		verify(udp, never()).ping(any(), anyInt());
+	}
+
+	@Test
+	public void fasterPingerWinsOnTies() throws IOException {
+		when(udp.ping(any(), anyInt())).thenAnswer(i -> result(i.getArgument(0), i.getArgument(1), 2, 3000000));
+		when(tcp.ping(any(), anyInt())).thenAnswer(i -> result(i.getArgument(0), i.getArgument(1), 2, 200000));
+		createPinger();
+
+		for (int i = 1; i <= CALIBRATION_HOSTS; i++) {
+			assertEquals(200000, pinger.ping(subject("10.0.0." + i), 2).getAverageTimeNanos());
+		}
+		assertEquals("pinger.tcp", pinger.getChoice(address("10.0.0.1")));
+	}
+
+	@Test
+	public void deadSubnetFallsBackToFirstPinger() throws IOException {
+		when(udp.ping(any(), anyInt())).thenAnswer(i -> result(i.getArgument(0), i.getArgument(1), 0, 0));
+		when(tcp.ping(any(), anyInt())).thenThrow(new IOException("Permission denied"));
+		createPinger();
+
+		for (int i = 1; i <= MAX_CALIBRATION_SAMPLES; i++) {
+			assertFalse(pinger.ping(subject("10.0.0." + i), 1).isAlive());
+		}
+		assertEquals("pinger.udp", pinger.getChoice(address("10.0.0.1")));
+	}
+
+	@Test
+	public void subnetsAreCalibratedSeparately() throws IOException {
+		when(udp.ping(any(), anyInt())).thenAnswer(i -> {
+			ScanningSubject subject = i.getArgument(0);
+			return result(subject, i.getArgument(1), subject.getAddress().getAddress()[2] == 1 ? 1 : 0, 1000);
+		});
+		when(tcp.ping(any(), anyInt())).thenAnswer(i -> {
+			ScanningSubject subject = i.getArgument(0);
+			return result(subject, i.getArgument(1), subject.getAddress().getAddress()[2] == 2 ? 1 : 0, 1000);
+		});
+		createPinger();
+
+		for (int i = 1; i <= CALIBRATION_HOSTS; i++) {
+			pinger.ping(subject("10.0.1." + i), 1);
+			pinger.ping(subject("10.0.2." + i), 1);
+		}
+		assertEquals("pinger.udp", pinger.getChoice(address("10.0.1.1")));
+		assertEquals("pinger.tcp", pinger.getChoice(address("10.0.2.1")));
+	}
+
+	@Test
+	public void limitedNumberOfHostsIsCalibratedAtOnce() throws Exception {
+		AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		when(udp.ping(any(), anyInt())).thenAnswer(i -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			release.await(5, SECONDS);
+			running.decrementAndGet();
+			return result(i.getArgument(0), i.getArgument(1), 1, 1000);
+		});
+		when(tcp.ping(any(), anyInt())).thenAnswer(i -> result(i.getArgument(0), i.getArgument(1), 0, 0));
+		createPinger();
+
+		ExecutorService threads = Executors.newFixedThreadPool(MAX_CALIBRATION_SAMPLES * 2);
+		List<Future<PingResult>> results = new ArrayList<>();
+		for (int i = 1; i <= MAX_CALIBRATION_SAMPLES * 2; i++) {
+			ScanningSubject subject = subject("10.0.0." + i);
+			results.add(threads.submit(() -> pinger.ping(subject, 1)));
+		}
+		while (running.get() < MAX_CALIBRATION_SAMPLES) Thread.sleep(10);
+		Thread.sleep(100);
+		assertEquals(MAX_CALIBRATION_SAMPLES, maxRunning.get());
+
+		release.countDown();
+		for (Future<PingResult> result : results) assertTrue(result.get(5, SECONDS).isAlive());
+		assertEquals("pinger.udp", pinger.getChoice(address("10.0.0.1")));
+		threads.shutdown();
+	}
+
+	@Test
+	public void closesCandidates() throws Exception {
+		createPinger();
+		pinger.close();
+		verify(udp).close();
+		verify(tcp).close();
+	}
+
+	private void createPinger() {
+		candidates.put("pinger.udp", udp);
+		candidates.put("pinger.tcp", tcp);
+		pinger = new AutoPinger(candidates);
+	}
+
+	private static PingResult result(ScanningSubject subject, int count, int replies, long time) {
+		PingResult result = new PingResult(subject.getAddress(), count);
+		for (int i = 0; i < replies; i++) result.addReplyNanos(time);
+		return result;
+	}
+
+	private static InetAddress address(String address) throws IOException {
+		return InetAddress.getByName(address);
+	}
+
+	private static ScanningSubject subject(String address) throws IOException {
+		return new ScanningSubject(address(address));
+	}
+}
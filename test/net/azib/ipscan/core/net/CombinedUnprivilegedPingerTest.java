@@ -1,7 +1,68 @@
 package net.azib.ipscan.core.net;
 
+import net.azib.ipscan.core.ScanningSubject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
 public class CombinedUnprivilegedPingerTest extends AbstractPingerTest {
+	ScanningSubject subject = new ScanningSubject(InetAddress.getLoopbackAddress());
+	TCPPinger tcpPinger = mock(TCPPinger.class);
+	UDPPinger udpPinger = mock(UDPPinger.class);
+	CombinedUnprivilegedPinger racingPinger = new CombinedUnprivilegedPinger(tcpPinger, udpPinger, true);
+
 	public CombinedUnprivilegedPingerTest() throws Exception {
 		super(CombinedUnprivilegedPinger.class);
 	}
+
+	@Test
+	public void racingUDPWinsWithinHeadStart() throws IOException {
+		when(udpPinger.ping(subject, 3)).thenReturn(result(3, 1));
+		PingResult result = racingPinger.ping(subject, 3);
+		assertEquals(1, result.getReplyCount());
+		verify(tcpPinger, never()).ping(any(), anyInt());
+	}
+
+	@Test
+	public void racingTCPWinsIfUDPIsDropped() throws IOException {
+		when(udpPinger.ping(subject, 3)).thenAnswer(i -> {
+			Thread.sleep(2000);
+			return result(3, 0);
+		});
+		when(tcpPinger.ping(subject, 3)).thenReturn(result(3, 1));
+		long start = System.currentTimeMillis();
+		PingResult result = racingPinger.ping(subject, 3);
+		assertTrue(result.isAlive());
+		assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+
+	@Test
+	public void racingStartsTCPAtOnceIfUDPFails() throws IOException {
+		when(udpPinger.ping(subject, 3)).thenThrow(new IOException("Operation not permitted"));
+		when(tcpPinger.ping(subject, 3)).thenReturn(result(3, 2));
+		long start = System.currentTimeMillis();
+		assertEquals(2, racingPinger.ping(subject, 3).getReplyCount());
+		assertTrue(System.currentTimeMillis() - start < CombinedUnprivilegedPinger.HEAD_START_MS);
+	}
+
+	@Test
+	public void racingMergesNegativeResults() throws IOException {
+		when(udpPinger.ping(subject, 2)).thenReturn(result(2, 0));
+		when(tcpPinger.ping(subject, 2)).thenReturn(result(2, 0));
+		PingResult result = racingPinger.ping(subject, 2);
+		assertFalse(result.isAlive());
+		assertEquals(4, result.getPacketCount());
+	}
+
+	private PingResult result(int count, int replies) {
+		PingResult result = new PingResult(subject.getAddress(), count);
+		for (int i = 0; i < replies; i++) result.addReply(10);
+		return result;
+	}
 }
@@ -0,0 +1,86 @@
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ProbeRateLimiter;
+import net.azib.ipscan.core.ScanningSubject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class ConcurrentProbesTest {
+	ScanningSubject subject = new ScanningSubject(InetAddress.getLoopbackAddress());
+	ProbeRateLimiter rateLimiter = new ProbeRateLimiter(mock(ScannerConfig.class));
+
+	@Test
+	public void allRepliesAreCollected() throws IOException {
+		PingResult result = ConcurrentProbes.ping(subject, 3, 1000, rateLimiter, (i, timeout) -> 10 * (i + 1));
+		assertTrue(result.isAlive());
+		assertEquals(3, result.getPacketCount());
+		assertEquals(3, result.getReplyCount());
+		assertEquals(20, result.getAverageTimeNanos());
+		assertEquals(30, result.getLongestTimeNanos());
+	}
+
+	@Test
+	public void lostProbesAreCountedAsLoss() throws IOException {
+		PingResult result = ConcurrentProbes.ping(subject, 4, 1000, rateLimiter, (i, timeout) -> i % 2 == 0 ? 5 : -1);
+		assertEquals(4, result.getPacketCount());
+		assertEquals(2, result.getReplyCount());
+	}
+
+	@Test
+	public void deadHostCostsSingleTimeout() throws IOException {
+		List<Integer> timeouts = new CopyOnWriteArrayList<>();
+		long start = System.currentTimeMillis();
+		PingResult result = ConcurrentProbes.ping(subject, 3, 200, rateLimiter, (i, timeout) -> {
+			timeouts.add(timeout);
+			try {
+				Thread.sleep(timeout);
+			}
+			catch (InterruptedException ignore) {
+			}
+			return -1;
+		});
+		assertFalse(result.isAlive());
+		assertTrue(System.currentTimeMillis() - start < 400);
+		assertEquals(3, timeouts.size());
+		for (int timeout : timeouts) assertTrue(timeout <= 200);
+	}
+
+	@Test
+	public void probesAreSentByCallerWhenAllThreadsAreBusy() throws IOException {
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		ConcurrentProbes.pool.setMaximumPoolSize(1);
+		try {
+			PingResult result = ConcurrentProbes.ping(subject, 3, 1000, rateLimiter, (i, timeout) -> {
+				threads.add(Thread.currentThread());
+				try {
+					Thread.sleep(100);
+				}
+				catch (InterruptedException ignore) {
+				}
+				return 5;
+			});
+			assertEquals(3, result.getReplyCount());
+			assertTrue(threads.contains(Thread.currentThread()));
+		}
+		finally {
+			ConcurrentProbes.pool.setMaximumPoolSize(ConcurrentProbes.MAX_THREADS);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void errorsArePropagated() throws IOException {
+		ConcurrentProbes.ping(subject, 2, 1000, rateLimiter, (i, timeout) -> {
+			throw new IOException("Network is unreachable");
+		});
+	}
+}
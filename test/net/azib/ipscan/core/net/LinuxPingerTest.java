@@ -0,0 +1,55 @@
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.Platform;
+import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ScanningSubject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+public class LinuxPingerTest extends AbstractPingerTest {
+	public LinuxPingerTest() throws Exception {
+		super(LinuxPinger.class);
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		assumeTrue(Platform.LINUX);
+		try {
+			new LinuxPinger(mock(ScannerConfig.class)).close();
+		}
+		catch (IOException e) {
+			// ping sockets are not allowed by net.ipv4.ping_group_range
+			assumeNoException(e);
+		}
+	}
+
+	@Test
+	public void pingManyLoopbackAddressesAtOnce() {
+		IntStream.rangeClosed(1, 50).parallel().forEach(i -> {
+			try {
+				PingResult result = pinger.ping(new ScanningSubject(InetAddress.getByName("127.0.0." + i)), 3);
+				assertEquals(3, result.getReplyCount());
+				assertTrue(result.getTTL() > 0);
+			}
+			catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		});
+	}
+
+	@Test
+	public void pingIPv6Loopback() throws Exception {
+		PingResult result = pinger.ping(new ScanningSubject(InetAddress.getByName("::1")), 2);
+		assertEquals(2, result.getReplyCount());
+	}
+}
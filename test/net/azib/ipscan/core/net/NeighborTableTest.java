@@ -0,0 +1,118 @@
+package net.azib.ipscan.core.net;
+
+import net.azib.ipscan.config.Platform;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static net.azib.ipscan.core.net.LinuxLibC.AF_INET;
+import static net.azib.ipscan.core.net.LinuxLibC.AF_INET6;
+import static net.azib.ipscan.core.net.NeighborTable.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class NeighborTableTest {
+	private static final byte[] MAC = {0x00, 0x1a, 0x2b, 0x3c, 0x4d, 0x5e};
+	private NeighborTable table = new NeighborTable() {
+		@Override public boolean start() {
+			// only parsing is tested, without netlink
+			return true;
+		}
+	};
+
+	@Test
+	public void validEntriesAreAdded() throws Exception {
+		assertFalse(table.parse(messages(
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, NUD_REACHABLE, "192.168.0.1", MAC),
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, NUD_STALE, "192.168.0.2", MAC),
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, 0x01, "192.168.0.3", null),
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, 0x20, "192.168.0.4", MAC),
+			neighbor(RTM_NEWNEIGH, AF_INET6, 2, NUD_REACHABLE, "2001:db8::1", MAC))));
+
+		assertEquals("00:1A:2B:3C:4D:5E", table.getMAC(InetAddress.getByName("192.168.0.1")));
+		assertEquals("00:1A:2B:3C:4D:5E", table.getMAC(InetAddress.getByName("192.168.0.2")));
+		assertNull("incomplete", table.getMAC(InetAddress.getByName("192.168.0.3")));
+		assertNull("failed", table.getMAC(InetAddress.getByName("192.168.0.4")));
+		assertEquals("00:1A:2B:3C:4D:5E", table.getMAC(InetAddress.getByName("2001:db8::1")));
+		assertEquals(asList(InetAddress.getByName("192.168.0.1"), InetAddress.getByName("192.168.0.2"), InetAddress.getByName("2001:db8::1")),
+			table.getNeighbors());
+	}
+
+	@Test
+	public void entriesAreRemoved() throws Exception {
+		table.parse(messages(
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, NUD_REACHABLE, "10.0.0.1", MAC),
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, NUD_REACHABLE, "10.0.0.2", MAC)));
+		table.parse(messages(
+			neighbor(RTM_DELNEIGH, AF_INET, 2, NUD_REACHABLE, "10.0.0.1", MAC),
+			neighbor(RTM_NEWNEIGH, AF_INET, 2, 0x20, "10.0.0.2", null)));
+		assertTrue(table.getNeighbors().isEmpty());
+	}
+
+	@Test
+	public void linkLocalAddressesHaveScope() throws Exception {
+		table.parse(messages(neighbor(RTM_NEWNEIGH, AF_INET6, 3, NUD_DELAY, "fe80::1", MAC)));
+		List<InetAddress> neighbors = table.getNeighbors();
+		assertEquals(1, neighbors.size());
+		assertEquals(3, ((Inet6Address) neighbors.get(0)).getScopeId());
+	}
+
+	@Test
+	public void endOfDump() throws Exception {
+		ByteBuffer done = ByteBuffer.allocate(20).order(ByteOrder.nativeOrder()).putInt(20).putShort((short) NLMSG_DONE);
+		done.rewind();
+		assertTrue(table.parse(done));
+	}
+
+	@Test
+	public void truncatedMessagesAreIgnored() throws Exception {
+		byte[] message = neighbor(RTM_NEWNEIGH, AF_INET, 2, NUD_REACHABLE, "10.0.0.1", MAC);
+		assertFalse(table.parse(ByteBuffer.wrap(message, 0, message.length - 4).order(ByteOrder.nativeOrder())));
+		assertTrue(table.getNeighbors().isEmpty());
+	}
+
+	@Test
+	public void realNeighborTable() throws Exception {
+		assumeTrue(Platform.LINUX);
+		NeighborTable table = new NeighborTable();
+		try {
+			assumeTrue(table.start());
+			// complete entries of /proc/net/arp must be known via netlink as well
+			List<String> lines = Files.readAllLines(Path.of("/proc/net/arp"));
+			for (String line : lines.subList(1, lines.size())) {
+				String[] columns = line.trim().split("\\s+");
+				if (!columns[2].equals("0x0") && !columns[3].equals("00:00:00:00:00:00"))
+					assertEquals(columns[3].toUpperCase(), table.getMAC(InetAddress.getByName(columns[0])));
+			}
+		}
+		finally {
+			table.close();
+		}
+	}
+
+	private static ByteBuffer messages(byte[]... messages) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] message : messages) out.writeBytes(message);
+		return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.nativeOrder());
+	}
+
+	private static byte[] neighbor(int type, int family, int interfaceIndex, int state, String ip, byte[] mac) throws Exception {
+		byte[] address = InetAddress.getByName(ip).getAddress();
+		int length = 16 + 12 + 4 + address.length + (mac != null ? 4 + 8 : 0);
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.nativeOrder());
+		buffer.putInt(length).putShort((short) type).putShort((short) 0).putInt(0).putInt(0);
+		buffer.put((byte) family).put((byte) 0).putShort((short) 0).putInt(interfaceIndex).putShort((short) state).put((byte) 0).put((byte) 0);
+		buffer.putShort((short) (4 + address.length)).putShort((short) NDA_DST).put(address);
+		// MAC attribute is padded to 4 bytes
+		if (mac != null) buffer.putShort((short) (4 + mac.length)).putShort((short) NDA_LLADDR).put(mac).putShort((short) 0);
+		return buffer.array();
+	}
+}
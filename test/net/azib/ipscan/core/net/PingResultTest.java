@@ -0,0 +1,69 @@
+package net.azib.ipscan.core.net;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+
+public class PingResultTest {
+	PingResult result = new PingResult(InetAddress.getLoopbackAddress(), 4);
+
+	@Test
+	public void subMillisecondTimes() {
+		result.addReplyNanos(200000);
+		result.addReplyNanos(400000);
+		result.addReplyNanos(600000);
+		assertEquals(3, result.getReplyCount());
+		assertEquals(200000, result.getShortestTimeNanos());
+		assertEquals(400000, result.getAverageTimeNanos());
+		assertEquals(600000, result.getLongestTimeNanos());
+		assertEquals(163299, result.getStdDevNanos());
+		assertEquals(0, result.getAverageTime());
+		// rounded up, as it is used for timeouts
+		assertEquals(1, result.getLongestTime());
+	}
+
+	@Test
+	public void millisecondTimes() {
+		result.addReply(10);
+		result.addReply(20);
+		assertEquals(15, result.getAverageTime());
+		assertEquals(20, result.getLongestTime());
+		assertEquals(10000000, result.getShortestTimeNanos());
+		assertEquals(5000000, result.getStdDevNanos());
+	}
+
+	@Test
+	public void jitter() {
+		result.addReplyNanos(1000);
+		assertEquals(0, result.getJitterNanos());
+		result.addReplyNanos(2600);
+		assertEquals(100, result.getJitterNanos());
+		result.addReplyNanos(1000);
+		assertEquals(193, result.getJitterNanos());
+	}
+
+	@Test
+	public void noReplies() {
+		assertFalse(result.isAlive());
+		assertEquals(0, result.getShortestTimeNanos());
+		assertEquals(0, result.getStdDevNanos());
+		assertEquals(100, result.getPacketLossPercent());
+	}
+
+	@Test
+	public void merge() {
+		result.addReplyNanos(1000);
+		PingResult other = new PingResult(result.address, 2);
+		other.addReplyNanos(3000);
+		other.setTTL(64);
+		result.merge(other);
+		assertEquals(6, result.getPacketCount());
+		assertEquals(2, result.getReplyCount());
+		assertEquals(2000, result.getAverageTimeNanos());
+		assertEquals(1000, result.getShortestTimeNanos());
+		assertEquals(3000, result.getLongestTimeNanos());
+		assertEquals(64, result.getTTL());
+	}
+}
@@ -9,6 +9,8 @@ import net.azib.ipscan.fetchers.FetcherException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 public class PingerRegistryTest {
@@ -51,6 +53,21 @@ public class PingerRegistryTest {
 		assertTrue(registry.createPinger(false) instanceof TCPPinger);
 	}
 
+	@Test
+	public void unknownPingerFallsBackToPortableOne() {
+		config.selectedPinger = "pinger.unknown";
+		registry.createPinger(false);
+		assertNotEquals("pinger.linux", config.selectedPinger);
+	}
+
+	@Test
+	public void createCandidatesForAutoPinger() throws Exception {
+		Map<String, Pinger> candidates = registry.createCandidates();
+		assertFalse(candidates.containsKey(AutoPinger.ID));
+		assertTrue(candidates.get("pinger.tcp") instanceof TCPPinger);
+		assertTrue(registry.createPinger(AutoPinger.ID, 0) instanceof AutoPinger);
+	}
+
 	@Test
 	public void checkBackwardCompatibleCreation() {
 		assertTrue(registry.createPinger(PingerDefaultConstructor.class, 0) instanceof PingerDefaultConstructor);
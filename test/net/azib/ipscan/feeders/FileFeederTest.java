@@ -1,15 +1,19 @@
 package net.azib.ipscan.feeders;
 
 import net.azib.ipscan.config.LabelsTest;
+import net.azib.ipscan.config.ScannerConfig;
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.util.DNSCache;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.StringReader;
+import java.net.InetAddress;
 import java.util.Iterator;
 
 import static net.azib.ipscan.feeders.FeederTestUtils.assertFeederException;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
 
 /**
  * Test of FileFeeder
@@ -31,6 +35,17 @@ public class FileFeederTest {
 		assertFalse(fileFeeder.hasNext());
 	}
 
+	@Test
+	public void hostnamesAreLookedUpInCache() throws Exception {
+		ScannerConfig config = mock(ScannerConfig.class);
+		config.dnsCacheMaxTTL = 3600;
+		DNSCache cache = new DNSCache(config);
+		cache.put("A cached.example.com", InetAddress.getByName("10.1.2.3"), 60);
+		FileFeeder fileFeeder = new FileFeeder(new StringReader("cached.example.com"), cache);
+		assertEquals("10.1.2.3", fileFeeder.next().getAddress().getHostAddress());
+		assertEquals(1, cache.getHits());
+	}
+
 	@Test
 	public void simpleHostnames() throws FeederException {
 		StringReader reader = new StringReader("angryip.org, hello.xyz.com www.google.ee");
@@ -0,0 +1,57 @@
+package net.azib.ipscan.feeders;
+
+import net.azib.ipscan.core.net.NeighborTable;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NeighborFeederTest {
+	private NeighborTable neighborTable = mock(NeighborTable.class);
+
+	@Test
+	public void feedsKnownNeighbors() throws Exception {
+		when(neighborTable.start()).thenReturn(true);
+		when(neighborTable.getNeighbors()).thenReturn(asList(InetAddress.getByName("127.0.0.2"), InetAddress.getByName("127.0.0.5")));
+		NeighborFeeder feeder = new NeighborFeeder(neighborTable);
+		assertTrue(feeder.isLocalNetwork());
+		assertEquals("2", feeder.getInfo());
+
+		assertTrue(feeder.hasNext());
+		assertEquals(InetAddress.getByName("127.0.0.2"), feeder.next().getAddress());
+		assertEquals(50, feeder.percentageComplete());
+		assertEquals(InetAddress.getByName("127.0.0.5"), feeder.next().getAddress());
+		assertFalse(feeder.hasNext());
+		assertEquals(100, feeder.percentageComplete());
+	}
+
+	@Test
+	public void unavailable() {
+		when(neighborTable.start()).thenReturn(false);
+		try {
+			new NeighborFeeder(neighborTable);
+			fail();
+		}
+		catch (FeederException e) {
+			assertEquals("neighbors.unavailable", e.getMessage());
+		}
+	}
+
+	@Test
+	public void nothingFound() {
+		when(neighborTable.start()).thenReturn(true);
+		when(neighborTable.getNeighbors()).thenReturn(emptyList());
+		try {
+			new NeighborFeeder(neighborTable);
+			fail();
+		}
+		catch (FeederException e) {
+			assertEquals("neighbors.nothingFound", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package net.azib.ipscan.fetchers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class ARPTableTest {
+	private static final String HEADER = "IP address       HW type     Flags       HW address            Mask     Device\n";
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = Files.createTempFile("arp", null);
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.delete(file);
+	}
+
+	@Test
+	public void completeEntriesAreFound() throws Exception {
+		Files.writeString(file, HEADER +
+			"192.168.0.1      0x1         0x2         00:1a:2b:3c:4d:5e     *        eth0\n" +
+			"192.168.0.7      0x1         0x0         00:00:00:00:00:00     *        eth0\n" +
+			"10.0.0.254       0x1         0x6         aa:bb:cc:dd:ee:ff     *        wlan0\n");
+		ARPTable table = new ARPTable(file, 60000, 60000);
+		assertEquals("00:1A:2B:3C:4D:5E", table.get(InetAddress.getByName("192.168.0.1")));
+		assertEquals("AA:BB:CC:DD:EE:FF", table.get(InetAddress.getByName("10.0.0.254")));
+		assertNull("incomplete", table.get(InetAddress.getByName("192.168.0.7")));
+		assertNull(table.get(InetAddress.getByName("192.168.0.2")));
+		assertNull(table.get(InetAddress.getByName("::1")));
+	}
+
+	@Test
+	public void snapshotIsReusedUntilInvalidated() throws Exception {
+		Files.writeString(file, HEADER + "192.168.0.1      0x1         0x2         00:1a:2b:3c:4d:5e     *        eth0\n");
+		ARPTable table = new ARPTable(file, 60000, 60000);
+		assertNotNull(table.get(InetAddress.getByName("192.168.0.1")));
+
+		Files.writeString(file, HEADER);
+		assertNotNull(table.get(InetAddress.getByName("192.168.0.1")));
+
+		table.invalidate();
+		assertNull(table.get(InetAddress.getByName("192.168.0.1")));
+	}
+
+	@Test
+	public void missRereadsTable() throws Exception {
+		Files.writeString(file, HEADER);
+		ARPTable table = new ARPTable(file, 60000, 0);
+		assertNull(table.get(InetAddress.getByName("192.168.0.1")));
+
+		// e.g. added after an ARP request triggered by pinging
+		Files.writeString(file, HEADER + "192.168.0.1      0x1         0x2         00:1a:2b:3c:4d:5e     *        eth0\n");
+		assertEquals("00:1A:2B:3C:4D:5E", table.get(InetAddress.getByName("192.168.0.1")));
+	}
+
+	@Test
+	public void missingTable() throws Exception {
+		assertNull(new ARPTable(file.resolveSibling("no-such-arp"), 0, 0).get(InetAddress.getByName("192.168.0.1")));
+	}
+
+	@Test
+	public void parseIPv4() {
+		assertEquals(0xC0A80001, ARPTable.parseIPv4("192.168.0.1"));
+		assertEquals(0xFFFFFFFF, ARPTable.parseIPv4("255.255.255.255"));
+		assertEquals(0, ARPTable.parseIPv4("256.0.0.1"));
+		assertEquals(0, ARPTable.parseIPv4("1.2.3"));
+		assertEquals(0, ARPTable.parseIPv4("1.2..3"));
+		assertEquals(0, ARPTable.parseIPv4("1.2.3.4.5"));
+		assertEquals(0, ARPTable.parseIPv4("fe80::1"));
+	}
+
+	@Test
+	public void snapshotGrows() {
+		ARPTable.Snapshot snapshot = new ARPTable.Snapshot(0);
+		for (int i = 1; i <= 1000; i++) snapshot.put(0x0A000000 + i, "mac" + i);
+		assertEquals(1000, snapshot.size());
+		for (int i = 1; i <= 1000; i++) assertEquals("mac" + i, snapshot.get(0x0A000000 + i));
+		assertNull(snapshot.get(0x0A000000 + 1001));
+	}
+}
@@ -1,14 +1,22 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.util.DNSResolver;
+import net.azib.ipscan.util.DNSResolverTest;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 
+import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * HostnameFetcherTest
@@ -38,4 +46,32 @@ public class HostnameFetcherTest extends AbstractFetcherTestCase {
 		if (inexistentAddress.getHostName().equals("192.168.253.253"))
 			assertNull(fetcher.scan(new ScanningSubject(inexistentAddress)));			
 	}
+
+	@Test
+	public void osIsAskedIfNameServerDoesNotKnowTheName() throws Exception {
+		InetAddress address = InetAddress.getLoopbackAddress();
+		String name = address.getCanonicalHostName();
+		// the name comes from the hosts file, if any
+		if (name.equals(address.getHostAddress())) return;
+
+		DNSResolver resolver = mock(DNSResolver.class);
+		when(resolver.isAvailable()).thenReturn(true);
+		when(resolver.lookup(any())).thenReturn(new DNSResolver.Answer(null, 60));
+		fetcher = new HostnameFetcher(resolver, null, null);
+		assertEquals(name, fetcher.scan(new ScanningSubject(address)));
+	}
+
+	@Test
+	public void osIsAskedIfNameServerDoesNotRespond() throws Exception {
+		InetAddress address = InetAddress.getLoopbackAddress();
+		String name = address.getCanonicalHostName();
+		if (name.equals(address.getHostAddress())) return;
+
+		// nobody reads from the socket, so queries are never answered
+		try (DatagramSocket silent = new DatagramSocket(0, address);
+			 DNSResolver resolver = DNSResolverTest.resolver(singletonList(new InetSocketAddress(address, silent.getLocalPort())), 100)) {
+			fetcher = new HostnameFetcher(resolver, null, null);
+			assertEquals(name, fetcher.scan(new ScanningSubject(address)));
+		}
+	}
 }
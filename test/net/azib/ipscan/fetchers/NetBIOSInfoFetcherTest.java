@@ -0,0 +1,39 @@
+package net.azib.ipscan.fetchers;
+
+import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.util.NetBIOSResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class NetBIOSInfoFetcherTest extends AbstractFetcherTestCase {
+	NetBIOSResolver resolver = mock(NetBIOSResolver.class);
+
+	@Before
+	public void setUp() throws Exception {
+		fetcher = new NetBIOSInfoFetcher(resolver);
+	}
+
+	@Test
+	public void namesAreQueriedOncePerSubject() throws Exception {
+		when(resolver.resolveAsync(any(), anyInt())).thenReturn(CompletableFuture.completedFuture(new String[] {"PC", "user", "GROUP", "00-11-22-33-44-55"}));
+		ScanningSubject subject = new ScanningSubject(InetAddress.getByName("192.168.0.3"));
+
+		assertEquals("GROUP\\user@PC [00-11-22-33-44-55]", fetcher.scan(subject));
+		assertEquals("PC", NetBIOSInfoFetcher.resolveNames(resolver, subject)[0]);
+		verify(resolver, times(1)).resolveAsync(subject.getAddress(), subject.getAdaptedPortTimeout());
+	}
+
+	@Test
+	public void noReply() throws Exception {
+		when(resolver.resolveAsync(any(), anyInt())).thenReturn(CompletableFuture.completedFuture(null));
+		assertNull(fetcher.scan(new ScanningSubject(InetAddress.getByName("192.168.0.3"))));
+	}
+}
@@ -1,7 +1,12 @@
 package net.azib.ipscan.fetchers;
 
 import net.azib.ipscan.config.ScannerConfig;
+import net.azib.ipscan.core.ConcurrencyController;
+import net.azib.ipscan.core.PortIterator;
+import net.azib.ipscan.core.ScanningResult.ResultType;
 import net.azib.ipscan.core.ScanningSubject;
+import net.azib.ipscan.core.net.AsyncConnector;
+import net.azib.ipscan.core.net.ConnectResult;
 import net.azib.ipscan.core.values.NumericRangeList;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,9 +15,15 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
 
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
 
 /**
  * PortsFetcherTest
@@ -114,4 +125,108 @@ public class PortsFetcherTest extends AbstractFetcherTestCase {
 		fetcher.cleanup();
 	}
 
+	@Test
+	public void scanNonBlocking() throws Exception {
+		try (ServerSocket server = new ServerSocket(0)) {
+			config.portString = "65535," + server.getLocalPort();
+			config.portTimeout = 1000;
+			config.useNonBlockingPorts = true;
+			fetcher.init();
+
+			ScanningSubject subject = new ScanningSubject(InetAddress.getLocalHost());
+			NumericRangeList value = (NumericRangeList) fetcher.scan(subject);
+			assertEquals(String.valueOf(server.getLocalPort()), value.toString());
+			assertTrue(((PortsFetcher) fetcher).getFilteredPorts(subject).isEmpty());
+		}
+		finally {
+			fetcher.cleanup();
+		}
+	}
+
+	@Test
+	public void scanParallel() throws Exception {
+		try (ServerSocket server1 = new ServerSocket(0); ServerSocket server2 = new ServerSocket(0)) {
+			// more ports than fit into a single chunk
+			config.portString = "65400-65499," + server1.getLocalPort() + "," + server2.getLocalPort();
+			config.portTimeout = 1000;
+			config.maxConnectsPerHost = 4;
+			fetcher.init();
+
+			ScanningSubject subject = new ScanningSubject(InetAddress.getLocalHost());
+			NumericRangeList value = (NumericRangeList) fetcher.scan(subject);
+			int min = Math.min(server1.getLocalPort(), server2.getLocalPort()), max = Math.max(server1.getLocalPort(), server2.getLocalPort());
+			assertEquals(new NumericRangeList(new TreeSet<>(asList(min, max)), true).toString(), value.toString());
+			assertArrayEquals(new int[] {min, max}, ((PortsFetcher) fetcher).getOpenPorts(subject).toArray());
+		}
+		finally {
+			fetcher.cleanup();
+		}
+	}
+
+	@Test
+	public void scanParallelAfterWorkersAreShutDown() throws Exception {
+		try (ServerSocket server = new ServerSocket(0)) {
+			config.portString = "65400-65499," + server.getLocalPort();
+			config.portTimeout = 1000;
+			config.maxThreads = 2;
+			config.maxConnectsPerHost = 4;
+			fetcher.init();
+			// e.g. a thread that is still scanning while the others are being killed
+			fetcher.cleanup();
+
+			ScanningSubject subject = new ScanningSubject(InetAddress.getLocalHost());
+			assertEquals(String.valueOf(server.getLocalPort()), fetcher.scan(subject).toString());
+		}
+	}
+
+	@Test
+	public void sharedConnectorIsLeftAloneOnCleanup() throws Exception {
+		AsyncConnector connector = mock(AsyncConnector.class);
+		fetcher = new PortsFetcher(config, connector, null, null, null);
+		config.portString = "";
+		fetcher.init();
+		// also called for every killed thread, while the others are still scanning
+		fetcher.cleanup();
+		verifyZeroInteractions(connector);
+	}
+
+	@Test
+	public void timeoutsOfAnsweringHostsAreNotCongestion() throws Exception {
+		AsyncConnector connector = mock(AsyncConnector.class);
+		ConcurrencyController controller = mock(ConcurrencyController.class);
+		config.portString = "1-3";
+		config.useNonBlockingPorts = true;
+		fetcher = new PortsFetcher(config, connector, null, controller, null);
+		fetcher.init();
+
+		AsyncConnector.Attempt timeout = mock(AsyncConnector.Attempt.class);
+		when(timeout.get()).thenReturn(ConnectResult.TIMEOUT);
+		AsyncConnector.Attempt closed = mock(AsyncConnector.Attempt.class);
+		when(closed.get()).thenReturn(ConnectResult.CLOSED);
+
+		// the host has answered to one of the ports
+		when(connector.connect(any(), anyInt())).thenReturn(timeout, closed, timeout);
+		fetcher.scan(new ScanningSubject(InetAddress.getLoopbackAddress()));
+		verify(controller, never()).recordTimeout();
+
+		// the host has answered to pings
+		when(connector.connect(any(), anyInt())).thenReturn(timeout);
+		ScanningSubject subject = new ScanningSubject(InetAddress.getLoopbackAddress());
+		subject.setResultType(ResultType.ALIVE);
+		fetcher.scan(subject);
+		verify(controller, never()).recordTimeout();
+
+		// nothing has answered, maybe because of congestion
+		fetcher.scan(new ScanningSubject(InetAddress.getLoopbackAddress()));
+		verify(controller, times(3)).recordTimeout();
+		fetcher.cleanup();
+	}
+
+	@Test
+	public void nextChunk() throws Exception {
+		Iterator<Integer> ports = new PortIterator("1-40");
+		assertEquals(PortsFetcher.PORT_CHUNK_SIZE, PortsFetcher.nextChunk(ports).size());
+		assertEquals(40 - PortsFetcher.PORT_CHUNK_SIZE, PortsFetcher.nextChunk(ports).size());
+		assertTrue(PortsFetcher.nextChunk(ports).isEmpty());
+	}
 }
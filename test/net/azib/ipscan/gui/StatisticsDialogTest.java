@@ -66,4 +66,24 @@ public class StatisticsDialogTest {
 		assertTrue(text.contains(Labels.getLabel("text.scan.hosts.alive") + "10"));
 		assertTrue(text.contains(Labels.getLabel("text.scan.hosts.ports") + "5"));
 	}
+
+	@Test
+	public void latencyStatistics() throws Exception {
+		Labels.initialize(new Locale("en"));
+		ScanningResultList results = mock(ScanningResultList.class);
+		ScanInfo scanInfo = new ScanInfo();
+		scanInfo.getLatency().record(250000);
+		scanInfo.getLatency().record(1500000);
+		scanInfo.getLatency().record(2000000000);
+		when(results.getScanInfo()).thenReturn(scanInfo);
+
+		String text = new StatisticsDialog(results).prepareText();
+
+		assertTrue(text.contains(Labels.getLabel("text.scan.latency") + "0.25\u00A0ms / "));
+		assertTrue(text.contains(" / 2000\u00A0ms"));
+		assertTrue(text.contains("0.1\u00A0ms - 1\u00A0ms: 1"));
+		assertTrue(text.contains("1\u00A0ms - 10\u00A0ms: 1"));
+		assertTrue(text.contains("> 1000\u00A0ms: 1"));
+		assertFalse(text.contains("10\u00A0ms - 100\u00A0ms"));
+	}
 }
@@ -0,0 +1,96 @@
+package net.azib.ipscan.util;
+
+import net.azib.ipscan.config.ScannerConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class DNSCacheTest {
+	ScannerConfig config = mock(ScannerConfig.class);
+	long now;
+	DNSCache cache = new DNSCache(config, 3) {
+		@Override long nanoTime() {
+			return now;
+		}
+	};
+
+	@Before
+	public void setUp() {
+		config.dnsCacheMaxTTL = 3600;
+	}
+
+	@Test
+	public void positiveAndNegativeEntries() {
+		assertNull(cache.get("PTR 1.2.3.4"));
+		cache.put("PTR 1.2.3.4", "host", 60);
+		cache.put("PTR 1.2.3.5", null, 60);
+
+		assertEquals("host", cache.<String>get("PTR 1.2.3.4").value);
+		DNSCache.Entry<String> negative = cache.get("PTR 1.2.3.5");
+		assertNotNull(negative);
+		assertNull(negative.value);
+	}
+
+	@Test
+	public void entriesExpireAfterTTL() {
+		cache.put("PTR 1.2.3.4", "host", 60);
+		now += SECONDS.toNanos(59);
+		assertNotNull(cache.get("PTR 1.2.3.4"));
+		now += SECONDS.toNanos(1);
+		assertNull(cache.get("PTR 1.2.3.4"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void ttlIsCappedByConfig() {
+		config.dnsCacheMaxTTL = 10;
+		cache.put("PTR 1.2.3.4", "host", 86400);
+		now += SECONDS.toNanos(10);
+		assertNull(cache.get("PTR 1.2.3.4"));
+	}
+
+	@Test
+	public void nothingIsCachedIfDisabled() {
+		config.dnsCacheMaxTTL = 0;
+		cache.put("PTR 1.2.3.4", "host", 60);
+		cache.put("PTR 1.2.3.5", "host", 0);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		cache.put("a", "1", 60);
+		cache.put("b", "2", 60);
+		cache.put("c", "3", 60);
+		cache.get("a");
+		cache.put("d", "4", 60);
+
+		assertEquals(3, cache.size());
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+		assertNotNull(cache.get("d"));
+	}
+
+	@Test
+	public void hitRate() {
+		assertEquals(0, cache.getHitRate(), 0);
+		cache.get("a");
+		cache.put("a", "1", 60);
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate(), 0);
+		assertEquals("DNS cache: 1 entries, 2 hits, 2 misses (50%)", cache.toString());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+	}
+}
@@ -0,0 +1,234 @@
+package net.azib.ipscan.util;
+
+import net.azib.ipscan.util.DNSResolver.Answer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+public class DNSResolverTest {
+	List<StubServer> stubs = new ArrayList<>();
+	DNSResolver resolver;
+
+	@After
+	public void tearDown() {
+		if (resolver != null) resolver.close();
+		for (StubServer stub : stubs) stub.close();
+	}
+
+	@Test
+	public void reverseName() throws Exception {
+		assertEquals("4.3.2.1.in-addr.arpa", DNSResolver.reverseName(InetAddress.getByName("1.2.3.4")));
+		assertEquals("b.a.9.8.7.6.5.0.4.0.0.0.3.0.0.0.2.0.0.0.1.0.0.0.0.0.0.0.1.2.3.4.ip6.arpa",
+			DNSResolver.reverseName(InetAddress.getByName("4321:0:1:2:3:4:567:89ab")));
+	}
+
+	@Test
+	public void readCompressedName() {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] {3, 'w', 'w', 'w', 7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 3, 'c', 'o', 'm', 0, 4, 'm', 'a', 'i', 'l', (byte) 0xC0, 4});
+		assertEquals("www.example.com", DNSResolver.readName(buffer, 0));
+		assertEquals("mail.example.com", DNSResolver.readName(buffer, 17));
+		assertEquals(24, DNSResolver.skipName(buffer, 17));
+	}
+
+	@Test
+	public void readServersFromResolvConf() throws Exception {
+		Path file = Files.createTempFile("resolv", ".conf");
+		try {
+			Files.write(file, asList("# comment", "search example.com", "nameserver 127.0.0.53", "options edns0", "nameserver ::1", "nameserver bogus.example.com"));
+			List<InetSocketAddress> servers = DNSResolver.readServers(file);
+			assertEquals(asList(new InetSocketAddress("127.0.0.53", 53), new InetSocketAddress("::1", 53)), servers);
+			assertTrue(DNSResolver.readServers(file.resolveSibling("inexistent")).isEmpty());
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void notAvailableWithoutServers() throws Exception {
+		resolver = new DNSResolver(new ArrayList<>(), 100, 1);
+		assertFalse(resolver.isAvailable());
+		assertTrue(resolver.resolveAsync(InetAddress.getByName("1.2.3.4")).isCompletedExceptionally());
+	}
+
+	@Test
+	public void resolvesPTR() throws Exception {
+		StubServer stub = stub(name -> name.equals("4.3.2.1.in-addr.arpa") ? response(0, "host.example.com", 300) : response(3, null, 0));
+		resolver = new DNSResolver(singletonList(stub.address()), 1000, 2);
+
+		Answer answer = resolver.resolveAsync(InetAddress.getByName("1.2.3.4")).get(5, SECONDS);
+		assertEquals("host.example.com", answer.name);
+		assertEquals(300, answer.ttl);
+		assertNull(resolver.resolve(InetAddress.getByName("1.2.3.5")));
+	}
+
+	@Test
+	public void negativeAnswerIsCachedForSOAMinimum() throws Exception {
+		StubServer stub = stub(name -> response(3, null, 900));
+		resolver = new DNSResolver(singletonList(stub.address()), 1000, 2);
+
+		Answer answer = resolver.resolveAsync(InetAddress.getByName("1.2.3.4")).get(5, SECONDS);
+		assertNull(answer.name);
+		assertEquals(120, answer.ttl);
+	}
+
+	@Test
+	public void retriesWithNextServer() throws Exception {
+		StubServer silent = stub(name -> null);
+		StubServer stub = stub(name -> response(0, "host", 60));
+		resolver = new DNSResolver(asList(silent.address(), stub.address()), 200, 2);
+
+		long start = System.currentTimeMillis();
+		assertEquals("host", resolver.resolve(InetAddress.getByName("1.2.3.4")));
+		assertTrue(System.currentTimeMillis() - start >= 200);
+		assertEquals(1, silent.queries.size());
+	}
+
+	@Test
+	public void serverFailureIsRetriedAtOnce() throws Exception {
+		StubServer failing = stub(name -> response(2, null, 0));
+		StubServer stub = stub(name -> response(0, "host", 60));
+		resolver = new DNSResolver(asList(failing.address(), stub.address()), 5000, 2);
+
+		long start = System.currentTimeMillis();
+		assertEquals("host", resolver.resolve(InetAddress.getByName("1.2.3.4")));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void timeout() throws Exception {
+		StubServer silent = stub(name -> null);
+		resolver = new DNSResolver(singletonList(silent.address()), 100, 2);
+		resolver.resolve(InetAddress.getByName("1.2.3.4"));
+	}
+
+	@Test
+	public void responsesWithWrongIdsAreIgnored() throws Exception {
+		StubServer stub = stub(name -> response(0, "host", 60));
+		stub.spoofFirst = true;
+		resolver = new DNSResolver(singletonList(stub.address()), 1000, 1);
+		assertEquals("host", resolver.resolve(InetAddress.getByName("1.2.3.4")));
+	}
+
+	@Test
+	public void queriesArePipelined() throws Exception {
+		StubServer stub = stub(name -> response(0, "h" + name.substring(0, name.indexOf('.')), 60));
+		resolver = new DNSResolver(singletonList(stub.address()), 2000, 2);
+
+		List<CompletableFuture<Answer>> answers = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) answers.add(resolver.resolveAsync(InetAddress.getByName("10.0." + (i / 256) + "." + (i % 256))));
+		for (int i = 0; i < answers.size(); i++) assertEquals("h" + (i % 256), answers.get(i).get(10, SECONDS).name);
+		// all through a single socket
+		assertEquals(1, stub.sources.size());
+	}
+
+	/**
+	 * @return resolver, which asks only the specified servers, for tests of other packages
+	 */
+	public static DNSResolver resolver(List<InetSocketAddress> servers, int timeout) {
+		return new DNSResolver(servers, timeout, 1);
+	}
+
+	StubServer stub(Function<String, byte[]> responder) throws SocketException {
+		StubServer stub = new StubServer(responder);
+		stubs.add(stub);
+		return stub;
+	}
+
+	/**
+	 * @return answer and authority sections (without the header and question) and their counts in the first 4 bytes
+	 */
+	static byte[] response(int rcode, String name, int ttl) {
+		ByteBuffer buffer = ByteBuffer.allocate(512);
+		buffer.put((byte) rcode).put((byte) 0).put((byte) (name != null ? 1 : 0)).put((byte) (name == null && ttl > 0 ? 1 : 0));
+		if (name != null) {
+			// compressed owner name, pointing to the question
+			buffer.putShort((short) 0xC00C).putShort((short) DNSResolver.TYPE_PTR).putShort((short) 1).putInt(ttl);
+			ByteBuffer rdata = DNSResolver.query(0, name);
+			buffer.putShort((short) (rdata.limit() - DNSResolver.HEADER_SIZE - 4));
+			buffer.put(rdata.array(), DNSResolver.HEADER_SIZE, rdata.limit() - DNSResolver.HEADER_SIZE - 4);
+		}
+		else if (ttl > 0) {
+			// SOA with MINIMUM of 120
+			buffer.put((byte) 0).putShort((short) DNSResolver.TYPE_SOA).putShort((short) 1).putInt(ttl).putShort((short) 22);
+			buffer.put((byte) 0).put((byte) 0).putInt(1).putInt(3600).putInt(600).putInt(86400).putInt(120);
+		}
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	static class StubServer extends Thread {
+		DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		Function<String, byte[]> responder;
+		Set<String> queries = ConcurrentHashMap.newKeySet();
+		Set<Integer> sources = ConcurrentHashMap.newKeySet();
+		volatile boolean spoofFirst;
+
+		StubServer(Function<String, byte[]> responder) throws SocketException {
+			this.responder = responder;
+			setDaemon(true);
+			start();
+		}
+
+		InetSocketAddress address() {
+			return new InetSocketAddress(socket.getLocalAddress(), socket.getLocalPort());
+		}
+
+		@Override public void run() {
+			byte[] data = new byte[512];
+			try {
+				while (true) {
+					DatagramPacket packet = new DatagramPacket(data, data.length);
+					socket.receive(packet);
+					sources.add(packet.getPort());
+					ByteBuffer query = ByteBuffer.wrap(data, 0, packet.getLength());
+					String name = DNSResolver.readName(query, DNSResolver.HEADER_SIZE);
+					queries.add(name);
+					byte[] sections = responder.apply(name);
+					if (sections == null) continue;
+
+					int questionEnd = DNSResolver.skipName(query, DNSResolver.HEADER_SIZE) + 4;
+					ByteBuffer response = ByteBuffer.allocate(questionEnd + sections.length - 4);
+					response.putShort(query.getShort(0)).putShort((short) (0x8180 | sections[0])).putShort((short) 1)
+						.putShort(sections[2]).putShort(sections[3]).putShort((short) 0);
+					response.put(data, DNSResolver.HEADER_SIZE, questionEnd - DNSResolver.HEADER_SIZE).put(sections, 4, sections.length - 4);
+					if (spoofFirst) {
+						spoofFirst = false;
+						byte[] spoofed = response.array().clone();
+						spoofed[1]++;
+						socket.send(new DatagramPacket(spoofed, spoofed.length, packet.getSocketAddress()));
+					}
+					socket.send(new DatagramPacket(response.array(), response.capacity(), packet.getSocketAddress()));
+				}
+			}
+			catch (IOException e) {
+				// closed
+			}
+		}
+
+		void close() {
+			socket.close();
+		}
+	}
+}
@@ -66,6 +66,12 @@ public class InetAddressUtilsTest {
 				InetAddress.getByName("255.255.0.0")).getHostAddress());
 	}
 
+	@Test
+	public void subnetOf() throws UnknownHostException {
+		assertEquals("192.168.5.0", InetAddressUtils.subnetOf(InetAddress.getByName("192.168.5.77")).getHostAddress());
+		assertEquals("2001:db8:1:2:0:0:0:0", InetAddressUtils.subnetOf(InetAddress.getByName("2001:db8:1:2:3:4:5:6")).getHostAddress());
+	}
+
 	@Test
 	public void testEndRangeByNetmask() throws UnknownHostException {
 		assertEquals("127.0.1.127", InetAddressUtils.endRangeByNetmask(
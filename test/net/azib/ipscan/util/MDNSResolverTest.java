@@ -1,20 +1,39 @@
 package net.azib.ipscan.util;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import static org.junit.Assert.assertEquals;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
 
 public class MDNSResolverTest {
 	MDNSResolver resolver;
+	DatagramSocket responder;
+	List<Integer> questionCounts = new CopyOnWriteArrayList<>();
 
 	@Before
 	public void setUp() throws Exception {
-		resolver = new MDNSResolver(3000);
+		responder = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		resolver = new MDNSResolver(new InetSocketAddress(responder.getLocalAddress(), responder.getLocalPort()));
+	}
+
+	@After
+	public void tearDown() {
+		resolver.close();
+		responder.close();
 	}
 
 	@Test
@@ -26,13 +45,102 @@ public class MDNSResolverTest {
 	}
 
 	@Test
-	public void decodeNameFromDNS() throws Exception {
-		byte[] data = "\u0000\u0000\u0001a\u0002bb\u0003ccc\u0004dddd\u0000".getBytes();
-		assertEquals("a.bb.ccc.dddd", resolver.decodeName(data, 2, data.length - 2));
+	public void requestWithSeveralQuestions() throws Exception {
+		ByteBuffer request = ByteBuffer.wrap(resolver.dnsRequest(0, "2.0.168.192.in-addr.arpa", "3.0.168.192.in-addr.arpa"));
+		assertEquals(2, request.getShort(4));
+		assertEquals("2.0.168.192.in-addr.arpa", DNSResolver.readName(request, DNSResolver.HEADER_SIZE));
+		int second = DNSResolver.skipName(request, DNSResolver.HEADER_SIZE) + 4;
+		assertEquals("3.0.168.192.in-addr.arpa", DNSResolver.readName(request, second));
+		assertEquals(request.limit(), DNSResolver.skipName(request, second) + 4);
+	}
+
+	@Test
+	public void responsesAreMatchedByName() throws Exception {
+		CompletableFuture<String> first = resolver.resolveAsync(InetAddress.getByName("192.168.0.2"), 1000);
+		CompletableFuture<String> second = resolver.resolveAsync(InetAddress.getByName("192.168.0.3"), 1000);
+		resolver.receive(response("3.0.168.192.in-addr.arpa", "three.local", "2.0.168.192.in-addr.arpa", "two.local"));
+		assertEquals("two.local", first.get(1, SECONDS));
+		assertEquals("three.local", second.get(1, SECONDS));
 	}
 
 	@Test
-	public void reverseLookupName() throws Exception {
-		assertEquals("2.0.168.192.in-addr.arpa", resolver.reverseName(InetAddress.getByName("192.168.0.2").getAddress()));
+	public void queriesAreBatchedAndShareDeadline() throws Exception {
+		startResponder("192.168.0.5");
+		List<CompletableFuture<String>> names = new ArrayList<>();
+		long start = System.currentTimeMillis();
+		for (int i = 1; i <= 50; i++) names.add(resolver.resolveAsync(InetAddress.getByName("192.168.0." + i), 300));
+
+		assertEquals("host5.local", names.get(4).get(1, SECONDS));
+		for (int i = 0; i < names.size(); i++) if (i != 4) assertNull(names.get(i).get(1, SECONDS));
+		assertTrue(System.currentTimeMillis() - start < 1000);
+
+		int questions = 0;
+		for (int count : questionCounts) {
+			assertTrue(count <= MDNSResolver.MAX_QUESTIONS);
+			questions += count;
+		}
+		assertEquals(50, questions);
+		assertTrue(questionCounts.size() < 50);
+	}
+
+	@Test
+	public void sameHostIsQueriedOnce() throws Exception {
+		CompletableFuture<String> first = resolver.resolveAsync(InetAddress.getByName("192.168.0.2"), 1000);
+		assertSame(first, resolver.resolveAsync(InetAddress.getByName("192.168.0.2"), 1000));
+	}
+
+	@Test
+	public void closeCompletesPendingQueries() throws Exception {
+		CompletableFuture<String> name = resolver.resolveAsync(InetAddress.getByName("192.168.0.2"), 10000);
+		resolver.close();
+		assertNull(name.get(1, SECONDS));
+		assertTrue(resolver.resolveAsync(InetAddress.getByName("192.168.0.3"), 1000).isCompletedExceptionally());
+	}
+
+	private void startResponder(String knownAddress) throws Exception {
+		String knownName = DNSResolver.reverseName(InetAddress.getByName(knownAddress));
+		Thread thread = new Thread(() -> {
+			byte[] data = new byte[512];
+			try {
+				while (true) {
+					DatagramPacket packet = new DatagramPacket(data, data.length);
+					responder.receive(packet);
+					ByteBuffer query = ByteBuffer.wrap(data, 0, packet.getLength());
+					int count = query.getShort(4);
+					questionCounts.add(count);
+					int offset = DNSResolver.HEADER_SIZE;
+					for (int i = 0; i < count; i++) {
+						if (knownName.equals(DNSResolver.readName(query, offset))) {
+							ByteBuffer response = response(knownName, "host5.local");
+							responder.send(new DatagramPacket(response.array(), response.limit(), packet.getSocketAddress()));
+						}
+						offset = DNSResolver.skipName(query, offset) + 4;
+					}
+				}
+			}
+			catch (Exception e) {
+				// closed
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @param namePairs reverse names and host names for the PTR records
+	 */
+	static ByteBuffer response(String ... namePairs) {
+		ByteBuffer response = ByteBuffer.allocate(512);
+		response.putShort((short) 0).putShort((short) 0x8400).putShort((short) 0).putShort((short) (namePairs.length / 2)).putInt(0);
+		for (int i = 0; i < namePairs.length; i += 2) {
+			ByteBuffer owner = DNSResolver.query(0, namePairs[i]);
+			ByteBuffer target = DNSResolver.query(0, namePairs[i + 1]);
+			response.put(owner.array(), DNSResolver.HEADER_SIZE, owner.limit() - DNSResolver.HEADER_SIZE - 4);
+			// cache-flush bit in the class, as in real mDNS responses
+			response.putShort((short) DNSResolver.TYPE_PTR).putShort((short) 0x8001).putInt(120);
+			response.putShort((short) (target.limit() - DNSResolver.HEADER_SIZE - 4));
+			response.put(target.array(), DNSResolver.HEADER_SIZE, target.limit() - DNSResolver.HEADER_SIZE - 4);
+		}
+		return response.flip();
 	}
-}
\ No newline at end of file
+}
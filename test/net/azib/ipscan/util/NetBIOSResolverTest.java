@@ -8,9 +8,74 @@ package net.azib.ipscan.util;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertArrayEquals;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
 
 public class NetBIOSResolverTest {
+	@Test
+	public void repliesAreMatchedBySourceAddress() throws Exception {
+		try (DatagramSocket first = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+		     DatagramSocket second = new DatagramSocket(first.getLocalPort(), InetAddress.getByName("127.0.0.2"))) {
+			NetBIOSResolver resolver = new NetBIOSResolver(first.getLocalPort());
+			try {
+				CompletableFuture<String[]> firstNames = resolver.resolveAsync(first.getLocalAddress(), 2000);
+				CompletableFuture<String[]> secondNames = resolver.resolveAsync(second.getLocalAddress(), 2000);
+				CompletableFuture<String[]> silentNames = resolver.resolveAsync(InetAddress.getByName("127.0.0.3"), 200);
+				assertSame(firstNames, resolver.resolveAsync(first.getLocalAddress(), 2000));
+
+				// reply in the opposite order
+				reply(second, "Second");
+				reply(first, "First");
+				assertEquals("First", firstNames.get(1, SECONDS)[0]);
+				assertEquals("Second", secondNames.get(1, SECONDS)[0]);
+				assertNull(silentNames.get(1, SECONDS));
+			}
+			finally {
+				resolver.close();
+			}
+		}
+	}
+
+	@Test
+	public void closeCompletesPendingQueries() throws Exception {
+		NetBIOSResolver resolver = new NetBIOSResolver(9);
+		CompletableFuture<String[]> names = resolver.resolveAsync(InetAddress.getByName("127.0.0.1"), 10000);
+		resolver.close();
+		assertNull(names.get(1, SECONDS));
+	}
+
+	@Test
+	public void shortRepliesHaveNoNames() {
+		assertNull(NetBIOSResolver.parseResponse(new byte[50], 50));
+	}
+
+	@Test
+	public void bytesAfterResponseAreIgnored() throws Exception {
+		byte[] buffer = new byte[1024];
+		Arrays.fill(buffer, (byte) 0xFF);
+		byte[] response = ("01234567890123456789012345678901234567890123456789012345\u0001" +
+						   "ComputerName   XYY").getBytes("ISO-8859-1");
+		response[47] = 33;
+		System.arraycopy(response, 0, buffer, 0, response.length);
+		assertArrayEquals(new String[] {"ComputerName", null, null, "00-00-00-00-00-00"}, NetBIOSResolver.parseResponse(buffer, response.length));
+	}
+
+	private static void reply(DatagramSocket socket, String name) throws Exception {
+		DatagramPacket request = new DatagramPacket(new byte[512], 512);
+		socket.receive(request);
+		byte[] response = ("01234567890123456789012345678901234567890123456789012345\u0001" +
+						   String.format("%-15sXYY", name) +
+						   "\u00DE\u00AD\u00BE\u00EF\u0000\u0000").getBytes("ISO-8859-1");
+		response[47] = 33;
+		socket.send(new DatagramPacket(response, response.length, request.getSocketAddress()));
+	}
+
 	@Test
 	public void extractNamesNoUserNoGroup() throws Exception {
 		byte[] response = ("01234567890123456789012345678901234567890123456789012345\u0001" +